@@ -0,0 +1,174 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.junit.Test;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelAsyncDataSetIteratorTest extends BaseDL4JTest {
+
+    private static List<DataSet> getData(int n, int offset) {
+        List<DataSet> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            list.add(new DataSet(Nd4j.valueArrayOf(new int[] {1, 4}, offset + i), Nd4j.zeros(1, 2)));
+        }
+        return list;
+    }
+
+    private static int value(DataSet ds) {
+        return (int) ds.getFeatures().getDouble(0);
+    }
+
+    @Test
+    public void testOrderedIndexed() {
+        for (int numWorkers : new int[] {1, 2, 4}) {
+            SlowIndexedIterator source = new SlowIndexedIterator(getData(40, 0), -1);
+            ParallelAsyncDataSetIterator iter = new ParallelAsyncDataSetIterator(source, numWorkers);
+            assertEquals(numWorkers, iter.getNumWorkers());
+            for (int epoch = 0; epoch < 2; epoch++) {
+                int count = 0;
+                while (iter.hasNext()) {
+                    assertEquals("numWorkers=" + numWorkers, count++, value(iter.next()));
+                }
+                assertEquals(40, count);
+                assertFalse(iter.hasNext());
+
+                long loaded = 0;
+                for (int i = 0; i < numWorkers; i++) {
+                    loaded += iter.getNumLoaded(i);
+                    assertTrue(iter.getTotalEtlTime(i) >= iter.getLastEtlTime(i));
+                }
+                assertEquals(40, loaded);
+                iter.reset();
+            }
+            iter.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnorderedIndexed() {
+        SlowIndexedIterator source = new SlowIndexedIterator(getData(40, 0), -1);
+        ParallelAsyncDataSetIterator iter = new ParallelAsyncDataSetIterator(source, 4, 6, false);
+        Set<Integer> seen = new HashSet<>();
+        int count = 0;
+        while (iter.hasNext()) {
+            seen.add(value(iter.next()));
+            count++;
+        }
+        assertEquals(40, count);
+        assertEquals(40, seen.size());
+        iter.shutdown();
+    }
+
+    @Test
+    public void testSplits() {
+        //Splits of different lengths: ordered output is round robin, continuing with the longer splits
+        int[] lengths = {5, 2, 4};
+        List<Integer> expected = Arrays.asList(0, 100, 200, 1, 101, 201, 2, 202, 3, 203, 4);
+        for (boolean ordered : new boolean[] {true, false}) {
+            List<DataSetIterator> splits = new ArrayList<>();
+            for (int i = 0; i < lengths.length; i++) {
+                splits.add(new ExistingDataSetIterator(getData(lengths[i], 100 * i)));
+            }
+            ParallelAsyncDataSetIterator iter = new ParallelAsyncDataSetIterator(splits, 3, ordered);
+            for (int epoch = 0; epoch < 2; epoch++) {
+                List<Integer> out = new ArrayList<>();
+                while (iter.hasNext()) {
+                    out.add(value(iter.next()));
+                }
+                if (ordered) {
+                    assertEquals(expected, out);
+                } else {
+                    assertEquals(new HashSet<>(expected), new HashSet<>(out));
+                    assertEquals(expected.size(), out.size());
+                }
+                iter.reset();
+            }
+            iter.shutdown();
+        }
+    }
+
+    @Test
+    public void testWorkerException() {
+        SlowIndexedIterator source = new SlowIndexedIterator(getData(20, 0), 7);
+        ParallelAsyncDataSetIterator iter = new ParallelAsyncDataSetIterator(source, 3);
+        int count = 0;
+        try {
+            while (iter.hasNext()) {
+                iter.next();
+                count++;
+            }
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Failed to load batch 7"));
+        }
+        assertTrue(count <= 7);
+
+        //Exception is cleared on reset
+        source.failOn = -1;
+        iter.reset();
+        count = 0;
+        while (iter.hasNext()) {
+            assertEquals(count++, value(iter.next()));
+        }
+        assertEquals(20, count);
+        iter.shutdown();
+    }
+
+    @Test
+    public void testResetMidEpoch() {
+        SlowIndexedIterator source = new SlowIndexedIterator(getData(40, 0), -1);
+        ParallelAsyncDataSetIterator iter = new ParallelAsyncDataSetIterator(source, 4);
+        for (int i = 0; i < 10; i++) {
+            //Reset while workers are loading and waiting for capacity
+            for (int j = 0; j < i % 3; j++) {
+                assertEquals(j, value(iter.next()));
+            }
+            iter.reset();
+        }
+
+        int count = 0;
+        while (iter.hasNext()) {
+            assertEquals(count++, value(iter.next()));
+        }
+        assertEquals(40, count);
+        iter.shutdown();
+    }
+
+    /**
+     * Indexable iterator with random loading delays, so that workers finish out of order
+     */
+    private static class SlowIndexedIterator extends ExistingDataSetIterator implements RandomAccessDataSetIterator {
+        private final List<DataSet> list;
+        private volatile int failOn;
+
+        private SlowIndexedIterator(List<DataSet> list, int failOn) {
+            super(list);
+            this.list = list;
+            this.failOn = failOn;
+        }
+
+        @Override
+        public int numBatches() {
+            return list.size();
+        }
+
+        @Override
+        public DataSet getBatch(int batch) {
+            if (batch == failOn) {
+                throw new IllegalStateException("Failed to load batch " + batch);
+            }
+            try {
+                Thread.sleep((batch * 7) % 4);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return list.get(batch);
+        }
+    }
+}
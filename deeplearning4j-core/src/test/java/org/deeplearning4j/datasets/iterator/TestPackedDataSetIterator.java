@@ -0,0 +1,212 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.file.PackedDataSetIterator;
+import org.deeplearning4j.datasets.iterator.file.PackedDataSetShard;
+import org.deeplearning4j.datasets.iterator.file.PackedDataSetWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestPackedDataSetIterator extends BaseDL4JTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<DataSet> getData(int nBatches, int batchSize, boolean timeSeries) {
+        List<DataSet> list = new ArrayList<>();
+        int count = 0;
+        for (int i = 0; i < nBatches; i++) {
+            INDArray f;
+            INDArray l;
+            INDArray lm = null;
+            if (timeSeries) {
+                f = Nd4j.rand(new int[] {batchSize, 3, 5});
+                l = Nd4j.rand(new int[] {batchSize, 2, 5});
+                lm = Nd4j.ones(batchSize, 5);
+                lm.putScalar(0, 4, 0.0);
+            } else {
+                f = Nd4j.rand(batchSize, 4);
+                l = Nd4j.rand(batchSize, 3);
+            }
+            //Example number in the first feature value, to check the order
+            for (int j = 0; j < batchSize; j++) {
+                f.putScalar(timeSeries ? new int[] {j, 0, 0} : new int[] {j, 0}, count++);
+            }
+            list.add(new DataSet(f, l, null, lm));
+        }
+        return list;
+    }
+
+    private static int exampleNumber(DataSet ds, int i) {
+        INDArray f = ds.getFeatures();
+        return (int) (f.rank() == 3 ? f.getDouble(i, 0, 0) : f.getDouble(i, 0));
+    }
+
+    private static INDArray range(INDArray arr, int from, int to) {
+        if (arr == null) {
+            return null;
+        }
+        INDArrayIndex[] idx = new INDArrayIndex[arr.rank()];
+        idx[0] = NDArrayIndex.interval(from, to);
+        for (int i = 1; i < idx.length; i++) {
+            idx[i] = NDArrayIndex.all();
+        }
+        return arr.get(idx);
+    }
+
+    @Test
+    public void testWriteAndIterate() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        for (boolean timeSeries : new boolean[] {false, true}) {
+            List<DataSet> data = getData(7, 3, timeSeries);
+            DataSet all = DataSet.merge(data);
+
+            //Small maximum shard size: multiple shards
+            File dir = folder.newFolder();
+            PackedDataSetWriter writer = new PackedDataSetWriter(dir, 600);
+            for (DataSet ds : data) {
+                writer.write(ds);
+            }
+            writer.close();
+            assertTrue(writer.getShardFiles().size() > 1);
+            assertEquals(writer.getShardFiles(), PackedDataSetWriter.listShards(dir));
+            for (File f : writer.getShardFiles()) {
+                assertTrue(f.length() <= 600);
+            }
+
+            //No randomization: same order as written, with any minibatch size
+            PackedDataSetIterator iter = new PackedDataSetIterator(dir, 4, null);
+            assertEquals(21, iter.totalExamples());
+            int count = 0;
+            while (iter.hasNext()) {
+                DataSet ds = iter.next();
+                int n = ds.numExamples();
+                assertEquals(count + 4 <= 21 ? 4 : 21 - count, n);
+                assertEquals(range(all.getFeatures(), count, count + n), ds.getFeatures());
+                assertEquals(range(all.getLabels(), count, count + n), ds.getLabels());
+                assertNull(ds.getFeaturesMaskArray());
+                assertEquals(range(all.getLabelsMaskArray(), count, count + n), ds.getLabelsMaskArray());
+                count += n;
+            }
+            assertEquals(21, count);
+
+            //Random access by index, across shards
+            DataSet ds = iter.get(20, 2, 11);
+            assertEquals(20, exampleNumber(ds, 0));
+            assertEquals(2, exampleNumber(ds, 1));
+            assertEquals(11, exampleNumber(ds, 2));
+            iter.close();
+        }
+    }
+
+    @Test
+    public void testGlobalShuffle() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        File dir = folder.newFolder();
+        PackedDataSetWriter writer = new PackedDataSetWriter(dir, 400);
+        for (DataSet ds : getData(10, 5, false)) {
+            writer.write(ds);
+        }
+        writer.close();
+        assertTrue(writer.getShardFiles().size() > 2);
+        PackedDataSetShard shard = PackedDataSetShard.open(writer.getShardFiles().get(0));
+        int examplesPerShard = shard.numExamples();
+        shard.close();
+
+        PackedDataSetIterator iter = new PackedDataSetIterator(dir, 8, new Random(12345));
+        List<Integer> firstEpoch = null;
+        for (int epoch = 0; epoch < 2; epoch++) {
+            iter.reset();
+            //Minibatches by index: same as returned by next()
+            List<DataSet> byIndex = new ArrayList<>();
+            for (int i = 0; i < iter.numBatches(); i++) {
+                byIndex.add(iter.getBatch(i));
+            }
+            assertEquals(7, byIndex.size());
+
+            List<Integer> order = new ArrayList<>();
+            boolean multipleShardsInBatch = false;
+            while (iter.hasNext()) {
+                DataSet ds = iter.next();
+                assertEquals(byIndex.get((iter.cursor() - 1) / 8), ds);
+                Set<Integer> shardsInBatch = new HashSet<>();
+                for (int i = 0; i < ds.numExamples(); i++) {
+                    int ex = exampleNumber(ds, i);
+                    order.add(ex);
+                    shardsInBatch.add(ex / examplesPerShard);
+                }
+                multipleShardsInBatch |= shardsInBatch.size() > 1;
+            }
+            assertEquals(50, order.size());
+            assertEquals(50, new HashSet<>(order).size());
+            assertTrue(multipleShardsInBatch);
+
+            List<Integer> sorted = new ArrayList<>(order);
+            Collections.sort(sorted);
+            assertNotEquals(sorted, order);
+            if (firstEpoch == null) {
+                firstEpoch = order;
+            } else {
+                assertNotEquals(firstEpoch, order);
+            }
+        }
+        iter.close();
+    }
+
+    @Test
+    public void testConvertFromFiles() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        File source = folder.newFolder();
+        List<DataSet> data = getData(5, 4, true);
+        for (int i = 0; i < data.size(); i++) {
+            data.get(i).save(new File(source, "dataset_" + i + ".bin"));
+        }
+
+        File dest = folder.newFolder();
+        List<File> shards = PackedDataSetWriter.convert(source, dest);
+        assertEquals(1, shards.size());
+
+        PackedDataSetShard shard = PackedDataSetShard.open(shards.get(0));
+        assertEquals(20, shard.numExamples());
+        assertArrayEquals(new int[] {3, 5}, shard.getShape(PackedDataSetShard.FEATURES));
+        assertArrayEquals(new int[] {2, 5}, shard.getShape(PackedDataSetShard.LABELS));
+        assertNull(shard.getShape(PackedDataSetShard.FEATURES_MASK));
+        assertArrayEquals(new int[] {5}, shard.getShape(PackedDataSetShard.LABELS_MASK));
+        shard.close();
+
+        //All examples converted, regardless of the order the files were listed in
+        PackedDataSetIterator iter = new PackedDataSetIterator(dest, 20, null);
+        DataSet ds = iter.next();
+        assertFalse(iter.hasNext());
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            seen.add(exampleNumber(ds, i));
+        }
+        assertEquals(20, seen.size());
+        iter.close();
+    }
+
+    @Test
+    public void testInconsistentShapes() throws Exception {
+        PackedDataSetWriter writer = new PackedDataSetWriter(folder.newFolder());
+        writer.write(new DataSet(Nd4j.rand(2, 4), Nd4j.rand(2, 3)));
+        try {
+            writer.write(new DataSet(Nd4j.rand(2, 5), Nd4j.rand(2, 3)));
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("same shapes"));
+        }
+        writer.close();
+    }
+}
@@ -1203,4 +1203,119 @@ public class EvalTest extends BaseDL4JTest {
         assertEquals(ePosClass1_nOut2.precision(EvaluationAveraging.Macro), ePosClassNull_nOut1.precision(), 1e-6);
         assertEquals(ePosClass1_nOut2.f1(EvaluationAveraging.Macro), ePosClassNull_nOut1.f1(), 1e-6);
     }
+
+    @Test
+    public void testConfusionCountsVsMultisets() {
+        //Primitive counts should behave exactly as multiset-based confusion matrix, incl. sparse blocks
+        int nClasses = 1000;
+        Random r = new Random(12345);
+
+        ConfusionMatrix<Integer> primitive = ConfusionMatrix.forClasses(nClasses);
+        List<Integer> classes = new ArrayList<>(primitive.getClasses());
+        ConfusionMatrix<Integer> multisets = new ConfusionMatrix<>(classes);
+        assertNotNull(primitive.getCounts());
+        assertNull(multisets.getCounts());
+
+        for (int i = 0; i < 20000; i++) {
+            int actual = r.nextInt(nClasses);
+            int predicted = r.nextDouble() < 0.8 ? actual : r.nextInt(nClasses);
+            primitive.add(actual, predicted);
+            multisets.add(actual, predicted);
+        }
+
+        assertEquals(multisets, primitive);
+        assertEquals(primitive, multisets);
+        assertEquals(multisets.hashCode(), primitive.hashCode());
+        assertEquals(multisets.getMatrix(), primitive.getMatrix());
+        for (int i = 0; i < nClasses; i++) {
+            assertEquals(multisets.getActualTotal(i), primitive.getActualTotal(i));
+            assertEquals(multisets.getPredictedTotal(i), primitive.getPredictedTotal(i));
+            assertEquals(multisets.getCount(i, i), primitive.getCount(i, i));
+        }
+
+        //Merge and copy
+        ConfusionMatrix<Integer> merged = new ConfusionMatrix<>(primitive);
+        merged.add(primitive);
+        assertNotNull(merged.getCounts());
+        assertEquals(2 * primitive.getCount(7, 7), merged.getCount(7, 7));
+        assertEquals(2 * primitive.getCounts().getTotal(), merged.getCounts().getTotal());
+
+        //Unexpected classes switch storage to multisets, without losing anything
+        primitive.add(nClasses + 5, 1);
+        assertNull(primitive.getCounts());
+        assertEquals(1, primitive.getCount(nClasses + 5, 1));
+        assertEquals(multisets.getCount(3, 3), primitive.getCount(3, 3));
+    }
+
+    @Test
+    public void testEvalBulkMatchesSingle() {
+        int nClasses = 300;
+        int nExamples = 500;
+        Random r = new Random(12345);
+
+        INDArray labels = Nd4j.zeros(nExamples, nClasses);
+        INDArray predictions = Nd4j.rand(nExamples, nClasses);
+        Evaluation single = new Evaluation(nClasses);
+        for (int i = 0; i < nExamples; i++) {
+            int actual = r.nextInt(nClasses);
+            labels.putScalar(i, actual, 1.0);
+            single.eval(Nd4j.argMax(predictions.getRow(i), 1).getInt(0), actual);
+        }
+
+        Evaluation bulk = new Evaluation(nClasses);
+        bulk.eval(labels, predictions);
+
+        assertEquals(single.getConfusionMatrix(), bulk.getConfusionMatrix());
+        assertEquals(single.truePositives(), bulk.truePositives());
+        assertEquals(single.falsePositives(), bulk.falsePositives());
+        assertEquals(single.falseNegatives(), bulk.falseNegatives());
+        assertEquals(single.trueNegatives(), bulk.trueNegatives());
+        assertEquals(single.accuracy(), bulk.accuracy(), 1e-6);
+
+        //JSON round trip keeps primitive counts
+        Evaluation fromJson = Evaluation.fromJson(bulk.toJson());
+        assertNotNull(fromJson.getConfusionMatrix().getCounts());
+        assertEquals(bulk.getConfusionMatrix(), fromJson.getConfusionMatrix());
+    }
+
+    @Test
+    public void testStripedEvaluation() throws Exception {
+        final int nClasses = 10;
+        final int nThreads = 4;
+        final List<INDArray[]> batches = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            INDArray labels = Nd4j.zeros(32, nClasses);
+            for (int j = 0; j < 32; j++)
+                labels.putScalar(j, (i * 7 + j) % nClasses, 1.0);
+            batches.add(new INDArray[] {labels, Nd4j.rand(32, nClasses)});
+        }
+
+        Evaluation expected = new Evaluation(nClasses);
+        for (INDArray[] batch : batches)
+            expected.eval(batch[0], batch[1]);
+
+        final StripedEvaluation striped = new StripedEvaluation(nClasses);
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = thread; i < batches.size(); i += nThreads)
+                        striped.eval(batches.get(i)[0], batches.get(i)[1]);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(nThreads, striped.getNumStripes());
+
+        Evaluation actual = striped.getEvaluation();
+        assertEquals(expected.getNumRowCounter(), actual.getNumRowCounter());
+        assertEquals(expected.getConfusionMatrix(), actual.getConfusionMatrix());
+        assertEquals(expected.accuracy(), actual.accuracy(), 1e-6);
+        assertEquals(expected.f1(), actual.f1(), 1e-6);
+    }
 }
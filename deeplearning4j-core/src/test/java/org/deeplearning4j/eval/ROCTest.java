@@ -10,6 +10,7 @@ import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -20,6 +21,7 @@ import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.linalg.ops.transforms.Transforms;
 
 import java.util.*;
 
@@ -1034,4 +1036,252 @@ public class ROCTest extends BaseDL4JTest {
         }
     }
 
+    @Test
+    public void testRocStreamingSmallIsExact() {
+        //Sketches don't merge any values for small number of examples, so results should match exact mode
+        Nd4j.getRandom().setSeed(12345);
+        Random r = new Random(12345);
+
+        for (int nOut : new int[] {1, 2}) {
+            ROC exact = new ROC(0);
+            ROC streaming = ROC.streaming();
+
+            for (int i = 0; i < 5; i++) {
+                INDArray labels = Nd4j.zeros(8, nOut);
+                INDArray out = Nd4j.rand(8, nOut);
+                for (int j = 0; j < 8; j++) {
+                    if (nOut == 1) {
+                        labels.putScalar(j, 0, r.nextInt(2));
+                    } else {
+                        labels.putScalar(j, r.nextInt(2), 1.0);
+                    }
+                }
+                if (nOut == 2) {
+                    out.diviColumnVector(out.sum(1));
+                }
+
+                exact.eval(labels, out);
+                streaming.eval(labels, out);
+            }
+
+            assertTrue(streaming.isStreaming());
+            assertEquals(exact.getCountActualPositive(), streaming.getCountActualPositive());
+            assertEquals(exact.getCountActualNegative(), streaming.getCountActualNegative());
+            assertEquals(exact.calculateAUC(), streaming.calculateAUC(), 1e-6);
+            assertEquals(exact.calculateAUCPR(), streaming.calculateAUCPR(), 1e-6);
+
+            PrecisionRecallCurve prc = streaming.getPrecisionRecallCurve();
+            assertEquals(0.0, prc.getThreshold(0), 0.0);
+            assertEquals(1.0, prc.getRecall(0), 0.0);
+            assertEquals(1.0, prc.getThreshold(prc.numPoints() - 1), 0.0);
+        }
+    }
+
+    @Test
+    public void testRocStreamingVsExact() {
+        Nd4j.getRandom().setSeed(12345);
+
+        ROC exact = new ROC(0);
+        ROC thresholded = new ROC(100);
+        ROC streaming = ROC.streaming();
+
+        //Skewed predictions: positives are mostly close to 1.0, negatives mostly close to 0.0
+        for (int i = 0; i < 20; i++) {
+            INDArray labels = Nd4j.getExecutioner().exec(new BernoulliDistribution(Nd4j.createUninitialized(5000, 1), 0.3));
+            INDArray out = Transforms.sigmoid(Nd4j.randn(5000, 1).addi(labels.mul(1.5)).muli(3.0));
+
+            exact.eval(labels, out);
+            thresholded.eval(labels, out);
+            streaming.eval(labels, out);
+        }
+
+        double aucExact = exact.calculateAUC();
+        double auprcExact = exact.calculateAUCPR();
+
+        assertEquals(aucExact, streaming.calculateAUC(), 1e-3);
+        assertEquals(auprcExact, streaming.calculateAUCPR(), 1e-3);
+
+        //Sketch error should be much smaller than thresholded error on skewed predictions
+        assertTrue(Math.abs(aucExact - streaming.calculateAUC()) < Math.abs(aucExact - thresholded.calculateAUC()));
+
+        //Curves are based on sketches only, so number of points is bounded regardless of number of examples
+        assertTrue(streaming.getRocCurve().numPoints() < 8 * TDigest.DEFAULT_COMPRESSION);
+    }
+
+    @Test
+    public void testRocStreamingMergeAndJson() {
+        Nd4j.getRandom().setSeed(12345);
+
+        int nOut = 4;
+        ROCMultiClass exact = new ROCMultiClass(0);
+        ROCMultiClass all = ROCMultiClass.streaming();
+        ROCMultiClass part1 = ROCMultiClass.streaming();
+        ROCMultiClass part2 = ROCMultiClass.streaming();
+
+        Random r = new Random(12345);
+        for (int i = 0; i < 20; i++) {
+            INDArray labels = Nd4j.zeros(500, nOut);
+            for (int j = 0; j < 500; j++) {
+                labels.putScalar(j, r.nextInt(nOut), 1.0);
+            }
+            INDArray out = Nd4j.rand(500, nOut).addi(labels);
+            out.diviColumnVector(out.sum(1));
+
+            exact.eval(labels, out);
+            all.eval(labels, out);
+            if (i % 2 == 0) {
+                part1.eval(labels, out);
+            } else {
+                part2.eval(labels, out);
+            }
+        }
+
+        //Merge after JSON round trip, as per distributed evaluation
+        ROCMultiClass fromJson = ROCMultiClass.fromJson(part2.toJson(), ROCMultiClass.class);
+        assertTrue(fromJson.getUnderlying()[0].isStreaming());
+        for (int i = 0; i < nOut; i++) {
+            assertEquals(part2.calculateAUC(i), fromJson.calculateAUC(i), 1e-10);
+        }
+
+        part1.merge(fromJson);
+        for (int i = 0; i < nOut; i++) {
+            assertEquals(all.getCountActualPositive(i), part1.getCountActualPositive(i));
+            assertEquals(exact.calculateAUC(i), part1.calculateAUC(i), 1e-3);
+            assertEquals(exact.calculateAUCPR(i), part1.calculateAUCPR(i), 1e-3);
+            assertEquals(all.calculateAUC(i), part1.calculateAUC(i), 1e-3);
+        }
+
+        try {
+            ROC.streaming(100).merge(ROC.streaming(200));
+            fail("Expected exception");
+        } catch (UnsupportedOperationException e) {
+            //OK
+        }
+        //Invalid compression is rejected on creation, not on first eval call
+        try {
+            ROCBinary.streaming(TDigest.MIN_COMPRESSION - 1, true);
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(">= " + TDigest.MIN_COMPRESSION));
+        }
+        try {
+            ROCMultiClass.streaming(TDigest.MIN_COMPRESSION - 1, true);
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(">= " + TDigest.MIN_COMPRESSION));
+        }
+    }
+
+    @Test
+    public void testRocStreamingMergeSkewed() {
+        Nd4j.getRandom().setSeed(12345);
+
+        ROC all = ROC.streaming();
+        ROC[] parts = new ROC[4];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = ROC.streaming();
+        }
+
+        //Heavily skewed predictions: most of the mass is right at 0.0 / 1.0, with the extremes in different parts
+        for (int i = 0; i < 20; i++) {
+            INDArray labels = Nd4j.getExecutioner().exec(new BernoulliDistribution(Nd4j.createUninitialized(2000, 1), 0.1));
+            INDArray out = Transforms.sigmoid(Nd4j.randn(2000, 1).addi(labels.mul(2.0)).subi(1.0).muli(4.0 + i));
+
+            all.eval(labels, out);
+            parts[i % parts.length].eval(labels, out);
+        }
+
+        //Merging in an empty sketch must not change anything
+        ROC merged = ROC.streaming();
+        for (ROC p : parts) {
+            merged.merge(p);
+        }
+        merged.merge(ROC.streaming());
+
+        assertEquals(all.getCountActualPositive(), merged.getCountActualPositive());
+        assertEquals(all.getCountActualNegative(), merged.getCountActualNegative());
+        assertEquals(all.calculateAUC(), merged.calculateAUC(), 1e-3);
+        assertEquals(all.calculateAUCPR(), merged.calculateAUCPR(), 1e-3);
+
+        RocCurve allCurve = all.getRocCurve();
+        RocCurve mergedCurve = merged.getRocCurve();
+        //Points 1 and n-2 are the largest and smallest predictions seen, as per the sketch breakpoints
+        assertEquals(allCurve.getThreshold(1), mergedCurve.getThreshold(1), 0.0);
+        assertEquals(allCurve.getThreshold(allCurve.numPoints() - 2),
+                        mergedCurve.getThreshold(mergedCurve.numPoints() - 2), 0.0);
+
+        //Min/max are tracked exactly, regardless of merge order or empty sketches
+        TDigest a = new TDigest(TDigest.DEFAULT_COMPRESSION);
+        TDigest b = new TDigest(TDigest.DEFAULT_COMPRESSION);
+        Random r = new Random(12345);
+        for (int i = 0; i < 10000; i++) {
+            a.add(r.nextDouble());
+            b.add(10.0 + r.nextDouble());
+        }
+        b.add(-5.0);
+        b.add(100.0);
+        TDigest empty = new TDigest(TDigest.DEFAULT_COMPRESSION);
+        empty.merge(new TDigest(TDigest.DEFAULT_COMPRESSION));
+        empty.merge(b);
+        assertEquals(-5.0, empty.getMin(), 0.0);
+        assertEquals(100.0, empty.getMax(), 0.0);
+        a.merge(new TDigest(TDigest.DEFAULT_COMPRESSION));
+        a.merge(b);
+        assertEquals(-5.0, a.getMin(), 0.0);
+        assertEquals(100.0, a.getMax(), 0.0);
+        assertEquals(20002.0, a.getTotalWeight(), 0.0);
+    }
+
+    @Ignore
+    @Test
+    public void benchmarkRocModes() {
+        //Accuracy and memory of exact, thresholded and streaming modes on long streams.
+        //Scores: sigmoid(N(1,1)) for positives, sigmoid(N(0,1)) for negatives, so true AUC is Phi(1/sqrt(2))
+        double trueAuc = 0.7602499389065233;
+        long[] totals = {1000000L, 10000000L, 100000000L};
+        long exactLimit = 10000000L;
+        int batchSize = 100000;
+
+        Nd4j.getRandom().setSeed(12345);
+        for (long total : totals) {
+            ROC exact = total <= exactLimit ? new ROC(0) : null;
+            ROC thresholded = new ROC(100);
+            ROC streaming = ROC.streaming();
+
+            long timeExact = 0;
+            long timeThresholded = 0;
+            long timeStreaming = 0;
+            for (long n = 0; n < total; n += batchSize) {
+                INDArray labels = Nd4j.getExecutioner()
+                                .exec(new BernoulliDistribution(Nd4j.createUninitialized(batchSize, 1), 0.5));
+                INDArray out = Transforms.sigmoid(Nd4j.randn(batchSize, 1).addi(labels));
+
+                long start = System.nanoTime();
+                if (exact != null)
+                    exact.eval(labels, out);
+                long t1 = System.nanoTime();
+                thresholded.eval(labels, out);
+                long t2 = System.nanoTime();
+                streaming.eval(labels, out);
+                long t3 = System.nanoTime();
+
+                timeExact += t1 - start;
+                timeThresholded += t2 - t1;
+                timeStreaming += t3 - t2;
+            }
+
+            int centroids = streaming.getPositiveSketch().centroids() + streaming.getNegativeSketch().centroids();
+            System.out.println("Examples: " + total);
+            if (exact != null) {
+                System.out.println(String.format("  exact:       AUC error %.6f, %d ms, ~%d bytes",
+                                Math.abs(exact.calculateAUC() - trueAuc), timeExact / 1000000,
+                                exact.getProbAndLabel().length() * Nd4j.sizeOfDataType()));
+            }
+            System.out.println(String.format("  thresholded: AUC error %.6f, %d ms, ~%d bytes",
+                            Math.abs(thresholded.calculateAUC() - trueAuc), timeThresholded / 1000000,
+                            thresholded.getCounts().size() * 24));
+            System.out.println(String.format("  streaming:   AUC error %.6f, %d ms, ~%d bytes",
+                            Math.abs(streaming.calculateAUC() - trueAuc), timeStreaming / 1000000, centroids * 16));
+        }
+    }
 }
@@ -1372,4 +1372,47 @@ public class TestComputationGraphNetwork extends BaseDL4JTest {
         INDArray out2 = net2.outputSingle(ds.getFeatures());
         assertEquals(out, out2);
     }
+
+    @Test
+    public void testInterOpParallelismMatchesSequential() {
+        //Inception-style graph: 3 independent branches, merged, plus a second output from one of the branches
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                .weightInit(WeightInit.XAVIER).activation(Activation.TANH)
+                .graphBuilder()
+                .addInputs("in")
+                .layer("b0", new ConvolutionLayer.Builder().kernelSize(1, 1).nOut(4).build(), "in")
+                .layer("b1a", new ConvolutionLayer.Builder().kernelSize(1, 1).nOut(3).build(), "in")
+                .layer("b1b", new ConvolutionLayer.Builder().kernelSize(3, 3).padding(1, 1).nOut(4).build(), "b1a")
+                .layer("b2", new SubsamplingLayer.Builder().kernelSize(3, 3).stride(1, 1).padding(1, 1).build(), "in")
+                .addVertex("merge", new MergeVertex(), "b0", "b1b", "b2")
+                .layer("out", new OutputLayer.Builder().nOut(5).activation(Activation.SOFTMAX).build(), "merge")
+                .layer("out2", new OutputLayer.Builder().nOut(2).activation(Activation.SOFTMAX).build(), "b1a")
+                .setOutputs("out", "out2")
+                .setInputTypes(InputType.convolutional(8, 8, 2))
+                .build();
+
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+
+        ComputationGraph parallel = new ComputationGraph(conf.clone());
+        parallel.init(net.params().dup(), false);
+        parallel.getConfiguration().setInterOpParallelism(4);
+
+        for (int minibatch : new int[] {1, 3}) {
+            for (int i = 0; i < 5; i++) {
+                INDArray in = Nd4j.rand(new int[] {minibatch, 2, 8, 8});
+                INDArray[] expected = net.output(in);
+                INDArray[] actual = parallel.output(in);
+                assertEquals(expected.length, actual.length);
+                for (int j = 0; j < expected.length; j++) {
+                    assertEquals(expected[j], actual[j]);
+                }
+            }
+        }
+
+        //Configuration should survive JSON round trip
+        ComputationGraphConfiguration fromJson = ComputationGraphConfiguration.fromJson(
+                parallel.getConfiguration().toJson());
+        assertEquals(4, fromJson.getInterOpParallelism());
+    }
 }
@@ -0,0 +1,154 @@
+package org.deeplearning4j.nn.inference;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.ScaleVertex;
+import org.deeplearning4j.nn.conf.graph.ShiftVertex;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import static org.junit.Assert.*;
+
+public class InferenceOptimizerTest extends BaseDL4JTest {
+
+    @Test
+    public void testMultiLayerDense() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Adam(0.01))
+                        .weightInit(WeightInit.XAVIER).list()
+                        .layer(0, new DenseLayer.Builder().nIn(10).nOut(20).activation(Activation.IDENTITY).build())
+                        .layer(1, new BatchNormalization.Builder().build())
+                        .layer(2, new ActivationLayer.Builder().activation(Activation.TANH).build())
+                        .layer(3, new DropoutLayer.Builder(0.5).build())
+                        .layer(4, new DenseLayer.Builder().nOut(20).activation(Activation.IDENTITY).hasBias(false)
+                                        .dropOut(0.8).build())
+                        .layer(5, new BatchNormalization.Builder().lockGammaBeta(true).gamma(2.0).beta(0.5).build())
+                        .layer(6, new ActivationLayer.Builder().activation(Activation.IDENTITY).build())
+                        .layer(7, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nOut(5).build())
+                        .setInputType(InputType.feedForward(10)).build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        fit(net, Nd4j.rand(32, 10), 5);
+
+        INDArray in = Nd4j.rand(8, 10);
+        INDArray expected = net.output(in);
+        INDArray paramsBefore = net.params().dup();
+
+        MultiLayerNetwork optimized = InferenceOptimizer.optimize(net);
+
+        //Dense + BN + activation + dropout -> Dense; Dense + BN + identity -> Dense; output layer
+        assertEquals(3, optimized.getnLayers());
+        assertEquals(paramsBefore, net.params());
+        assertTrue(((DenseLayer) optimized.getLayer(1).conf().getLayer()).hasBias());
+        assertNull(optimized.getLayer(1).conf().getLayer().getIDropout());
+
+        INDArray actual = optimized.output(in);
+        assertTrue(expected.equalsWithEps(actual, 1e-5));
+        assertEquals(expected, net.output(in));
+    }
+
+    @Test
+    public void testMultiLayerCnn() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Adam(0.01))
+                        .weightInit(WeightInit.XAVIER).activation(Activation.IDENTITY).list()
+                        .layer(0, new ConvolutionLayer.Builder().nIn(3).nOut(6).kernelSize(3, 3).build())
+                        .layer(1, new BatchNormalization.Builder().build())
+                        .layer(2, new ActivationLayer.Builder().activation(Activation.RELU).build())
+                        .layer(3, new ConvolutionLayer.Builder().nOut(4).kernelSize(2, 2).stride(2, 2)
+                                        .hasBias(false).build())
+                        .layer(4, new BatchNormalization.Builder().build())
+                        .layer(5, new ActivationLayer.Builder().activation(Activation.LEAKYRELU).build())
+                        //Previous layer has non-identity activation now: not folded
+                        .layer(6, new BatchNormalization.Builder().build())
+                        .layer(7, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nOut(5).build())
+                        .setInputType(InputType.convolutional(9, 9, 3)).build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        fit(net, Nd4j.rand(new int[] {16, 3, 9, 9}), 5);
+
+        INDArray in = Nd4j.rand(new int[] {4, 3, 9, 9});
+        INDArray expected = net.output(in);
+
+        MultiLayerNetwork optimized = InferenceOptimizer.optimize(net);
+        assertEquals(4, optimized.getnLayers());
+        assertTrue(optimized.getLayer(2).conf().getLayer() instanceof BatchNormalization);
+
+        INDArray actual = optimized.output(in);
+        assertTrue(expected.equalsWithEps(actual, 1e-5));
+    }
+
+    @Test
+    public void testComputationGraph() {
+        Nd4j.getRandom().setSeed(12345);
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                        .updater(new Adam(0.01)).weightInit(WeightInit.XAVIER).activation(Activation.IDENTITY)
+                        .graphBuilder().addInputs("in")
+                        .addLayer("d0", new DenseLayer.Builder().nIn(10).nOut(16).build(), "in")
+                        .addLayer("bn0", new BatchNormalization.Builder().build(), "d0")
+                        .addLayer("act0", new ActivationLayer.Builder().activation(Activation.TANH).build(), "bn0")
+                        .addLayer("d1", new DenseLayer.Builder().nOut(16).build(), "act0")
+                        .addVertex("scale", new ScaleVertex(0.5), "d1")
+                        .addVertex("shift", new ShiftVertex(-1.0), "scale")
+                        .addLayer("drop", new DropoutLayer.Builder(0.5).build(), "shift")
+                        //d2 output is used twice: BN can't be folded into it
+                        .addLayer("d2", new DenseLayer.Builder().nOut(16).build(), "drop")
+                        .addLayer("bn2", new BatchNormalization.Builder().build(), "d2")
+                        .addLayer("out1", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nOut(5).build(), "bn2")
+                        .addLayer("out2", new OutputLayer.Builder(LossFunctions.LossFunction.MSE)
+                                        .activation(Activation.IDENTITY).nOut(3).build(), "d2")
+                        .setOutputs("out1", "out2").setInputTypes(InputType.feedForward(10)).build();
+
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+        for (int i = 0; i < 5; i++) {
+            INDArray l1 = Nd4j.zeros(32, 5);
+            for (int j = 0; j < 32; j++) {
+                l1.putScalar(j, j % 5, 1.0);
+            }
+            net.fit(new INDArray[] {Nd4j.rand(32, 10)}, new INDArray[] {l1, Nd4j.rand(32, 3)});
+        }
+
+        INDArray in = Nd4j.rand(8, 10);
+        INDArray[] expected = net.output(in);
+
+        ComputationGraph optimized = InferenceOptimizer.optimize(net);
+        for (String removed : new String[] {"bn0", "act0", "scale", "shift", "drop"}) {
+            assertFalse(removed, optimized.getConfiguration().getVertices().containsKey(removed));
+        }
+        assertTrue(optimized.getConfiguration().getVertices().containsKey("bn2"));
+
+        INDArray[] actual = optimized.output(in);
+        assertEquals(2, actual.length);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(expected[i].equalsWithEps(actual[i], 1e-5));
+        }
+    }
+
+    private static void fit(MultiLayerNetwork net, INDArray features, int iterations) {
+        int nOut = net.getLayer(net.getnLayers() - 1).getParam("b").length();
+        INDArray labels = Nd4j.zeros(features.size(0), nOut);
+        for (int i = 0; i < features.size(0); i++) {
+            labels.putScalar(i, i % nOut, 1.0);
+        }
+        for (int i = 0; i < iterations; i++) {
+            net.fit(features, labels);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.deeplearning4j.nn.inference;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.conf.layers.recurrent.SimpleRnn;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.nd4j.linalg.indexing.NDArrayIndex.all;
+import static org.nd4j.linalg.indexing.NDArrayIndex.interval;
+
+public class RnnSessionExecutorTest extends BaseDL4JTest {
+
+    @Test
+    public void testMultiLayerSessionsSameAsSeparateNetworks() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                        .weightInit(WeightInit.XAVIER).list()
+                        .layer(0, new LSTM.Builder().nIn(3).nOut(5).activation(Activation.TANH).build())
+                        .layer(1, new GravesLSTM.Builder().nIn(5).nOut(4).activation(Activation.TANH).build())
+                        .layer(2, new SimpleRnn.Builder().nIn(4).nOut(6).activation(Activation.TANH).build())
+                        .layer(3, new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nIn(6).nOut(2).build())
+                        .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        //Reference: one network per session
+        String[] sessions = {"a", "b", "c"};
+        MultiLayerNetwork[] refs = new MultiLayerNetwork[sessions.length];
+        for (int i = 0; i < refs.length; i++) {
+            refs[i] = net.clone();
+        }
+
+        RnnSessionExecutor exec = new RnnSessionExecutor(net);
+        for (int step = 0; step < 5; step++) {
+            //Vary the active sessions between steps: c joins at step 1, a is absent at step 3
+            int[] active;
+            if (step == 0) {
+                active = new int[] {0, 1};
+            } else if (step == 3) {
+                active = new int[] {2, 1};
+            } else {
+                active = new int[] {1, 0, 2};
+            }
+
+            INDArray in = Nd4j.rand(active.length, 3);
+            String[] ids = new String[active.length];
+            for (int i = 0; i < active.length; i++) {
+                ids[i] = sessions[active[i]];
+            }
+            INDArray out = exec.rnnTimeStepSingle(Arrays.asList(ids), in);
+            assertArrayEquals(new int[] {active.length, 2}, out.shape());
+
+            for (int i = 0; i < active.length; i++) {
+                INDArray exp = refs[active[i]].rnnTimeStep(in.getRow(i).dup());
+                assertEquals("step " + step + ", session " + ids[i], exp, out.getRow(i));
+            }
+        }
+        assertEquals(3, exec.getStateStore().size());
+
+        exec.endSession("a");
+        assertEquals(2, exec.getStateStore().size());
+        assertNull(exec.getStateStore().get("a"));
+
+        //Multiple time steps per call
+        INDArray in3d = Nd4j.rand(new int[] {2, 3, 4});
+        INDArray out = exec.rnnTimeStepSingle(Arrays.asList("b", "c"), in3d);
+        assertArrayEquals(new int[] {2, 2, 4}, out.shape());
+        INDArray exp = refs[1].rnnTimeStep(in3d.get(interval(0, 1), all(), all()).dup());
+        assertEquals(exp, out.get(interval(0, 1), all(), all()));
+    }
+
+    @Test
+    public void testComputationGraphSessions() {
+        Nd4j.getRandom().setSeed(12345);
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                        .weightInit(WeightInit.XAVIER).graphBuilder().addInputs("in")
+                        .addLayer("lstm", new LSTM.Builder().nIn(3).nOut(5).activation(Activation.TANH).build(), "in")
+                        .addLayer("out", new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE)
+                                        .activation(Activation.IDENTITY).nIn(5).nOut(2).build(), "lstm")
+                        .setOutputs("out").build();
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+        ComputationGraph ref = net.clone();
+
+        RnnSessionExecutor exec = new RnnSessionExecutor(net);
+        for (int step = 0; step < 3; step++) {
+            INDArray in = Nd4j.rand(2, 3);
+            INDArray out = exec.rnnTimeStep(Arrays.asList("other", "s"), in)[0];
+            INDArray exp = ref.rnnTimeStep(in.getRow(1).dup())[0];
+            assertEquals(exp, out.getRow(1));
+        }
+        assertNotNull(exec.getStateStore().get("s").get("lstm"));
+    }
+
+    @Test
+    public void testStateStoreExpiry() throws Exception {
+        InMemoryRnnStateStore store = new InMemoryRnnStateStore(50, TimeUnit.MILLISECONDS);
+        store.put("a", Collections.singletonMap("0", Collections.singletonMap("prevAct", Nd4j.ones(1, 3))));
+        assertNotNull(store.get("a"));
+        assertEquals(1, store.size());
+
+        Thread.sleep(200);
+        assertEquals(1, store.evictExpired());
+        assertEquals(0, store.size());
+        assertNull(store.get("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateSessions() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().list()
+                        .layer(0, new LSTM.Builder().nIn(3).nOut(5).build())
+                        .layer(1, new RnnOutputLayer.Builder().nIn(5).nOut(2).build()).build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        new RnnSessionExecutor(net).rnnTimeStepSingle(Arrays.asList("a", "a"), Nd4j.rand(2, 3));
+    }
+}
@@ -16,6 +16,9 @@ import org.junit.Test;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.learning.config.IUpdater;
 import org.nd4j.linalg.learning.config.Sgd;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
@@ -25,6 +28,7 @@ import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class EmbeddingLayerTest extends BaseDL4JTest {
 
@@ -323,4 +327,106 @@ public class EmbeddingLayerTest extends BaseDL4JTest {
         }
     }
 
+    @Test
+    public void testSparseGradientsSgdMatchesDense() {
+        //Plain SGD without regularization: untouched rows have zero updates anyway, hence sparse == dense
+        int nClassesIn = 20;
+        MultiLayerNetwork dense = getEmbeddingNet(nClassesIn, new Sgd(0.1), 0.0, 0.0, false);
+        MultiLayerNetwork sparse = getEmbeddingNet(nClassesIn, new Sgd(0.1), 0.0, 0.0, true);
+        sparse.setParams(dense.params().dup());
+
+        Random r = new Random(12345);
+        for (int i = 0; i < 10; i++) {
+            int[] classes = new int[4];
+            for (int j = 0; j < classes.length; j++) {
+                classes[j] = r.nextInt(nClassesIn);
+            }
+            fitBoth(dense, sparse, classes, r);
+            assertEquals(dense.params(), sparse.params());
+        }
+    }
+
+    @Test
+    public void testSparseGradientsAllRowsTouchedMatchesDense() {
+        //When every row is touched in every minibatch, there's nothing to catch up: Adam + L1/L2 should match dense
+        int nClassesIn = 5;
+        MultiLayerNetwork dense = getEmbeddingNet(nClassesIn, new Adam(0.01), 0.01, 0.02, false);
+        MultiLayerNetwork sparse = getEmbeddingNet(nClassesIn, new Adam(0.01), 0.01, 0.02, true);
+        sparse.setParams(dense.params().dup());
+
+        Random r = new Random(12345);
+        for (int i = 0; i < 10; i++) {
+            int[] classes = new int[2 * nClassesIn];
+            for (int j = 0; j < classes.length; j++) {
+                classes[j] = j % nClassesIn;
+            }
+            fitBoth(dense, sparse, classes, r);
+            assertEquals(dense.params(), sparse.params());
+            assertEquals(dense.getUpdater().getStateViewArray(), sparse.getUpdater().getStateViewArray());
+        }
+    }
+
+    @Test
+    public void testSparseGradientsUntouchedRows() {
+        int nClassesIn = 10;
+        MultiLayerNetwork dense = getEmbeddingNet(nClassesIn, new Adam(0.01), 0.0, 0.0, false);
+        MultiLayerNetwork sparse = getEmbeddingNet(nClassesIn, new Adam(0.01), 0.0, 0.0, true);
+        sparse.setParams(dense.params().dup());
+
+        Random r = new Random(12345);
+        int[] allClasses = new int[nClassesIn];
+        for (int j = 0; j < nClassesIn; j++) {
+            allClasses[j] = j;
+        }
+        fitBoth(dense, sparse, allClasses, r);
+
+        //Rows 5 to 9 aren't touched from now on: Adam moves them due to momentum for dense updates only
+        INDArray untouchedBefore = sparse.getLayer(0).getParam(DefaultParamInitializer.WEIGHT_KEY)
+                        .get(NDArrayIndex.interval(5, 10), NDArrayIndex.all()).dup();
+        for (int i = 0; i < 5; i++) {
+            fitBoth(dense, sparse, new int[] {0, 1, 2, 3, 4}, r);
+        }
+
+        INDArray sparseW = sparse.getLayer(0).getParam(DefaultParamInitializer.WEIGHT_KEY);
+        INDArray denseW = dense.getLayer(0).getParam(DefaultParamInitializer.WEIGHT_KEY);
+        assertEquals(untouchedBefore, sparseW.get(NDArrayIndex.interval(5, 10), NDArrayIndex.all()));
+        assertNotEquals(untouchedBefore, denseW.get(NDArrayIndex.interval(5, 10), NDArrayIndex.all()));
+
+        //Gradients of untouched rows should be zero, other rows should match the dense case
+        INDArray sparseGrad = sparse.getLayer(0).getGradientsViewArray();
+        assertEquals(0.0, sparseGrad.get(NDArrayIndex.point(0), NDArrayIndex.interval(0, sparseW.length()))
+                        .reshape('f', nClassesIn, sparseW.columns())
+                        .get(NDArrayIndex.interval(5, 10), NDArrayIndex.all()).amaxNumber().doubleValue(), 0.0);
+
+        //Touching an untouched row again should update it, using its (decayed) updater state
+        fitBoth(dense, sparse, new int[] {7}, r);
+        assertNotEquals(untouchedBefore.getRow(2), sparseW.getRow(7));
+        assertEquals(untouchedBefore.getRow(3), sparseW.getRow(8));
+    }
+
+    private static MultiLayerNetwork getEmbeddingNet(int nClassesIn, IUpdater updater, double l1, double l2,
+                    boolean sparseGradients) {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).activation(Activation.TANH)
+                        .updater(updater).l1(l1).l2(l2).list()
+                        .layer(0, new EmbeddingLayer.Builder().hasBias(true).nIn(nClassesIn).nOut(5)
+                                        .sparseGradients(sparseGradients).build())
+                        .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(4)
+                                        .activation(Activation.SOFTMAX).build())
+                        .pretrain(false).backprop(true).build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    private static void fitBoth(MultiLayerNetwork dense, MultiLayerNetwork sparse, int[] classes, Random r) {
+        INDArray in = Nd4j.create(classes.length, 1);
+        INDArray labels = Nd4j.create(classes.length, 4);
+        for (int i = 0; i < classes.length; i++) {
+            in.putScalar(i, classes[i]);
+            labels.putScalar(new int[] {i, r.nextInt(4)}, 1.0);
+        }
+        dense.fit(in, labels);
+        sparse.fit(in, labels);
+    }
 }
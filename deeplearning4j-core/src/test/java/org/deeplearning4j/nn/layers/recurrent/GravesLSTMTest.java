@@ -256,4 +256,54 @@ public class GravesLSTMTest extends BaseDL4JTest {
             net.fit(in, labels);
         }
     }
+
+    @Test
+    public void testHoistedInputProjectionPerTimeStep() {
+        //LSTMHelpers: input projections are calculated for all time steps at once; results should not depend on how
+        //the sequence is split into rnnTimeStep calls (including single time steps, i.e., 2d input)
+        for (int layerType = 0; layerType < 2; layerType++) {
+            for (String gateAfn : new String[] {"sigmoid", "hardsigmoid"}) {
+                org.deeplearning4j.nn.conf.layers.Layer layer;
+                if (layerType == 0) {
+                    layer = new org.deeplearning4j.nn.conf.layers.LSTM.Builder().gateActivationFunction(gateAfn)
+                                    .activation(Activation.TANH).nIn(3).nOut(5).build();
+                } else {
+                    layer = new org.deeplearning4j.nn.conf.layers.GravesLSTM.Builder().gateActivationFunction(gateAfn)
+                                    .activation(Activation.TANH).nIn(3).nOut(5).build();
+                }
+
+                MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                                .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                                .updater(new Sgd(0.1)).seed(12345).list().layer(0, layer)
+                                .layer(1, new org.deeplearning4j.nn.conf.layers.RnnOutputLayer.Builder()
+                                                .lossFunction(LossFunctions.LossFunction.MSE).nIn(5).nOut(2)
+                                                .activation(Activation.TANH).build())
+                                .build();
+
+                MultiLayerNetwork net = new MultiLayerNetwork(conf);
+                net.init();
+
+                Nd4j.getRandom().setSeed(12345);
+                INDArray in = Nd4j.rand(new int[] {4, 3, 7});
+                INDArray out = net.output(in);
+
+                String msg = "layer " + layerType + ", gates " + gateAfn;
+                net.rnnClearPreviousState();
+                for (int t = 0; t < 7; t++) {
+                    INDArray step = net.rnnTimeStep(
+                                    in.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(t)));
+                    INDArray expected = out.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(t));
+                    assertArrayEquals(msg, expected.shape(), step.shape());
+                    assertTrue(msg + ", t=" + t, expected.equalsWithEps(step, 1e-5));
+                }
+
+                net.rnnClearPreviousState();
+                for (int[] interval : new int[][] {{0, 3}, {3, 7}}) {
+                    INDArrayIndex[] idx = new INDArrayIndex[] {NDArrayIndex.all(), NDArrayIndex.all(),
+                                    NDArrayIndex.interval(interval[0], interval[1])};
+                    assertTrue(msg, out.get(idx).equalsWithEps(net.rnnTimeStep(in.get(idx)), 1e-5));
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,193 @@
+package org.deeplearning4j.nn.multilayer;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.TestUtils;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.conf.memory.ActivationCheckpointPlanner;
+import org.deeplearning4j.nn.conf.memory.MemoryType;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.optimize.api.BaseTrainingListener;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestActivationCheckpointing extends BaseDL4JTest {
+
+    private static MultiLayerConfiguration getConf(WorkspaceMode wsm, int[] checkpoints, boolean auto) {
+        NeuralNetConfiguration.ListBuilder b = new NeuralNetConfiguration.Builder().seed(12345)
+                        .updater(new Adam(0.01)).weightInit(WeightInit.XAVIER).trainingWorkspaceMode(wsm)
+                        .list()
+                        .layer(new ConvolutionLayer.Builder().kernelSize(2, 2).nOut(4)
+                                        .activation(Activation.TANH).build())
+                        .layer(new BatchNormalization.Builder().build())
+                        .layer(new SubsamplingLayer.Builder().kernelSize(2, 2).stride(1, 1).build())
+                        .layer(new DenseLayer.Builder().nOut(16).activation(Activation.RELU).dropOut(0.5).build())
+                        .layer(new DenseLayer.Builder().nOut(16).activation(Activation.TANH).build())
+                        .layer(new DenseLayer.Builder().nOut(16).activation(Activation.SIGMOID).build())
+                        .layer(new DenseLayer.Builder().nOut(16).activation(Activation.TANH).build())
+                        .layer(new DenseLayer.Builder().nOut(16).activation(Activation.TANH).build())
+                        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nOut(3).build())
+                        .setInputType(InputType.convolutional(6, 6, 2));
+        if (checkpoints != null) {
+            b.checkpointLayers(checkpoints);
+        }
+        return b.autoCheckpoint(auto).build();
+    }
+
+    @Test
+    public void testCheckpointedGradientsExact() {
+        for (WorkspaceMode wsm : new WorkspaceMode[] {WorkspaceMode.NONE, WorkspaceMode.SINGLE,
+                        WorkspaceMode.SEPARATE}) {
+            MultiLayerConfiguration confStd = getConf(wsm, null, false);
+            MultiLayerConfiguration confCp = getConf(wsm, new int[] {1, 4, 6}, false);
+            //Disable dropout for exact comparison: RNG is consumed differently with and without checkpointing
+            confStd.getConf(3).getLayer().setIDropout(null);
+            confCp.getConf(3).getLayer().setIDropout(null);
+
+            MultiLayerNetwork standard = new MultiLayerNetwork(confStd);
+            standard.init();
+            MultiLayerNetwork checkpointed = new MultiLayerNetwork(confCp);
+            checkpointed.init();
+            assertArrayEquals(new int[] {0, 1, 4, 6}, confCp.getCheckpointLayers());
+            assertEquals(standard.params(), checkpointed.params());
+
+            DataSet ds = new DataSet(Nd4j.rand(new int[] {5, 2, 6, 6}), TestUtils.randomOneHot(5, 3));
+            for (int i = 0; i < 3; i++) {
+                standard.setInput(ds.getFeatures());
+                standard.setLabels(ds.getLabels());
+                standard.computeGradientAndScore();
+                checkpointed.setInput(ds.getFeatures());
+                checkpointed.setLabels(ds.getLabels());
+                checkpointed.computeGradientAndScore();
+
+                assertEquals(standard.score(), checkpointed.score(), 1e-6);
+                Map<String, INDArray> g1 = standard.gradient().gradientForVariable();
+                Map<String, INDArray> g2 = checkpointed.gradient().gradientForVariable();
+                assertEquals(g1.keySet(), g2.keySet());
+                for (String s : g1.keySet()) {
+                    assertEquals(wsm + " - " + s, g1.get(s), g2.get(s));
+                }
+                assertEquals(standard.gradient().gradient(), checkpointed.gradient().gradient());
+
+                standard.fit(ds);
+                checkpointed.fit(ds);
+                assertEquals(standard.params(), checkpointed.params());
+            }
+        }
+    }
+
+    @Test
+    public void testCheckpointedDropoutReproducible() {
+        //With dropout: the recomputed forward pass must use the same dropout mask as the original forward pass,
+        // hence the gradients are the same for the same RNG seed
+        MultiLayerNetwork net = new MultiLayerNetwork(getConf(WorkspaceMode.SEPARATE, new int[] {3, 5}, false));
+        net.init();
+        DataSet ds = new DataSet(Nd4j.rand(new int[] {5, 2, 6, 6}), TestUtils.randomOneHot(5, 3));
+        net.setInput(ds.getFeatures());
+        net.setLabels(ds.getLabels());
+
+        Nd4j.getRandom().setSeed(12345);
+        net.computeGradientAndScore();
+        INDArray g1 = net.gradient().gradient().dup();
+        double s1 = net.score();
+
+        Nd4j.getRandom().setSeed(12345);
+        net.computeGradientAndScore();
+        assertEquals(g1, net.gradient().gradient());
+        assertEquals(s1, net.score(), 0.0);
+    }
+
+    @Test
+    public void testListenersNoForwardPass() {
+        //onForwardPass is not called with checkpointing (not all activations are available); other callbacks are
+        MultiLayerNetwork net = new MultiLayerNetwork(getConf(WorkspaceMode.SEPARATE, new int[] {3, 5}, false));
+        net.init();
+        final int[] counts = new int[2];
+        net.setListeners(new BaseTrainingListener() {
+            @Override
+            public void onForwardPass(Model model, List<INDArray> activations) {
+                counts[0]++;
+            }
+
+            @Override
+            public void onBackwardPass(Model model) {
+                counts[1]++;
+            }
+        });
+        net.fit(new DataSet(Nd4j.rand(new int[] {5, 2, 6, 6}), TestUtils.randomOneHot(5, 3)));
+        assertEquals(0, counts[0]);
+        assertEquals(1, counts[1]);
+    }
+
+    @Test
+    public void testAutoCheckpointPlan() {
+        MultiLayerConfiguration conf = getConf(WorkspaceMode.SEPARATE, null, true);
+        int[] cp = conf.getCheckpointLayers();
+        assertNotNull(cp);
+        //9 layers -> 3 segments
+        assertEquals(3, cp.length);
+        assertEquals(0, cp[0]);
+        assertTrue(conf.isActivationCheckpointing());
+
+        assertArrayEquals(new int[] {0, 3, 6},
+                        ActivationCheckpointPlanner.plan(new long[] {1, 1, 1, 1, 1, 1, 1, 1, 1}));
+        assertArrayEquals(new int[] {0}, ActivationCheckpointPlanner.plan(new long[] {10, 10}));
+
+        //Configuration JSON round trip
+        MultiLayerConfiguration fromJson = MultiLayerConfiguration.fromJson(conf.toJson());
+        assertArrayEquals(cp, fromJson.getCheckpointLayers());
+        assertEquals(conf, fromJson);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidCheckpoint() {
+        //Output layer can't be the start of a segment
+        getConf(WorkspaceMode.SEPARATE, new int[] {8}, false);
+    }
+
+    @Test
+    public void testMemoryReportSavings() {
+        InputType in = InputType.convolutional(6, 6, 2);
+        NetworkMemoryReport standard = getConf(WorkspaceMode.SEPARATE, null, false).getMemoryReport(in);
+        NetworkMemoryReport checkpointed = getConf(WorkspaceMode.SEPARATE, null, true).getMemoryReport(in);
+
+        long savings = checkpointed.getActivationCheckpointingSavingsBytes(32, MemoryUseMode.TRAINING,
+                        CacheMode.NONE, DataBuffer.Type.FLOAT);
+        assertTrue(savings > 0);
+        assertEquals(0, checkpointed.getActivationCheckpointingSavingsBytes(32, MemoryUseMode.INFERENCE,
+                        CacheMode.NONE, DataBuffer.Type.FLOAT));
+        assertEquals(0, standard.getActivationCheckpointingSavingsBytes(32, MemoryUseMode.TRAINING,
+                        CacheMode.NONE, DataBuffer.Type.FLOAT));
+
+        assertEquals(standard.getTotalMemoryBytes(32, MemoryUseMode.TRAINING, CacheMode.NONE, DataBuffer.Type.FLOAT)
+                        - savings, checkpointed.getTotalMemoryBytes(32, MemoryUseMode.TRAINING, CacheMode.NONE,
+                                        DataBuffer.Type.FLOAT));
+        assertEquals(standard.getMemoryBytes(MemoryType.ACTIVATIONS, 32, MemoryUseMode.TRAINING, CacheMode.NONE,
+                        DataBuffer.Type.FLOAT) - savings, checkpointed.getMemoryBytes(MemoryType.ACTIVATIONS, 32,
+                                        MemoryUseMode.TRAINING, CacheMode.NONE, DataBuffer.Type.FLOAT));
+        assertEquals(standard.getTotalMemoryBytes(32, MemoryUseMode.INFERENCE, CacheMode.NONE, DataBuffer.Type.FLOAT),
+                        checkpointed.getTotalMemoryBytes(32, MemoryUseMode.INFERENCE, CacheMode.NONE,
+                                        DataBuffer.Type.FLOAT));
+
+        assertTrue(checkpointed.toString().contains("Checkpointing Savings"));
+    }
+}
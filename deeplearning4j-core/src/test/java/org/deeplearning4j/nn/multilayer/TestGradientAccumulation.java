@@ -0,0 +1,198 @@
+package org.deeplearning4j.nn.multilayer;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.TestUtils;
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.learning.config.Sgd;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.nd4j.linalg.indexing.NDArrayIndex.all;
+import static org.nd4j.linalg.indexing.NDArrayIndex.interval;
+
+public class TestGradientAccumulation extends BaseDL4JTest {
+
+    private static MultiLayerConfiguration getConf(WorkspaceMode wsm, int steps) {
+        return new NeuralNetConfiguration.Builder().seed(12345).updater(new Sgd(0.1)).l2(1e-3)
+                        .weightInit(WeightInit.XAVIER).trainingWorkspaceMode(wsm).list()
+                        .layer(new DenseLayer.Builder().nOut(16).activation(Activation.TANH).build())
+                        .layer(new DenseLayer.Builder().nOut(16).activation(Activation.SIGMOID).build())
+                        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nOut(3).build())
+                        .setInputType(InputType.feedForward(5)).gradientAccumulationSteps(steps).build();
+    }
+
+    private static List<DataSet> split(DataSet ds, int microBatchSize) {
+        List<DataSet> out = new ArrayList<>();
+        int n = ds.getFeatures().size(0);
+        for (int i = 0; i < n; i += microBatchSize) {
+            int end = Math.min(n, i + microBatchSize);
+            out.add(new DataSet(get(ds.getFeatures(), i, end), get(ds.getLabels(), i, end),
+                            get(ds.getFeaturesMaskArray(), i, end), get(ds.getLabelsMaskArray(), i, end)));
+        }
+        return out;
+    }
+
+    private static INDArray get(INDArray arr, int from, int to) {
+        if (arr == null) {
+            return null;
+        }
+        INDArrayIndex[] idx = new INDArrayIndex[arr.rank()];
+        idx[0] = interval(from, to);
+        for (int i = 1; i < idx.length; i++) {
+            idx[i] = all();
+        }
+        return arr.get(idx).dup();
+    }
+
+    @Test
+    public void testAccumulationEqualsLargeBatch() {
+        Nd4j.getRandom().setSeed(12345);
+        DataSet all = new DataSet(Nd4j.rand(16, 5), TestUtils.randomOneHot(16, 3));
+
+        for (WorkspaceMode wsm : new WorkspaceMode[] {WorkspaceMode.NONE, WorkspaceMode.SEPARATE}) {
+            MultiLayerNetwork netLarge = new MultiLayerNetwork(getConf(wsm, 1));
+            netLarge.init();
+            MultiLayerNetwork netAccum = new MultiLayerNetwork(getConf(wsm, 4));
+            netAccum.init();
+            assertEquals(netLarge.params(), netAccum.params());
+
+            for (int epoch = 0; epoch < 3; epoch++) {
+                netLarge.fit(all);
+                netAccum.fit(new ListDataSetIterator<>(split(all, 4)));
+
+                assertEquals(netLarge.score(), netAccum.score(), 1e-5);
+                assertTrue(netLarge.params().equalsWithEps(netAccum.params(), 1e-5));
+            }
+
+            //One parameter update per 4 micro-batches
+            assertEquals(3, netAccum.getLayerWiseConfigurations().getIterationCount());
+            assertEquals(3, netAccum.getLayerWiseConfigurations().getEpochCount());
+        }
+    }
+
+    @Test
+    public void testPartialStepAtEpochEnd() {
+        Nd4j.getRandom().setSeed(12345);
+        DataSet all = new DataSet(Nd4j.rand(10, 5), TestUtils.randomOneHot(10, 3));
+
+        MultiLayerNetwork netAccum = new MultiLayerNetwork(getConf(WorkspaceMode.SEPARATE, 3));
+        netAccum.init();
+        MultiLayerNetwork netRef = new MultiLayerNetwork(getConf(WorkspaceMode.SEPARATE, 1));
+        netRef.init();
+
+        //5 micro-batches of 2, 3 per step: one full step of 6 examples, then one step of the remaining 4
+        List<DataSet> micro = split(all, 2);
+        netAccum.fit(new ListDataSetIterator<>(micro));
+        netRef.fit(DataSet.merge(micro.subList(0, 3)));
+        netRef.fit(DataSet.merge(micro.subList(3, 5)));
+
+        assertEquals(2, netAccum.getLayerWiseConfigurations().getIterationCount());
+        assertTrue(netRef.params().equalsWithEps(netAccum.params(), 1e-5));
+    }
+
+    @Test
+    public void testAccumulationWithMasks() {
+        Nd4j.getRandom().setSeed(12345);
+        int mb = 8;
+        int tsLength = 6;
+        INDArray labelMask = Nd4j.ones(mb, tsLength);
+        for (int i = 0; i < mb; i++) {
+            //Variable length time series: different number of steps in each micro-batch
+            for (int j = 1 + i % tsLength; j < tsLength; j++) {
+                labelMask.putScalar(i, j, 0.0);
+            }
+        }
+        INDArray labels = Nd4j.zeros(mb, 3, tsLength);
+        for (int i = 0; i < mb; i++) {
+            for (int j = 0; j < tsLength; j++) {
+                labels.putScalar(new int[] {i, (i + j) % 3, j}, 1.0);
+            }
+        }
+        DataSet all = new DataSet(Nd4j.rand(new int[] {mb, 4, tsLength}), labels, labelMask, labelMask);
+
+        MultiLayerConfiguration[] confs = new MultiLayerConfiguration[2];
+        int[] steps = {1, 4};
+        for (int i = 0; i < 2; i++) {
+            confs[i] = new NeuralNetConfiguration.Builder().seed(12345).updater(new Sgd(0.1))
+                            .weightInit(WeightInit.XAVIER).list()
+                            .layer(new LSTM.Builder().nIn(4).nOut(8).activation(Activation.TANH).build())
+                            .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                            .activation(Activation.SOFTMAX).nIn(8).nOut(3).build())
+                            .gradientAccumulationSteps(steps[i]).build();
+        }
+
+        MultiLayerNetwork netLarge = new MultiLayerNetwork(confs[0]);
+        netLarge.init();
+        MultiLayerNetwork netAccum = new MultiLayerNetwork(confs[1]);
+        netAccum.init();
+
+        netLarge.fit(all);
+        netAccum.fit(new ListDataSetIterator<>(split(all, 2)));
+
+        assertEquals(netLarge.score(), netAccum.score(), 1e-5);
+        assertTrue(netLarge.params().equalsWithEps(netAccum.params(), 1e-5));
+    }
+
+    @Test
+    public void testAccumulationComputationGraph() {
+        Nd4j.getRandom().setSeed(12345);
+        DataSet all = new DataSet(Nd4j.rand(12, 5), TestUtils.randomOneHot(12, 3));
+
+        ComputationGraph[] nets = new ComputationGraph[2];
+        int[] steps = {1, 3};
+        for (int i = 0; i < 2; i++) {
+            ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                            .updater(new Sgd(0.1)).l2(1e-3).weightInit(WeightInit.XAVIER).graphBuilder()
+                            .addInputs("in")
+                            .addLayer("dense", new DenseLayer.Builder().nIn(5).nOut(16)
+                                            .activation(Activation.TANH).build(), "in")
+                            .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                            .activation(Activation.SOFTMAX).nIn(16).nOut(3).build(), "dense")
+                            .setOutputs("out").gradientAccumulationSteps(steps[i]).build();
+            nets[i] = new ComputationGraph(conf);
+            nets[i].init();
+        }
+
+        for (int epoch = 0; epoch < 2; epoch++) {
+            nets[0].fit(all);
+            nets[1].fit(new ListDataSetIterator<>(split(all, 4)));
+            assertEquals(nets[0].score(), nets[1].score(), 1e-5);
+            assertTrue(nets[0].params().equalsWithEps(nets[1].params(), 1e-5));
+        }
+        assertEquals(2, nets[1].getConfiguration().getIterationCount());
+
+        ComputationGraph restored = TestUtils.testModelSerialization(nets[1]);
+        assertEquals(3, restored.getConfiguration().getGradientAccumulationSteps());
+    }
+
+    @Test
+    public void testSparseEmbeddingNotSupported() {
+        try {
+            new NeuralNetConfiguration.Builder().list()
+                            .layer(new EmbeddingLayer.Builder().nIn(10).nOut(4).sparseGradients(true).build())
+                            .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(4).nOut(2).build())
+                            .gradientAccumulationSteps(2).build();
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("Gradient accumulation"));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.deeplearning4j.nn.quantization;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.TestUtils;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.LayerVertex;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import static org.junit.Assert.*;
+
+public class PostTrainingQuantizerTest extends BaseDL4JTest {
+
+    @Test
+    public void testQuantizeMultiLayerIris() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Adam(0.05))
+                        .weightInit(WeightInit.XAVIER).list()
+                        .layer(0, new DenseLayer.Builder().nIn(4).nOut(16).activation(Activation.TANH).build())
+                        .layer(1, new DenseLayer.Builder().nOut(16).activation(Activation.IDENTITY).build())
+                        .layer(2, new BatchNormalization.Builder().build())
+                        .layer(3, new ActivationLayer.Builder().activation(Activation.RELU).build())
+                        .layer(4, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nOut(3).build())
+                        .setInputType(InputType.feedForward(4)).build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        DataSetIterator iris = new IrisDataSetIterator(150, 150);
+        DataSet ds = iris.next();
+        ds.normalizeZeroMeanZeroUnitVariance();
+        for (int i = 0; i < 50; i++) {
+            net.fit(ds);
+        }
+
+        DataSetIterator iter = new ListDataSetIterator<>(ds.asList(), 30);
+        MultiLayerNetwork quantized = PostTrainingQuantizer.quantize(net, iter, 2);
+
+        //Dense, Dense (+ BN + ReLU), output layer
+        assertEquals(3, quantized.getnLayers());
+        assertTrue(quantized.getLayerWiseConfigurations().getConf(0).getLayer() instanceof QuantizedLayer);
+        assertTrue(quantized.getLayerWiseConfigurations().getConf(1).getLayer() instanceof QuantizedLayer);
+        assertTrue(quantized.getLayerWiseConfigurations().getConf(2).getLayer() instanceof OutputLayer);
+
+        //Quantized weights: integers in range [-127, 127], with max(abs(W)) = 127 for each output channel
+        INDArray w = quantized.getLayer(0).getParam("W");
+        assertEquals(w, Transforms.round(w, true));
+        assertEquals(127.0, w.amaxNumber().doubleValue(), 0.0);
+
+        INDArray expected = net.output(ds.getFeatures());
+        INDArray actual = quantized.output(ds.getFeatures());
+        double relError = expected.sub(actual).norm2Number().doubleValue() / expected.norm2Number().doubleValue();
+        assertTrue("Relative error: " + relError, relError < 0.05);
+
+        QuantizationReport report = PostTrainingQuantizer.evaluate(net, quantized, iter, InputType.feedForward(4));
+        assertTrue(report.toString(), Math.abs(report.getAccuracyDelta()) <= 0.05);
+        assertNotNull(report.getQuantizedMemoryReport());
+        //Simulated quantization: parameters are stored as floating point values, hence no memory savings
+        assertEquals(net.numParams(), quantized.numParams());
+
+        //Persistence
+        MultiLayerNetwork restored = TestUtils.testModelSerialization(quantized);
+        assertEquals(actual, restored.output(ds.getFeatures()));
+    }
+
+    @Test
+    public void testQuantizeComputationGraphCnn() {
+        Nd4j.getRandom().setSeed(12345);
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                        .updater(new Adam(0.01)).weightInit(WeightInit.XAVIER).activation(Activation.IDENTITY)
+                        .graphBuilder().addInputs("in")
+                        .addLayer("c0", new ConvolutionLayer.Builder().kernelSize(3, 3).nOut(8).build(), "in")
+                        .addLayer("bn0", new BatchNormalization.Builder().build(), "c0")
+                        .addLayer("a0", new ActivationLayer.Builder().activation(Activation.RELU).build(), "bn0")
+                        .addLayer("p0", new SubsamplingLayer.Builder().kernelSize(2, 2).stride(2, 2).build(), "a0")
+                        .addLayer("c1", new ConvolutionLayer.Builder().kernelSize(2, 2).nOut(8)
+                                        .activation(Activation.LEAKYRELU).hasBias(false).build(), "p0")
+                        .addLayer("d0", new DenseLayer.Builder().nOut(20).activation(Activation.TANH).build(), "c1")
+                        .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nOut(4).build(), "d0")
+                        .setOutputs("out").setInputTypes(InputType.convolutional(12, 12, 3)).build();
+
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+        DataSet ds = new DataSet(Nd4j.rand(new int[] {32, 3, 12, 12}), TestUtils.randomOneHot(32, 4));
+        for (int i = 0; i < 10; i++) {
+            net.fit(ds);
+        }
+
+        DataSetIterator iter = new ListDataSetIterator<>(ds.asList(), 16);
+        ComputationGraph quantized = PostTrainingQuantizer.quantize(net, iter, 10);
+
+        for (String name : new String[] {"c0", "c1", "d0"}) {
+            assertTrue(name, quantized.getConfiguration().getVertices().containsKey(name));
+            assertTrue(name, ((LayerVertex) quantized.getConfiguration()
+                            .getVertices().get(name)).getLayerConf().getLayer() instanceof QuantizedLayer);
+        }
+        assertFalse(quantized.getConfiguration().getVertices().containsKey("bn0"));
+
+        INDArray expected = net.outputSingle(ds.getFeatures());
+        INDArray actual = quantized.outputSingle(ds.getFeatures());
+        double relError = expected.sub(actual).norm2Number().doubleValue() / expected.norm2Number().doubleValue();
+        assertTrue("Relative error: " + relError, relError < 0.05);
+
+        QuantizationReport report = PostTrainingQuantizer.evaluate(net, quantized, iter,
+                        InputType.convolutional(12, 12, 3));
+        assertNotNull(report.getOriginalEvaluation());
+        assertNotNull(report.getQuantizedMemoryReport());
+
+        ComputationGraph restored = TestUtils.testModelSerialization(quantized);
+        assertEquals(actual, restored.outputSingle(ds.getFeatures()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testQuantizedNetworkCannotBeTrained() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().list()
+                        .layer(0, new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.TANH).build())
+                        .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nIn(5).nOut(3).build())
+                        .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        DataSet ds = new IrisDataSetIterator(150, 150).next();
+        MultiLayerNetwork quantized =
+                        PostTrainingQuantizer.quantize(net, new ListDataSetIterator<>(ds.asList(), 50), 1);
+        quantized.fit(ds);
+    }
+}
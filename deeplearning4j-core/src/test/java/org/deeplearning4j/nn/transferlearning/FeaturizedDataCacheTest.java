@@ -0,0 +1,212 @@
+package org.deeplearning4j.nn.transferlearning;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.TestUtils;
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Sgd;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FeaturizedDataCacheTest extends BaseDL4JTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static MultiLayerNetwork getMLN() {
+        MultiLayerNetwork net = new MultiLayerNetwork(new NeuralNetConfiguration.Builder().seed(12345)
+                        .updater(new Sgd(0.1)).list()
+                        .layer(new DenseLayer.Builder().nIn(10).nOut(8).activation(Activation.TANH).build())
+                        .layer(new DenseLayer.Builder().nIn(8).nOut(6).activation(Activation.TANH).build())
+                        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nIn(6).nOut(3).build())
+                        .build());
+        net.init();
+        return net;
+    }
+
+    private static List<DataSet> getData(int nBatches, int batchSize) {
+        List<DataSet> list = new ArrayList<>();
+        for (int i = 0; i < nBatches; i++) {
+            INDArray f = Nd4j.rand(batchSize, 10);
+            //Distinct first feature for each example, so examples can be told apart after featurization
+            for (int j = 0; j < batchSize; j++) {
+                f.putScalar(j, 0, i * batchSize + j);
+            }
+            list.add(new DataSet(f, TestUtils.randomOneHot(batchSize, 3)));
+        }
+        return list;
+    }
+
+    @Test
+    public void testFeaturizeAndIterate() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> data = getData(5, 4);
+
+        for (int numWorkers : new int[] {1, 3}) {
+            MultiLayerNetwork net = getMLN();
+            TransferLearningHelper helper = new TransferLearningHelper(net, 0);
+
+            File dir = tempDir.newFolder();
+            FeaturizedDataCache cache = new FeaturizedDataCache.Builder(helper, dir).numWorkers(numWorkers)
+                            .build(new ListDataSetIterator<>(data));
+            assertEquals(20, cache.numExamples());
+            assertArrayEquals(new int[] {8}, cache.getFeatureShape());
+            assertArrayEquals(new int[] {3}, cache.getLabelShape());
+
+            //In order: should match featurizing each minibatch directly
+            DataSetIterator iter = cache.iterator(4, false, 12345);
+            assertEquals(8, iter.inputColumns());
+            assertEquals(3, iter.totalOutcomes());
+            for (DataSet ds : data) {
+                assertTrue(iter.hasNext());
+                DataSet expected = helper.featurize(ds);
+                DataSet actual = iter.next();
+                assertTrue(expected.getFeatures().equalsWithEps(actual.getFeatures(), 1e-6));
+                assertEquals(expected.getLabels(), actual.getLabels());
+                assertNull(actual.getLabelsMaskArray());
+            }
+            assertFalse(iter.hasNext());
+            cache.close();
+
+            //Reopen from disk
+            FeaturizedDataCache loaded = FeaturizedDataCache.load(dir);
+            assertEquals(20, loaded.numExamples());
+            assertTrue(helper.featurize(data.get(2)).getFeatures()
+                            .equalsWithEps(loaded.get(8, 9, 10, 11).getFeatures(), 1e-6));
+
+            //Train the unfrozen layers from the cache
+            INDArray paramsBefore = helper.unfrozenMLN().params().dup();
+            helper.fitFeaturized(loaded.iterator(5, true, 12345));
+            assertNotEquals(paramsBefore, helper.unfrozenMLN().params());
+            loaded.close();
+        }
+    }
+
+    @Test
+    public void testShuffle() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> data = getData(6, 5);
+
+        TransferLearningHelper helper = new TransferLearningHelper(getMLN(), 0);
+        FeaturizedDataCache cache = new FeaturizedDataCache.Builder(helper, tempDir.newFolder())
+                        .build(new ListDataSetIterator<>(data));
+
+        DataSetIterator iter = cache.iterator(7, true, 12345);
+        List<String> epoch1 = new ArrayList<>();
+        //Each example should be returned exactly once per epoch, in a different order in each epoch
+        for (int epoch = 0; epoch < 2; epoch++) {
+            iter.reset();
+            Set<String> seen = new HashSet<>();
+            List<String> order = new ArrayList<>();
+            int count = 0;
+            while (iter.hasNext()) {
+                DataSet ds = iter.next();
+                assertTrue(ds.numExamples() <= 7);
+                count += ds.numExamples();
+                for (int i = 0; i < ds.numExamples(); i++) {
+                    String s = ds.getFeatures().getRow(i).toString();
+                    seen.add(s);
+                    order.add(s);
+                }
+            }
+            assertEquals(30, count);
+            assertEquals(30, seen.size());
+            if (epoch == 0) {
+                epoch1 = order;
+            } else {
+                assertNotEquals(epoch1, order);
+            }
+        }
+        cache.close();
+    }
+
+    @Test
+    public void testHalfPrecision() throws Exception {
+        for (float f : new float[] {0.0f, 1.0f, -2.5f, 0.3333f, 1e-5f, 65504f, -1e-7f}) {
+            float back = FeaturizedDataCache.fromHalf(FeaturizedDataCache.toHalf(f));
+            assertEquals(f, back, Math.max(1e-3 * Math.abs(f), 1e-7));
+        }
+        assertTrue(Float.isInfinite(FeaturizedDataCache.fromHalf(FeaturizedDataCache.toHalf(1e6f))));
+        assertTrue(Float.isNaN(FeaturizedDataCache.fromHalf(FeaturizedDataCache.toHalf(Float.NaN))));
+
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> data = getData(3, 4);
+        TransferLearningHelper helper = new TransferLearningHelper(getMLN(), 0);
+        File dir = tempDir.newFolder();
+        FeaturizedDataCache cache = new FeaturizedDataCache.Builder(helper, dir).dataType(DataBuffer.Type.HALF)
+                        .build(new ListDataSetIterator<>(data));
+        assertEquals(DataBuffer.Type.HALF, cache.getDataType());
+        //2 bytes per feature value
+        assertEquals(12 * 8 * 2, new File(dir, "features.bin").length());
+
+        DataSet expected = helper.featurize(data.get(1));
+        DataSet actual = cache.get(4, 5, 6, 7);
+        assertTrue(expected.getFeatures().equalsWithEps(actual.getFeatures(), 1e-3));
+        assertEquals(expected.getLabels(), actual.getLabels());
+        cache.close();
+    }
+
+    @Test
+    public void testGraphTimeSeriesWithMasks() throws Exception {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                        .updater(new Sgd(0.1)).graphBuilder().addInputs("in")
+                        .addLayer("lstm", new LSTM.Builder().nIn(3).nOut(5).activation(Activation.TANH).build(), "in")
+                        .addLayer("out", new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nIn(5).nOut(2).build(), "lstm")
+                        .setOutputs("out").build();
+        ComputationGraph cg = new ComputationGraph(conf);
+        cg.init();
+        TransferLearningHelper helper = new TransferLearningHelper(cg, "lstm");
+
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> data = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            INDArray labelMask = Nd4j.ones(2, 6);
+            labelMask.putScalar(1, 5, 0.0);
+            data.add(new DataSet(Nd4j.rand(new int[] {2, 3, 6}), TestUtils.randomOneHotTimeSeries(2, 2, 6),
+                            null, labelMask));
+        }
+
+        FeaturizedDataCache cache = new FeaturizedDataCache.Builder(helper, tempDir.newFolder()).numWorkers(2)
+                        .build(new ListDataSetIterator<>(data));
+        assertArrayEquals(new int[] {5, 6}, cache.getFeatureShape());
+        assertArrayEquals(new int[] {2, 6}, cache.getLabelShape());
+
+        DataSet ds = cache.get(2, 3);
+        DataSet expected = helper.featurize(data.get(1));
+        assertTrue(expected.getFeatures().equalsWithEps(ds.getFeatures(), 1e-6));
+        assertEquals(data.get(1).getLabelsMaskArray(), ds.getLabelsMaskArray());
+
+        helper.fitFeaturized(cache.iterator(2, true, 12345));
+        cache.close();
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testLoadMissing() throws Exception {
+        FeaturizedDataCache.load(tempDir.newFolder());
+    }
+}
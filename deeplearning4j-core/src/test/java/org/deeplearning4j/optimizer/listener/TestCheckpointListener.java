@@ -4,9 +4,13 @@ import org.deeplearning4j.BaseDL4JTest;
 import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.misc.FrozenLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.listeners.checkpoint.Checkpoint;
 import org.deeplearning4j.optimize.listeners.checkpoint.CheckpointListener;
+import org.deeplearning4j.util.ContainerModelSerializer;
 import org.deeplearning4j.util.ModelSerializer;
 import org.junit.Rule;
 import org.junit.Test;
@@ -19,11 +23,14 @@ import org.nd4j.linalg.primitives.Pair;
 import java.io.File;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestCheckpointListener extends BaseDL4JTest {
 
@@ -226,4 +233,131 @@ public class TestCheckpointListener extends BaseDL4JTest {
 
         assertEquals(5, l.availableCheckpoints().size());
     }
+
+    @Test
+    public void testCheckpointListenerAsync() throws Exception {
+        File f = tempDir.newFolder();
+        Pair<MultiLayerNetwork, DataSetIterator> p = getNetAndData();
+        MultiLayerNetwork net = p.getFirst();
+        DataSetIterator iter = p.getSecond();
+
+        CheckpointListener l = new CheckpointListener.Builder(f)
+                .keepLast(3)
+                .saveEveryNIterations(5)
+                .asyncSaving(true)
+                .build();
+        net.setListeners(l);
+
+        for(int i=0; i<20; i++ ){   //40 iterations total
+            net.fit(iter);
+        }
+        l.flush();
+
+        //Same checkpoints as in synchronous mode, and no temporary files left
+        Set<Integer> ns = new HashSet<>();
+        for(File f2 : f.listFiles()){
+            assertFalse(f2.getName(), f2.getName().endsWith(".tmp"));
+            if(!f2.getPath().endsWith(".bin")){
+                continue;
+            }
+            MultiLayerNetwork n = ModelSerializer.restoreMultiLayerNetwork(f2, true);
+            ns.add(n.getIterationCount());
+        }
+        assertEquals(ns.toString(), 3, ns.size());
+        assertTrue(ns.containsAll(Arrays.asList(25, 30, 35)));
+        assertEquals(3, l.availableCheckpoints().size());
+
+        MultiLayerNetwork last = l.loadCheckpointMLN(l.lastCheckpoint());
+        assertEquals(35, last.getIterationCount());
+
+        assertEquals(7, l.getStats().getCheckpoints().get());
+        assertTrue(l.getStats().getWrittenBytes().get() > 0);
+    }
+
+    @Test
+    public void testCheckpointListenerAsyncFailure() throws Exception {
+        File f = tempDir.newFolder();
+        MultiLayerNetwork net = getNetAndData().getFirst();
+
+        CheckpointListener l = new CheckpointListener.Builder(f)
+                .keepAll()
+                .saveEveryNIterations(5, true)
+                .asyncSaving(true)
+                .build();
+
+        //Non-empty directory in place of the first checkpoint file: moving the temporary file there fails
+        File blocker = new File(f, "checkpoint_0_MultiLayerNetwork.bin");
+        assertTrue(new File(blocker, "file").mkdirs());
+
+        l.iterationDone(net, 0, 0);
+        net.setIterationCount(5);
+        l.iterationDone(net, 5, 0);
+        try {
+            l.flush();
+            fail("Expected exception");
+        } catch (RuntimeException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("Error saving checkpoint"));
+        }
+
+        for(File f2 : f.listFiles()){
+            assertFalse(f2.getName(), f2.getName().endsWith(".tmp"));
+        }
+        assertTrue(l.availableCheckpoints().isEmpty());
+
+        //Failed checkpoint doesn't count as saved: next one is written right away, not 5 iterations later
+        net.setIterationCount(6);
+        l.iterationDone(net, 6, 0);
+        l.flush();
+        List<Checkpoint> checkpoints = l.availableCheckpoints();
+        assertEquals(1, checkpoints.size());
+        assertEquals(1, checkpoints.get(0).getCheckpointNum());
+        assertEquals(6, checkpoints.get(0).getIteration());
+
+        //Successful checkpoint does count
+        net.setIterationCount(7);
+        l.iterationDone(net, 7, 0);
+        l.flush();
+        assertEquals(1, l.availableCheckpoints().size());
+    }
+
+    @Test
+    public void testCheckpointListenerDelta() throws Exception {
+        File f = tempDir.newFolder();
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .list()
+                .layer(new FrozenLayer(new DenseLayer.Builder().nIn(4).nOut(5).build()))
+                .layer(new OutputLayer.Builder().nIn(5).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        DataSetIterator iter = new IrisDataSetIterator(75,150);
+
+        CheckpointListener l = new CheckpointListener.Builder(f)
+                .keepLast(2)
+                .saveEveryNIterations(5)
+                .deltaSaving(true)
+                .build();
+        net.setListeners(l);
+
+        for(int i=0; i<10; i++ ){   //20 iterations total
+            net.fit(iter);
+        }
+
+        //First checkpoint is the base of delta checkpoints, so it's kept in addition to last 2
+        List<Checkpoint> checkpoints = l.availableCheckpoints();
+        assertEquals(3, checkpoints.size());
+        assertEquals(0, checkpoints.get(0).getCheckpointNum());
+
+        File first = l.getFileForCheckpoint(0);
+        File lastFile = l.getFileForCheckpoint(l.lastCheckpoint());
+        assertTrue(lastFile.length() < first.length());
+
+        //Frozen layer params come from the base checkpoint
+        MultiLayerNetwork restored = l.loadCheckpointMLN(l.lastCheckpoint());
+        assertEquals(15, restored.getIterationCount());
+        assertEquals(net.getLayer(0).params(), restored.getLayer(0).params());
+        assertEquals(net.getLayer(0).params(), ContainerModelSerializer.restoreLayerParams(lastFile, "0"));
+    }
 }
@@ -0,0 +1,160 @@
+package org.deeplearning4j.optimizer.listener;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.listeners.profiler.LayerProfile;
+import org.deeplearning4j.optimize.listeners.profiler.LayerProfilerListener;
+import org.deeplearning4j.optimize.listeners.profiler.LatencyHistogram;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.shade.jackson.databind.JsonNode;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestLayerProfilerListener extends BaseDL4JTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1000);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(1000, h.getMin());
+        assertEquals(100000, h.getMax());
+        assertEquals(50500.0, h.getMean(), 1e-6);
+
+        //Percentiles are approximate: within a factor of 2
+        long p50 = h.getPercentile(50);
+        assertTrue(String.valueOf(p50), p50 >= 25000 && p50 <= 100000);
+        assertEquals(100000, h.getPercentile(100));
+
+        LatencyHistogram h2 = new LatencyHistogram();
+        h2.record(5);
+        h.merge(h2);
+        assertEquals(101, h.getCount());
+        assertEquals(5, h.getMin());
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMin());
+    }
+
+    @Test
+    public void testProfilerMultiLayerNetwork() throws Exception {
+        for (WorkspaceMode wsm : new WorkspaceMode[] {WorkspaceMode.NONE, WorkspaceMode.SEPARATE}) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                            .trainingWorkspaceMode(wsm).list()
+                            .layer(new DenseLayer.Builder().nIn(10).nOut(20).activation(Activation.TANH).build())
+                            .layer(new DenseLayer.Builder().nOut(20).activation(Activation.TANH).build())
+                            .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                            .activation(Activation.SOFTMAX).nOut(5).build())
+                            .setInputType(InputType.feedForward(10)).build();
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init();
+
+            LayerProfilerListener l = new LayerProfilerListener.Builder().updateRatioFrequency(1)
+                            .maxTraceEvents(1000).build();
+            net.setListeners(l);
+
+            DataSet ds = new DataSet(Nd4j.rand(8, 10), Nd4j.rand(8, 5));
+            int nIter = 5;
+            for (int i = 0; i < nIter; i++) {
+                net.fit(ds);
+            }
+
+            Map<String, LayerProfile> profiles = l.getProfiles();
+            assertEquals(3, profiles.size());
+            for (int i = 0; i < 3; i++) {
+                //Default MultiLayerNetwork layer names: "layer0", "layer1", ...
+                LayerProfile p = profiles.get("layer" + i);
+                assertNotNull(p);
+                assertEquals(i, p.getIndex());
+                assertEquals(nIter, p.getBackward().getCount());
+                double ratio = p.getMeanUpdateRatio();
+                assertTrue(String.valueOf(ratio), ratio > 0 && ratio < 1);
+            }
+            //Output layer forward pass is performed as part of its backward pass
+            assertEquals(nIter, profiles.get("layer0").getForward().getCount());
+            assertEquals(nIter, profiles.get("layer1").getForward().getCount());
+            assertEquals(nIter, l.getUpdaterHistogram().getCount());
+            if (wsm == WorkspaceMode.SEPARATE) {
+                assertTrue(profiles.get("layer0").getTotalWorkspaceBytes() > 0);
+            }
+
+            String table = l.getTable();
+            assertTrue(table.contains("DenseLayer"));
+            assertTrue(table.contains("(updater)"));
+
+            //Inference should not be profiled
+            net.output(ds.getFeatures());
+            assertEquals(nIter, profiles.get("layer0").getForward().getCount());
+
+            File f = new File(tempDir.newFolder(), "trace.json");
+            l.exportChromeTrace(f);
+            JsonNode trace = new ObjectMapper().readTree(f);
+            JsonNode events = trace.get("traceEvents");
+            assertEquals(l.getNumTraceEvents(), events.size());
+            //2 forward + 3 backward + updater, per iteration
+            assertEquals(6 * nIter, events.size());
+            for (JsonNode e : events) {
+                assertEquals("X", e.get("ph").asText());
+                assertTrue(e.get("dur").asDouble() >= 0);
+            }
+
+            l.reset();
+            assertTrue(l.getProfiles().isEmpty());
+            assertEquals(0, l.getNumTraceEvents());
+        }
+    }
+
+    @Test
+    public void testProfilerComputationGraph() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).graphBuilder()
+                        .addInputs("in")
+                        .addLayer("dense", new DenseLayer.Builder().nIn(10).nOut(20).activation(Activation.TANH)
+                                        .build(), "in")
+                        .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nIn(20).nOut(5).build(), "dense")
+                        .setOutputs("out").build();
+        ComputationGraph cg = new ComputationGraph(conf);
+        cg.init();
+
+        LayerProfilerListener l = new LayerProfilerListener.Builder().updateRatioFrequency(1).build();
+        cg.setListeners(l);
+
+        DataSet ds = new DataSet(Nd4j.rand(8, 10), Nd4j.rand(8, 5));
+        for (int i = 0; i < 3; i++) {
+            cg.fit(ds);
+        }
+
+        Map<String, LayerProfile> profiles = l.getProfiles();
+        assertTrue(profiles.containsKey("dense"));
+        assertTrue(profiles.containsKey("out"));
+        assertEquals(3, profiles.get("dense").getForward().getCount());
+        assertEquals(3, profiles.get("dense").getBackward().getCount());
+        assertTrue(profiles.get("dense").getMeanUpdateRatio() > 0);
+        assertEquals(0, l.getNumTraceEvents());
+    }
+}
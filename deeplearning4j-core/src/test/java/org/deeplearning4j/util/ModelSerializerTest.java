@@ -6,6 +6,7 @@ import org.deeplearning4j.nn.api.OptimizationAlgorithm;
 import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.MergeVertex;
 import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.graph.ComputationGraph;
@@ -22,6 +23,7 @@ import org.nd4j.linalg.dataset.api.preprocessor.Normalizer;
 import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
 import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.learning.config.Sgd;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 import org.nd4j.linalg.primitives.Pair;
@@ -387,4 +389,92 @@ public class ModelSerializerTest extends BaseDL4JTest {
         assertEquals(net.params(), pair.getFirst().params());
         assertNotNull(pair.getSecond());
     }
+
+    @Test
+    public void testWriteContainerMLN() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                        .updater(new Adam(0.01)).activation(Activation.TANH).weightInit(WeightInit.XAVIER).list()
+                        .layer(0, new DenseLayer.Builder().nIn(4).nOut(20).build())
+                        .layer(1, new DenseLayer.Builder().nIn(20).nOut(30).build()).layer(2, new OutputLayer.Builder()
+                                        .lossFunction(LossFunctions.LossFunction.MSE).nIn(30).nOut(3).build())
+                        .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        DataSet dataSet = new IrisDataSetIterator(150, 150).next();
+        net.fit(dataSet);
+
+        NormalizerStandardize norm = new NormalizerStandardize();
+        norm.fit(dataSet);
+
+        File tempFile = tempDir.newFile();
+        ModelSerializer.writeContainer(net, tempFile, true, norm);
+        assertTrue(ContainerModelSerializer.isContainer(tempFile));
+
+        ContainerModelSerializer.Manifest manifest = ContainerModelSerializer.readManifest(tempFile);
+        assertEquals(3, manifest.getBlocks(ContainerModelSerializer.BlockType.PARAMS).size());
+        for (ContainerModelSerializer.Block block : manifest.getBlocks())
+            assertEquals(0, block.getPosition() % ContainerModelSerializer.ALIGNMENT);
+
+        MultiLayerNetwork restored = ModelSerializer.restoreMultiLayerNetwork(tempFile);
+        assertEquals(net.getLayerWiseConfigurations().toJson(), restored.getLayerWiseConfigurations().toJson());
+        assertEquals(net.params(), restored.params());
+        assertEquals(net.getUpdater().getStateViewArray(), restored.getUpdater().getStateViewArray());
+        assertEquals(net.output(dataSet.getFeatures()), restored.output(dataSet.getFeatures()));
+
+        // updater state is skipped, and left at its initial state
+        MultiLayerNetwork noUpdater = ModelSerializer.restoreMultiLayerNetwork(tempFile, false);
+        assertEquals(net.params(), noUpdater.params());
+        assertNotEquals(net.getUpdater().getStateViewArray(), noUpdater.getUpdater().getStateViewArray());
+
+        NormalizerStandardize restoredNorm = ModelSerializer.restoreNormalizerFromFile(tempFile);
+        assertEquals(norm.getMean(), restoredNorm.getMean());
+        assertEquals(norm.getStd(), restoredNorm.getStd());
+
+        // streams are handled too
+        Pair<MultiLayerNetwork, Normalizer> pair =
+                        ModelSerializer.restoreMultiLayerNetworkAndNormalizer(new FileInputStream(tempFile), true);
+        assertEquals(net.params(), pair.getFirst().params());
+        assertNotNull(pair.getSecond());
+
+        // single layer can be read without the rest of the model
+        assertEquals(net.getLayer(1).params(), ContainerModelSerializer.restoreLayerParams(tempFile, "1"));
+    }
+
+    @Test
+    public void testWriteContainerCG() throws Exception {
+        ComputationGraphConfiguration config = new NeuralNetConfiguration.Builder().seed(12345)
+                        .updater(new Adam(0.01)).graphBuilder().addInputs("in")
+                        .addLayer("dense1", new DenseLayer.Builder().nIn(4).nOut(5).build(), "in")
+                        .addLayer("dense2", new DenseLayer.Builder().nIn(4).nOut(6).build(), "in")
+                        .addVertex("merge", new MergeVertex(), "dense1", "dense2")
+                        .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(11).nOut(3)
+                                        .build(), "merge")
+                        .setOutputs("out").pretrain(false).backprop(true).build();
+
+        ComputationGraph cg = new ComputationGraph(config);
+        cg.init();
+
+        DataSet dataSet = new IrisDataSetIterator(150, 150).next();
+        cg.fit(dataSet);
+
+        File tempFile = tempDir.newFile();
+        ModelSerializer.writeContainer(cg, tempFile, true);
+
+        ComputationGraph restored = ModelSerializer.restoreComputationGraph(tempFile);
+        assertEquals(cg.getConfiguration().toJson(), restored.getConfiguration().toJson());
+        assertEquals(cg.params(), restored.params());
+        assertEquals(cg.getUpdater().getStateViewArray(), restored.getUpdater().getStateViewArray());
+        assertEquals(cg.getLayer("dense2").params(), ContainerModelSerializer.restoreLayerParams(tempFile, "dense2"));
+        assertNull(ModelSerializer.restoreNormalizerFromFile(tempFile));
+
+        try {
+            ModelSerializer.restoreMultiLayerNetwork(tempFile);
+            fail();
+        } catch (Exception e){
+            String msg = e.getMessage();
+            assertTrue(msg, msg.contains("JSON") && msg.contains("restoreComputationGraph"));
+        }
+    }
 }
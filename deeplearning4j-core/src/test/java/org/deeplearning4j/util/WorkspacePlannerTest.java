@@ -0,0 +1,124 @@
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.After;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class WorkspacePlannerTest extends BaseDL4JTest {
+
+    @After
+    public void after() {
+        Nd4j.getWorkspaceManager().destroyAllWorkspacesForCurrentThread();
+    }
+
+    private static MultiLayerConfiguration getConf(WorkspaceMode wsm) {
+        return new NeuralNetConfiguration.Builder().seed(12345).trainingWorkspaceMode(wsm)
+                        .inferenceWorkspaceMode(wsm).list()
+                        .layer(0, new DenseLayer.Builder().nIn(10).nOut(64).activation(Activation.TANH).build())
+                        .layer(1, new DenseLayer.Builder().nOut(64).activation(Activation.TANH).build())
+                        .layer(2, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nOut(5).build())
+                        .setInputType(InputType.feedForward(10)).build();
+    }
+
+    @Test
+    public void testMaxMinibatchSize() {
+        NetworkMemoryReport report = getConf(WorkspaceMode.SEPARATE).getMemoryReport(InputType.feedForward(10));
+
+        long budget = 10 * 1024 * 1024;
+        int mb = WorkspacePlanner.maxMinibatchSize(report, budget, MemoryUseMode.TRAINING, CacheMode.NONE,
+                        DataBuffer.Type.FLOAT);
+        assertTrue(mb > 1);
+        assertTrue(report.getTotalMemoryBytes(mb, MemoryUseMode.TRAINING, CacheMode.NONE,
+                        DataBuffer.Type.FLOAT) <= budget);
+        assertTrue(report.getTotalMemoryBytes(mb + 1, MemoryUseMode.TRAINING, CacheMode.NONE,
+                        DataBuffer.Type.FLOAT) > budget);
+
+        //Inference requires less memory than training -> larger minibatch
+        int mbInference = WorkspacePlanner.maxMinibatchSize(report, budget, MemoryUseMode.INFERENCE, CacheMode.NONE,
+                        DataBuffer.Type.FLOAT);
+        assertTrue(mbInference >= mb);
+
+        //Budget smaller than parameters: nothing fits
+        assertEquals(0, WorkspacePlanner.maxMinibatchSize(report, 100, MemoryUseMode.TRAINING, CacheMode.NONE,
+                        DataBuffer.Type.FLOAT));
+    }
+
+    @Test
+    public void testPresizeAndCompare() {
+        for (WorkspaceMode wsm : new WorkspaceMode[] {WorkspaceMode.SINGLE, WorkspaceMode.SEPARATE}) {
+            Nd4j.getWorkspaceManager().destroyAllWorkspacesForCurrentThread();
+
+            MultiLayerNetwork net = new MultiLayerNetwork(getConf(wsm));
+            net.init();
+
+            WorkspacePlanner.Plan plan = WorkspacePlanner.presize(net, InputType.feedForward(10), 32,
+                            MemoryUseMode.TRAINING);
+            assertTrue(plan.getExternalWorkspaceBytes() > 0);
+            if (wsm == WorkspaceMode.SEPARATE) {
+                assertTrue(plan.getFeedForwardWorkspaceBytes() > 0);
+            } else {
+                assertEquals(0, plan.getFeedForwardWorkspaceBytes());
+            }
+
+            //Workspaces are allocated before the first iteration, but nothing has been allocated within them yet
+            assertTrue(Nd4j.getWorkspaceManager().checkIfWorkspaceExists(WorkspacePlanner.WORKSPACE_EXTERNAL));
+            assertTrue(Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(WorkspacePlanner.WORKSPACE_EXTERNAL)
+                            .getCurrentSize() >= plan.getExternalWorkspaceBytes());
+            Map<String, long[]> before = WorkspacePlanner.compareWithActual(plan);
+            assertEquals(0, before.get(WorkspacePlanner.WORKSPACE_EXTERNAL)[1]);
+
+            DataSet ds = new DataSet(Nd4j.rand(32, 10), Nd4j.rand(32, 5));
+            for (int i = 0; i < 5; i++) {
+                net.fit(ds);
+            }
+
+            Map<String, long[]> after = WorkspacePlanner.compareWithActual(plan);
+            assertEquals(2, after.size());
+            assertTrue(after.get(WorkspacePlanner.WORKSPACE_EXTERNAL)[1] > 0);
+        }
+    }
+
+    @Test
+    public void testPresizeRecurrentMaxLength() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).list()
+                        .layer(0, new LSTM.Builder().nIn(4).nOut(16).activation(Activation.TANH).build())
+                        .layer(1, new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE)
+                                        .activation(Activation.IDENTITY).nOut(3).build())
+                        .setInputType(InputType.recurrent(4)).build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        WorkspacePlanner.Plan p10 = WorkspacePlanner.plan(conf.getMemoryReport(InputType.recurrent(4, 10)), 8,
+                        MemoryUseMode.TRAINING, WorkspaceMode.SEPARATE);
+        WorkspacePlanner.Plan p100 = WorkspacePlanner.presize(net, InputType.recurrent(4, 100), 8,
+                        MemoryUseMode.TRAINING);
+        assertTrue(p100.getExternalWorkspaceBytes() > p10.getExternalWorkspaceBytes());
+
+        //Shorter sequences after pre-sizing for the maximum length
+        net.fit(new DataSet(Nd4j.rand(new int[] {8, 4, 10}), Nd4j.rand(new int[] {8, 3, 10})));
+        net.fit(new DataSet(Nd4j.rand(new int[] {8, 4, 100}), Nd4j.rand(new int[] {8, 3, 100})));
+        WorkspacePlanner.compareWithActual(p100);
+    }
+}
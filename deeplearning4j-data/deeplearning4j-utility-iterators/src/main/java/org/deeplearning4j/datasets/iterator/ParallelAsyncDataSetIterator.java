@@ -0,0 +1,551 @@
+package org.deeplearning4j.datasets.iterator;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.datasets.iterator.callbacks.DataSetCallback;
+import org.deeplearning4j.datasets.iterator.callbacks.DefaultCallback;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LearningPolicy;
+import org.nd4j.linalg.api.memory.enums.ResetPolicy;
+import org.nd4j.linalg.api.memory.enums.SpillPolicy;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Async prefetching iterator wrapper that loads minibatches using multiple background threads, instead of the single
+ * thread used by {@link AsyncDataSetIterator}. This is useful when loading a minibatch is expensive (for example,
+ * image decoding or deserialization) and a single thread can't keep up with training.<br>
+ * <br>
+ * Two types of sources are supported:<br>
+ * - Indexable: a {@link RandomAccessDataSetIterator}. Workers take the next minibatch index from a shared counter, so
+ * the load is balanced between workers automatically.<br>
+ * - Splittable: one DataSetIterator per worker, each iterating over a different part of the data (for example, a
+ * RecordReaderDataSetIterator over a subset of the files). Worker i loads only from iterator i.<br>
+ * <br>
+ * In ordered mode (the default), minibatches are returned in a deterministic order regardless of which worker finishes
+ * first: minibatches that are loaded early are held in a reorder buffer until all earlier minibatches have been
+ * returned. For indexable sources, the order is the same as {@link RandomAccessDataSetIterator#next()}; for splittable
+ * sources the iterators are interleaved round robin (first minibatch of iterator 0, first minibatch of iterator 1,
+ * ...), continuing with the remaining iterators once an iterator is exhausted. In unordered mode, minibatches are
+ * returned as soon as they are available.<br>
+ * <br>
+ * Each worker has its own workspace and device affinity (by default, the device of the thread creating this
+ * iterator).<br>
+ * <br>
+ * The time each worker spends loading minibatches is available via {@link #getLastEtlTime(int)} and
+ * {@link #getTotalEtlTime(int)}, and the time the consumer last waited for a minibatch (the ETL time reported by
+ * PerformanceListener) via {@link #getLastWaitTime()}. If the wait time is consistently non-zero, more workers are
+ * required.<br>
+ * <br>
+ * PLEASE NOTE: The source iterators must not be used directly while this iterator is in use.
+ */
+@Slf4j
+public class ParallelAsyncDataSetIterator extends AsyncDataSetIterator {
+
+    protected RandomAccessDataSetIterator indexedIterator;
+    protected List<DataSetIterator> splits;
+    protected int numWorkers;
+    protected boolean ordered;
+    protected int[] deviceIds;
+    protected PrefetchWorker[] workers;
+
+    //Reorder buffer and worker state: all guarded by lock
+    protected final Object lock = new Object();
+    protected TreeMap<Long, DataSet> ready = new TreeMap<>();
+    protected long nextSequence;
+    protected int pending;
+    protected long[] produced;
+    protected boolean[] workerDone;
+
+    protected AtomicLong nextBatch = new AtomicLong();
+    protected AtomicLongArray lastEtlTime;
+    protected AtomicLongArray totalEtlTime;
+    protected volatile long lastWaitTime;
+
+    /**
+     * Create an ordered iterator with a prefetch size of 2 minibatches per worker
+     *
+     * @param iterator   Indexable source
+     * @param numWorkers Number of worker threads
+     */
+    public ParallelAsyncDataSetIterator(RandomAccessDataSetIterator iterator, int numWorkers) {
+        this(iterator, numWorkers, 2 * numWorkers, true);
+    }
+
+    /**
+     * @param iterator     Indexable source
+     * @param numWorkers   Number of worker threads
+     * @param prefetchSize Maximum number of minibatches loaded in advance (over all workers)
+     * @param ordered      If true: return minibatches in the order of the source. If false: return minibatches in
+     *                     the order they are loaded
+     */
+    public ParallelAsyncDataSetIterator(RandomAccessDataSetIterator iterator, int numWorkers, int prefetchSize,
+                    boolean ordered) {
+        this(iterator, numWorkers, prefetchSize, ordered, true, new DefaultCallback(), null);
+    }
+
+    /**
+     * @param iterator     Indexable source
+     * @param numWorkers   Number of worker threads
+     * @param prefetchSize Maximum number of minibatches loaded in advance (over all workers)
+     * @param ordered      If true: return minibatches in the order of the source. If false: return minibatches in
+     *                     the order they are loaded
+     * @param useWorkspace If true: load minibatches in a separate workspace for each worker
+     * @param callback     May be null. Called by the worker for each minibatch, after it has been loaded
+     * @param deviceIds    May be null. If non-null: device to attach each worker thread to (length numWorkers). If
+     *                     null, all workers are attached to the device of the current thread
+     */
+    public ParallelAsyncDataSetIterator(@NonNull RandomAccessDataSetIterator iterator, int numWorkers,
+                    int prefetchSize, boolean ordered, boolean useWorkspace, DataSetCallback callback,
+                    int[] deviceIds) {
+        this.indexedIterator = iterator;
+        init(iterator, numWorkers, prefetchSize, ordered, useWorkspace, callback, deviceIds);
+    }
+
+    /**
+     * Create an ordered iterator with one worker per split, and a prefetch size of 2 minibatches per worker
+     *
+     * @param splits One iterator for each worker, each over a different part of the data
+     */
+    public ParallelAsyncDataSetIterator(List<DataSetIterator> splits) {
+        this(splits, 2 * splits.size(), true);
+    }
+
+    /**
+     * @param splits       One iterator for each worker, each over a different part of the data
+     * @param prefetchSize Maximum number of minibatches loaded in advance (over all workers)
+     * @param ordered      If true: interleave the minibatches of the splits round robin. If false: return
+     *                     minibatches in the order they are loaded
+     */
+    public ParallelAsyncDataSetIterator(List<DataSetIterator> splits, int prefetchSize, boolean ordered) {
+        this(splits, prefetchSize, ordered, true, new DefaultCallback(), null);
+    }
+
+    /**
+     * @param splits       One iterator for each worker, each over a different part of the data
+     * @param prefetchSize Maximum number of minibatches loaded in advance (over all workers)
+     * @param ordered      If true: interleave the minibatches of the splits round robin. If false: return
+     *                     minibatches in the order they are loaded
+     * @param useWorkspace If true: load minibatches in a separate workspace for each worker
+     * @param callback     May be null. Called by the worker for each minibatch, after it has been loaded
+     * @param deviceIds    May be null. If non-null: device to attach each worker thread to (one per split). If null,
+     *                     all workers are attached to the device of the current thread
+     */
+    public ParallelAsyncDataSetIterator(@NonNull List<DataSetIterator> splits, int prefetchSize, boolean ordered,
+                    boolean useWorkspace, DataSetCallback callback, int[] deviceIds) {
+        if (splits.isEmpty()) {
+            throw new IllegalArgumentException("At least one split iterator is required");
+        }
+        this.splits = new ArrayList<>(splits);
+        for (DataSetIterator iter : this.splits) {
+            if (iter.resetSupported() && !iter.hasNext())
+                iter.reset();
+        }
+        init(splits.get(0), splits.size(), prefetchSize, ordered, useWorkspace, callback, deviceIds);
+    }
+
+    protected void init(DataSetIterator backedIterator, int numWorkers, int prefetchSize, boolean ordered,
+                    boolean useWorkspace, DataSetCallback callback, int[] deviceIds) {
+        if (numWorkers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive, got " + numWorkers);
+        }
+        if (deviceIds != null && deviceIds.length != numWorkers) {
+            throw new IllegalArgumentException("Expected " + numWorkers + " device IDs (one per worker), got "
+                            + deviceIds.length);
+        }
+        this.backedIterator = backedIterator;
+        this.numWorkers = numWorkers;
+        this.prefetchSize = Math.max(prefetchSize, numWorkers);
+        this.ordered = ordered;
+        this.useWorkspace = useWorkspace;
+        this.callback = callback;
+        this.deviceId = Nd4j.getAffinityManager().getDeviceForCurrentThread();
+        this.deviceIds = deviceIds;
+        this.workspaceId = "ADSI_ITER-" + java.util.UUID.randomUUID().toString();
+        this.lastEtlTime = new AtomicLongArray(numWorkers);
+        this.totalEtlTime = new AtomicLongArray(numWorkers);
+
+        startWorkers();
+    }
+
+    protected void startWorkers() {
+        synchronized (lock) {
+            ready.clear();
+            nextSequence = 0;
+            pending = 0;
+            produced = new long[numWorkers];
+            workerDone = new boolean[numWorkers];
+        }
+        nextBatch.set(0);
+        for (int i = 0; i < numWorkers; i++) {
+            lastEtlTime.set(i, 0);
+            totalEtlTime.set(i, 0);
+        }
+        shouldWork.set(true);
+        hasDepleted.set(false);
+        nextElement = null;
+        throwable = null;
+
+        workers = new PrefetchWorker[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = new PrefetchWorker(i);
+
+            /**
+             * Each worker gets the requested thread->device affinity; by default the same as the master thread
+             */
+            Nd4j.getAffinityManager().attachThreadToDevice(workers[i], deviceIds == null ? deviceId : deviceIds[i]);
+            workers[i].start();
+        }
+    }
+
+    protected void stopWorkers() {
+        if (workers == null)
+            return;
+
+        //No interrupts here: workers waiting for capacity are woken up by notifyAll and see shouldWork == false, and
+        //workers that are loading a minibatch finish it first, so the source iterators are never interrupted mid-load
+        shouldWork.set(false);
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        try {
+            for (PrefetchWorker w : workers) {
+                w.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        for (PrefetchWorker w : workers) {
+            if (w.workspace != null) {
+                log.debug("Manually destroying ADSI workspace");
+                w.workspace.destroyWorkspace(true);
+            }
+        }
+        workers = null;
+        synchronized (lock) {
+            ready.clear();
+        }
+    }
+
+    /**
+     * @return Number of worker threads
+     */
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    /**
+     * @return Time in milliseconds that the specified worker spent loading its most recent minibatch
+     */
+    public long getLastEtlTime(int worker) {
+        return lastEtlTime.get(worker) / 1000000L;
+    }
+
+    /**
+     * @return Total time in milliseconds that the specified worker has spent loading minibatches since the last reset
+     */
+    public long getTotalEtlTime(int worker) {
+        return totalEtlTime.get(worker) / 1000000L;
+    }
+
+    /**
+     * @return Number of minibatches that the specified worker has loaded since the last reset
+     */
+    public long getNumLoaded(int worker) {
+        synchronized (lock) {
+            return produced[worker];
+        }
+    }
+
+    /**
+     * @return Time in milliseconds that the last call to {@link #hasNext()} waited for the workers. This is the ETL
+     * time as measured by the network during fitting
+     */
+    public long getLastWaitTime() {
+        return lastWaitTime / 1000000L;
+    }
+
+    @Override
+    public void reset() {
+        stopWorkers();
+        if (splits != null) {
+            for (DataSetIterator iter : splits) {
+                iter.reset();
+            }
+        } else {
+            indexedIterator.reset();
+        }
+        startWorkers();
+    }
+
+    /**
+     * This method will terminate the background threads AND will destroy the attached workspaces (if any)
+     *
+     * PLEASE NOTE: After shutdown() call, this instance can't be used anymore
+     */
+    @Override
+    public void shutdown() {
+        stopWorkers();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (throwable != null)
+            throw throwable;
+
+        if (nextElement != null)
+            return true;
+        if (hasDepleted.get())
+            return false;
+
+        long start = System.nanoTime();
+        try {
+            synchronized (lock) {
+                while (true) {
+                    if (throwable != null)
+                        throw throwable;
+
+                    DataSet ds = poll();
+                    if (ds != null) {
+                        nextElement = ds;
+                        //Free space in the reorder buffer: wake up any waiting workers
+                        lock.notifyAll();
+                        return true;
+                    }
+                    if (allDone()) {
+                        hasDepleted.set(true);
+                        return false;
+                    }
+                    lock.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Premature end of loop!");
+            throw new RuntimeException(e);
+        } finally {
+            lastWaitTime = System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public DataSet next() {
+        if (nextElement == null && !hasNext())
+            return null;
+
+        DataSet temp = nextElement;
+        nextElement = null;
+        return temp;
+    }
+
+    /**
+     * Remove the next DataSet to return from the reorder buffer, if available. Must hold the lock
+     */
+    protected DataSet poll() {
+        if (!ordered) {
+            Map.Entry<Long, DataSet> e = ready.pollFirstEntry();
+            if (e == null)
+                return null;
+            pending--;
+            return e.getValue();
+        }
+
+        while (true) {
+            DataSet ds = ready.remove(nextSequence);
+            if (ds != null) {
+                nextSequence++;
+                return ds;
+            }
+            if (ready.isEmpty() && allDone())
+                return null;
+
+            //For splits: skip the sequence numbers of split iterators that are exhausted
+            if (splits == null)
+                return null;
+            int worker = (int) (nextSequence % numWorkers);
+            if (!workerDone[worker] || produced[worker] > nextSequence / numWorkers)
+                return null;
+            nextSequence++;
+        }
+    }
+
+    /**
+     * @return True if all workers have finished. Must hold the lock
+     */
+    protected boolean allDone() {
+        for (boolean b : workerDone) {
+            if (!b)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Wait until the DataSet with the specified sequence number can be loaded without exceeding the prefetch size.
+     * Must hold the lock
+     *
+     * @return False if the iterator is being shut down
+     */
+    protected boolean awaitCapacity(long sequence) throws InterruptedException {
+        while (shouldWork.get() && (ordered ? sequence >= nextSequence + prefetchSize : pending >= prefetchSize)) {
+            lock.wait();
+        }
+        if (shouldWork.get() && !ordered)
+            pending++;
+        return shouldWork.get();
+    }
+
+    @Override
+    public int totalExamples() {
+        if (splits == null)
+            return super.totalExamples();
+        int sum = 0;
+        for (DataSetIterator iter : splits) {
+            sum += iter.totalExamples();
+        }
+        return sum;
+    }
+
+    @Override
+    public int numExamples() {
+        if (splits == null)
+            return super.numExamples();
+        int sum = 0;
+        for (DataSetIterator iter : splits) {
+            sum += iter.numExamples();
+        }
+        return sum;
+    }
+
+    @Override
+    public int cursor() {
+        if (splits == null)
+            return super.cursor();
+        throw new UnsupportedOperationException("Cursor is not supported for split iterators");
+    }
+
+    @Override
+    public boolean resetSupported() {
+        if (splits == null)
+            return super.resetSupported();
+        for (DataSetIterator iter : splits) {
+            if (!iter.resetSupported())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        if (splits == null) {
+            super.setPreProcessor(preProcessor);
+        } else {
+            for (DataSetIterator iter : splits) {
+                iter.setPreProcessor(preProcessor);
+            }
+        }
+    }
+
+    protected class PrefetchWorker extends Thread {
+        private final int worker;
+        private final WorkspaceConfiguration configuration = WorkspaceConfiguration.builder()
+                        .minSize(10 * 1024L * 1024L).overallocationLimit(prefetchSize + 1)
+                        .policyReset(ResetPolicy.ENDOFBUFFER_REACHED).policyLearning(LearningPolicy.FIRST_LOOP)
+                        .policyAllocation(AllocationPolicy.OVERALLOCATE).policySpill(SpillPolicy.REALLOCATE).build();
+
+        private volatile MemoryWorkspace workspace;
+
+        protected PrefetchWorker(int worker) {
+            this.worker = worker;
+            this.setDaemon(true);
+            this.setName("ADSI parallel prefetch thread " + worker);
+        }
+
+        @Override
+        public void run() {
+            externalCall();
+            try {
+                if (useWorkspace)
+                    workspace = Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(configuration, workspaceId);
+
+                DataSetIterator split = splits == null ? null : splits.get(worker);
+                long count = 0;
+                while (shouldWork.get()) {
+                    long sequence;
+                    if (split == null) {
+                        sequence = nextBatch.getAndIncrement();
+                        if (sequence >= indexedIterator.numBatches())
+                            break;
+                    } else {
+                        if (!split.hasNext())
+                            break;
+                        sequence = count * numWorkers + worker;
+                    }
+
+                    synchronized (lock) {
+                        if (!awaitCapacity(sequence))
+                            break;
+                    }
+
+                    long start = System.nanoTime();
+                    DataSet ds;
+                    if (useWorkspace) {
+                        try (MemoryWorkspace ws = workspace.notifyScopeEntered()) {
+                            ds = load(split, sequence);
+                        }
+                    } else {
+                        ds = load(split, sequence);
+                    }
+
+                    // we want to ensure underlying iterator finished dataset creation
+                    Nd4j.getExecutioner().commit();
+                    long time = System.nanoTime() - start;
+                    lastEtlTime.set(worker, time);
+                    totalEtlTime.addAndGet(worker, time);
+
+                    synchronized (lock) {
+                        ready.put(sequence, ds);
+                        produced[worker]++;
+                        lock.notifyAll();
+                    }
+                    count++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // do nothing
+            } catch (Exception e) {
+                if (!shouldWork.get()) {
+                    //Shutting down or resetting: the consumer won't see this minibatch, so the failure doesn't matter
+                    log.debug("Ignoring exception in prefetch thread {} after shutdown", worker, e);
+                    return;
+                }
+                throwable = e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+                throw new RuntimeException(e);
+            } finally {
+                synchronized (lock) {
+                    workerDone[worker] = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        private DataSet load(DataSetIterator split, long sequence) {
+            DataSet ds = split == null ? indexedIterator.getBatch((int) sequence) : split.next();
+            if (callback != null)
+                callback.call(ds);
+            return ds;
+        }
+    }
+}
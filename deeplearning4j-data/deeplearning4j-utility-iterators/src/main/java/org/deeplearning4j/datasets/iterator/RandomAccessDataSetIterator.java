@@ -0,0 +1,28 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+/**
+ * A DataSetIterator whose minibatches can also be loaded by index, from any thread. This allows the minibatches of one
+ * epoch to be loaded by multiple threads concurrently - see {@link ParallelAsyncDataSetIterator}.<br>
+ * <br>
+ * Minibatch {@code i} of the current epoch is the DataSet that the i'th call to {@link #next()} after the last
+ * {@link #reset()} would return (including the preprocessor, if any). The minibatches returned by index may change
+ * only when the iterator is reset (for example, if the order of examples is randomized on each reset).
+ */
+public interface RandomAccessDataSetIterator extends DataSetIterator {
+
+    /**
+     * @return Number of minibatches in one epoch
+     */
+    int numBatches();
+
+    /**
+     * Load the specified minibatch of the current epoch. Must be thread safe, and must not change the position of
+     * this iterator (as used by {@link #next()})
+     *
+     * @param batch Index of the minibatch, in [0, {@link #numBatches()})
+     */
+    DataSet getBatch(int batch);
+}
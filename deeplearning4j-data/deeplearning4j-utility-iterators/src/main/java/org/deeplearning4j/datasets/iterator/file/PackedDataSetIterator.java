@@ -0,0 +1,315 @@
+package org.deeplearning4j.datasets.iterator.file;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import org.deeplearning4j.datasets.iterator.RandomAccessDataSetIterator;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.util.MathUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Iterate over DataSets stored in the packed shard format, as written by {@link PackedDataSetWriter}.<br>
+ * All shards are memory mapped, and each minibatch is assembled directly from the mapped shards by example index:
+ * the values of all examples in the minibatch are copied into one array per feature/label/mask array, without
+ * loading or merging any intermediate DataSet objects. Consequently (unlike {@link FileDataSetIterator}), the order of
+ * examples can be randomized globally - across all shards - and any minibatch size can be used regardless of how the
+ * data was written.<br>
+ * <br>
+ * If randomization is enabled, the order of the examples is shuffled on each reset. The examples within each minibatch
+ * are read in file order (and returned in that order), to improve locality.<br>
+ * <br>
+ * Minibatches can also be loaded by index from multiple threads (see {@link RandomAccessDataSetIterator}), for
+ * example via {@link org.deeplearning4j.datasets.iterator.ParallelAsyncDataSetIterator}.<br>
+ * <br>
+ * Call {@link #close()} when done, to close the shard files.
+ */
+public class PackedDataSetIterator implements RandomAccessDataSetIterator, Closeable {
+
+    private final PackedDataSetShard[] shards;
+    private final int[] shardStart;
+    private final int totalExamples;
+    private final int batchSize;
+    private final Random rng;
+    private final int[] order;
+    private int position;
+
+    @Getter
+    @Setter
+    private DataSetPreProcessor preProcessor;
+    @Getter
+    @Setter
+    private List<String> labels;
+
+    /**
+     * Create an iterator over all shards in the directory, with randomization (random seed)
+     *
+     * @param directory Directory containing the shards
+     * @param batchSize Minibatch size
+     */
+    public PackedDataSetIterator(File directory, int batchSize) throws IOException {
+        this(directory, batchSize, new Random());
+    }
+
+    /**
+     * Create an iterator over all shards in the directory
+     *
+     * @param directory Directory containing the shards
+     * @param batchSize Minibatch size
+     * @param rng       May be null. If non-null, use this to randomize the order of examples across all shards
+     */
+    public PackedDataSetIterator(@NonNull File directory, int batchSize, Random rng) throws IOException {
+        this(shardFiles(directory), batchSize, rng);
+    }
+
+    /**
+     * Create an iterator over the specified shard files, in order
+     *
+     * @param shardFiles Shard files
+     * @param batchSize  Minibatch size
+     * @param rng        May be null. If non-null, use this to randomize the order of examples across all shards
+     */
+    public PackedDataSetIterator(@NonNull List<File> shardFiles, int batchSize, Random rng) throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+        }
+        if (shardFiles.isEmpty()) {
+            throw new IllegalArgumentException("No shard files provided");
+        }
+        this.batchSize = batchSize;
+        this.rng = rng;
+
+        shards = new PackedDataSetShard[shardFiles.size()];
+        shardStart = new int[shards.length];
+        long count = 0;
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = PackedDataSetShard.open(shardFiles.get(i));
+                if (!shards[i].isCompatible(shards[0])) {
+                    throw new IllegalStateException("Shard " + shardFiles.get(i) + " has different array shapes to "
+                                    + "shard " + shardFiles.get(0));
+                }
+                shardStart[i] = (int) count;
+                count += shards[i].numExamples();
+            }
+            if (count > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many examples: " + count);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        totalExamples = (int) count;
+
+        order = new int[totalExamples];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        if (rng != null) {
+            MathUtils.shuffleArray(order, rng);
+        }
+    }
+
+    private static List<File> shardFiles(File directory) {
+        List<File> files = PackedDataSetWriter.listShards(directory);
+        if (files.isEmpty()) {
+            throw new IllegalStateException("No packed DataSet shards found in directory "
+                            + directory.getAbsolutePath());
+        }
+        return files;
+    }
+
+    /**
+     * Get the specified examples as a single DataSet
+     *
+     * @param examples Indices of the examples, in [0, {@link #totalExamples()})
+     */
+    public DataSet get(int... examples) {
+        int n = examples.length;
+        PackedDataSetShard first = shards[0];
+        INDArray[] arrays = new INDArray[PackedDataSetShard.NUM_ARRAYS];
+        float[][] values = new float[PackedDataSetShard.NUM_ARRAYS][];
+        for (int a = 0; a < PackedDataSetShard.NUM_ARRAYS; a++) {
+            if (first.getShape(a) != null) {
+                values[a] = new float[n * first.length(a)];
+            }
+        }
+
+        int shardIdx = 0;
+        for (int i = 0; i < n; i++) {
+            int ex = examples[i];
+            if (ex < 0 || ex >= totalExamples) {
+                throw new IndexOutOfBoundsException("Invalid example index " + ex + ": " + totalExamples
+                                + " examples");
+            }
+            //Examples are usually sorted: check the current shard before searching
+            if (ex < shardStart[shardIdx] || ex - shardStart[shardIdx] >= shards[shardIdx].numExamples()) {
+                shardIdx = shardFor(ex);
+            }
+            for (int a = 0; a < PackedDataSetShard.NUM_ARRAYS; a++) {
+                if (values[a] != null) {
+                    shards[shardIdx].get(ex - shardStart[shardIdx], a, values[a], i * first.length(a));
+                }
+            }
+        }
+
+        for (int a = 0; a < PackedDataSetShard.NUM_ARRAYS; a++) {
+            if (values[a] != null) {
+                int[] exampleShape = first.getShape(a);
+                int[] shape = new int[exampleShape.length + 1];
+                shape[0] = n;
+                System.arraycopy(exampleShape, 0, shape, 1, exampleShape.length);
+                arrays[a] = Nd4j.create(values[a], shape, 'c');
+            }
+        }
+        return new DataSet(arrays[PackedDataSetShard.FEATURES], arrays[PackedDataSetShard.LABELS],
+                        arrays[PackedDataSetShard.FEATURES_MASK], arrays[PackedDataSetShard.LABELS_MASK]);
+    }
+
+    private int shardFor(int example) {
+        int idx = Arrays.binarySearch(shardStart, example);
+        if (idx < 0) {
+            idx = -idx - 2;
+        }
+        //Skip over empty shards, which have the same start index as the next shard
+        while (idx < shards.length - 1 && example - shardStart[idx] >= shards[idx].numExamples()) {
+            idx++;
+        }
+        return idx;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < totalExamples;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(batchSize);
+    }
+
+    @Override
+    public DataSet next(int num) {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No next element");
+        }
+        int n = Math.min(num, totalExamples - position);
+        DataSet ds = load(position, n);
+        position += n;
+        return ds;
+    }
+
+    @Override
+    public int numBatches() {
+        return (totalExamples + batchSize - 1) / batchSize;
+    }
+
+    @Override
+    public DataSet getBatch(int batch) {
+        if (batch < 0 || batch >= numBatches()) {
+            throw new IndexOutOfBoundsException("Invalid minibatch index " + batch + ": " + numBatches()
+                            + " minibatches");
+        }
+        int from = batch * batchSize;
+        return load(from, Math.min(batchSize, totalExamples - from));
+    }
+
+    private DataSet load(int from, int n) {
+        int[] examples = Arrays.copyOfRange(order, from, from + n);
+        if (rng != null) {
+            Arrays.sort(examples);
+        }
+        DataSet ds = get(examples);
+        if (preProcessor != null) {
+            preProcessor.preProcess(ds);
+        }
+        return ds;
+    }
+
+    @Override
+    public void reset() {
+        position = 0;
+        if (rng != null) {
+            MathUtils.shuffleArray(order, rng);
+        }
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    @Override
+    public int totalExamples() {
+        return totalExamples;
+    }
+
+    @Override
+    public int inputColumns() {
+        return shards[0].getShape(PackedDataSetShard.FEATURES)[0];
+    }
+
+    @Override
+    public int totalOutcomes() {
+        int[] shape = shards[0].getShape(PackedDataSetShard.LABELS);
+        return shape == null ? 0 : shape[0];
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public int cursor() {
+        return position;
+    }
+
+    @Override
+    public int numExamples() {
+        return totalExamples;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    /**
+     * Close all shard files
+     */
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (PackedDataSetShard s : shards) {
+            if (s == null) {
+                continue;
+            }
+            try {
+                s.close();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.deeplearning4j.datasets.iterator.file;
+
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A single memory-mapped shard file in the packed DataSet format, as written by {@link PackedDataSetWriter}.
+ * Used by {@link PackedDataSetIterator}.<br>
+ * <br>
+ * File format (little endian):<br>
+ * - Header: magic number (int), format version (int), number of examples N (int), offset of the data section in
+ *   bytes (long); then, for each of the 4 arrays (features, labels, features mask, labels mask): the rank of a single
+ *   example's array (int, -1 if the array is absent) followed by its shape (rank ints)<br>
+ * - Index: for each example, the offset of the example's record relative to the start of the data section (N longs)
+ * <br>
+ * - Data: one record per example, each holding the example's features, labels, features mask and labels mask (if
+ *   present), in that order, as c order floats<br>
+ * <br>
+ * All examples in a shard have the same shape.
+ */
+public class PackedDataSetShard implements Closeable {
+
+    public static final int MAGIC = 0x444C3450;     //"DL4P"
+    public static final int VERSION = 1;
+
+    public static final int FEATURES = 0;
+    public static final int LABELS = 1;
+    public static final int FEATURES_MASK = 2;
+    public static final int LABELS_MASK = 3;
+    public static final int NUM_ARRAYS = 4;
+
+    private final File file;
+    private final int numExamples;
+    private final int[][] shapes;
+    private final int[] lengths;
+    private final int[] recordOffsets;
+    private final long[] exampleOffsets;
+    private RandomAccessFile raf;
+    private FloatBuffer data;
+
+    private PackedDataSetShard(File file, int numExamples, int[][] shapes, long[] exampleOffsets,
+                    RandomAccessFile raf, FloatBuffer data) {
+        this.file = file;
+        this.numExamples = numExamples;
+        this.shapes = shapes;
+        this.exampleOffsets = exampleOffsets;
+        this.raf = raf;
+        this.data = data;
+        this.lengths = new int[NUM_ARRAYS];
+        this.recordOffsets = new int[NUM_ARRAYS];
+        int offset = 0;
+        for (int i = 0; i < NUM_ARRAYS; i++) {
+            lengths[i] = length(shapes[i]);
+            recordOffsets[i] = offset;
+            offset += lengths[i];
+        }
+    }
+
+    /**
+     * Open and memory map the specified shard file
+     */
+    public static PackedDataSetShard open(@NonNull File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Packed DataSet shard is too large to map (" + size + " bytes): "
+                                + file.getAbsolutePath());
+            }
+            MappedByteBuffer bb = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            bb.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (size < 20 || bb.getInt() != MAGIC) {
+                throw new IOException("Not a packed DataSet shard file: " + file.getAbsolutePath());
+            }
+            int version = bb.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported packed DataSet shard version " + version + ": "
+                                + file.getAbsolutePath());
+            }
+            int numExamples = bb.getInt();
+            long dataOffset = bb.getLong();
+
+            int[][] shapes = new int[NUM_ARRAYS][];
+            for (int i = 0; i < NUM_ARRAYS; i++) {
+                int rank = bb.getInt();
+                if (rank >= 0) {
+                    shapes[i] = new int[rank];
+                    for (int j = 0; j < rank; j++) {
+                        shapes[i][j] = bb.getInt();
+                    }
+                }
+            }
+
+            long[] exampleOffsets = new long[numExamples];
+            bb.asLongBuffer().get(exampleOffsets);
+
+            int recordLength = 0;
+            for (int[] shape : shapes) {
+                recordLength += length(shape);
+            }
+            long expectedSize = dataOffset + (long) numExamples * recordLength * 4;
+            if (size < expectedSize) {
+                throw new IOException("Packed DataSet shard is truncated: expected " + expectedSize + " bytes, got "
+                                + size + " bytes: " + file.getAbsolutePath());
+            }
+
+            bb.position((int) dataOffset);
+            FloatBuffer data = bb.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            return new PackedDataSetShard(file, numExamples, shapes, exampleOffsets, raf, data);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int numExamples() {
+        return numExamples;
+    }
+
+    /**
+     * @param array One of {@link #FEATURES}, {@link #LABELS}, {@link #FEATURES_MASK}, {@link #LABELS_MASK}
+     * @return Shape of the array for a single example (i.e., excluding the minibatch dimension), or null if the array
+     * is not present
+     */
+    public int[] getShape(int array) {
+        return shapes[array] == null ? null : shapes[array].clone();
+    }
+
+    /**
+     * @return Number of values in the specified array for a single example; 0 if the array is not present
+     */
+    public int length(int array) {
+        return lengths[array];
+    }
+
+    /**
+     * Copy the values of one array for one example into the destination array
+     *
+     * @param example    Index of the example in this shard
+     * @param array      One of {@link #FEATURES}, {@link #LABELS}, {@link #FEATURES_MASK}, {@link #LABELS_MASK}
+     * @param dest       Destination array
+     * @param destOffset Position in the destination array for the first value
+     */
+    public void get(int example, int array, float[] dest, int destOffset) {
+        if (example < 0 || example >= numExamples) {
+            throw new IndexOutOfBoundsException("Invalid example index " + example + ": shard has " + numExamples
+                            + " examples");
+        }
+        //Duplicate: buffer position is not shared between threads
+        FloatBuffer fb = data.duplicate();
+        fb.position((int) (exampleOffsets[example] / 4) + recordOffsets[array]);
+        fb.get(dest, destOffset, lengths[array]);
+    }
+
+    /**
+     * @return True if the other shard has the same array shapes as this one
+     */
+    public boolean isCompatible(PackedDataSetShard other) {
+        for (int i = 0; i < NUM_ARRAYS; i++) {
+            if (!Arrays.equals(shapes[i], other.shapes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Close the underlying file. Note that the mapped memory is released only once the shard has been garbage
+     * collected
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        data = null;
+        if (raf != null) {
+            raf.close();
+            raf = null;
+        }
+    }
+
+    static int length(int[] shape) {
+        if (shape == null) {
+            return 0;
+        }
+        int length = 1;
+        for (int s : shape) {
+            length *= s;
+        }
+        return length;
+    }
+
+    static ByteBuffer header(int numExamples, long dataOffset, int[][] shapes, long[] exampleOffsets) {
+        ByteBuffer bb = ByteBuffer.allocate(headerLength(numExamples, shapes)).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(MAGIC).putInt(VERSION).putInt(numExamples).putLong(dataOffset);
+        for (int[] shape : shapes) {
+            if (shape == null) {
+                bb.putInt(-1);
+            } else {
+                bb.putInt(shape.length);
+                for (int s : shape) {
+                    bb.putInt(s);
+                }
+            }
+        }
+        for (int i = 0; i < numExamples; i++) {
+            bb.putLong(exampleOffsets[i]);
+        }
+        bb.flip();
+        return bb;
+    }
+
+    static int headerLength(int numExamples, int[][] shapes) {
+        int length = 4 + 4 + 4 + 8;
+        for (int[] shape : shapes) {
+            length += 4 + (shape == null ? 0 : 4 * shape.length);
+        }
+        return length + 8 * numExamples;
+    }
+}
@@ -0,0 +1,306 @@
+package org.deeplearning4j.datasets.iterator.file;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes DataSets to a directory in the packed shard format (see {@link PackedDataSetShard}), for use with
+ * {@link PackedDataSetIterator}. Instead of one file per (small) DataSet, as with {@link DataSet#save(File)} and
+ * {@link FileDataSetIterator}, examples are stored contiguously in a few large shard files - each up to the specified
+ * maximum size - that can be memory mapped, avoiding the per-file open and deserialization overhead.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * {@code
+ * try (PackedDataSetWriter writer = new PackedDataSetWriter(outputDir)) {
+ *     while (iter.hasNext()) {
+ *         writer.write(iter.next());
+ *     }
+ * }
+ * }
+ * </pre>
+ * Existing per-file exports (for example, from {@link DataSet#save(File)} or Spark's BatchAndExportDataSetsFunction)
+ * can be converted via {@link #convert(File, File)}.<br>
+ * <br>
+ * PLEASE NOTE: All examples must have the same shape (for example, time series must be the same length, or padded to
+ * the same length with masks). Values are stored as floats.
+ */
+@Slf4j
+public class PackedDataSetWriter implements Closeable {
+
+    public static final long DEFAULT_MAX_SHARD_BYTES = 1L << 30;
+    public static final String SHARD_PREFIX = "shard_";
+    public static final String SHARD_EXTENSION = "bin";
+
+    //Start of the data section is aligned to this many bytes
+    private static final int DATA_ALIGNMENT = 64;
+
+    private final File directory;
+    private final long maxShardBytes;
+    private final List<File> shardFiles = new ArrayList<>();
+
+    private int[][] shapes;
+    private int recordLength;
+    private int examplesPerShard;
+
+    private RandomAccessFile currentFile;
+    private FileChannel currentChannel;
+    private long currentDataOffset;
+    private int currentCount;
+    private ByteBuffer recordBuffer;
+    private boolean closed;
+
+    /**
+     * Create a writer with the default maximum shard size of 1GB
+     *
+     * @param directory Output directory. Created if it doesn't exist; must not already contain shard files
+     */
+    public PackedDataSetWriter(File directory) throws IOException {
+        this(directory, DEFAULT_MAX_SHARD_BYTES);
+    }
+
+    /**
+     * @param directory     Output directory. Created if it doesn't exist; must not already contain shard files
+     * @param maxShardBytes Maximum size of each shard file, in bytes. Must be less than 2GB, as shards are mapped
+     *                      into memory as a single buffer
+     */
+    public PackedDataSetWriter(@NonNull File directory, long maxShardBytes) throws IOException {
+        if (maxShardBytes <= 0 || maxShardBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maximum shard size must be between 1 and " + Integer.MAX_VALUE
+                            + " bytes, got " + maxShardBytes);
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory: " + directory.getAbsolutePath());
+        }
+        if (!listShards(directory).isEmpty()) {
+            throw new IllegalStateException("Directory already contains packed DataSet shards: "
+                            + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+        this.maxShardBytes = maxShardBytes;
+    }
+
+    /**
+     * Convert DataSets previously saved with {@link DataSet#save(File)} (one per file) to the packed format, with the
+     * default maximum shard size. The examples are written in the order returned by
+     * {@link FileDataSetIterator#FileDataSetIterator(File[], boolean, Random, int, String...)} without randomization.
+     *
+     * @param sourceDir Directory containing the saved DataSets (including subdirectories)
+     * @param outputDir Output directory for the shards
+     * @return Shard files written
+     */
+    public static List<File> convert(File sourceDir, File outputDir) throws IOException {
+        return convert(new File[] {sourceDir}, outputDir, DEFAULT_MAX_SHARD_BYTES, (String[]) null);
+    }
+
+    /**
+     * Convert DataSets previously saved with {@link DataSet#save(File)} (one per file) to the packed format
+     *
+     * @param sourceDirs      Directories containing the saved DataSets (including subdirectories)
+     * @param outputDir       Output directory for the shards
+     * @param maxShardBytes   Maximum size of each shard file, in bytes
+     * @param validExtensions May be null. If non-null, only files with one of the specified extensions will be used
+     * @return Shard files written
+     */
+    public static List<File> convert(File[] sourceDirs, File outputDir, long maxShardBytes, String... validExtensions)
+                    throws IOException {
+        return convert(new FileDataSetIterator(sourceDirs, true, null, -1, validExtensions), outputDir, maxShardBytes);
+    }
+
+    /**
+     * Write all DataSets from the iterator to the packed format
+     *
+     * @param iter          Iterator to write. Not reset before or after writing
+     * @param outputDir     Output directory for the shards
+     * @param maxShardBytes Maximum size of each shard file, in bytes
+     * @return Shard files written
+     */
+    public static List<File> convert(@NonNull DataSetIterator iter, File outputDir, long maxShardBytes)
+                    throws IOException {
+        PackedDataSetWriter writer = new PackedDataSetWriter(outputDir, maxShardBytes);
+        try {
+            while (iter.hasNext()) {
+                writer.write(iter.next());
+            }
+        } finally {
+            writer.close();
+        }
+        log.info("Wrote {} packed DataSet shards to {}", writer.getShardFiles().size(), outputDir.getAbsolutePath());
+        return writer.getShardFiles();
+    }
+
+    /**
+     * @return The shard files in the directory, in order
+     */
+    public static List<File> listShards(@NonNull File directory) {
+        File[] files = directory.listFiles();
+        List<File> shards = new ArrayList<>();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (f.isFile() && name.startsWith(SHARD_PREFIX) && name.endsWith("." + SHARD_EXTENSION)) {
+                    shards.add(f);
+                }
+            }
+        }
+        //Fixed width shard numbers: lexicographic order is shard order
+        Collections.sort(shards);
+        return shards;
+    }
+
+    /**
+     * Write all examples in the DataSet
+     */
+    public synchronized void write(@NonNull DataSet ds) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Writer has been closed");
+        }
+        INDArray[] arrays = {ds.getFeatures(), ds.getLabels(), ds.getFeaturesMaskArray(), ds.getLabelsMaskArray()};
+        if (arrays[0] == null) {
+            throw new IllegalArgumentException("Cannot write DataSet with null features array");
+        }
+        int n = arrays[0].size(0);
+
+        if (shapes == null) {
+            initialize(arrays);
+        }
+        float[][] values = new float[PackedDataSetShard.NUM_ARRAYS][];
+        for (int i = 0; i < PackedDataSetShard.NUM_ARRAYS; i++) {
+            INDArray arr = arrays[i];
+            if ((arr == null) != (shapes[i] == null) || (arr != null && (arr.size(0) != n
+                            || !Arrays.equals(shapes[i], Arrays.copyOfRange(arr.shape(), 1, arr.rank()))))) {
+                throw new IllegalStateException("Cannot write DataSet: all examples must have the same shapes "
+                                + "(and the same mask arrays). Expected per-example shape for "
+                                + name(i) + ": " + Arrays.toString(shapes[i]) + ", got array with shape "
+                                + (arr == null ? "null" : Arrays.toString(arr.shape())));
+            }
+            if (arr != null) {
+                values[i] = arr.dup('c').data().asFloat();
+            }
+        }
+
+        for (int ex = 0; ex < n; ex++) {
+            if (currentFile == null || currentCount == examplesPerShard) {
+                finishShard();
+                startShard();
+            }
+            recordBuffer.clear();
+            for (int i = 0; i < PackedDataSetShard.NUM_ARRAYS; i++) {
+                if (values[i] != null) {
+                    int length = PackedDataSetShard.length(shapes[i]);
+                    recordBuffer.asFloatBuffer().put(values[i], ex * length, length);
+                    recordBuffer.position(recordBuffer.position() + 4 * length);
+                }
+            }
+            recordBuffer.flip();
+            long pos = currentDataOffset + (long) currentCount * recordLength * 4;
+            while (recordBuffer.hasRemaining()) {
+                pos += currentChannel.write(recordBuffer, pos);
+            }
+            currentCount++;
+        }
+    }
+
+    /**
+     * @return The shard files written so far (including the current, unfinished, shard)
+     */
+    public List<File> getShardFiles() {
+        return new ArrayList<>(shardFiles);
+    }
+
+    /**
+     * Finish writing the last shard. Must be called for the output to be valid
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        finishShard();
+    }
+
+    private void initialize(INDArray[] arrays) {
+        shapes = new int[PackedDataSetShard.NUM_ARRAYS][];
+        recordLength = 0;
+        for (int i = 0; i < PackedDataSetShard.NUM_ARRAYS; i++) {
+            if (arrays[i] != null) {
+                shapes[i] = Arrays.copyOfRange(arrays[i].shape(), 1, arrays[i].rank());
+                recordLength += PackedDataSetShard.length(shapes[i]);
+            }
+        }
+
+        //Index: 8 bytes per example, in addition to the record
+        long bytesPerExample = 4L * recordLength + 8;
+        long available = maxShardBytes - PackedDataSetShard.headerLength(0, shapes) - DATA_ALIGNMENT;
+        examplesPerShard = (int) Math.min(Integer.MAX_VALUE, available / bytesPerExample);
+        if (examplesPerShard < 1) {
+            throw new IllegalStateException("Maximum shard size of " + maxShardBytes + " bytes is too small for a "
+                            + "single example of " + bytesPerExample + " bytes");
+        }
+        recordBuffer = ByteBuffer.allocate(4 * recordLength).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void startShard() throws IOException {
+        File f = new File(directory, String.format("%s%05d.%s", SHARD_PREFIX, shardFiles.size(), SHARD_EXTENSION));
+        currentFile = new RandomAccessFile(f, "rw");
+        currentFile.setLength(0);
+        currentChannel = currentFile.getChannel();
+        shardFiles.add(f);
+        currentCount = 0;
+        //Reserve space for the header and a full index; the actual number of examples is known once finished
+        int headerLength = PackedDataSetShard.headerLength(examplesPerShard, shapes);
+        currentDataOffset = (headerLength + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+    }
+
+    private void finishShard() throws IOException {
+        if (currentFile == null) {
+            return;
+        }
+        try {
+            long[] exampleOffsets = new long[currentCount];
+            for (int i = 0; i < currentCount; i++) {
+                exampleOffsets[i] = (long) i * recordLength * 4;
+            }
+            ByteBuffer header = PackedDataSetShard.header(currentCount, currentDataOffset, shapes, exampleOffsets);
+            long pos = 0;
+            while (header.hasRemaining()) {
+                pos += currentChannel.write(header, pos);
+            }
+            currentChannel.force(false);
+        } finally {
+            currentFile.close();
+            currentFile = null;
+            currentChannel = null;
+        }
+    }
+
+    private static String name(int array) {
+        switch (array) {
+            case PackedDataSetShard.FEATURES:
+                return "features";
+            case PackedDataSetShard.LABELS:
+                return "labels";
+            case PackedDataSetShard.FEATURES_MASK:
+                return "features mask";
+            default:
+                return "labels mask";
+        }
+    }
+}
@@ -0,0 +1,664 @@
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical Navigable Small World graph for approximate nearest neighbours search, using cosine distance.
+ *
+ * Vectors are normalized and stored as contiguous float array, links are kept as plain int arrays per node and layer.
+ * Index supports incremental inserts: searches can run concurrently, inserts are serialized.
+ *
+ * Recall/speed trade-off is controlled by 3 parameters:
+ * M - number of links per node (2*M on bottom layer), efConstruction - candidates list size during insertion,
+ * efSearch - candidates list size during search.
+ *
+ * Based on: Malkov & Yashunin, "Efficient and robust approximate nearest neighbor search using
+ * Hierarchical Navigable Small World graphs", https://arxiv.org/abs/1603.09320
+ */
+@Slf4j
+public class HnswIndex {
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    @Getter
+    private final int dimension;
+    @Getter
+    private final int m;
+    @Getter
+    private final int efConstruction;
+    @Getter
+    private volatile int efSearch;
+
+    private final int maxM0;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private float[] vectors;
+    private int[] levels;
+    // links[node][level] holds neighbour count at position 0, followed by neighbour ids
+    private int[][][] links;
+    private volatile int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<VisitedMarks> visited = new ThreadLocal<>();
+
+    public HnswIndex(int dimension) {
+        this(dimension, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH, 119);
+    }
+
+    /**
+     * @param dimension      vectors length
+     * @param m              number of links per node on upper layers, bottom layer uses 2 * m
+     * @param efConstruction size of dynamic candidates list used during insertion
+     * @param efSearch       size of dynamic candidates list used during search
+     * @param seed           seed used for level generation
+     */
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch, long seed) {
+        if (dimension < 1)
+            throw new ND4JIllegalStateException("Dimension should be positive value");
+
+        if (m < 2)
+            throw new ND4JIllegalStateException("M should be at least 2");
+
+        if (efConstruction < 1 || efSearch < 1)
+            throw new ND4JIllegalStateException("efConstruction and efSearch should be positive values");
+
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+
+        this.vectors = new float[16 * dimension];
+        this.levels = new int[16];
+        this.links = new int[16][][];
+    }
+
+    /**
+     * This method changes size of candidates list used during search. Higher values give better recall,
+     * at cost of search speed. Effective value is never lower than number of requested neighbours.
+     *
+     * @param efSearch
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch < 1)
+            throw new ND4JIllegalStateException("efSearch should be positive value");
+
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * @return number of vectors in this index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method adds all rows of given matrix to the index
+     *
+     * @param matrix [numVectors, dimension] matrix
+     * @return id of the first added vector, ids of the following vectors are sequential
+     */
+    public int addAll(@NonNull INDArray matrix) {
+        if (matrix.columns() != dimension)
+            throw new ND4JIllegalStateException("Matrix should have " + dimension + " columns, but has "
+                            + matrix.columns());
+
+        float[] data = matrix.isView() || matrix.ordering() != 'c' ? matrix.dup('c').data().asFloat()
+                        : matrix.data().asFloat();
+
+        int first = -1;
+        for (int i = 0; i < matrix.rows(); i++) {
+            int id = add(data, i * dimension);
+            if (first < 0)
+                first = id;
+        }
+
+        return first;
+    }
+
+    /**
+     * This method adds single vector to the index
+     *
+     * @param vector
+     * @return id of added vector
+     */
+    public int add(@NonNull INDArray vector) {
+        if (vector.length() != dimension)
+            throw new ND4JIllegalStateException("Vector should have length " + dimension + ", but has "
+                            + vector.length());
+
+        return add(vector.dup('c').data().asFloat(), 0);
+    }
+
+    /**
+     * This method adds single vector, stored in array at given offset
+     *
+     * @param data   source array
+     * @param offset offset of the first vector element
+     * @return id of added vector
+     */
+    public int add(@NonNull float[] data, int offset) {
+        lock.writeLock().lock();
+        try {
+            int id = size;
+            ensureCapacity(id + 1);
+
+            int base = id * dimension;
+            System.arraycopy(data, offset, vectors, base, dimension);
+            normalize(vectors, base, dimension);
+
+            int level = (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+            levels[id] = level;
+            links[id] = new int[level + 1][];
+            for (int l = 0; l <= level; l++)
+                links[id][l] = new int[maxLinks(l) + 1];
+
+            size = id + 1;
+
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return id;
+            }
+
+            int current = entryPoint;
+            float currentDistance = distance(vectors, base, current);
+            for (int l = maxLevel; l > level; l--) {
+                int[] result = greedyClosest(vectors, base, current, currentDistance, l);
+                current = result[0];
+                currentDistance = Float.intBitsToFloat(result[1]);
+            }
+
+            int[] entries = new int[] {current};
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                Heap found = searchLayer(vectors, base, entries, efConstruction, l);
+                int[] candidates = found.drainSorted();
+
+                int[] selected = selectNeighbours(base, candidates, m);
+                int[] own = links[id][l];
+                for (int s : selected) {
+                    own[++own[0]] = s;
+                    connect(s, id, l);
+                }
+
+                entries = candidates;
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = id;
+            }
+
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method returns ids of approximately nearest vectors, sorted by distance
+     *
+     * @param query query vector
+     * @param k     number of neighbours
+     * @return
+     */
+    public int[] search(@NonNull INDArray query, int k) {
+        if (query.length() != dimension)
+            throw new ND4JIllegalStateException("Query should have length " + dimension + ", but has "
+                            + query.length());
+
+        return search(query.dup('c').data().asFloat(), k);
+    }
+
+    /**
+     * This method returns ids of approximately nearest vectors, sorted by distance
+     *
+     * @param query query vector
+     * @param k     number of neighbours
+     * @return
+     */
+    public int[] search(@NonNull float[] query, int k) {
+        float[] q = Arrays.copyOf(query, dimension);
+        normalize(q, 0, dimension);
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k < 1)
+                return new int[0];
+
+            int current = entryPoint;
+            float currentDistance = distance(q, 0, current);
+            for (int l = maxLevel; l > 0; l--) {
+                int[] result = greedyClosest(q, 0, current, currentDistance, l);
+                current = result[0];
+                currentDistance = Float.intBitsToFloat(result[1]);
+            }
+
+            Heap found = searchLayer(q, 0, new int[] {current}, Math.max(efSearch, k), 0);
+            int[] sorted = found.drainSorted();
+            return sorted.length > k ? Arrays.copyOf(sorted, k) : sorted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method returns cosine similarity between given query and indexed vector
+     *
+     * @param query
+     * @param id
+     * @return
+     */
+    public float similarity(@NonNull float[] query, int id) {
+        float[] q = Arrays.copyOf(query, dimension);
+        normalize(q, 0, dimension);
+
+        lock.readLock().lock();
+        try {
+            return 1.0f - distance(q, 0, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    protected int maxLinks(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    /**
+     * Greedy search on single layer, returns {closest id, float bits of its distance}
+     */
+    protected int[] greedyClosest(float[] query, int offset, int current, float currentDistance, int level) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                float d = distance(query, offset, candidate);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = candidate;
+                    changed = true;
+                }
+            }
+        }
+
+        return new int[] {current, Float.floatToIntBits(currentDistance)};
+    }
+
+    /**
+     * Beam search on single layer, returns max-heap of up to ef nearest elements
+     */
+    protected Heap searchLayer(float[] query, int offset, int[] entries, int ef, int level) {
+        VisitedMarks marks = visited.get();
+        if (marks == null) {
+            marks = new VisitedMarks();
+            visited.set(marks);
+        }
+        int epoch = marks.next(size);
+
+        Heap candidates = new Heap(ef, false);
+        Heap results = new Heap(ef, true);
+
+        for (int e : entries) {
+            if (marks.marks[e] == epoch)
+                continue;
+
+            marks.marks[e] = epoch;
+            float d = distance(query, offset, e);
+            candidates.push(e, d);
+            results.push(e, d);
+            if (results.size() > ef)
+                results.pop();
+        }
+
+        while (candidates.size() > 0) {
+            float candidateDistance = candidates.peekDistance();
+            if (results.size() >= ef && candidateDistance > results.peekDistance())
+                break;
+
+            int candidate = candidates.pop();
+            if (levels[candidate] < level)
+                continue;
+
+            int[] neighbours = links[candidate][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int n = neighbours[i];
+                if (marks.marks[n] == epoch)
+                    continue;
+
+                marks.marks[n] = epoch;
+                float d = distance(query, offset, n);
+                if (results.size() < ef || d < results.peekDistance()) {
+                    candidates.push(n, d);
+                    results.push(n, d);
+                    if (results.size() > ef)
+                        results.pop();
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Neighbour selection heuristic: candidate is skipped if it's closer to already selected neighbour, than to
+     * the base element. Skipped candidates are used to fill remaining slots.
+     *
+     * @param base       offset of base element in vectors array
+     * @param candidates candidates, sorted by distance to base element
+     * @param limit      max number of neighbours
+     */
+    protected int[] selectNeighbours(int base, int[] candidates, int limit) {
+        if (candidates.length <= limit)
+            return candidates;
+
+        int[] selected = new int[limit];
+        int count = 0;
+        boolean[] skipped = new boolean[candidates.length];
+
+        for (int c = 0; c < candidates.length && count < limit; c++) {
+            int candidate = candidates[c];
+            float toBase = distance(vectors, base, candidate);
+
+            boolean good = true;
+            for (int s = 0; s < count; s++) {
+                if (distance(vectors, selected[s] * dimension, candidate) < toBase) {
+                    good = false;
+                    break;
+                }
+            }
+
+            if (good)
+                selected[count++] = candidate;
+            else
+                skipped[c] = true;
+        }
+
+        for (int c = 0; c < candidates.length && count < limit; c++) {
+            if (skipped[c])
+                selected[count++] = candidates[c];
+        }
+
+        return count == limit ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Adds link from node to newNode, shrinking node links if they exceed the limit
+     */
+    protected void connect(int node, int newNode, int level) {
+        int[] own = links[node][level];
+        int limit = maxLinks(level);
+
+        if (own[0] < limit) {
+            own[++own[0]] = newNode;
+            return;
+        }
+
+        // sort existing links + new one by distance to node, and reselect
+        int base = node * dimension;
+        Heap heap = new Heap(limit + 1, true);
+        for (int i = 1; i <= own[0]; i++)
+            heap.push(own[i], distance(vectors, base, own[i]));
+        heap.push(newNode, distance(vectors, base, newNode));
+
+        int[] selected = selectNeighbours(base, heap.drainSorted(), limit);
+        own[0] = selected.length;
+        System.arraycopy(selected, 0, own, 1, selected.length);
+    }
+
+    protected float distance(float[] query, int offset, int id) {
+        int base = id * dimension;
+        float dot = 0.0f;
+        for (int i = 0; i < dimension; i++)
+            dot += query[offset + i] * vectors[base + i];
+
+        return 1.0f - dot;
+    }
+
+    protected static void normalize(float[] data, int offset, int length) {
+        double norm = 0.0;
+        for (int i = 0; i < length; i++)
+            norm += data[offset + i] * data[offset + i];
+
+        if (norm == 0.0)
+            return;
+
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < length; i++)
+            data[offset + i] *= scale;
+    }
+
+    protected void ensureCapacity(int capacity) {
+        if (levels.length >= capacity)
+            return;
+
+        int newCapacity = Math.max(capacity, levels.length + (levels.length >> 1));
+        vectors = Arrays.copyOf(vectors, newCapacity * dimension);
+        levels = Arrays.copyOf(levels, newCapacity);
+        links = Arrays.copyOf(links, newCapacity);
+    }
+
+    /**
+     * This method writes index to the given stream
+     *
+     * @param stream
+     * @throws IOException
+     */
+    public void save(@NonNull OutputStream stream) throws IOException {
+        lock.readLock().lock();
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(stream));
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(dimension);
+            dos.writeInt(m);
+            dos.writeInt(efConstruction);
+            dos.writeInt(efSearch);
+            dos.writeInt(size);
+            dos.writeInt(entryPoint);
+            dos.writeInt(maxLevel);
+
+            for (int i = 0; i < size * dimension; i++)
+                dos.writeFloat(vectors[i]);
+
+            for (int i = 0; i < size; i++) {
+                dos.writeInt(levels[i]);
+                for (int l = 0; l <= levels[i]; l++) {
+                    int[] own = links[i][l];
+                    dos.writeInt(own[0]);
+                    for (int j = 1; j <= own[0]; j++)
+                        dos.writeInt(own[j]);
+                }
+            }
+
+            dos.flush();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method restores index previously written with {@link #save(OutputStream)}
+     *
+     * @param stream
+     * @return
+     * @throws IOException
+     */
+    public static HnswIndex load(@NonNull InputStream stream) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
+        if (dis.readInt() != MAGIC)
+            throw new ND4JIllegalStateException("Stream doesn't contain HNSW index");
+
+        int version = dis.readInt();
+        if (version != VERSION)
+            throw new ND4JIllegalStateException("Unsupported HNSW index version: " + version);
+
+        int dimension = dis.readInt();
+        int m = dis.readInt();
+        int efConstruction = dis.readInt();
+        int efSearch = dis.readInt();
+        int size = dis.readInt();
+
+        HnswIndex index = new HnswIndex(dimension, m, efConstruction, efSearch, 119);
+        index.ensureCapacity(Math.max(1, size));
+        index.entryPoint = dis.readInt();
+        index.maxLevel = dis.readInt();
+
+        for (int i = 0; i < size * dimension; i++)
+            index.vectors[i] = dis.readFloat();
+
+        for (int i = 0; i < size; i++) {
+            int level = dis.readInt();
+            index.levels[i] = level;
+            index.links[i] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                int[] own = new int[index.maxLinks(l) + 1];
+                own[0] = dis.readInt();
+                for (int j = 1; j <= own[0]; j++)
+                    own[j] = dis.readInt();
+                index.links[i][l] = own;
+            }
+        }
+
+        index.size = size;
+        return index;
+    }
+
+
+    /**
+     * Per-thread visited marks: array is reused between searches, with epoch counter instead of clearing
+     */
+    private static class VisitedMarks {
+        private int[] marks = new int[0];
+        private int epoch = 0;
+
+        private int next(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length + (marks.length >> 1))];
+                epoch = 0;
+            }
+
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+
+            return epoch;
+        }
+    }
+
+    /**
+     * Binary heap over primitive (id, distance) pairs, either min-heap or max-heap by distance
+     */
+    protected static class Heap {
+        private int[] ids;
+        private float[] distances;
+        private int size;
+        private final boolean max;
+
+        protected Heap(int capacity, boolean max) {
+            this.ids = new int[Math.max(capacity + 1, 2)];
+            this.distances = new float[ids.length];
+            this.max = max;
+        }
+
+        protected int size() {
+            return size;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+
+        protected void push(int id, float distance) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+
+            int pos = size++;
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (!before(distance, distances[parent]))
+                    break;
+
+                ids[pos] = ids[parent];
+                distances[pos] = distances[parent];
+                pos = parent;
+            }
+            ids[pos] = id;
+            distances[pos] = distance;
+        }
+
+        protected float peekDistance() {
+            return distances[0];
+        }
+
+        protected int pop() {
+            int result = ids[0];
+            size--;
+            if (size > 0) {
+                int id = ids[size];
+                float distance = distances[size];
+                int pos = 0;
+                while (true) {
+                    int child = 2 * pos + 1;
+                    if (child >= size)
+                        break;
+
+                    if (child + 1 < size && before(distances[child + 1], distances[child]))
+                        child++;
+
+                    if (!before(distances[child], distance))
+                        break;
+
+                    ids[pos] = ids[child];
+                    distances[pos] = distances[child];
+                    pos = child;
+                }
+                ids[pos] = id;
+                distances[pos] = distance;
+            }
+
+            return result;
+        }
+
+        /**
+         * Empties the heap, returning ids sorted by distance, nearest first
+         */
+        protected int[] drainSorted() {
+            int[] result = new int[size];
+            if (max) {
+                for (int i = size - 1; i >= 0; i--)
+                    result[i] = pop();
+            } else {
+                for (int i = 0; i < result.length; i++)
+                    result[i] = pop();
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class HnswIndexTest {
+    private static final int DIMENSION = 32;
+
+    private static float[][] randomVectors(int num, long seed) {
+        Random rng = new Random(seed);
+        float[][] result = new float[num][DIMENSION];
+        for (int i = 0; i < num; i++)
+            for (int j = 0; j < DIMENSION; j++)
+                result[i][j] = (float) rng.nextGaussian();
+
+        return result;
+    }
+
+    private static int[] bruteForce(float[][] data, float[] query, int k) {
+        final double[] sims = new double[data.length];
+        double qNorm = 0.0;
+        for (float v : query)
+            qNorm += v * v;
+
+        for (int i = 0; i < data.length; i++) {
+            double dot = 0.0, norm = 0.0;
+            for (int j = 0; j < DIMENSION; j++) {
+                dot += data[i][j] * query[j];
+                norm += data[i][j] * data[i][j];
+            }
+            sims[i] = dot / Math.sqrt(norm * qNorm);
+        }
+
+        Integer[] indices = new Integer[data.length];
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = i;
+
+        Arrays.sort(indices, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(sims[o2], sims[o1]);
+            }
+        });
+
+        int[] result = new int[k];
+        for (int i = 0; i < k; i++)
+            result[i] = indices[i];
+
+        return result;
+    }
+
+    private static double recall(HnswIndex index, float[][] data, float[][] queries, int k) {
+        int hits = 0;
+        for (float[] query : queries) {
+            Set<Integer> expected = new HashSet<>();
+            for (int i : bruteForce(data, query, k))
+                expected.add(i);
+
+            for (int i : index.search(query, k))
+                if (expected.contains(i))
+                    hits++;
+        }
+
+        return hits / (double) (queries.length * k);
+    }
+
+    @Test
+    public void testEmptyAndSingle() {
+        HnswIndex index = new HnswIndex(DIMENSION);
+        assertEquals(0, index.search(new float[DIMENSION], 5).length);
+
+        float[] vector = randomVectors(1, 119)[0];
+        assertEquals(0, index.add(vector, 0));
+        assertEquals(1, index.size());
+        assertArrayEquals(new int[] {0}, index.search(vector, 5));
+        assertEquals(1.0f, index.similarity(vector, 0), 1e-5f);
+    }
+
+    @Test
+    public void testExactMatch() {
+        float[][] data = randomVectors(2000, 119);
+        HnswIndex index = new HnswIndex(DIMENSION);
+        for (float[] v : data)
+            index.add(v, 0);
+
+        for (int i = 0; i < data.length; i += 97)
+            assertEquals(i, index.search(data[i], 1)[0]);
+    }
+
+    @Test
+    public void testRecall() {
+        float[][] data = randomVectors(5000, 119);
+        float[][] queries = randomVectors(100, 120);
+
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 200, 100, 119);
+        for (float[] v : data)
+            index.add(v, 0);
+
+        double recall = recall(index, data, queries, 10);
+        log.info("Recall@10: {}", recall);
+        assertTrue("Recall was " + recall, recall > 0.9);
+
+        // results are sorted by distance
+        int[] result = index.search(queries[0], 10);
+        for (int i = 1; i < result.length; i++)
+            assertTrue(index.similarity(queries[0], result[i - 1]) >= index.similarity(queries[0], result[i]));
+
+        // lower efSearch can't be better than higher one
+        index.setEfSearch(10);
+        double lowRecall = recall(index, data, queries, 10);
+        assertTrue(lowRecall <= recall);
+    }
+
+    @Test
+    public void testSaveLoad() throws Exception {
+        float[][] data = randomVectors(1000, 119);
+        float[][] queries = randomVectors(20, 120);
+
+        HnswIndex index = new HnswIndex(DIMENSION);
+        for (float[] v : data)
+            index.add(v, 0);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        index.save(bos);
+
+        HnswIndex restored = HnswIndex.load(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(index.size(), restored.size());
+        assertEquals(index.getM(), restored.getM());
+
+        for (float[] query : queries)
+            assertArrayEquals(index.search(query, 10), restored.search(query, 10));
+
+        // restored index still accepts inserts
+        assertEquals(data.length, restored.add(queries[0], 0));
+        assertEquals(data.length, restored.search(queries[0], 1)[0]);
+    }
+
+    @Test(expected = ND4JIllegalStateException.class)
+    public void testLoadGarbage() throws Exception {
+        HnswIndex.load(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+}
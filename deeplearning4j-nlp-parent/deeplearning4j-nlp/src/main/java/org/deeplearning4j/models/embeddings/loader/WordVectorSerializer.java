@@ -33,6 +33,8 @@ import org.deeplearning4j.exception.DL4JInvalidInputException;
 import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
 import org.deeplearning4j.models.embeddings.learning.impl.elements.SkipGram;
+import org.deeplearning4j.models.embeddings.loader.mapped.MappedLookupTable;
+import org.deeplearning4j.models.embeddings.loader.mapped.MappedVectorsWriter;
 import org.deeplearning4j.models.embeddings.reader.impl.BasicModelUtils;
 import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
 import org.deeplearning4j.models.embeddings.wordvectors.WordVectorsImpl;
@@ -68,6 +70,8 @@ import org.nd4j.storage.CompressedRamStorage;
 import org.nd4j.util.OneTimeLogger;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -445,6 +449,7 @@ public class WordVectorSerializer {
     /**
      * This method saves Word2Vec model into compressed zip file and sends it to output stream
      * PLEASE NOTE: This method saves FULL model, including syn0 AND syn1
+     * PLEASE NOTE: ModelUtils aren't saved, so HNSW index (if any) should be saved separately, see HnswModelUtils.saveIndex()
      *
      */
     public static void writeWord2VecModel(Word2Vec vectors, OutputStream stream) throws IOException {
@@ -2548,6 +2553,228 @@ public class WordVectorSerializer {
     }
 
 
+    /**
+     * This method writes word vectors in memory-mapped format, which can be opened with {@link #loadMappedModel(File)}
+     * without parsing and copying of weights.
+     *
+     * @param vectors WordVectors to be saved
+     * @param file destination file
+     * @throws IOException
+     */
+    public static void writeMappedModel(@NonNull WordVectors vectors, @NonNull File file) throws IOException {
+        writeMappedModel(vectors, file, false);
+    }
+
+    /**
+     * This method writes word vectors in memory-mapped format, optionally scaling each vector to unit length.
+     * Similarity queries on a normalized model use the mapped weights as is, instead of building a normalized copy of
+     * them, but {@link WordVectors#getWordVector(String)} returns the normalized vectors.
+     *
+     * @param vectors   WordVectors to be saved
+     * @param file      destination file
+     * @param normalize if true, vectors are scaled to unit length
+     * @throws IOException
+     */
+    public static void writeMappedModel(@NonNull WordVectors vectors, @NonNull File file, boolean normalize)
+                    throws IOException {
+        VocabCache vocab = vectors.vocab();
+        WeightLookupTable table = vectors.lookupTable();
+
+        try (MappedVectorsWriter writer = new MappedVectorsWriter(file, table.layerSize(), normalize)) {
+            for (int i = 0; i < vocab.numWords(); i++) {
+                String word = vocab.wordAtIndex(i);
+                INDArray vector = table.vector(word);
+                writer.add(word, vector.dup().data().asFloat());
+            }
+        }
+    }
+
+    /**
+     * This method converts model saved in Google binary format (compressed or not), or in text format, into
+     * memory-mapped format, which can be opened with {@link #loadMappedModel(File)}.
+     *
+     * PLEASE NOTE: Source model is streamed, so it's never loaded into memory as whole.
+     *
+     * @param source source model file
+     * @param target destination file
+     * @throws IOException
+     */
+    public static void convertToMappedModel(@NonNull File source, @NonNull File target) throws IOException {
+        convertToMappedModel(source, target, false);
+    }
+
+    /**
+     * This method converts model saved in Google binary format (compressed or not), or in text format, into
+     * memory-mapped format, optionally scaling each vector to unit length. See
+     * {@link #writeMappedModel(WordVectors, File, boolean)} for details.
+     *
+     * @param source    source model file
+     * @param target    destination file
+     * @param normalize if true, vectors are scaled to unit length
+     * @throws IOException
+     */
+    public static void convertToMappedModel(@NonNull File source, @NonNull File target, boolean normalize)
+                    throws IOException {
+        if (!source.exists() || source.isDirectory())
+            throw new FileNotFoundException("File [" + source.getAbsolutePath() + "] was not found");
+
+        boolean binary = isBinaryModel(source);
+        log.info("Converting {} model [{}] into mapped format...", binary ? "binary" : "text",
+                        source.getAbsolutePath());
+
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(
+                        GzipUtils.isCompressedFilename(source.getName())
+                                        ? new GZIPInputStream(new FileInputStream(source))
+                                        : new FileInputStream(source)))) {
+            if (binary)
+                convertBinaryModel(stream, target, normalize);
+            else
+                convertTextModel(stream, target, normalize);
+        }
+    }
+
+    /**
+     * This method opens model previously written in memory-mapped format. Weights aren't copied: lookup table uses
+     * mapped file as syn0 storage, so startup time doesn't depend on model size, and multiple processes share the same
+     * copy of the file in page cache.
+     *
+     * PLEASE NOTE: Returned model is read-only.
+     *
+     * @param file file in mapped format, see {@link #writeMappedModel(WordVectors, File)} and
+     *             {@link #convertToMappedModel(File, File)}
+     * @return
+     * @throws IOException
+     */
+    public static WordVectors loadMappedModel(@NonNull File file) throws IOException {
+        MappedLookupTable table = MappedLookupTable.open(file);
+        return fromTableAndVocab(table, table.getVocabCache());
+    }
+
+    /**
+     * Google binary model has "numWords vectorLength" header line, followed by words with raw float vectors.
+     * Text model has words with space-separated vectors on each line, header line is optional.
+     */
+    protected static boolean isBinaryModel(File file) throws IOException {
+        try (InputStream stream = new BufferedInputStream(GzipUtils.isCompressedFilename(file.getName())
+                        ? new GZIPInputStream(new FileInputStream(file)) : new FileInputStream(file))) {
+            String header = readLine(stream, 1024);
+            String[] split = header == null ? new String[0] : header.trim().split(" ");
+            if (split.length != 2)
+                return false;
+
+            int vectorLength;
+            try {
+                Integer.parseInt(split[0]);
+                vectorLength = Integer.parseInt(split[1]);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            // if the first record can be parsed as text - that's text model
+            String line = readLine(stream, 64 * vectorLength + 1024);
+            if (line == null)
+                return false;
+
+            split = line.trim().split(" ");
+            if (split.length != vectorLength + 1)
+                return true;
+
+            try {
+                for (int i = 1; i < split.length; i++)
+                    Float.parseFloat(split[i]);
+            } catch (NumberFormatException e) {
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * This method reads single line of UTF-8 text, or returns null if limit was reached before line break
+     */
+    private static String readLine(InputStream stream, int limit) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int b;
+        while ((b = stream.read()) != -1 && b != '\n') {
+            if (bytes.size() >= limit)
+                return null;
+
+            bytes.write(b);
+        }
+
+        if (b == -1 && bytes.size() == 0)
+            return null;
+
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void convertBinaryModel(DataInputStream stream, File target, boolean normalize)
+                    throws IOException {
+        int numWords = Integer.parseInt(readString(stream));
+        int vectorLength = Integer.parseInt(readString(stream));
+
+        byte[] row = new byte[vectorLength * 4];
+        float[] vector = new float[vectorLength];
+        ByteArrayOutputStream word = new ByteArrayOutputStream();
+
+        try (MappedVectorsWriter writer = new MappedVectorsWriter(target, vectorLength, normalize)) {
+            for (int i = 0; i < numWords; i++) {
+                // word is terminated by space, and might be preceded by line break left after previous vector
+                word.reset();
+                byte b = stream.readByte();
+                while (b == '\n' || b == '\r')
+                    b = stream.readByte();
+
+                while (b != ' ') {
+                    word.write(b);
+                    b = stream.readByte();
+                }
+
+                stream.readFully(row);
+                ByteBuffer.wrap(row).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+
+                writer.add(new String(word.toByteArray(), StandardCharsets.UTF_8), vector);
+            }
+        }
+    }
+
+    private static void convertTextModel(DataInputStream stream, File target, boolean normalize)
+                    throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (line == null)
+            throw new DL4JInvalidInputException("Model file is empty");
+
+        // optional header
+        String[] split = line.trim().split(" ");
+        if (split.length == 2 && split[0].matches("\\d+") && split[1].matches("\\d+")) {
+            line = reader.readLine();
+            if (line == null)
+                throw new DL4JInvalidInputException("Model file is empty");
+            split = line.trim().split(" ");
+        }
+
+        int vectorLength = split.length - 1;
+        float[] vector = new float[vectorLength];
+
+        try (MappedVectorsWriter writer = new MappedVectorsWriter(target, vectorLength, normalize)) {
+            while (line != null) {
+                split = line.trim().split(" ");
+                if (split.length != vectorLength + 1)
+                    throw new DL4JInvalidInputException("Line " + (writer.size() + 1) + " has " + (split.length - 1)
+                                    + " values, but " + vectorLength + " were expected");
+
+                for (int i = 1; i < split.length; i++)
+                    vector[i - 1] = Float.parseFloat(split[i]);
+
+                writer.add(decodeB64(split[0]), vector);
+                line = reader.readLine();
+            }
+        }
+    }
+
+
     protected interface Reader extends AutoCloseable {
         boolean hasNext();
 
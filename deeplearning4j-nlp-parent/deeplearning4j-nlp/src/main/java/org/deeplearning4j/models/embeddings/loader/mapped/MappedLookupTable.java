@@ -0,0 +1,201 @@
+package org.deeplearning4j.models.embeddings.loader.mapped;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-only lookup table, backed by memory-mapped {@link MappedVectorsFormat} file.
+ *
+ * When possible, syn0 uses mapped file directly as its buffer, without copying: load time doesn't depend on model size,
+ * and multiple JVMs using the same file share single copy of it in page cache.
+ * Otherwise (i.e. model is larger than 2GB, or data type isn't FLOAT) syn0 is filled with bulk copies from the mapped file.
+ *
+ * If the file has {@link MappedVectorsFormat#FLAG_NORMALIZED} set, all rows of syn0 have unit length, and
+ * {@link org.deeplearning4j.models.embeddings.reader.impl.BasicModelUtils} uses syn0 for similarity queries as is.
+ *
+ * PLEASE NOTE: file is mapped in private mode, so accidental in-place modifications of syn0 are never written back to the file.
+ */
+@Slf4j
+public class MappedLookupTable extends InMemoryLookupTable<VocabWord> {
+    // copies are done in chunks of this size
+    private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+    @Getter
+    private final File file;
+
+    // true if syn0 is backed by the mapped file itself
+    @Getter
+    private final boolean zeroCopy;
+
+    // true if all rows of syn0 have unit length
+    @Getter
+    private final boolean normalized;
+
+    // strong references to mapped buffers, they must stay alive as long as syn0 does
+    private final transient MappedByteBuffer vocabBuffer;
+    private final transient MappedByteBuffer matrixBuffer;
+
+    protected MappedLookupTable(File file, MappedVocabCache vocab, INDArray syn0, boolean normalized,
+                    MappedByteBuffer vocabBuffer, MappedByteBuffer matrixBuffer) {
+        super();
+        this.file = file;
+        this.vocab = vocab;
+        this.syn0 = syn0;
+        this.vectorLength = syn0.columns();
+        this.useAdaGrad = false;
+        this.useHS = false;
+        this.vocabBuffer = vocabBuffer;
+        this.matrixBuffer = matrixBuffer;
+        this.zeroCopy = matrixBuffer != null;
+        this.normalized = normalized;
+    }
+
+    /**
+     * This method maps given file, and builds lookup table and vocabulary on top of it
+     *
+     * @param file file in {@link MappedVectorsFormat}
+     * @return
+     * @throws IOException
+     */
+    public static MappedLookupTable open(@NonNull File file) throws IOException {
+        if (!file.exists() || file.isDirectory())
+            throw new ND4JIllegalStateException("File [" + file.getAbsolutePath() + "] doesn't exist");
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < MappedVectorsFormat.HEADER_SIZE)
+                throw new ND4JIllegalStateException("File [" + file.getAbsolutePath() + "] isn't mapped vectors file");
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, MappedVectorsFormat.HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MappedVectorsFormat.MAGIC)
+                throw new ND4JIllegalStateException("File [" + file.getAbsolutePath() + "] isn't mapped vectors file");
+
+            int version = header.getInt(4);
+            if (version != MappedVectorsFormat.VERSION)
+                throw new ND4JIllegalStateException("Unsupported mapped vectors version: " + version);
+
+            int numWords = header.getInt(8);
+            int vectorLength = header.getInt(12);
+            boolean normalized = (header.getInt(20) & MappedVectorsFormat.FLAG_NORMALIZED) != 0;
+            long matrixPosition = header.getLong(48);
+            long matrixBytes = (long) numWords * vectorLength * 4;
+
+            if (numWords < 1)
+                throw new ND4JIllegalStateException("File [" + file.getAbsolutePath() + "] contains no words");
+
+            if (channel.size() < matrixPosition + matrixBytes)
+                throw new ND4JIllegalStateException("File [" + file.getAbsolutePath() + "] is truncated");
+
+            MappedByteBuffer vocabBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, matrixPosition);
+            MappedVocabCache vocab = new MappedVocabCache(vocabBuffer);
+
+            INDArray syn0;
+            MappedByteBuffer matrixBuffer = null;
+            if (Nd4j.dataType() == DataBuffer.Type.FLOAT && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN
+                            && matrixBytes <= Integer.MAX_VALUE) {
+                // mapping stays valid after channel is closed
+                matrixBuffer = channel.map(FileChannel.MapMode.PRIVATE, matrixPosition, matrixBytes);
+                matrixBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                DataBuffer buffer = Nd4j.createBuffer(matrixBuffer, DataBuffer.Type.FLOAT, numWords * vectorLength);
+                syn0 = Nd4j.create(buffer, new int[] {numWords, vectorLength});
+            } else {
+                syn0 = copyMatrix(channel, matrixPosition, numWords, vectorLength);
+            }
+
+            log.info("Mapped vectors file opened: {} words, vector length {}, zero-copy: {}, normalized: {}",
+                            numWords, vectorLength, matrixBuffer != null, normalized);
+
+            return new MappedLookupTable(file, vocab, syn0, normalized, vocabBuffer, matrixBuffer);
+        }
+    }
+
+    /**
+     * This method copies matrix from file into newly allocated syn0, chunk by chunk
+     */
+    protected static INDArray copyMatrix(FileChannel channel, long position, int numWords, int vectorLength)
+                    throws IOException {
+        INDArray syn0 = Nd4j.create(numWords, vectorLength);
+
+        int rowsPerChunk = Math.max(1, CHUNK_SIZE / (vectorLength * 4));
+        float[] chunk = null;
+        for (int row = 0; row < numWords; row += rowsPerChunk) {
+            int rows = Math.min(rowsPerChunk, numWords - row);
+            int length = rows * vectorLength;
+            if (chunk == null || chunk.length != length)
+                chunk = new float[length];
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position + row * (long) vectorLength * 4,
+                            length * 4L);
+            FloatBuffer floats = mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            floats.get(chunk);
+
+            syn0.get(NDArrayIndex.interval(row, row + rows), NDArrayIndex.all())
+                            .assign(Nd4j.create(chunk, new int[] {rows, vectorLength}));
+        }
+
+        return syn0;
+    }
+
+    protected UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("MappedLookupTable is read-only");
+    }
+
+    @Override
+    public MappedVocabCache getVocabCache() {
+        return (MappedVocabCache) vocab;
+    }
+
+    @Override
+    public void resetWeights(boolean reset) {
+        throw readOnly();
+    }
+
+    @Override
+    public void resetWeights() {
+        throw readOnly();
+    }
+
+    @Override
+    public void iterateSample(VocabWord w1, VocabWord w2, AtomicLong nextRandom, double alpha) {
+        throw readOnly();
+    }
+
+    @Override
+    public void iterate(VocabWord w1, VocabWord w2) {
+        throw readOnly();
+    }
+
+    @Override
+    public void putVector(String word, INDArray vector) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setSyn0(INDArray syn0) {
+        throw readOnly();
+    }
+
+    @Override
+    public void consume(InMemoryLookupTable<VocabWord> srcTable) {
+        throw readOnly();
+    }
+}
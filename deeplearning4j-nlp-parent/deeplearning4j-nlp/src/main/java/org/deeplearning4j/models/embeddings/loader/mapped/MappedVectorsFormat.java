@@ -0,0 +1,61 @@
+package org.deeplearning4j.models.embeddings.loader.mapped;
+
+/**
+ * Binary layout of memory-mapped word vectors file. All values are little-endian.
+ *
+ * <pre>
+ * header:   int magic, int version, int numWords, int vectorLength, int hashSize, int flags,
+ *           long offsetsPosition, long hashPosition, long stringsPosition, long matrixPosition
+ * offsets:  int[numWords + 1], offsets of words within strings section
+ * hash:     int[hashSize], open addressing table with linear probing, values are word index + 1, 0 marks empty slot
+ * strings:  UTF-8 bytes of all words, concatenated
+ * matrix:   float[numWords * vectorLength], row-major, aligned to 64 bytes
+ * </pre>
+ *
+ * Everything before matrix is considered vocabulary part, and is mapped separately from the matrix.
+ *
+ * Flags: {@link #FLAG_NORMALIZED} is set if all rows of matrix have unit length, so similarity queries can use the
+ * matrix as is. Files written before flags were introduced have 0 there.
+ */
+public final class MappedVectorsFormat {
+    public static final int MAGIC = 0x444C3456;
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 64;
+    public static final int ALIGNMENT = 64;
+
+    public static final int FLAG_NORMALIZED = 1;
+
+    // maximal deviation of row L2 norm from 1.0 for the row to be considered normalized
+    public static final double NORM_TOLERANCE = 1e-4;
+
+    private MappedVectorsFormat() {}
+
+    /**
+     * FNV-1a hash of the given bytes
+     */
+    public static int hash(byte[] bytes) {
+        int h = 0x811C9DC5;
+        for (byte b : bytes) {
+            h ^= (b & 0xff);
+            h *= 0x01000193;
+        }
+
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Hash table size for given number of words: power of 2, with load factor <= 0.5
+     */
+    public static int hashSize(int numWords) {
+        int size = 16;
+        while (size < numWords * 2L)
+            size <<= 1;
+
+        return size;
+    }
+
+    public static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
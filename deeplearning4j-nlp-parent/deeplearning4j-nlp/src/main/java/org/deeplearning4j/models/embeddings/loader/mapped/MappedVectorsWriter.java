@@ -0,0 +1,213 @@
+package org.deeplearning4j.models.embeddings.loader.mapped;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class writes word vectors in {@link MappedVectorsFormat}.
+ * Vectors are streamed into temporary file as they come, so only vocabulary is kept in memory.
+ * Resulting file is assembled on close() call.
+ *
+ * If all vectors have unit length (or the writer normalizes them), this is recorded in the file header, so similarity
+ * queries on the loaded model don't need a normalized copy of the whole matrix.
+ *
+ * PLEASE NOTE: Word index is defined by the order of add() calls.
+ * PLEASE NOTE: If writing a vector fails, the writer can't be used anymore, and no file is written on close().
+ */
+@Slf4j
+public class MappedVectorsWriter implements AutoCloseable {
+    private final File target;
+    @Getter
+    private final int vectorLength;
+    @Getter
+    private final boolean normalize;
+
+    private final File tmpMatrix;
+    private final FileOutputStream matrixStream;
+    private final FileChannel matrixChannel;
+    private final ByteBuffer rowBuffer;
+
+    private final List<byte[]> words = new ArrayList<>();
+    private long stringsLength = 0;
+    private boolean allNormalized = true;
+    private boolean closed = false;
+    private boolean failed = false;
+
+    public MappedVectorsWriter(@NonNull File target, int vectorLength) throws IOException {
+        this(target, vectorLength, false);
+    }
+
+    /**
+     * @param target       destination file
+     * @param vectorLength length of each vector
+     * @param normalize    if true, vectors are scaled to unit length before writing
+     */
+    public MappedVectorsWriter(@NonNull File target, int vectorLength, boolean normalize) throws IOException {
+        if (vectorLength < 1)
+            throw new ND4JIllegalStateException("Vector length should be positive value");
+
+        this.target = target;
+        this.vectorLength = vectorLength;
+        this.normalize = normalize;
+
+        this.tmpMatrix = File.createTempFile("mapped", "matrix");
+        this.tmpMatrix.deleteOnExit();
+        this.matrixStream = new FileOutputStream(tmpMatrix);
+        this.matrixChannel = matrixStream.getChannel();
+        this.rowBuffer = ByteBuffer.allocate(vectorLength * 4).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * This method appends word and its vector
+     *
+     * @param word
+     * @param vector
+     * @return index of the word
+     */
+    public int add(@NonNull String word, @NonNull float[] vector) throws IOException {
+        if (closed)
+            throw new ND4JIllegalStateException("Writer was closed already");
+
+        if (failed)
+            throw new ND4JIllegalStateException("Writer can't be used after previous failure");
+
+        if (vector.length != vectorLength)
+            throw new ND4JIllegalStateException("Vector for word [" + word + "] has length " + vector.length
+                            + ", but " + vectorLength + " was expected");
+
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        if (stringsLength + bytes.length > Integer.MAX_VALUE)
+            throw new ND4JIllegalStateException("Vocabulary is too large");
+
+        double norm = 0.0;
+        for (float v : vector)
+            norm += (double) v * v;
+        norm = Math.sqrt(norm);
+
+        rowBuffer.clear();
+        if (normalize && norm > 0.0) {
+            for (int i = 0; i < vectorLength; i++)
+                rowBuffer.putFloat(i * 4, (float) (vector[i] / norm));
+        } else {
+            rowBuffer.asFloatBuffer().put(vector);
+        }
+        try {
+            while (rowBuffer.hasRemaining())
+                matrixChannel.write(rowBuffer);
+        } catch (IOException | RuntimeException e) {
+            // partially written row: matrix doesn't match vocabulary anymore
+            failed = true;
+            throw e;
+        }
+
+        words.add(bytes);
+        stringsLength += bytes.length;
+        allNormalized &= normalize ? norm > 0.0 : Math.abs(norm - 1.0) <= MappedVectorsFormat.NORM_TOLERANCE;
+
+        return words.size() - 1;
+    }
+
+    /**
+     * @return number of words added so far
+     */
+    public int size() {
+        return words.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        matrixStream.close();
+
+        if (failed) {
+            log.warn("Mapped vectors file [{}] wasn't written due to previous failure", target.getAbsolutePath());
+            if (!tmpMatrix.delete())
+                log.warn("Unable to delete temporary file [{}]", tmpMatrix.getAbsolutePath());
+            return;
+        }
+
+        boolean started = false;
+        boolean written = false;
+        try {
+            int numWords = words.size();
+            int hashSize = MappedVectorsFormat.hashSize(numWords);
+
+            long offsetsPosition = MappedVectorsFormat.HEADER_SIZE;
+            long hashPosition = offsetsPosition + (numWords + 1L) * 4;
+            long stringsPosition = hashPosition + hashSize * 4L;
+            long matrixPosition = MappedVectorsFormat.align(stringsPosition + stringsLength);
+
+            if (matrixPosition > Integer.MAX_VALUE)
+                throw new ND4JIllegalStateException("Vocabulary is too large");
+
+            // header, offsets, hash table and strings are assembled in memory
+            ByteBuffer vocab = ByteBuffer.allocate((int) matrixPosition).order(ByteOrder.LITTLE_ENDIAN);
+            vocab.putInt(MappedVectorsFormat.MAGIC);
+            vocab.putInt(MappedVectorsFormat.VERSION);
+            vocab.putInt(numWords);
+            vocab.putInt(vectorLength);
+            vocab.putInt(hashSize);
+            vocab.putInt(allNormalized ? MappedVectorsFormat.FLAG_NORMALIZED : 0);
+            vocab.putLong(offsetsPosition);
+            vocab.putLong(hashPosition);
+            vocab.putLong(stringsPosition);
+            vocab.putLong(matrixPosition);
+
+            int offset = 0;
+            int mask = hashSize - 1;
+            for (int i = 0; i < numWords; i++) {
+                byte[] bytes = words.get(i);
+                vocab.putInt((int) (offsetsPosition + i * 4L), offset);
+                vocab.position((int) (stringsPosition + offset));
+                vocab.put(bytes);
+                offset += bytes.length;
+
+                int slot = MappedVectorsFormat.hash(bytes) & mask;
+                while (vocab.getInt((int) (hashPosition + slot * 4L)) != 0)
+                    slot = (slot + 1) & mask;
+
+                vocab.putInt((int) (hashPosition + slot * 4L), i + 1);
+            }
+            vocab.putInt((int) (offsetsPosition + numWords * 4L), offset);
+            vocab.clear();
+
+            try (FileOutputStream fos = new FileOutputStream(target);
+                            FileInputStream fis = new FileInputStream(tmpMatrix)) {
+                started = true;
+                FileChannel out = fos.getChannel();
+                while (vocab.hasRemaining())
+                    out.write(vocab);
+
+                FileChannel in = fis.getChannel();
+                long size = in.size();
+                long transferred = 0;
+                while (transferred < size)
+                    transferred += in.transferTo(transferred, size - transferred, out);
+            }
+
+            written = true;
+            log.info("Mapped vectors file was written: {} words, vector length {}, normalized: {}", numWords,
+                            vectorLength, allNormalized);
+        } finally {
+            // don't leave incomplete file behind
+            if (started && !written && !target.delete())
+                log.warn("Unable to delete incomplete file [{}]", target.getAbsolutePath());
+
+            if (!tmpMatrix.delete())
+                log.warn("Unable to delete temporary file [{}]", tmpMatrix.getAbsolutePath());
+        }
+    }
+}
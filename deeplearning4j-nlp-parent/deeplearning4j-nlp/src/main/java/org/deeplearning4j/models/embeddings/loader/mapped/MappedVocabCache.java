@@ -0,0 +1,284 @@
+package org.deeplearning4j.models.embeddings.loader.mapped;
+
+import lombok.NonNull;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Collection;
+
+/**
+ * Read-only VocabCache implementation, backed by vocabulary part of memory-mapped {@link MappedVectorsFormat} file.
+ * No per-word objects are created on load: words are decoded from string table on demand,
+ * and word -> index lookups go through hash table stored in the file.
+ *
+ * PLEASE NOTE: Elements returned by this cache are created on each call, and have frequency 1.0
+ * PLEASE NOTE: This cache isn't serializable.
+ */
+public class MappedVocabCache implements VocabCache<VocabWord> {
+    private final transient ByteBuffer buffer;
+    private final int numWords;
+    private final int hashSize;
+    private final int offsetsPosition;
+    private final int hashPosition;
+    private final int stringsPosition;
+
+    /**
+     * @param buffer vocabulary part of mapped file, starting with header
+     */
+    public MappedVocabCache(@NonNull ByteBuffer buffer) {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.numWords = this.buffer.getInt(8);
+        this.hashSize = this.buffer.getInt(16);
+        this.offsetsPosition = (int) this.buffer.getLong(24);
+        this.hashPosition = (int) this.buffer.getLong(32);
+        this.stringsPosition = (int) this.buffer.getLong(40);
+    }
+
+    protected UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("MappedVocabCache is read-only");
+    }
+
+    private int wordStart(int index) {
+        return buffer.getInt(offsetsPosition + index * 4);
+    }
+
+    @Override
+    public void loadVocab() {
+        // no-op
+    }
+
+    @Override
+    public boolean vocabExists() {
+        return numWords > 0;
+    }
+
+    @Override
+    public void saveVocab() {
+        // no-op
+    }
+
+    @Override
+    public Collection<String> words() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return wordAtIndex(index);
+            }
+
+            @Override
+            public int size() {
+                return numWords;
+            }
+        };
+    }
+
+    @Override
+    public void incrementWordCount(String word) {
+        throw readOnly();
+    }
+
+    @Override
+    public void incrementWordCount(String word, int increment) {
+        throw readOnly();
+    }
+
+    @Override
+    public int wordFrequency(String word) {
+        return containsWord(word) ? 1 : 0;
+    }
+
+    @Override
+    public boolean containsWord(String word) {
+        return indexOf(word) >= 0;
+    }
+
+    @Override
+    public String wordAtIndex(int index) {
+        if (index < 0 || index >= numWords)
+            return null;
+
+        int start = wordStart(index);
+        byte[] bytes = new byte[wordStart(index + 1) - start];
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(stringsPosition + start);
+        view.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public VocabWord elementAtIndex(int index) {
+        String word = wordAtIndex(index);
+        if (word == null)
+            return null;
+
+        VocabWord element = new VocabWord(1.0, word);
+        element.setIndex(index);
+        return element;
+    }
+
+    @Override
+    public int indexOf(String word) {
+        if (word == null)
+            return -1;
+
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int mask = hashSize - 1;
+        int slot = MappedVectorsFormat.hash(bytes) & mask;
+
+        while (true) {
+            int value = buffer.getInt(hashPosition + slot * 4);
+            if (value == 0)
+                return -1;
+
+            int index = value - 1;
+            if (matches(index, bytes))
+                return index;
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean matches(int index, byte[] bytes) {
+        int start = wordStart(index);
+        if (wordStart(index + 1) - start != bytes.length)
+            return false;
+
+        int position = stringsPosition + start;
+        for (int i = 0; i < bytes.length; i++)
+            if (buffer.get(position + i) != bytes[i])
+                return false;
+
+        return true;
+    }
+
+    @Override
+    public Collection<VocabWord> vocabWords() {
+        return new AbstractList<VocabWord>() {
+            @Override
+            public VocabWord get(int index) {
+                return elementAtIndex(index);
+            }
+
+            @Override
+            public int size() {
+                return numWords;
+            }
+        };
+    }
+
+    @Override
+    public long totalWordOccurrences() {
+        return numWords;
+    }
+
+    @Override
+    public VocabWord wordFor(String word) {
+        return elementAtIndex(indexOf(word));
+    }
+
+    @Override
+    public VocabWord wordFor(long id) {
+        throw new UnsupportedOperationException("MappedVocabCache doesn't support lookups by storage id");
+    }
+
+    @Override
+    public void addWordToIndex(int index, String word) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addWordToIndex(int index, long elementId) {
+        throw readOnly();
+    }
+
+    @Override
+    public void putVocabWord(String word) {
+        throw readOnly();
+    }
+
+    @Override
+    public int numWords() {
+        return numWords;
+    }
+
+    @Override
+    public int docAppearedIn(String word) {
+        return 0;
+    }
+
+    @Override
+    public void incrementDocCount(String word, long howMuch) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setCountForDoc(String word, long count) {
+        throw readOnly();
+    }
+
+    @Override
+    public long totalNumberOfDocs() {
+        return 0;
+    }
+
+    @Override
+    public void incrementTotalDocCount() {
+        throw readOnly();
+    }
+
+    @Override
+    public void incrementTotalDocCount(long by) {
+        throw readOnly();
+    }
+
+    @Override
+    public Collection<VocabWord> tokens() {
+        return vocabWords();
+    }
+
+    @Override
+    public void addToken(VocabWord element) {
+        throw readOnly();
+    }
+
+    @Override
+    public VocabWord tokenFor(String word) {
+        return wordFor(word);
+    }
+
+    @Override
+    public VocabWord tokenFor(long id) {
+        return wordFor(id);
+    }
+
+    @Override
+    public boolean hasToken(String token) {
+        return containsWord(token);
+    }
+
+    @Override
+    public void importVocabulary(VocabCache<VocabWord> vocabCache) {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateWordsOccurencies() {
+        // no-op
+    }
+
+    @Override
+    public void removeElement(String label) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeElement(VocabWord element) {
+        throw readOnly();
+    }
+}
@@ -1,28 +1,31 @@
 package org.deeplearning4j.models.embeddings.reader.impl;
 
-import com.google.common.collect.Lists;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.loader.mapped.MappedLookupTable;
 import org.deeplearning4j.models.embeddings.reader.ModelUtils;
 import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.nd4j.linalg.util.MathUtils;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.ops.transforms.Transforms;
 import org.nd4j.linalg.primitives.Counter;
 import org.nd4j.util.SetUtils;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Basic implementation for ModelUtils interface, suited for standalone use.
  *
- * PLEASE NOTE: This reader applies normalization to underlying lookup table.
+ * PLEASE NOTE: This reader keeps normalized copy of underlying lookup table for similarity queries,
+ * lookup table itself is never modified.
  *
  * @author Adam Gibson
  */
@@ -36,6 +39,15 @@ public class BasicModelUtils<T extends SequenceElement> implements ModelUtils<T>
 
     protected volatile boolean normalized = false;
 
+    // normalized copy of syn0, and syn0 instance it was built from
+    protected volatile INDArray normalizedSyn0;
+    protected volatile INDArray normalizedSource;
+
+    // queries are processed in chunks, to keep similarity matrix below this number of elements
+    protected static final int MAX_SIMILARITY_ELEMENTS = 1 << 24;
+
+    private static volatile ExecutorService selectionPool;
+
 
     public BasicModelUtils() {
 
@@ -48,6 +60,33 @@ public class BasicModelUtils<T extends SequenceElement> implements ModelUtils<T>
 
         // reset normalization trigger on init call
         this.normalized = false;
+        this.normalizedSyn0 = null;
+        this.normalizedSource = null;
+    }
+
+    /**
+     * This method returns normalized copy of syn0, building it on first call, or if syn0 was replaced since then.
+     * Mapped tables with unit length rows are returned as is, without copying.
+     *
+     * @param table
+     * @return
+     */
+    protected INDArray getNormalizedSyn0(@NonNull InMemoryLookupTable table) {
+        INDArray syn0 = table.getSyn0();
+        if (!normalized || normalizedSource != syn0) {
+            synchronized (this) {
+                if (!normalized || normalizedSource != syn0) {
+                    if (table instanceof MappedLookupTable && ((MappedLookupTable) table).isNormalized())
+                        normalizedSyn0 = syn0;
+                    else
+                        normalizedSyn0 = syn0.dup().diviColumnVector(syn0.norm2(1));
+                    normalizedSource = syn0;
+                    normalized = true;
+                }
+            }
+        }
+
+        return normalizedSyn0;
     }
 
     /**
@@ -184,11 +223,11 @@ public class BasicModelUtils<T extends SequenceElement> implements ModelUtils<T>
         int row = 0;
         //Set<String> union = SetUtils.union(new HashSet<>(positive), new HashSet<>(negative));
         for (String s : positive) {
-            words.putRow(row++, lookupTable.vector(s));
+            words.putRow(row++, normalizedVector(s));
         }
 
         for (String s : negative) {
-            words.putRow(row++, lookupTable.vector(s).mul(-1));
+            words.putRow(row++, normalizedVector(s).mul(-1));
         }
 
         INDArray mean = words.isMatrix() ? words.mean(0) : words;
@@ -204,6 +243,20 @@ public class BasicModelUtils<T extends SequenceElement> implements ModelUtils<T>
         return realResults;
     }
 
+    /**
+     * This method returns unit length vector for the given word: row of normalized syn0 if it's available, so
+     * analogy queries are built from the same vectors other queries are compared against
+     *
+     * @param word
+     * @return
+     */
+    protected INDArray normalizedVector(String word) {
+        if (lookupTable instanceof InMemoryLookupTable)
+            return getNormalizedSyn0((InMemoryLookupTable) lookupTable).getRow(vocabCache.indexOf(word));
+
+        return Transforms.unitVec(lookupTable.vector(word));
+    }
+
     /**
      * Get the top n words most similar to the given word
      * @param word the word to compare
@@ -225,38 +278,13 @@ public class BasicModelUtils<T extends SequenceElement> implements ModelUtils<T>
     @Override
     public Collection<String> wordsNearest(INDArray words, int top) {
         if (lookupTable instanceof InMemoryLookupTable) {
-            InMemoryLookupTable l = (InMemoryLookupTable) lookupTable;
-
-            INDArray syn0 = l.getSyn0();
-
-            if (!normalized) {
-                synchronized (this) {
-                    if (!normalized) {
-                        syn0.diviColumnVector(syn0.norm2(1));
-                        normalized = true;
-                    }
-                }
-            }
+            INDArray syn0 = getNormalizedSyn0((InMemoryLookupTable) lookupTable);
 
+            // rows of syn0 are unit vectors already, so this is cosine similarity
             INDArray similarity = Transforms.unitVec(words).mmul(syn0.transpose());
 
-            List<Double> highToLowSimList = getTopN(similarity, top + 20);
-
-            List<WordSimilarity> result = new ArrayList<>();
-
-            for (int i = 0; i < highToLowSimList.size(); i++) {
-                String word = vocabCache.wordAtIndex(highToLowSimList.get(i).intValue());
-                if (word != null && !word.equals("UNK") && !word.equals("STOP")) {
-                    INDArray otherVec = lookupTable.vector(word);
-                    double sim = Transforms.cosineSim(words, otherVec);
-
-                    result.add(new WordSimilarity(word, sim));
-                }
-            }
-
-            Collections.sort(result, new SimilarityComparator());
-
-            return getLabels(result, top);
+            double[] values = asDoubleArray(similarity);
+            return getLabels(topN(values, 0, values.length, top + 20), top);
         }
 
         Counter<String> distances = new Counter<>();
@@ -275,36 +303,208 @@ public class BasicModelUtils<T extends SequenceElement> implements ModelUtils<T>
     }
 
     /**
-     * Get top N elements
+     * This method does batched nearest words search: one matrix multiplication for all queries,
+     * followed by parallel top N selection for each query
      *
-     * @param vec the vec to extract the top elements from
+     * @param queries matrix of queries, one query per row: [numQueries, layerSize]
+     * @param top the top n words
+     * @return list of nearest words, one collection per query row
+     */
+    public List<Collection<String>> wordsNearestBatch(@NonNull INDArray queries, final int top) {
+        if (queries.isVector() && queries.size(1) == lookupTable.layerSize())
+            queries = queries.reshape(1, queries.length());
+
+        final int numQueries = queries.rows();
+        final List<Collection<String>> result = new ArrayList<>(Collections.<Collection<String>>nCopies(numQueries, null));
+
+        if (!(lookupTable instanceof InMemoryLookupTable)) {
+            for (int i = 0; i < numQueries; i++)
+                result.set(i, wordsNearest(queries.getRow(i), top));
+
+            return result;
+        }
+
+        INDArray syn0 = getNormalizedSyn0((InMemoryLookupTable) lookupTable);
+        final int numWords = syn0.rows();
+        final int fetch = top + 20;
+        int chunkSize = Math.max(1, MAX_SIMILARITY_ELEMENTS / Math.max(1, numWords));
+
+        for (int start = 0; start < numQueries; start += chunkSize) {
+            final int first = start;
+            int end = Math.min(numQueries, start + chunkSize);
+
+            INDArray chunk = queries.get(NDArrayIndex.interval(start, end), NDArrayIndex.all()).dup();
+            chunk.diviColumnVector(chunk.norm2(1));
+
+            INDArray similarity = chunk.mmul(syn0.transpose());
+            final double[] values = asDoubleArray(similarity);
+
+            final int rows = end - start;
+            int threads = Math.min(rows, Runtime.getRuntime().availableProcessors());
+            if (threads <= 1) {
+                for (int i = 0; i < rows; i++)
+                    result.set(first + i, getLabels(topN(values, i * numWords, numWords, fetch), top));
+                continue;
+            }
+
+            List<Callable<Void>> tasks = new ArrayList<>(threads);
+            final int rowsPerThread = (rows + threads - 1) / threads;
+            for (int t = 0; t < threads; t++) {
+                final int from = t * rowsPerThread;
+                final int to = Math.min(rows, from + rowsPerThread);
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = from; i < to; i++)
+                            result.set(first + i, getLabels(topN(values, i * numWords, numWords, fetch), top));
+                        return null;
+                    }
+                });
+            }
+
+            try {
+                for (Future<Void> future : getSelectionPool().invokeAll(tasks))
+                    future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * This method converts vocabulary indices into labels, skipping service words
+     *
+     * @param indices indices sorted by similarity, high to low
+     * @param limit max number of labels to return
+     * @return
+     */
+    protected List<String> getLabels(int[] indices, int limit) {
+        List<String> result = new ArrayList<>();
+        for (int index : indices) {
+            String word = vocabCache.wordAtIndex(index);
+            if (word != null && !word.equals("UNK") && !word.equals("STOP")) {
+                result.add(word);
+                if (result.size() >= limit)
+                    break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * This method returns contents of the array as primitive double array, in c order
+     */
+    protected static double[] asDoubleArray(INDArray array) {
+        if (array.isView() || (!array.isVector() && array.ordering() != 'c') || array.length() != array.data().length())
+            array = array.dup('c');
+
+        return array.data().asDouble();
+    }
+
+    /**
+     * Get indices of top N elements, without boxing: bounded min-heap over primitive arrays.
+     * NaN values are treated as the smallest possible values.
+     *
+     * @param values array to extract the top elements from
+     * @param offset offset of the first element
+     * @param length number of elements to consider
      * @param N the number of elements to extract
-     * @return the indices and the sorted top N elements
+     * @return indices (relative to offset) of the top N elements, sorted high to low
      */
-    private List<Double> getTopN(INDArray vec, int N) {
-        ArrayComparator comparator = new ArrayComparator();
-        PriorityQueue<Double[]> queue = new PriorityQueue<>(vec.rows(), comparator);
-
-        for (int j = 0; j < vec.length(); j++) {
-            final Double[] pair = new Double[] {vec.getDouble(j), (double) j};
-            if (queue.size() < N) {
-                queue.add(pair);
-            } else {
-                Double[] head = queue.peek();
-                if (comparator.compare(pair, head) > 0) {
-                    queue.poll();
-                    queue.add(pair);
+    protected static int[] topN(double[] values, int offset, int length, int N) {
+        int capacity = Math.min(N, length);
+        if (capacity <= 0)
+            return new int[0];
+
+        double[] heapValues = new double[capacity];
+        int[] heapIndices = new int[capacity];
+        int size = 0;
+
+        for (int j = 0; j < length; j++) {
+            double value = values[offset + j];
+            if (Double.isNaN(value))
+                value = Double.NEGATIVE_INFINITY;
+
+            if (size < capacity) {
+                // sift up
+                int pos = size++;
+                while (pos > 0) {
+                    int parent = (pos - 1) >>> 1;
+                    if (heapValues[parent] <= value)
+                        break;
+
+                    heapValues[pos] = heapValues[parent];
+                    heapIndices[pos] = heapIndices[parent];
+                    pos = parent;
                 }
+                heapValues[pos] = value;
+                heapIndices[pos] = j;
+            } else if (value > heapValues[0]) {
+                siftDown(heapValues, heapIndices, size, value, j);
             }
         }
 
-        List<Double> lowToHighSimLst = new ArrayList<>();
+        // pop minimums one by one, filling result from its tail
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = heapIndices[0];
+            size--;
+            if (size > 0)
+                siftDown(heapValues, heapIndices, size, heapValues[size], heapIndices[size]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Replaces heap root with given element, and restores min-heap order
+     */
+    private static void siftDown(double[] heapValues, int[] heapIndices, int size, double value, int index) {
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size)
+                break;
+
+            if (child + 1 < size && heapValues[child + 1] < heapValues[child])
+                child++;
 
-        while (!queue.isEmpty()) {
-            double ind = queue.poll()[1];
-            lowToHighSimLst.add(ind);
+            if (heapValues[child] >= value)
+                break;
+
+            heapValues[pos] = heapValues[child];
+            heapIndices[pos] = heapIndices[child];
+            pos = child;
         }
-        return Lists.reverse(lowToHighSimLst);
+        heapValues[pos] = value;
+        heapIndices[pos] = index;
+    }
+
+    private static ExecutorService getSelectionPool() {
+        if (selectionPool == null) {
+            synchronized (BasicModelUtils.class) {
+                if (selectionPool == null) {
+                    selectionPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                    new ThreadFactory() {
+                                        @Override
+                                        public Thread newThread(Runnable r) {
+                                            Thread t = Executors.defaultThreadFactory().newThread(r);
+                                            t.setName("BasicModelUtils-TopN-" + t.getId());
+                                            t.setDaemon(true);
+                                            return t;
+                                        }
+                                    });
+                }
+            }
+        }
+
+        return selectionPool;
     }
 
     /**
@@ -0,0 +1,252 @@
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.clustering.hnsw.HnswIndex;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * ModelUtils implementation backed by HNSW approximate nearest neighbours index.
+ *
+ * Index is built lazily from syn0 on first nearest-words query, so construction cost is paid once,
+ * and queries take sub-linear time instead of full scan over vocabulary.
+ * Separate index is kept for labels (i.e. ParagraphVectors documents), and it can be extended incrementally.
+ *
+ * PLEASE NOTE: Results are approximate, recall is controlled via efSearch: higher values give better recall at cost of speed.
+ * PLEASE NOTE: Index is rebuilt if syn0 gets replaced, but in-place updates of syn0 aren't tracked. Call init() after further training.
+ * PLEASE NOTE: WordVectorSerializer neither saves nor restores the index (or ModelUtils choice): restored models use BasicModelUtils,
+ * i.e. brute force search. Index has to be saved separately via saveIndex(), and after model restoration HnswModelUtils
+ * should be set again via setModelUtils(), followed by loadIndex(). Otherwise index will be rebuilt on first query.
+ */
+@Slf4j
+public class HnswModelUtils<T extends SequenceElement> extends BasicModelUtils<T> {
+    @Getter
+    protected int m = HnswIndex.DEFAULT_M;
+    @Getter
+    protected int efConstruction = HnswIndex.DEFAULT_EF_CONSTRUCTION;
+    @Getter
+    protected int efSearch = 100;
+
+    protected volatile HnswIndex wordsIndex;
+    protected volatile INDArray indexSource;
+
+    protected volatile HnswIndex labelsIndex;
+    protected final List<String> labelsList = new ArrayList<>();
+
+    public HnswModelUtils() {
+
+    }
+
+    /**
+     * @param m              number of links per node, higher values give better recall and bigger index
+     * @param efConstruction size of candidates list during index construction
+     * @param efSearch       size of candidates list during search
+     */
+    public HnswModelUtils(int m, int efConstruction, int efSearch) {
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    @Override
+    public void init(@NonNull WeightLookupTable<T> lookupTable) {
+        super.init(lookupTable);
+
+        synchronized (this) {
+            this.wordsIndex = null;
+            this.indexSource = null;
+            this.labelsIndex = null;
+            this.labelsList.clear();
+        }
+    }
+
+    /**
+     * This method changes size of candidates list used during search
+     *
+     * @param efSearch
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+
+        HnswIndex index = wordsIndex;
+        if (index != null)
+            index.setEfSearch(efSearch);
+
+        index = labelsIndex;
+        if (index != null)
+            index.setEfSearch(efSearch);
+    }
+
+    /**
+     * This method returns HNSW index over all rows of syn0, building it on first call, or if syn0 was replaced since then.
+     * Index ids are equal to vocabulary indices.
+     *
+     * @param table
+     * @return
+     */
+    protected HnswIndex getWordsIndex(@NonNull InMemoryLookupTable table) {
+        INDArray syn0 = table.getSyn0();
+        if (wordsIndex == null || indexSource != syn0) {
+            synchronized (this) {
+                if (wordsIndex == null || indexSource != syn0) {
+                    long time1 = System.currentTimeMillis();
+                    HnswIndex index = new HnswIndex(syn0.columns(), m, efConstruction, efSearch, 119);
+                    index.addAll(syn0);
+                    long time2 = System.currentTimeMillis();
+
+                    log.info("HNSW index for {} vectors was built in {} ms", index.size(), time2 - time1);
+
+                    wordsIndex = index;
+                    indexSource = syn0;
+                }
+            }
+        }
+
+        return wordsIndex;
+    }
+
+    /**
+     * This method returns HNSW index over elements marked as labels, building it on first call
+     *
+     * @return
+     */
+    protected HnswIndex getLabelsIndex() {
+        if (labelsIndex == null) {
+            synchronized (this) {
+                if (labelsIndex == null) {
+                    HnswIndex index = new HnswIndex(lookupTable.layerSize(), m, efConstruction, efSearch, 119);
+                    for (T element : vocabCache.vocabWords()) {
+                        if (element.isLabel()) {
+                            index.add(lookupTable.vector(element.getLabel()));
+                            labelsList.add(element.getLabel());
+                        }
+                    }
+
+                    labelsIndex = index;
+                }
+            }
+        }
+
+        return labelsIndex;
+    }
+
+    @Override
+    public Collection<String> wordsNearest(INDArray words, int top) {
+        if (!(lookupTable instanceof InMemoryLookupTable))
+            return super.wordsNearest(words, top);
+
+        HnswIndex index = getWordsIndex((InMemoryLookupTable) lookupTable);
+        return getLabels(index.search(words, top + 20), top);
+    }
+
+    /**
+     * This method returns top N labels nearest to specified features vector
+     *
+     * @param labelVector
+     * @param topN
+     * @return
+     */
+    public Collection<String> nearestLabels(@NonNull INDArray labelVector, int topN) {
+        HnswIndex index = getLabelsIndex();
+        if (index.size() == 0) {
+            log.warn("Labels list is empty!");
+            return new ArrayList<>();
+        }
+
+        int[] ids = index.search(labelVector, topN);
+        List<String> result = new ArrayList<>(ids.length);
+        synchronized (this) {
+            for (int id : ids) {
+                // label might be added concurrently, and not registered yet
+                if (id < labelsList.size())
+                    result.add(labelsList.get(id));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * This method adds new label to the labels index, without rebuilding it.
+     * I.e. it could be vector inferred for new document.
+     *
+     * @param label
+     * @param vector
+     */
+    public void addLabel(@NonNull String label, @NonNull INDArray vector) {
+        HnswIndex index = getLabelsIndex();
+        synchronized (this) {
+            int id = index.add(vector);
+            if (id != labelsList.size())
+                throw new ND4JIllegalStateException("Labels index is out of sync with labels list");
+
+            labelsList.add(label);
+        }
+    }
+
+    /**
+     * This method saves words index to the given file, so it won't be rebuilt after model restoration.
+     *
+     * PLEASE NOTE: This is separate step from model serialization: WordVectorSerializer doesn't include index into model file.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void saveIndex(@NonNull File file) throws IOException {
+        if (!(lookupTable instanceof InMemoryLookupTable))
+            throw new ND4JIllegalStateException("HNSW index is available only for InMemoryLookupTable");
+
+        HnswIndex index = getWordsIndex((InMemoryLookupTable) lookupTable);
+        try (OutputStream stream = new FileOutputStream(file)) {
+            index.save(stream);
+        }
+    }
+
+    /**
+     * This method restores words index previously saved with {@link #saveIndex(File)}.
+     * Index is assumed to be built for current syn0.
+     *
+     * Typical use after model restoration:
+     * <pre>
+     * Word2Vec vec = WordVectorSerializer.readWord2VecModel(modelFile);
+     * HnswModelUtils&lt;VocabWord&gt; utils = new HnswModelUtils&lt;&gt;();
+     * vec.setModelUtils(utils);
+     * utils.loadIndex(indexFile);
+     * </pre>
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void loadIndex(@NonNull File file) throws IOException {
+        if (!(lookupTable instanceof InMemoryLookupTable))
+            throw new ND4JIllegalStateException("HNSW index is available only for InMemoryLookupTable");
+
+        INDArray syn0 = ((InMemoryLookupTable) lookupTable).getSyn0();
+
+        HnswIndex index;
+        try (InputStream stream = new FileInputStream(file)) {
+            index = HnswIndex.load(stream);
+        }
+
+        if (index.size() != syn0.rows() || index.getDimension() != syn0.columns())
+            throw new ND4JIllegalStateException("Index shape [" + index.size() + ", " + index.getDimension()
+                            + "] doesn't match syn0 shape [" + syn0.rows() + ", " + syn0.columns() + "]");
+
+        index.setEfSearch(efSearch);
+
+        synchronized (this) {
+            wordsIndex = index;
+            indexSource = syn0;
+        }
+    }
+}
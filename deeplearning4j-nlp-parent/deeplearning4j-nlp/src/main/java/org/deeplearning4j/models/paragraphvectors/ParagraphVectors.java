@@ -12,6 +12,7 @@ import org.deeplearning4j.models.embeddings.learning.impl.sequence.DM;
 import org.deeplearning4j.models.embeddings.loader.VectorsConfiguration;
 import org.deeplearning4j.models.embeddings.reader.ModelUtils;
 import org.deeplearning4j.models.embeddings.reader.impl.BasicModelUtils;
+import org.deeplearning4j.models.embeddings.reader.impl.HnswModelUtils;
 import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
 import org.deeplearning4j.models.sequencevectors.interfaces.SequenceIterator;
 import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
@@ -541,6 +542,10 @@ public class ParagraphVectors extends Word2Vec {
      * @return
      */
     public Collection<String> nearestLabels(INDArray labelVector, int topN) {
+        // approximate index is used, if it's available
+        if (modelUtils instanceof HnswModelUtils)
+            return ((HnswModelUtils<VocabWord>) modelUtils).nearestLabels(labelVector, topN);
+
         if (labelsMatrix == null || labelsList == null || labelsList.isEmpty())
             extractLabels();
 
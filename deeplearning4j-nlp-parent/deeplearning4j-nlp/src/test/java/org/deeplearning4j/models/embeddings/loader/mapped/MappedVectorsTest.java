@@ -0,0 +1,184 @@
+package org.deeplearning4j.models.embeddings.loader.mapped;
+
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.embeddings.reader.impl.BasicModelUtils;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class MappedVectorsTest {
+    private static final int NUM_WORDS = 300;
+    private static final int LAYER_SIZE = 10;
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private WordVectors original;
+
+    @Before
+    public void setUp() throws Exception {
+        AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+        for (int i = 0; i < NUM_WORDS; i++) {
+            // non-ascii words are covered too
+            String word = i % 10 == 0 ? "\u0441\u043b\u043e\u0432\u043e_" + i : "word_" + i;
+            cache.addToken(new VocabWord(1.0, word));
+            cache.addWordToIndex(i, word);
+        }
+
+        InMemoryLookupTable<VocabWord> lookupTable = new InMemoryLookupTable.Builder<VocabWord>()
+                        .vectorLength(LAYER_SIZE).useAdaGrad(false).cache(cache).seed(119).build();
+        lookupTable.resetWeights(true);
+
+        original = WordVectorSerializer.fromTableAndVocab(lookupTable, cache);
+    }
+
+    private void compare(WordVectors expected, WordVectors actual) {
+        assertEquals(expected.vocab().numWords(), actual.vocab().numWords());
+        for (int i = 0; i < NUM_WORDS; i++) {
+            String word = expected.vocab().wordAtIndex(i);
+            assertEquals(word, actual.vocab().wordAtIndex(i));
+            assertEquals(i, actual.indexOf(word));
+            assertTrue(actual.hasWord(word));
+            assertEquals(expected.getWordVectorMatrix(word), actual.getWordVectorMatrix(word));
+        }
+    }
+
+    @Test
+    public void testWriteAndLoad() throws Exception {
+        File file = testDir.newFile("vectors.bin");
+        WordVectorSerializer.writeMappedModel(original, file);
+
+        WordVectors restored = WordVectorSerializer.loadMappedModel(file);
+        assertTrue(restored.lookupTable() instanceof MappedLookupTable);
+        compare(original, restored);
+
+        assertFalse(restored.hasWord("missing"));
+        assertEquals(-1, restored.indexOf("missing"));
+
+        INDArray query = original.getWordVectorMatrix("word_17");
+        assertEquals(new ArrayList<>(original.wordsNearest(query, 5)), new ArrayList<>(restored.wordsNearest(query, 5)));
+        assertEquals(0.0, restored.similarity("word_17", "word_17") - 1.0, 1e-5);
+    }
+
+    @Test
+    public void testConvertText() throws Exception {
+        File text = testDir.newFile("vectors.txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(text), StandardCharsets.UTF_8)) {
+            writer.write(NUM_WORDS + " " + LAYER_SIZE + "\n");
+            for (int i = 0; i < NUM_WORDS; i++) {
+                String word = original.vocab().wordAtIndex(i);
+                INDArray vector = original.getWordVectorMatrix(word);
+                StringBuilder builder = new StringBuilder(word);
+                for (int j = 0; j < LAYER_SIZE; j++)
+                    builder.append(" ").append(vector.getFloat(j));
+
+                writer.write(builder.append("\n").toString());
+            }
+        }
+
+        File file = testDir.newFile("vectors.bin");
+        WordVectorSerializer.convertToMappedModel(text, file);
+        compare(original, WordVectorSerializer.loadMappedModel(file));
+    }
+
+    @Test
+    public void testConvertGoogleBinary() throws Exception {
+        File binary = testDir.newFile("vectors.google");
+        try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(binary))) {
+            stream.write((NUM_WORDS + " " + LAYER_SIZE + "\n").getBytes(StandardCharsets.UTF_8));
+            ByteBuffer row = ByteBuffer.allocate(LAYER_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < NUM_WORDS; i++) {
+                String word = original.vocab().wordAtIndex(i);
+                INDArray vector = original.getWordVectorMatrix(word);
+
+                row.clear();
+                for (int j = 0; j < LAYER_SIZE; j++)
+                    row.putFloat(vector.getFloat(j));
+
+                stream.write((word + " ").getBytes(StandardCharsets.UTF_8));
+                stream.write(row.array());
+                stream.write('\n');
+            }
+        }
+
+        File file = testDir.newFile("vectors.bin");
+        WordVectorSerializer.convertToMappedModel(binary, file);
+        compare(original, WordVectorSerializer.loadMappedModel(file));
+    }
+
+    @Test
+    public void testCopyFallback() throws Exception {
+        File file = testDir.newFile("vectors.bin");
+        WordVectorSerializer.writeMappedModel(original, file);
+
+        MappedLookupTable table = MappedLookupTable.open(file);
+        long position = file.length() - (long) NUM_WORDS * LAYER_SIZE * 4;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            INDArray copy = MappedLookupTable.copyMatrix(raf.getChannel(), position, NUM_WORDS, LAYER_SIZE);
+            assertEquals(table.getSyn0(), copy);
+        }
+    }
+
+    @Test
+    public void testNormalized() throws Exception {
+        File file = testDir.newFile("vectors.bin");
+        WordVectorSerializer.writeMappedModel(original, file);
+        MappedLookupTable table = MappedLookupTable.open(file);
+        assertFalse(table.isNormalized());
+
+        ExposedModelUtils utils = new ExposedModelUtils();
+        utils.init(table);
+        INDArray copy = utils.normalizedSyn0(table);
+        assertNotSame(table.getSyn0(), copy);
+
+        File normalizedFile = testDir.newFile("normalized.bin");
+        WordVectorSerializer.writeMappedModel(original, normalizedFile, true);
+        MappedLookupTable normalizedTable = MappedLookupTable.open(normalizedFile);
+        assertTrue(normalizedTable.isNormalized());
+
+        // mapped matrix is used for similarity queries as is
+        utils = new ExposedModelUtils();
+        utils.init(normalizedTable);
+        assertSame(normalizedTable.getSyn0(), utils.normalizedSyn0(normalizedTable));
+        assertTrue(normalizedTable.getSyn0().equalsWithEps(copy, 1e-5));
+
+        WordVectors restored = WordVectorSerializer.loadMappedModel(normalizedFile);
+        INDArray query = original.getWordVectorMatrix("word_17");
+        assertEquals(new ArrayList<>(original.wordsNearest(query, 5)), new ArrayList<>(restored.wordsNearest(query, 5)));
+
+        // vectors with unit length are detected without explicit normalization
+        File rewritten = testDir.newFile("rewritten.bin");
+        WordVectorSerializer.writeMappedModel(restored, rewritten);
+        assertTrue(MappedLookupTable.open(rewritten).isNormalized());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() throws Exception {
+        File file = testDir.newFile("vectors.bin");
+        WordVectorSerializer.writeMappedModel(original, file);
+
+        MappedLookupTable table = MappedLookupTable.open(file);
+        table.putVector("word_1", Nd4j.create(LAYER_SIZE));
+    }
+
+    private static class ExposedModelUtils extends BasicModelUtils<VocabWord> {
+        private INDArray normalizedSyn0(InMemoryLookupTable table) {
+            return getNormalizedSyn0(table);
+        }
+    }
+}
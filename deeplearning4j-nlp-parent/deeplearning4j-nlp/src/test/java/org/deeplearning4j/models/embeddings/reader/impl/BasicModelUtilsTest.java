@@ -0,0 +1,143 @@
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BasicModelUtilsTest {
+    private static final int NUM_WORDS = 500;
+    private static final int LAYER_SIZE = 16;
+
+    private InMemoryLookupTable<VocabWord> lookupTable;
+
+    @Before
+    public void setUp() throws Exception {
+        AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+        for (int i = 0; i < NUM_WORDS; i++) {
+            String word = "word_" + i;
+            cache.addToken(new VocabWord(1.0, word));
+            cache.addWordToIndex(i, word);
+        }
+
+        lookupTable = new InMemoryLookupTable.Builder<VocabWord>().vectorLength(LAYER_SIZE).useAdaGrad(false)
+                        .cache(cache).seed(119).build();
+        lookupTable.resetWeights(true);
+    }
+
+    @Test
+    public void testTopN1() {
+        double[] values = new double[] {0.1, 0.9, Double.NaN, -0.5, 0.7, 0.3, 0.8};
+
+        assertArrayEquals(new int[] {1, 6, 4}, BasicModelUtils.topN(values, 0, values.length, 3));
+        assertArrayEquals(new int[] {4, 2, 3}, BasicModelUtils.topN(values, 2, 5, 3));
+
+        // NaN goes last
+        assertArrayEquals(new int[] {1, 6, 4, 5, 0, 3, 2}, BasicModelUtils.topN(values, 0, values.length, 10));
+        assertEquals(0, BasicModelUtils.topN(values, 0, values.length, 0).length);
+    }
+
+    @Test
+    public void testTopNRandom() {
+        java.util.Random rng = new java.util.Random(12345);
+        double[] values = new double[10000];
+        for (int i = 0; i < values.length; i++)
+            values[i] = rng.nextDouble();
+
+        int[] top = BasicModelUtils.topN(values, 0, values.length, 50);
+        double[] sorted = values.clone();
+        java.util.Arrays.sort(sorted);
+
+        assertEquals(50, top.length);
+        for (int i = 0; i < top.length; i++)
+            assertEquals(sorted[sorted.length - 1 - i], values[top[i]], 0.0);
+    }
+
+    @Test
+    public void testWordsNearestKeepsSyn0() {
+        BasicModelUtils<VocabWord> utils = new BasicModelUtils<>();
+        utils.init(lookupTable);
+
+        INDArray syn0 = lookupTable.getSyn0().dup();
+        INDArray query = lookupTable.vector("word_7").dup();
+
+        Collection<String> nearest = utils.wordsNearest(query, 10);
+
+        // lookup table weights should stay intact
+        assertEquals(syn0, lookupTable.getSyn0());
+
+        // compare against brute force
+        List<String> expected = bruteForce(query, 10);
+        assertEquals(expected, new ArrayList<>(nearest));
+        assertEquals("word_7", nearest.iterator().next());
+    }
+
+    @Test
+    public void testWordsNearestBatch() {
+        BasicModelUtils<VocabWord> utils = new BasicModelUtils<>();
+        utils.init(lookupTable);
+
+        int numQueries = 37;
+        INDArray queries = Nd4j.rand(numQueries, LAYER_SIZE).subi(0.5);
+
+        List<Collection<String>> batched = utils.wordsNearestBatch(queries, 5);
+        assertEquals(numQueries, batched.size());
+
+        for (int i = 0; i < numQueries; i++) {
+            INDArray query = queries.getRow(i).dup();
+            assertEquals(new ArrayList<>(utils.wordsNearest(query, 5)), new ArrayList<>(batched.get(i)));
+            assertEquals(bruteForce(query, 5), new ArrayList<>(batched.get(i)));
+        }
+    }
+
+    @Test
+    public void testNormalizedCopyRefresh() {
+        BasicModelUtils<VocabWord> utils = new BasicModelUtils<>();
+        utils.init(lookupTable);
+
+        INDArray query = lookupTable.vector("word_3").dup();
+        assertEquals("word_3", utils.wordsNearest(query, 1).iterator().next());
+
+        // replaced syn0 should be picked up
+        INDArray newSyn0 = lookupTable.getSyn0().dup();
+        newSyn0.putRow(42, query.mul(10));
+        lookupTable.setSyn0(newSyn0);
+
+        List<String> nearest = new ArrayList<>(utils.wordsNearest(query, 2));
+        assertTrue(nearest.contains("word_3"));
+        assertTrue(nearest.contains("word_42"));
+    }
+
+    private List<String> bruteForce(INDArray query, int top) {
+        final double[] sims = new double[NUM_WORDS];
+        for (int i = 0; i < NUM_WORDS; i++)
+            sims[i] = Transforms.cosineSim(query, lookupTable.getSyn0().getRow(i));
+
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < NUM_WORDS; i++)
+            indices.add(i);
+
+        java.util.Collections.sort(indices, new java.util.Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(sims[o2], sims[o1]);
+            }
+        });
+
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < top; i++)
+            result.add("word_" + indices.get(i));
+
+        return result;
+    }
+}
@@ -0,0 +1,167 @@
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class HnswModelUtilsTest {
+    private static final int NUM_WORDS = 3000;
+    private static final int NUM_LABELS = 50;
+    private static final int LAYER_SIZE = 32;
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private InMemoryLookupTable<VocabWord> lookupTable;
+
+    @Before
+    public void setUp() throws Exception {
+        lookupTable = buildTable(NUM_WORDS, LAYER_SIZE);
+    }
+
+    private static InMemoryLookupTable<VocabWord> buildTable(int numWords, int layerSize) {
+        AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+        for (int i = 0; i < numWords; i++) {
+            String word = i < NUM_LABELS ? "DOC_" + i : "word_" + i;
+            VocabWord element = new VocabWord(1.0, word);
+            element.markAsLabel(i < NUM_LABELS);
+            cache.addToken(element);
+            cache.addWordToIndex(i, word);
+        }
+
+        InMemoryLookupTable<VocabWord> table = new InMemoryLookupTable.Builder<VocabWord>().vectorLength(layerSize)
+                        .useAdaGrad(false).cache(cache).seed(119).build();
+        table.resetWeights(true);
+        return table;
+    }
+
+    private static double overlap(Collection<String> expected, Collection<String> actual) {
+        Set<String> set = new HashSet<>(expected);
+        int hits = 0;
+        for (String s : actual)
+            if (set.contains(s))
+                hits++;
+
+        return hits / (double) expected.size();
+    }
+
+    @Test
+    public void testWordsNearestRecall() {
+        BasicModelUtils<VocabWord> exact = new BasicModelUtils<>();
+        exact.init(lookupTable);
+
+        HnswModelUtils<VocabWord> approximate = new HnswModelUtils<>();
+        approximate.init(lookupTable);
+
+        INDArray queries = Nd4j.rand(50, LAYER_SIZE).subi(0.5);
+        double recall = 0.0;
+        for (int i = 0; i < queries.rows(); i++) {
+            INDArray query = queries.getRow(i).dup();
+            Collection<String> result = approximate.wordsNearest(query, 10);
+            assertEquals(10, result.size());
+            recall += overlap(exact.wordsNearest(query, 10), result);
+        }
+        recall /= queries.rows();
+
+        log.info("Recall@10: {}", recall);
+        assertTrue("Recall was " + recall, recall > 0.9);
+
+        // word itself should be the nearest one
+        assertEquals("word_777", approximate.wordsNearest(lookupTable.vector("word_777"), 1).iterator().next());
+    }
+
+    @Test
+    public void testNearestLabels() {
+        HnswModelUtils<VocabWord> utils = new HnswModelUtils<>();
+        utils.init(lookupTable);
+
+        List<String> labels = new ArrayList<>(utils.nearestLabels(lookupTable.vector("DOC_7"), 3));
+        assertEquals(3, labels.size());
+        assertEquals("DOC_7", labels.get(0));
+        for (String label : labels)
+            assertTrue(label.startsWith("DOC_"));
+
+        // incremental insert
+        INDArray vector = lookupTable.vector("word_100").dup();
+        utils.addLabel("DOC_new", vector);
+        assertEquals("DOC_new", utils.nearestLabels(vector, 1).iterator().next());
+    }
+
+    @Test
+    public void testSaveLoadIndex() throws Exception {
+        HnswModelUtils<VocabWord> utils = new HnswModelUtils<>();
+        utils.init(lookupTable);
+
+        INDArray query = Nd4j.rand(1, LAYER_SIZE).subi(0.5);
+        Collection<String> before = utils.wordsNearest(query, 10);
+
+        File file = new File(testDir.getRoot(), "hnsw.bin");
+        utils.saveIndex(file);
+
+        HnswModelUtils<VocabWord> restored = new HnswModelUtils<>();
+        restored.init(lookupTable);
+        restored.loadIndex(file);
+
+        assertEquals(new ArrayList<>(before), new ArrayList<>(restored.wordsNearest(query, 10)));
+    }
+
+    @Test
+    @Ignore
+    public void benchmarkVsBruteForce() {
+        InMemoryLookupTable<VocabWord> table = buildTable(100000, 100);
+
+        BasicModelUtils<VocabWord> exact = new BasicModelUtils<>();
+        exact.init(table);
+
+        HnswModelUtils<VocabWord> approximate = new HnswModelUtils<>();
+        approximate.init(table);
+
+        INDArray queries = Nd4j.rand(1000, 100).subi(0.5);
+
+        // warmup, and index construction
+        exact.wordsNearest(queries.getRow(0).dup(), 10);
+        approximate.wordsNearest(queries.getRow(0).dup(), 10);
+
+        for (int efSearch : new int[] {16, 32, 64, 128, 256}) {
+            approximate.setEfSearch(efSearch);
+
+            long exactTime = 0, approximateTime = 0;
+            double recall = 0.0;
+            for (int i = 0; i < queries.rows(); i++) {
+                INDArray query = queries.getRow(i).dup();
+
+                long time1 = System.nanoTime();
+                Collection<String> expected = exact.wordsNearest(query, 10);
+                long time2 = System.nanoTime();
+                Collection<String> actual = approximate.wordsNearest(query, 10);
+                long time3 = System.nanoTime();
+
+                exactTime += time2 - time1;
+                approximateTime += time3 - time2;
+                recall += overlap(expected, actual);
+            }
+
+            log.info("efSearch: {}; recall@10: {}; brute force: {} us/query; hnsw: {} us/query", efSearch,
+                            recall / queries.rows(), exactTime / queries.rows() / 1000,
+                            approximateTime / queries.rows() / 1000);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.deeplearning4j.eval;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Primitive storage for confusion matrix counts, for classes 0..numClasses-1.
+ *
+ * Counts are kept in square blocks, allocated on first use: for small number of classes that's a single dense block,
+ * and for thousands of classes only blocks that were actually hit are allocated (usually the ones near the diagonal).
+ * Row and column totals are maintained along with counts, so totals are O(1), and merge cost depends only on
+ * number of allocated blocks, not on number of examples.
+ *
+ * PLEASE NOTE: this class isn't thread-safe
+ */
+public class ConfusionCounts implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    protected static final int BLOCK_SIZE = 64;
+
+    @Getter
+    private final int numClasses;
+    private final int blockSize;
+    private final int blocksPerRow;
+    private final long[][] blocks;
+
+    private final long[] actualTotals;
+    private final long[] predictedTotals;
+    @Getter
+    private long total;
+
+    public ConfusionCounts(int numClasses) {
+        if (numClasses < 1)
+            throw new IllegalArgumentException("Number of classes should be positive value");
+
+        this.numClasses = numClasses;
+        this.blockSize = Math.min(BLOCK_SIZE, numClasses);
+        this.blocksPerRow = (numClasses + blockSize - 1) / blockSize;
+        this.blocks = new long[blocksPerRow * blocksPerRow][];
+        this.actualTotals = new long[numClasses];
+        this.predictedTotals = new long[numClasses];
+    }
+
+    /**
+     * Creates a deep copy of other counts
+     */
+    public ConfusionCounts(ConfusionCounts other) {
+        this(other.numClasses);
+        merge(other);
+    }
+
+    protected boolean isValid(int actual, int predicted) {
+        return actual >= 0 && actual < numClasses && predicted >= 0 && predicted < numClasses;
+    }
+
+    private long[] block(int actual, int predicted) {
+        int idx = (actual / blockSize) * blocksPerRow + predicted / blockSize;
+        long[] block = blocks[idx];
+        if (block == null) {
+            block = new long[blockSize * blockSize];
+            blocks[idx] = block;
+        }
+        return block;
+    }
+
+    /**
+     * Increments the entry specified by actual and predicted by count
+     */
+    public void add(int actual, int predicted, long count) {
+        if (!isValid(actual, predicted))
+            throw new IllegalArgumentException("Invalid class index: actual " + actual + ", predicted " + predicted
+                            + ", number of classes " + numClasses);
+
+        block(actual, predicted)[(actual % blockSize) * blockSize + predicted % blockSize] += count;
+        actualTotals[actual] += count;
+        predictedTotals[predicted] += count;
+        total += count;
+    }
+
+    /**
+     * Increments entries for the first n pairs of actual/predicted classes
+     */
+    public void add(int[] actual, int[] predicted, int n) {
+        for (int i = 0; i < n; i++)
+            add(actual[i], predicted[i], 1);
+    }
+
+    public long get(int actual, int predicted) {
+        if (!isValid(actual, predicted))
+            return 0;
+
+        long[] block = blocks[(actual / blockSize) * blocksPerRow + predicted / blockSize];
+        return block == null ? 0 : block[(actual % blockSize) * blockSize + predicted % blockSize];
+    }
+
+    public long getActualTotal(int actual) {
+        return actual >= 0 && actual < numClasses ? actualTotals[actual] : 0;
+    }
+
+    public long getPredictedTotal(int predicted) {
+        return predicted >= 0 && predicted < numClasses ? predictedTotals[predicted] : 0;
+    }
+
+    /**
+     * Adds counts from other instance with the same number of classes. Cost is proportional to allocated blocks of other.
+     */
+    public void merge(ConfusionCounts other) {
+        if (other.numClasses != numClasses)
+            throw new IllegalArgumentException("Unable to merge counts for " + other.numClasses + " classes into counts for "
+                            + numClasses + " classes");
+
+        for (int b = 0; b < other.blocks.length; b++) {
+            long[] src = other.blocks[b];
+            if (src == null)
+                continue;
+
+            long[] dst = blocks[b];
+            if (dst == null) {
+                blocks[b] = src.clone();
+            } else {
+                for (int i = 0; i < src.length; i++)
+                    dst[i] += src[i];
+            }
+        }
+
+        for (int i = 0; i < numClasses; i++) {
+            actualTotals[i] += other.actualTotals[i];
+            predictedTotals[i] += other.predictedTotals[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Returns predicted classes with non-zero counts for given actual class. Only allocated blocks are scanned.
+     */
+    public int[] nonZero(int actual) {
+        int[] result = new int[8];
+        int size = 0;
+        int rowBlock = actual / blockSize;
+        int offset = (actual % blockSize) * blockSize;
+        for (int b = 0; b < blocksPerRow; b++) {
+            long[] block = blocks[rowBlock * blocksPerRow + b];
+            if (block == null)
+                continue;
+
+            for (int i = 0; i < blockSize; i++) {
+                if (block[offset + i] != 0) {
+                    if (size == result.length)
+                        result = Arrays.copyOf(result, size * 2);
+                    result[size++] = b * blockSize + i;
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public void reset() {
+        Arrays.fill(blocks, null);
+        Arrays.fill(actualTotals, 0);
+        Arrays.fill(predictedTotals, 0);
+        total = 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ConfusionCounts))
+            return false;
+
+        ConfusionCounts other = (ConfusionCounts) o;
+        if (other.numClasses != numClasses || other.total != total || !Arrays.equals(actualTotals, other.actualTotals))
+            return false;
+
+        // missing block is equal to block of zeros
+        for (int b = 0; b < blocks.length; b++) {
+            long[] x = blocks[b];
+            long[] y = other.blocks[b];
+            if (x == y)
+                continue;
+
+            for (int i = 0; i < blockSize * blockSize; i++)
+                if ((x == null ? 0 : x[i]) != (y == null ? 0 : y[i]))
+                    return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * numClasses + Arrays.hashCode(actualTotals)) + Arrays.hashCode(predictedTotals);
+    }
+}
@@ -20,7 +20,6 @@ package org.deeplearning4j.eval;
 
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
-import lombok.Getter;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -29,9 +28,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Confusion matrix, indexed by actual and predicted classes.
+ *
+ * Matrices created via {@link #forClasses(int)} (as used by {@link Evaluation}) keep counts in primitive
+ * {@link ConfusionCounts} instead of per-class multisets, so bulk updates, totals and merges don't box anything.
+ */
 public class ConfusionMatrix<T extends Comparable<? super T>> implements Serializable {
-    @Getter
     private volatile Map<T, Multiset<T>> matrix;
+    // primitive storage, used for Integer classes 0..n-1 instead of matrix
+    private ConfusionCounts counts;
     private List<T> classes;
 
     /**
@@ -51,7 +57,34 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
      */
     public ConfusionMatrix(ConfusionMatrix<T> other) {
         this(other.getClasses());
-        this.add(other);
+        if (other.counts != null) {
+            this.matrix = null;
+            this.counts = new ConfusionCounts(other.counts);
+        } else {
+            this.add(other);
+        }
+    }
+
+    /**
+     * Creates an empty confusion matrix for classes 0..nClasses-1, backed by primitive counts
+     */
+    public static ConfusionMatrix<Integer> forClasses(int nClasses) {
+        List<Integer> classes = new ArrayList<>(nClasses);
+        for (int i = 0; i < nClasses; i++) {
+            classes.add(i);
+        }
+
+        ConfusionMatrix<Integer> cm = new ConfusionMatrix<>(classes);
+        cm.matrix = null;
+        cm.counts = new ConfusionCounts(nClasses);
+        return cm;
+    }
+
+    /**
+     * @return primitive counts backing this matrix, or null if counts are kept in multisets
+     */
+    public ConfusionCounts getCounts() {
+        return counts;
     }
 
     /**
@@ -65,6 +98,19 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
      * Increments the entry specified by actual and predicted by count.
      */
     public synchronized void add(T actual, T predicted, int count) {
+        if (counts != null) {
+            int a = (Integer) actual;
+            int p = (Integer) predicted;
+            if (counts.isValid(a, p)) {
+                counts.add(a, p, count);
+                return;
+            }
+
+            // unexpected class: switching to generic storage
+            matrix = buildMatrix();
+            counts = null;
+        }
+
         if (matrix.containsKey(actual)) {
             matrix.get(actual).add(predicted, count);
         } else {
@@ -74,12 +120,38 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
         }
     }
 
+    /**
+     * Increments entries for the first n pairs of actual/predicted class indices. Suited for Integer classes only.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void add(int[] actual, int[] predicted, int n) {
+        if (counts != null) {
+            boolean valid = true;
+            for (int i = 0; i < n && valid; i++)
+                valid = counts.isValid(actual[i], predicted[i]);
+
+            if (valid) {
+                counts.add(actual, predicted, n);
+                return;
+            }
+        }
+
+        for (int i = 0; i < n; i++)
+            add((T) Integer.valueOf(actual[i]), (T) Integer.valueOf(predicted[i]), 1);
+    }
+
     /**
      * Adds the entries from another confusion matrix to this one.
      */
     public synchronized void add(ConfusionMatrix<T> other) {
-        for (T actual : other.matrix.keySet()) {
-            Multiset<T> counts = other.matrix.get(actual);
+        if (counts != null && other.counts != null && counts.getNumClasses() == other.counts.getNumClasses()) {
+            counts.merge(other.counts);
+            return;
+        }
+
+        Map<T, Multiset<T>> otherMatrix = other.getMatrix();
+        for (T actual : otherMatrix.keySet()) {
+            Multiset<T> counts = otherMatrix.get(actual);
             for (T predicted : counts.elementSet()) {
                 int count = counts.count(predicted);
                 this.add(actual, predicted, count);
@@ -87,6 +159,37 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
         }
     }
 
+    /**
+     * Returns counts as map of actual class to multiset of predicted classes.
+     *
+     * PLEASE NOTE: for matrices backed by primitive counts, this method returns a copy.
+     */
+    public Map<T, Multiset<T>> getMatrix() {
+        if (counts != null) {
+            synchronized (this) {
+                return buildMatrix();
+            }
+        }
+        return matrix;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<T, Multiset<T>> buildMatrix() {
+        Map<T, Multiset<T>> result = new ConcurrentHashMap<>();
+        int n = counts.getNumClasses();
+        for (int a = 0; a < n; a++) {
+            int[] predicted = counts.nonZero(a);
+            if (predicted.length == 0)
+                continue;
+
+            Multiset<T> row = HashMultiset.create();
+            for (int p : predicted)
+                row.add((T) Integer.valueOf(p), (int) counts.get(a, p));
+            result.put((T) Integer.valueOf(a), row);
+        }
+        return result;
+    }
+
     /**
      * Gives the applyTransformToDestination of all classes in the confusion matrix.
      */
@@ -101,7 +204,9 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
      * class.
      */
     public synchronized int getCount(T actual, T predicted) {
-        if (!matrix.containsKey(actual)) {
+        if (counts != null) {
+            return (int) counts.get((Integer) actual, (Integer) predicted);
+        } else if (!matrix.containsKey(actual)) {
             return 0;
         } else {
             return matrix.get(actual).count(predicted);
@@ -112,6 +217,10 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
      * Computes the total number of times the class was predicted by the classifier.
      */
     public synchronized int getPredictedTotal(T predicted) {
+        if (counts != null) {
+            return (int) counts.getPredictedTotal((Integer) predicted);
+        }
+
         int total = 0;
         for (T actual : classes) {
             total += getCount(actual, predicted);
@@ -123,7 +232,9 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
      * Computes the total number of times the class actually appeared in the data.
      */
     public synchronized int getActualTotal(T actual) {
-        if (!matrix.containsKey(actual)) {
+        if (counts != null) {
+            return (int) counts.getActualTotal((Integer) actual);
+        } else if (!matrix.containsKey(actual)) {
             return 0;
         } else {
             int total = 0;
@@ -136,7 +247,7 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
 
     @Override
     public String toString() {
-        return matrix.toString();
+        return getMatrix().toString();
     }
 
     /**
@@ -250,13 +361,24 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
         if (!(o instanceof ConfusionMatrix))
             return false;
         ConfusionMatrix<?> c = (ConfusionMatrix<?>) o;
-        return matrix.equals(c.matrix) && classes.equals(c.classes);
+        if (counts != null && c.counts != null)
+            return counts.equals(c.counts) && classes.equals(c.classes);
+        return getMatrix().equals(c.getMatrix()) && classes.equals(c.classes);
     }
 
     @Override
     public int hashCode() {
+        // must be the same for primitive and multiset storage: only classes and total count are used
+        long total = 0;
+        if (counts != null) {
+            total = counts.getTotal();
+        } else {
+            for (Multiset<T> row : matrix.values())
+                total += row.size();
+        }
+
         int result = 17;
-        result = 31 * result + (matrix == null ? 0 : matrix.hashCode());
+        result = 31 * result + (int) (total ^ (total >>> 32));
         result = 31 * result + (classes == null ? 0 : classes.hashCode());
         return result;
     }
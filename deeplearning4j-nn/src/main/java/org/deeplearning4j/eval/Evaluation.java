@@ -299,12 +299,7 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
     }
 
     private void createConfusion(int nClasses) {
-        List<Integer> classes = new ArrayList<>();
-        for (int i = 0; i < nClasses; i++) {
-            classes.add(i);
-        }
-
-        confusion = new ConfusionMatrix<>(classes);
+        confusion = ConfusionMatrix.forClasses(nClasses);
     }
 
 
@@ -448,55 +443,43 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
             INDArray realOutcomeIndex = Nd4j.argMax(realOutcomes, 1);
             int nExamples = guessIndex.length();
 
-            for (int i = 0; i < nExamples; i++) {
-                int actual = (int) realOutcomeIndex.getDouble(i);
-                int predicted = (int) guessIndex.getDouble(i);
-                confusion().add(actual, predicted);
+            // bulk copy of argmax results, instead of per-example getDouble() calls
+            int[] actual = toIntArray(realOutcomeIndex);
+            int[] predicted = toIntArray(guessIndex);
+            confusion().add(actual, predicted, nExamples);
 
-                if (recordMetaData != null && recordMetaData.size() > i) {
-                    Object m = recordMetaData.get(i);
-                    addToMetaConfusionMatrix(actual, predicted, m);
+            if (recordMetaData != null) {
+                for (int i = 0; i < nExamples && i < recordMetaData.size(); i++) {
+                    addToMetaConfusionMatrix(actual[i], predicted[i], recordMetaData.get(i));
                 }
+            }
 
-                // instead of looping through each label for confusion
-                // matrix, instead infer those values by determining if true/false negative/positive,
-                // then just add across matrix
-
-                // if actual == predicted, then it's a true positive, assign true negative to every other label
-                if (actual == predicted) {
-                    truePositives.incrementCount(actual, 1);
-                    for (int col = 0; col < nCols; col++) {
-                        if (col == actual) {
-                            continue;
-                        }
-                        trueNegatives.incrementCount(col, 1); // all cols prior
-                    }
+            // per-class counts for the whole minibatch, instead of looping through each label for each example
+            int[] tp = new int[nCols];
+            int[] fp = new int[nCols];
+            int[] fn = new int[nCols];
+            for (int i = 0; i < nExamples; i++) {
+                if (actual[i] == predicted[i]) {
+                    tp[actual[i]]++;
                 } else {
-                    falsePositives.incrementCount(predicted, 1);
-                    falseNegatives.incrementCount(actual, 1);
-
-                    // first determine intervals for adding true negatives
-                    int lesserIndex, greaterIndex;
-                    if (actual < predicted) {
-                        lesserIndex = actual;
-                        greaterIndex = predicted;
-                    } else {
-                        lesserIndex = predicted;
-                        greaterIndex = actual;
-                    }
-
-                    // now loop through intervals
-                    for (int col = 0; col < lesserIndex; col++) {
-                        trueNegatives.incrementCount(col, 1); // all cols prior
-                    }
-                    for (int col = lesserIndex + 1; col < greaterIndex; col++) {
-                        trueNegatives.incrementCount(col, 1); // all cols after
-                    }
-                    for (int col = greaterIndex + 1; col < nCols; col++) {
-                        trueNegatives.incrementCount(col, 1); // all cols after
-                    }
+                    fp[predicted[i]]++;
+                    fn[actual[i]]++;
                 }
             }
+
+            for (int col = 0; col < nCols; col++) {
+                if (tp[col] > 0)
+                    truePositives.incrementCount(col, tp[col]);
+                if (fp[col] > 0)
+                    falsePositives.incrementCount(col, fp[col]);
+                if (fn[col] > 0)
+                    falseNegatives.incrementCount(col, fn[col]);
+
+                // true negative for this class: neither actual nor predicted class of the example
+                int tn = nExamples - tp[col] - fp[col] - fn[col];
+                if (tn > 0)
+                    trueNegatives.incrementCount(col, tn);
+            }
         }
 
         if (nCols > 1 && topN > 1) {
@@ -520,6 +503,12 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
         }
     }
 
+    private static int[] toIntArray(INDArray indices) {
+        if (indices.isView() || indices.data().length() != indices.length())
+            indices = indices.dup();
+        return indices.data().asInt();
+    }
+
     /**
      * Evaluate a single prediction (one prediction at a time)
      *
@@ -30,9 +30,10 @@ import static org.nd4j.linalg.indexing.NDArrayIndex.interval;
 
 /**
  * ROC (Receiver Operating Characteristic) for binary classifiers.<br>
- * ROC has 2 modes of operation:
+ * ROC has 3 modes of operation:
  * (a) Thresholded (default, less memory)<br>
- * (b) Exact (use numSteps == 0. May not scale to very large datasets)
+ * (b) Exact (use numSteps == 0. May not scale to very large datasets)<br>
+ * (c) Streaming (use {@link #streaming()}. Fixed memory, approximate)
  *
  * <p>
  * Thresholded Is an approximate method, that (for large datasets) may use significantly less memory than exact..
@@ -43,15 +44,22 @@ import static org.nd4j.linalg.indexing.NDArrayIndex.interval;
  * Note that in some cases (very skewed probability predictions, for example) the threshold approach can be inaccurate,
  * often underestimating the true area.
  * <p>
+ * Streaming mode keeps a {@link TDigest} sketch of predicted probabilities for actual positive and actual negative
+ * examples. Memory use is constant (~compression centroids per sketch) regardless of number of examples, merging costs
+ * O(compression), and unlike thresholded mode the curve points adapt to the distribution of predictions, so skewed
+ * predictions are handled well. AUC and AUPRC errors are typically well below 1e-3 for the default compression, and
+ * results are exact as long as the sketches haven't merged any values (a few dozen examples per class).
+ * <p>
  * The data is assumed to be binary classification - nColumns == 1 (single binary output variable) or nColumns == 2
  * (probability distribution over 2 classes, with column 1 being values for 'positive' examples)
  *
  * @author Alex Black
  */
 @EqualsAndHashCode(callSuper = true,
-                exclude = {"auc", "auprc", "probAndLabel", "exactAllocBlockSize", "rocCurve", "prCurve"})
+                exclude = {"auc", "auprc", "probAndLabel", "exactAllocBlockSize", "rocCurve", "prCurve",
+                                "positiveSketch", "negativeSketch"})
 @Data
-@ToString(exclude = {"probAndLabel", "exactAllocBlockSize", "rocCurve", "prCurve"})
+@ToString(exclude = {"probAndLabel", "exactAllocBlockSize", "rocCurve", "prCurve", "positiveSketch", "negativeSketch"})
 @JsonIgnoreProperties({"probAndLabel", "exactAllocBlockSize"})
 @JsonSerialize(using = ROCSerializer.class)
 @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY)
@@ -74,6 +82,10 @@ public class ROC extends BaseEvaluation<ROC> {
     private boolean rocRemoveRedundantPts;
     private int exactAllocBlockSize;
 
+    private int sketchCompression;
+    private TDigest positiveSketch;
+    private TDigest negativeSketch;
+
     public ROC() {
         //Default to exact
         this(0);
@@ -122,6 +134,45 @@ public class ROC extends BaseEvaluation<ROC> {
         this.exactAllocBlockSize = exactAllocBlockSize;
     }
 
+    /**
+     * Create ROC in streaming mode, with default sketch compression
+     */
+    public static ROC streaming() {
+        return streaming(TDigest.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Create ROC in streaming mode
+     *
+     * @param compression Sketch compression: number of centroids per sketch. Higher values give more accurate results
+     *                    at the cost of more memory. See {@link TDigest}
+     */
+    public static ROC streaming(int compression) {
+        return streaming(compression, true);
+    }
+
+    /**
+     * Create ROC in streaming mode
+     *
+     * @param compression           Sketch compression: number of centroids per sketch. See {@link TDigest}
+     * @param rocRemoveRedundantPts Usually set to true. If true,  remove any redundant points from ROC and P-R curves
+     */
+    public static ROC streaming(int compression, boolean rocRemoveRedundantPts) {
+        ROC roc = new ROC(0, rocRemoveRedundantPts);
+        roc.isExact = false;
+        roc.sketchCompression = compression;
+        roc.positiveSketch = new TDigest(compression);
+        roc.negativeSketch = new TDigest(compression);
+        return roc;
+    }
+
+    /**
+     * @return true if this ROC uses sketches of predictions (see {@link #streaming()})
+     */
+    public boolean isStreaming() {
+        return sketchCompression > 0;
+    }
+
     protected INDArray getProbAndLabelUsed() {
         if (probAndLabel == null || exampleCount == 0) {
             return null;
@@ -153,6 +204,9 @@ public class ROC extends BaseEvaluation<ROC> {
 
         if (isExact) {
             probAndLabel = null;
+        } else if (isStreaming()) {
+            positiveSketch.reset();
+            negativeSketch.reset();
         } else {
             double step = 1.0 / thresholdSteps;
             for (int i = 0; i <= thresholdSteps; i++) {
@@ -234,6 +288,29 @@ public class ROC extends BaseEvaluation<ROC> {
             int countClass1CurrMinibatch = labelClass1.sumNumber().intValue();
             countActualPositive += countClass1CurrMinibatch;
             countActualNegative += labels.size(0) - countClass1CurrMinibatch;
+        } else if (isStreaming()) {
+            //Streaming approach: add probabilities to sketches of actual positive and actual negative examples
+            INDArray probClass1;
+            INDArray labelClass1;
+            if (singleOutput) {
+                probClass1 = predictions;
+                labelClass1 = labels;
+            } else {
+                probClass1 = predictions.getColumn(1);
+                labelClass1 = labels.getColumn(1);
+            }
+
+            double[] prob = toDoubleArray(probClass1);
+            double[] label = toDoubleArray(labelClass1);
+            double countClass1CurrMinibatch = 0.0;
+            for (int i = 0; i < prob.length; i++) {
+                positiveSketch.add(prob[i], label[i]);
+                negativeSketch.add(prob[i], 1.0 - label[i]);
+                countClass1CurrMinibatch += label[i];
+            }
+
+            countActualPositive += (long) countClass1CurrMinibatch;
+            countActualNegative += labels.size(0) - (long) countClass1CurrMinibatch;
         } else {
             //Thresholded approach
             INDArray positivePredictedClassColumn;
@@ -313,6 +390,47 @@ public class ROC extends BaseEvaluation<ROC> {
         prCurve = null;
     }
 
+    private static double[] toDoubleArray(INDArray column) {
+        if (column.isView() || column.data().length() != column.length())
+            column = column.dup();
+        return column.data().asDouble();
+    }
+
+    /**
+     * Streaming mode: estimated true positive and false positive counts (return[1] and return[2]) at each breakpoint
+     * of the sketches (return[0]), in descending threshold order. Between two adjacent points the counts change
+     * linearly, so no other points are needed for the curves.<br>
+     * As per exact mode, first point (threshold 1.0) has all predicted negative, and last point (threshold 0.0) has all
+     * predicted positive.
+     */
+    private double[][] getSketchCounts() {
+        double[] pos = positiveSketch.breakpoints();
+        double[] neg = negativeSketch.breakpoints();
+        double[] all = Arrays.copyOf(pos, pos.length + neg.length);
+        System.arraycopy(neg, 0, all, pos.length, neg.length);
+        Arrays.sort(all);
+
+        int unique = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1])
+                all[unique++] = all[i];
+        }
+
+        double totalPositive = positiveSketch.getTotalWeight();
+        double totalNegative = negativeSketch.getTotalWeight();
+        double[][] out = new double[3][unique + 2];
+        out[0][0] = 1.0;
+        for (int i = 0; i < unique; i++) {
+            double t = all[unique - 1 - i];
+            out[0][i + 1] = t;
+            out[1][i + 1] = totalPositive - positiveSketch.weightBelow(t);
+            out[2][i + 1] = totalNegative - negativeSketch.weightBelow(t);
+        }
+        out[1][unique + 1] = totalPositive;
+        out[2][unique + 1] = totalNegative;
+        return out;
+    }
+
     /**
      * Get the precision recall curve as array.
      * return[0] = threshold array<br>
@@ -407,6 +525,42 @@ public class ROC extends BaseEvaluation<ROC> {
             ArrayUtils.reverse(fpCountOut);
             ArrayUtils.reverse(fnCountOut);
 
+            if (rocRemoveRedundantPts) {
+                Pair<double[][], int[][]> pair = removeRedundant(thresholdOut, precisionOut, recallOut, tpCountOut,
+                                fpCountOut, fnCountOut);
+                double[][] temp = pair.getFirst();
+                int[][] temp2 = pair.getSecond();
+                thresholdOut = temp[0];
+                precisionOut = temp[1];
+                recallOut = temp[2];
+                tpCountOut = temp2[0];
+                fpCountOut = temp2[1];
+                fnCountOut = temp2[2];
+            }
+        } else if (isStreaming()) {
+            //Same as exact mode, but points come from the sketches. Reverse order: lowest to highest threshold
+            double[][] sketchCounts = getSketchCounts();
+            int length = sketchCounts[0].length;
+            thresholdOut = new double[length];
+            precisionOut = new double[length];
+            recallOut = new double[length];
+            tpCountOut = new int[length];
+            fpCountOut = new int[length];
+            fnCountOut = new int[length];
+
+            for (int i = 0; i < length; i++) {
+                int j = length - 1 - i;
+                double tpCount = sketchCounts[1][j];
+                double fpCount = sketchCounts[2][j];
+
+                thresholdOut[i] = sketchCounts[0][j];
+                precisionOut[i] = tpCount == 0 && fpCount == 0 ? 1.0 : tpCount / (tpCount + fpCount);
+                recallOut[i] = countActualPositive == 0 ? 1.0 : tpCount / countActualPositive;
+                tpCountOut[i] = (int) Math.round(tpCount);
+                fpCountOut[i] = (int) Math.round(fpCount);
+                fnCountOut[i] = (int) countActualPositive - tpCountOut[i];
+            }
+
             if (rocRemoveRedundantPts) {
                 Pair<double[][], int[][]> pair = removeRedundant(thresholdOut, precisionOut, recallOut, tpCountOut,
                                 fpCountOut, fnCountOut);
@@ -525,6 +679,26 @@ public class ROC extends BaseEvaluation<ROC> {
 
             this.rocCurve = new RocCurve(tOut, x_fpr_out, y_tpr_out);
 
+            return rocCurve;
+        } else if (isStreaming()) {
+            double[][] sketchCounts = getSketchCounts();
+            double[] tOut = sketchCounts[0];
+            double[] x_fpr_out = new double[tOut.length];
+            double[] y_tpr_out = new double[tOut.length];
+            for (int i = 0; i < tOut.length; i++) {
+                x_fpr_out[i] = sketchCounts[2][i] / countActualNegative;
+                y_tpr_out[i] = sketchCounts[1][i] / countActualPositive;
+            }
+
+            if (rocRemoveRedundantPts) {
+                Pair<double[][], int[][]> p = removeRedundant(tOut, x_fpr_out, y_tpr_out, null, null, null);
+                double[][] temp = p.getFirst();
+                tOut = temp[0];
+                x_fpr_out = temp[1];
+                y_tpr_out = temp[2];
+            }
+
+            this.rocCurve = new RocCurve(tOut, x_fpr_out, y_tpr_out);
             return rocCurve;
         } else {
 
@@ -649,6 +823,11 @@ public class ROC extends BaseEvaluation<ROC> {
                             "Cannot merge ROC instances with different numbers of threshold steps ("
                                             + this.thresholdSteps + " vs. " + other.thresholdSteps + ")");
         }
+        if (this.sketchCompression != other.sketchCompression) {
+            throw new UnsupportedOperationException(
+                            "Cannot merge ROC instances with different sketch compression (" + this.sketchCompression
+                                            + " vs. " + other.sketchCompression + ")");
+        }
         this.countActualPositive += other.countActualPositive;
         this.countActualNegative += other.countActualNegative;
         this.auc = null;
@@ -680,6 +859,9 @@ public class ROC extends BaseEvaluation<ROC> {
             probAndLabel.put(new INDArrayIndex[] {
                             interval(exampleCount, exampleCount + other.exampleCount), all()},
                             toPut);
+        } else if (isStreaming()) {
+            positiveSketch.merge(other.positiveSketch);
+            negativeSketch.merge(other.negativeSketch);
         } else {
             for (Double d : this.counts.keySet()) {
                 CountsForThreshold cft = this.counts.get(d);
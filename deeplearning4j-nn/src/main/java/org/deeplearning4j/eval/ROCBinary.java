@@ -14,7 +14,8 @@ import java.util.List;
 
 /**
  * ROC (Receiver Operating Characteristic) for multi-task binary classifiers.
- * As per {@link ROC}, ROCBinary supports both exact (thersholdSteps == 0) and thresholded; see {@link ROC} for details.
+ * As per {@link ROC}, ROCBinary supports exact (thersholdSteps == 0), thresholded and streaming ({@link #streaming()})
+ * modes; see {@link ROC} for details.
  * <p>
  * Unlike {@link ROC} (which supports a single binary label (as a single column probability, or 2 column 'softmax' probability
  * distribution), ROCBinary assumes that all outputs are independent binary variables. This also differs from
@@ -33,6 +34,7 @@ public class ROCBinary extends BaseEvaluation<ROCBinary> {
 
     private int thresholdSteps;
     private boolean rocRemoveRedundantPts;
+    private int sketchCompression;
     private List<String> labels;
 
     public ROCBinary() {
@@ -55,6 +57,31 @@ public class ROCBinary extends BaseEvaluation<ROCBinary> {
         this.rocRemoveRedundantPts = rocRemoveRedundantPts;
     }
 
+    /**
+     * Create ROCBinary in streaming mode (fixed memory per output), with default sketch compression. See {@link ROC#streaming()}
+     */
+    public static ROCBinary streaming() {
+        return streaming(TDigest.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * Create ROCBinary in streaming mode (fixed memory per output). See {@link ROC#streaming()}
+     *
+     * @param compression           Sketch compression: number of centroids per sketch, at least
+     *                              {@link TDigest#MIN_COMPRESSION}. See {@link TDigest}
+     * @param rocRemoveRedundantPts Usually set to true. If true,  remove any redundant points from ROC and P-R curves
+     */
+    public static ROCBinary streaming(int compression, boolean rocRemoveRedundantPts) {
+        //Sketches are created lazily (once the number of outputs is known): validate up front
+        if (compression < TDigest.MIN_COMPRESSION)
+            throw new IllegalArgumentException("Sketch compression should be >= " + TDigest.MIN_COMPRESSION
+                            + ", got " + compression);
+
+        ROCBinary roc = new ROCBinary(0, rocRemoveRedundantPts);
+        roc.sketchCompression = compression;
+        return roc;
+    }
+
 
     @Override
     public void reset() {
@@ -82,7 +109,8 @@ public class ROCBinary extends BaseEvaluation<ROCBinary> {
         if (underlying == null) {
             underlying = new ROC[n];
             for (int i = 0; i < n; i++) {
-                underlying[i] = new ROC(thresholdSteps, rocRemoveRedundantPts);
+                underlying[i] = sketchCompression > 0 ? ROC.streaming(sketchCompression, rocRemoveRedundantPts)
+                                : new ROC(thresholdSteps, rocRemoveRedundantPts);
             }
         }
 
@@ -13,7 +13,8 @@ import java.util.List;
 
 /**
  * ROC (Receiver Operating Characteristic) for multi-class classifiers.
-  As per {@link ROC}, ROCBinary supports both exact (thersholdSteps == 0) and thresholded; see {@link ROC} for details.
+  As per {@link ROC}, ROCMultiClass supports exact (thersholdSteps == 0), thresholded and streaming ({@link #streaming()})
+  modes; see {@link ROC} for details.
  * <p>
  * The ROC curves are produced by treating the predictions as a set of one-vs-all classifiers, and then calculating
  * ROC curves for each. In practice, this means for N classes, we get N ROC curves.
@@ -27,6 +28,7 @@ public class ROCMultiClass extends BaseEvaluation<ROCMultiClass> {
 
     private int thresholdSteps;
     private boolean rocRemoveRedundantPts;
+    private int sketchCompression;
     @JsonSerialize(using = ROCArraySerializer.class)
     private ROC[] underlying;
     private List<String> labels;
@@ -52,6 +54,31 @@ public class ROCMultiClass extends BaseEvaluation<ROCMultiClass> {
         this.rocRemoveRedundantPts = rocRemoveRedundantPts;
     }
 
+    /**
+     * Create ROCMultiClass in streaming mode (fixed memory per output), with default sketch compression. See {@link ROC#streaming()}
+     */
+    public static ROCMultiClass streaming() {
+        return streaming(TDigest.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * Create ROCMultiClass in streaming mode (fixed memory per output). See {@link ROC#streaming()}
+     *
+     * @param compression           Sketch compression: number of centroids per sketch, at least
+     *                              {@link TDigest#MIN_COMPRESSION}. See {@link TDigest}
+     * @param rocRemoveRedundantPts Usually set to true. If true,  remove any redundant points from ROC and P-R curves
+     */
+    public static ROCMultiClass streaming(int compression, boolean rocRemoveRedundantPts) {
+        //Sketches are created lazily (once the number of classes is known): validate up front
+        if (compression < TDigest.MIN_COMPRESSION)
+            throw new IllegalArgumentException("Sketch compression should be >= " + TDigest.MIN_COMPRESSION
+                            + ", got " + compression);
+
+        ROCMultiClass roc = new ROCMultiClass(0, rocRemoveRedundantPts);
+        roc.sketchCompression = compression;
+        return roc;
+    }
+
     @Override
     public void reset() {
         underlying = null;
@@ -124,7 +151,8 @@ public class ROCMultiClass extends BaseEvaluation<ROCMultiClass> {
         if (underlying == null) {
             underlying = new ROC[n];
             for (int i = 0; i < n; i++) {
-                underlying[i] = new ROC(thresholdSteps, rocRemoveRedundantPts);
+                underlying[i] = sketchCompression > 0 ? ROC.streaming(sketchCompression, rocRemoveRedundantPts)
+                                : new ROC(thresholdSteps, rocRemoveRedundantPts);
             }
         }
 
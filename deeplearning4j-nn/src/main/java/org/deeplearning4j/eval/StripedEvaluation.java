@@ -0,0 +1,122 @@
+package org.deeplearning4j.eval;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Evaluation that can be fed by multiple threads concurrently, i.e. from ParallelInference consumers.
+ *
+ * Each thread gets its own Evaluation stripe, so threads never wait for each other. Stripes are merged into single
+ * Evaluation by {@link #getEvaluation()}. Since Evaluation counts are primitive per-class counters, merge cost
+ * depends on number of classes only, not on number of evaluated examples.
+ *
+ * PLEASE NOTE: each stripe is guarded by its own monitor, which is contended only while getEvaluation() or reset()
+ * reads that stripe.
+ */
+public class StripedEvaluation {
+    // configuration of stripes: thresholds, cost array, labels etc
+    private final String template;
+
+    private final ThreadLocal<Evaluation> stripe = new ThreadLocal<>();
+    private final List<Evaluation> stripes = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param numClasses Number of classes
+     */
+    public StripedEvaluation(int numClasses) {
+        this(new Evaluation(numClasses));
+    }
+
+    /**
+     * @param labels Class labels
+     */
+    public StripedEvaluation(@NonNull List<String> labels) {
+        this(new Evaluation(labels));
+    }
+
+    /**
+     * @param template Evaluation instance used as configuration of stripes. Its counts, if any, are ignored.
+     */
+    public StripedEvaluation(@NonNull Evaluation template) {
+        Evaluation copy = Evaluation.fromJson(template.toJson());
+        copy.reset();
+        this.template = copy.toJson();
+    }
+
+    protected Evaluation createStripe() {
+        return Evaluation.fromJson(template);
+    }
+
+    protected Evaluation stripe() {
+        Evaluation e = stripe.get();
+        if (e == null) {
+            e = createStripe();
+            stripes.add(e);
+            stripe.set(e);
+        }
+        return e;
+    }
+
+    /**
+     * Evaluate given minibatch in stripe of the calling thread
+     *
+     * @param labels      Data labels
+     * @param predictions Network predictions
+     */
+    public void eval(INDArray labels, INDArray predictions) {
+        Evaluation e = stripe();
+        synchronized (e) {
+            e.eval(labels, predictions);
+        }
+    }
+
+    /**
+     * Evaluate given time series minibatch in stripe of the calling thread
+     *
+     * @param labels      Data labels
+     * @param predictions Network predictions
+     * @param labelsMask  Labels mask, may be null
+     */
+    public void evalTimeSeries(INDArray labels, INDArray predictions, INDArray labelsMask) {
+        Evaluation e = stripe();
+        synchronized (e) {
+            e.evalTimeSeries(labels, predictions, labelsMask);
+        }
+    }
+
+    /**
+     * This method merges all stripes into new Evaluation instance. Threads may continue evaluation meanwhile.
+     *
+     * @return merged Evaluation
+     */
+    public Evaluation getEvaluation() {
+        Evaluation result = createStripe();
+        for (Evaluation e : stripes) {
+            synchronized (e) {
+                result.merge(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return number of threads that have fed this evaluation so far
+     */
+    public int getNumStripes() {
+        return stripes.size();
+    }
+
+    /**
+     * This method resets all stripes
+     */
+    public void reset() {
+        for (Evaluation e : stripes) {
+            synchronized (e) {
+                e.reset();
+            }
+        }
+    }
+}
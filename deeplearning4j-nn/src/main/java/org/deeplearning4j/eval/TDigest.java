@@ -0,0 +1,320 @@
+package org.deeplearning4j.eval;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch (t-digest, merging variant with arcsine scale function) for streaming score distributions.
+ *
+ * Values are buffered, and buffer is periodically merged into a sorted set of centroids. Centroids are small near the
+ * tails of distribution and larger in the middle, and number of centroids never exceeds ~compression, regardless of
+ * number of values added. Merging two digests costs O(compression).
+ *
+ * Mass below a given value is estimated by treating single-value centroids as exact points, and spreading other
+ * centroids uniformly between midpoints to their neighbours. So digest is exact as long as all centroids are
+ * singletons - i.e. for small number of values.
+ *
+ * PLEASE NOTE: this class isn't thread-safe
+ */
+public class TDigest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_COMPRESSION = 200;
+    public static final int MIN_COMPRESSION = 10;
+
+    private int compression;
+    private double[] means = new double[0];
+    private double[] weights = new double[0];
+    private double totalWeight;
+    private double min;
+    private double max;
+
+    // values not merged into centroids yet
+    private transient double[] bufferValues;
+    private transient double[] bufferWeights;
+    private transient int bufferSize;
+
+    // prefix sums of centroid weights, built lazily
+    private transient double[] cumulative;
+
+    private TDigest() {
+        //No-arg constructor for JSON
+    }
+
+    /**
+     * @param compression Accuracy/size tradeoff: number of centroids is bounded by ~compression, and estimation
+     *                    error is ~1/compression. 100 to 500 is reasonable for most use cases.
+     */
+    public TDigest(int compression) {
+        if (compression < MIN_COMPRESSION)
+            throw new IllegalArgumentException(
+                            "Compression should be >= " + MIN_COMPRESSION + ", got " + compression);
+
+        this.compression = compression;
+    }
+
+    public int getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return total weight of all values added so far
+     */
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void add(double value) {
+        add(value, 1.0);
+    }
+
+    public void add(double value, double weight) {
+        if (Double.isNaN(value))
+            throw new IllegalArgumentException("Cannot add NaN value to TDigest");
+
+        if (weight <= 0.0)
+            return;
+
+        if (bufferValues == null) {
+            bufferValues = new double[5 * compression];
+            bufferWeights = new double[bufferValues.length];
+        } else if (bufferSize == bufferValues.length) {
+            compress();
+        }
+
+        if (totalWeight == 0.0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        bufferValues[bufferSize] = value;
+        bufferWeights[bufferSize] = weight;
+        bufferSize++;
+        totalWeight += weight;
+    }
+
+    /**
+     * Adds all values of other digest to this one. Other digest is compressed, but isn't modified otherwise.
+     */
+    public void merge(TDigest other) {
+        if (other.totalWeight == 0.0)
+            return;
+
+        other.compress();
+        for (int i = 0; i < other.means.length; i++)
+            add(other.means[i], other.weights[i]);
+
+        //Centroid means lie within [other.min, other.max], so the exact extremes have to be carried over separately
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Merges buffered values into centroids
+     */
+    public void compress() {
+        if (bufferSize == 0)
+            return;
+
+        sort(bufferValues, bufferWeights, 0, bufferSize - 1);
+
+        // centroids & buffer are both sorted, so we merge them in one pass
+        int n = means.length + bufferSize;
+        double[] newMeans = new double[n];
+        double[] newWeights = new double[n];
+        double normalizer = compression / (2 * Math.PI);
+
+        int c = 0;
+        int b = 0;
+        int out = -1;
+        double weightSoFar = 0.0;
+        double kLow = 0.0;
+        for (int i = 0; i < n; i++) {
+            double v;
+            double w;
+            if (b >= bufferSize || (c < means.length && means[c] <= bufferValues[b])) {
+                v = means[c];
+                w = weights[c++];
+            } else {
+                v = bufferValues[b];
+                w = bufferWeights[b++];
+            }
+
+            if (out >= 0) {
+                double q = (weightSoFar + newWeights[out] + w) / totalWeight;
+                if (normalizer * Math.asin(2 * q - 1) - kLow <= 1.0) {
+                    newWeights[out] += w;
+                    newMeans[out] += (v - newMeans[out]) * w / newWeights[out];
+                    continue;
+                }
+                weightSoFar += newWeights[out];
+            }
+
+            kLow = normalizer * Math.asin(2 * Math.min(1.0, weightSoFar / totalWeight) - 1);
+            out++;
+            newMeans[out] = v;
+            newWeights[out] = w;
+        }
+
+        means = Arrays.copyOf(newMeans, out + 1);
+        weights = Arrays.copyOf(newWeights, out + 1);
+        bufferSize = 0;
+        cumulative = null;
+    }
+
+    /**
+     * @return number of centroids, after compression
+     */
+    public int centroids() {
+        compress();
+        return means.length;
+    }
+
+    public double getMean(int centroid) {
+        compress();
+        return means[centroid];
+    }
+
+    public double getWeight(int centroid) {
+        compress();
+        return weights[centroid];
+    }
+
+    /**
+     * Estimates total weight of values strictly below given value
+     */
+    public double weightBelow(double value) {
+        compress();
+        int n = means.length;
+        if (n == 0 || value <= min)
+            return 0.0;
+        if (value > max)
+            return totalWeight;
+
+        if (cumulative == null) {
+            cumulative = new double[n + 1];
+            for (int i = 0; i < n; i++)
+                cumulative[i + 1] = cumulative[i] + weights[i];
+        }
+
+        // i: number of centroids with mean strictly below value
+        int i = Arrays.binarySearch(means, value);
+        if (i < 0) {
+            i = -i - 1;
+        } else {
+            while (i > 0 && means[i - 1] == value)
+                i--;
+        }
+
+        double result = i > 1 ? cumulative[i - 1] : 0.0;
+        if (i > 0)
+            result += portionBelow(i - 1, value);
+        if (i < n)
+            result += portionBelow(i, value);
+        return result;
+    }
+
+    private double portionBelow(int i, double value) {
+        double w = weights[i];
+        if (w <= 1.0)
+            return means[i] < value ? w : 0.0;
+
+        double lo = i == 0 ? min : (means[i - 1] + means[i]) / 2;
+        double hi = i == means.length - 1 ? max : (means[i] + means[i + 1]) / 2;
+        if (hi <= lo)
+            return means[i] < value ? w : 0.0;
+
+        return w * Math.max(0.0, Math.min(1.0, (value - lo) / (hi - lo)));
+    }
+
+    /**
+     * Returns sorted values at which estimated distribution changes its shape: centroid means, and bounds of intervals
+     * centroids are spread over. Between any two adjacent values, {@link #weightBelow(double)} is linear.
+     */
+    public double[] breakpoints() {
+        compress();
+        int n = means.length;
+        if (n == 0)
+            return new double[0];
+
+        double[] result = new double[2 * n + 1];
+        result[0] = min;
+        for (int i = 0; i < n; i++) {
+            result[2 * i + 1] = means[i];
+            result[2 * i + 2] = i == n - 1 ? max : (means[i] + means[i + 1]) / 2;
+        }
+        return result;
+    }
+
+    public void reset() {
+        means = new double[0];
+        weights = new double[0];
+        totalWeight = 0.0;
+        min = 0.0;
+        max = 0.0;
+        bufferSize = 0;
+        cumulative = null;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        compress();
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Sorts values in range [from, to] inclusive, along with their weights
+     */
+    private static void sort(double[] values, double[] weights, int from, int to) {
+        while (to - from > 16) {
+            double pivot = values[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (values[i] < pivot)
+                    i++;
+                while (values[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    swap(values, weights, i++, j--);
+                }
+            }
+
+            // recurse into smaller part, loop over the larger one
+            if (j - from < to - i) {
+                sort(values, weights, from, j);
+                from = i;
+            } else {
+                sort(values, weights, i, to);
+                to = j;
+            }
+        }
+
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && values[j - 1] > values[j]; j--)
+                swap(values, weights, j, j - 1);
+        }
+    }
+
+    private static void swap(double[] values, double[] weights, int i, int j) {
+        double v = values[i];
+        values[i] = values[j];
+        values[j] = v;
+
+        double w = weights[i];
+        weights[i] = weights[j];
+        weights[j] = w;
+    }
+}
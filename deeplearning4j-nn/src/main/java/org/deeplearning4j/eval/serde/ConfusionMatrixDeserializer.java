@@ -33,7 +33,14 @@ public class ConfusionMatrixDeserializer extends JsonDeserializer<ConfusionMatri
             classes.add(cn.asInt());
         }
 
-        ConfusionMatrix<Integer> cm = new ConfusionMatrix<>(classes);
+        //Classes 0..n-1 (as used by Evaluation) are restored into primitive counts
+        boolean sequential = !classes.isEmpty();
+        for (int i = 0; i < classes.size() && sequential; i++) {
+            sequential = classes.get(i) == i;
+        }
+
+        ConfusionMatrix<Integer> cm = sequential ? ConfusionMatrix.forClasses(classes.size())
+                        : new ConfusionMatrix<>(classes);
 
         ObjectNode matrix = (ObjectNode) n.get("matrix");
         Iterator<Map.Entry<String, JsonNode>> matrixIter = matrix.fields();
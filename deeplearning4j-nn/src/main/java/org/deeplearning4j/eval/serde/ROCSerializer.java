@@ -31,6 +31,14 @@ public class ROCSerializer extends JsonSerializer<ROC> {
         jsonGenerator.writeNumberField("countActualPositive", roc.getCountActualPositive());
         jsonGenerator.writeNumberField("countActualNegative", roc.getCountActualNegative());
         jsonGenerator.writeObjectField("counts", roc.getCounts());
+        if (roc.isStreaming()) {
+            //Sketches are small (fixed size), so we store them: curves can be recalculated, and instances merged later
+            roc.getPositiveSketch().compress();
+            roc.getNegativeSketch().compress();
+            jsonGenerator.writeNumberField("sketchCompression", roc.getSketchCompression());
+            jsonGenerator.writeObjectField("positiveSketch", roc.getPositiveSketch());
+            jsonGenerator.writeObjectField("negativeSketch", roc.getNegativeSketch());
+        }
         jsonGenerator.writeNumberField("auc", roc.calculateAUC());
         jsonGenerator.writeNumberField("auprc", roc.calculateAUCPR());
         if (roc.isExact()) {
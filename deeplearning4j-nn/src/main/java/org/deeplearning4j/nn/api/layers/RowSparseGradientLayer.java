@@ -0,0 +1,31 @@
+package org.deeplearning4j.nn.api.layers;
+
+import org.deeplearning4j.nn.api.Layer;
+
+/**
+ * Layer with parameters whose gradients are row-sparse: i.e., only a few rows of a (possibly very large) parameter
+ * matrix get non-zero gradients in each iteration - for example, {@link org.deeplearning4j.nn.conf.layers.EmbeddingLayer}
+ * weights, where only the rows for the examples in the minibatch are touched.<br>
+ * Gradient view arrays for such parameters are still dense, but all rows other than those returned by
+ * {@link #getGradientRows(String)} are zeros. This allows the updater to apply only to those rows, instead of to the
+ * full parameter array.
+ * <p>
+ * PLEASE NOTE: implementations zero only the previously touched rows of the gradient view before each backprop, hence
+ * nothing other than the updater may write to the other rows of the gradient view of row-sparse parameters.
+ */
+public interface RowSparseGradientLayer extends Layer {
+
+    /**
+     * @param paramName Name of the parameter
+     * @return True if gradients for the given parameter are row-sparse, i.e., {@link #getGradientRows(String)} should
+     * be used to update it
+     */
+    boolean isRowSparseGradient(String paramName);
+
+    /**
+     * @param paramName Name of the parameter
+     * @return Sorted, unique indices of the rows of the given parameter's gradient that were touched by the last
+     * backprop; null if unknown (in which case whole gradient should be treated as dense)
+     */
+    int[] getGradientRows(String paramName);
+}
@@ -24,6 +24,7 @@ import org.deeplearning4j.nn.conf.graph.MergeVertex;
 import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.deeplearning4j.nn.conf.layers.BaseLayer;
 import org.deeplearning4j.nn.conf.layers.BasePretrainNetwork;
+import org.deeplearning4j.nn.conf.layers.EmbeddingLayer;
 import org.deeplearning4j.nn.conf.layers.Layer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.conf.memory.MemoryReport;
@@ -74,6 +75,19 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
     @Setter
     protected CacheMode cacheMode;
 
+    /**
+     * Maximum number of independent vertices executed concurrently during inference (i.e., output methods). Default
+     * (1): vertices are executed one after another, in topological order.
+     * See {@link org.deeplearning4j.nn.graph.util.ParallelVertexExecutor}
+     */
+    protected int interOpParallelism = 1;
+
+    /**
+     * Number of micro-batches per parameter update when fitting from an iterator; 1: no gradient accumulation.
+     * See {@link GraphBuilder#gradientAccumulationSteps(int)}
+     */
+    protected int gradientAccumulationSteps = 1;
+
     /**
      * List of inputs to the network, by name
      */
@@ -251,6 +265,8 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         conf.inferenceWorkspaceMode = inferenceWorkspaceMode;
         conf.cacheMode = this.cacheMode;
         conf.defaultConfiguration.cacheMode = this.cacheMode;
+        conf.interOpParallelism = interOpParallelism;
+        conf.gradientAccumulationSteps = gradientAccumulationSteps;
 
         return conf;
     }
@@ -567,6 +583,8 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         protected NeuralNetConfiguration.Builder globalConfiguration;
 
         protected boolean allowDisconnected = false;
+        protected int interOpParallelism = 1;
+        protected int gradientAccumulationSteps = 1;
 
         public GraphBuilder(NeuralNetConfiguration.Builder globalConfiguration) {
             this.globalConfiguration = globalConfiguration;
@@ -867,6 +885,37 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             return this;
         }
 
+        /**
+         * Maximum number of independent vertices (i.e., branches of inception-style graphs) to execute concurrently
+         * during inference. Default: 1 - vertices are executed one after another.<br>
+         * Values > 1 may reduce latency for graphs with parallel branches and small minibatches (such as a single
+         * example), when individual vertices can't saturate all cores. Training is not affected.
+         *
+         * @param interOpParallelism Maximum number of vertices executed concurrently
+         */
+        public GraphBuilder interOpParallelism(int interOpParallelism) {
+            if (interOpParallelism < 1)
+                throw new IllegalArgumentException("Inter-op parallelism should be positive value, got "
+                                + interOpParallelism);
+            this.interOpParallelism = interOpParallelism;
+            return this;
+        }
+
+        /**
+         * Enable gradient accumulation: when fitting from an iterator, the gradients of this many consecutive
+         * minibatches are accumulated, and the updater is applied once for all of them.
+         * See {@link org.deeplearning4j.nn.conf.MultiLayerConfiguration.Builder#gradientAccumulationSteps(int)} for
+         * details.
+         *
+         * @param steps Number of micro-batches per parameter update. Default: 1 (no accumulation)
+         */
+        public GraphBuilder gradientAccumulationSteps(int steps) {
+            if (steps < 1)
+                throw new IllegalArgumentException("Gradient accumulation steps must be positive, got " + steps);
+            this.gradientAccumulationSteps = steps;
+            return this;
+        }
+
         /**
          * Create the ComputationGraphConfiguration from the Builder pattern
          */
@@ -887,6 +936,8 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             conf.trainingWorkspaceMode = globalConfiguration.trainingWorkspaceMode;
             conf.inferenceWorkspaceMode = globalConfiguration.inferenceWorkspaceMode;
             conf.cacheMode = globalConfiguration.cacheMode;
+            conf.interOpParallelism = interOpParallelism;
+            conf.gradientAccumulationSteps = gradientAccumulationSteps;
 
             conf.defaultConfiguration = globalConfiguration.build();
             conf.getDefaultConfiguration().setPretrain(pretrain);
@@ -911,6 +962,11 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
                     Layer l = lv.getLayerConf().getLayer();
                     if (l instanceof BasePretrainNetwork)
                         lv.getLayerConf().setPretrain(pretrain);
+                    if (gradientAccumulationSteps > 1 && l instanceof EmbeddingLayer
+                                    && ((EmbeddingLayer) l).isSparseGradients()) {
+                        throw new IllegalStateException("Gradient accumulation cannot be used with sparse gradient "
+                                        + "embedding layers: layer \"" + gv.getKey() + "\"");
+                    }
                 }
 
             }
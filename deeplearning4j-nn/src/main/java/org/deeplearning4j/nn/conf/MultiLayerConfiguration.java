@@ -24,6 +24,7 @@ import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.conf.memory.ActivationCheckpointPlanner;
 import org.deeplearning4j.nn.conf.memory.LayerMemoryReport;
 import org.deeplearning4j.nn.conf.memory.MemoryReport;
 import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
@@ -35,6 +36,7 @@ import org.nd4j.linalg.lossfunctions.impl.LossBinaryXENT;
 import org.nd4j.linalg.lossfunctions.impl.LossMCXENT;
 import org.nd4j.linalg.lossfunctions.impl.LossMSE;
 import org.nd4j.linalg.lossfunctions.impl.LossNegativeLogLikelihood;
+import org.nd4j.shade.jackson.annotation.JsonIgnore;
 import org.nd4j.shade.jackson.databind.JsonNode;
 import org.nd4j.shade.jackson.databind.ObjectMapper;
 import org.nd4j.shade.jackson.databind.node.ArrayNode;
@@ -82,6 +84,12 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
     //Counter for the number of epochs completed so far. Used for per-epoch schedules
     protected int epochCount = 0;
 
+    //Index of the first layer of each activation checkpointing segment; null if checkpointing is disabled
+    protected int[] checkpointLayers;
+
+    //Number of micro-batches per parameter update when fitting from an iterator; 1: no gradient accumulation
+    protected int gradientAccumulationSteps = 1;
+
     /**
      *
      * @return  JSON representation of NN configuration
@@ -298,6 +306,9 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             clone.inferenceWorkspaceMode = this.inferenceWorkspaceMode;
             clone.trainingWorkspaceMode = this.trainingWorkspaceMode;
             clone.cacheMode = this.cacheMode;
+            if (this.checkpointLayers != null) {
+                clone.checkpointLayers = this.checkpointLayers.clone();
+            }
 
             return clone;
 
@@ -340,7 +351,22 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             inputType = confs.get(i).getLayer().getOutputType(i, inputType);
         }
 
-        return new NetworkMemoryReport(memoryReportMap, MultiLayerConfiguration.class, "MultiLayerNetwork", inputType);
+        NetworkMemoryReport report = new NetworkMemoryReport(memoryReportMap, MultiLayerConfiguration.class,
+                        "MultiLayerNetwork", inputType);
+        if (checkpointLayers != null && backpropType != BackpropType.TruncatedBPTT) {
+            report.setActivationCheckpoints(checkpointLayers.clone());
+        }
+        return report;
+    }
+
+    /**
+     * @return True if activation checkpointing is enabled for training: see
+     * {@link Builder#checkpointLayers(int...)}
+     */
+    @JsonIgnore
+    public boolean isActivationCheckpointing() {
+        return checkpointLayers != null && checkpointLayers.length > 1
+                        && backpropType != BackpropType.TruncatedBPTT;
     }
 
     @Data
@@ -359,6 +385,9 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
         protected WorkspaceMode trainingWorkspaceMode = WorkspaceMode.SEPARATE;
         protected WorkspaceMode inferenceWorkspaceMode = WorkspaceMode.SEPARATE;
         protected CacheMode cacheMode = CacheMode.NONE;
+        protected int[] checkpointLayers;
+        protected boolean autoCheckpoint = false;
+        protected int gradientAccumulationSteps = 1;
 
         /**
          * Specify the processors.
@@ -419,6 +448,59 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             return this;
         }
 
+        /**
+         * Enable activation checkpointing (also known as gradient checkpointing) for training, with the specified
+         * segments. The layers of the network are split into contiguous segments, each starting at one of the
+         * specified layer indices. During the forward pass, only the activations at the segment boundaries are
+         * retained; the activations within each segment are recomputed (one segment at a time) during backprop.
+         * This reduces the activation memory required for training, at the cost of an additional forward pass.<br>
+         * Layer 0 is always the start of the first segment; the output layer cannot be the start of a segment.<br>
+         * PLEASE NOTE: Activation checkpointing is not used with truncated BPTT. The memory savings are realized with
+         * the (default) {@link WorkspaceMode#SEPARATE} training workspace mode. TrainingListener.onForwardPass is not
+         * called during training with checkpointing, as the activations of all layers are never available at once.
+         *
+         * @param segmentStarts Index of the first layer of each segment
+         * @see #autoCheckpoint(boolean)
+         */
+        public Builder checkpointLayers(int... segmentStarts) {
+            this.checkpointLayers = segmentStarts;
+            return this;
+        }
+
+        /**
+         * Enable activation checkpointing with automatically planned segments: approximately sqrt(nLayers) segments
+         * of similar activation size (if the input type is set) or of similar number of layers (otherwise).
+         * See {@link #checkpointLayers(int...)} and
+         * {@link org.deeplearning4j.nn.conf.memory.ActivationCheckpointPlanner} for details.
+         *
+         * @param autoCheckpoint If true: plan the activation checkpoint segments automatically
+         */
+        public Builder autoCheckpoint(boolean autoCheckpoint) {
+            this.autoCheckpoint = autoCheckpoint;
+            return this;
+        }
+
+        /**
+         * Enable gradient accumulation: when fitting from an iterator, the gradients of this many consecutive
+         * minibatches ("micro-batches") are accumulated, and the updater is applied once for all of them. This
+         * allows training with an effective minibatch size of (steps * minibatch size), with the memory requirements
+         * of a single minibatch: the resulting updates are the same as for a single minibatch containing all of the
+         * examples (other than for layers with minibatch-dependent forward passes, such as batch normalization).
+         * Iteration counts (and hence learning rate schedules) and {@code iterationDone} listener calls are per
+         * parameter update, not per micro-batch.<br>
+         * PLEASE NOTE: Gradient accumulation is only used with fit(DataSetIterator) and fit(MultiDataSetIterator),
+         * and not with truncated BPTT. At the end of each epoch, any remaining micro-batches are applied as a smaller
+         * step. It cannot be used with sparse gradient embedding layers.
+         *
+         * @param steps Number of micro-batches per parameter update. Default: 1 (no accumulation)
+         */
+        public Builder gradientAccumulationSteps(int steps) {
+            if (steps < 1)
+                throw new IllegalArgumentException("Gradient accumulation steps must be positive, got " + steps);
+            this.gradientAccumulationSteps = steps;
+            return this;
+        }
+
         /**The type of backprop. Default setting is used for most networks (MLP, CNN etc),
          * but optionally truncated BPTT can be used for training recurrent neural networks.
          * If using TruncatedBPTT make sure you set both tBPTTForwardLength() and tBPTTBackwardLength()
@@ -515,6 +597,8 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             // 1. User calls setInputType directly
             // 2. Via ConvolutionLayerSetup -> internally calls setInputType(InputType.convolutional(...))
             // 3. Via the above code: i.e., assume input is as expected  by the RNN or dense layer -> sets the inputType field
+            long[] activationSizes = new long[confs.size()];
+            Arrays.fill(activationSizes, 1);
             if (inputType != null) {
                 InputType currentInputType = inputType;
                 for (int i = 0; i < confs.size(); i++) {
@@ -534,6 +618,7 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
                     l.setNIn(currentInputType, false); //Don't override the nIn setting, if it's manually set by the user
 
                     currentInputType = l.getOutputType(i, currentInputType);
+                    activationSizes[i] = currentInputType.arrayElementsPerExample();
                 }
 
             }
@@ -557,6 +642,20 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             conf.trainingWorkspaceMode = trainingWorkspaceMode;
             conf.inferenceWorkspaceMode = inferenceWorkspaceMode;
             conf.cacheMode = cacheMode;
+            if (checkpointLayers != null) {
+                conf.checkpointLayers = ActivationCheckpointPlanner.validate(checkpointLayers, confs.size());
+            } else if (autoCheckpoint) {
+                conf.checkpointLayers = ActivationCheckpointPlanner.plan(activationSizes);
+            }
+            if (gradientAccumulationSteps > 1) {
+                for (NeuralNetConfiguration c : confs) {
+                    if (c.getLayer() instanceof EmbeddingLayer && ((EmbeddingLayer) c.getLayer()).isSparseGradients()) {
+                        throw new IllegalStateException("Gradient accumulation cannot be used with sparse gradient "
+                                        + "embedding layers: layer \"" + c.getLayer().getLayerName() + "\"");
+                    }
+                }
+            }
+            conf.gradientAccumulationSteps = gradientAccumulationSteps;
 
             Nd4j.getRandom().setSeed(conf.getConf(0).getSeed());
             return conf;
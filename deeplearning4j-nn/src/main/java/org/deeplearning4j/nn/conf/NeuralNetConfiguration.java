@@ -226,6 +226,24 @@ public class NeuralNetConfiguration implements Serializable, Cloneable {
             return this;
         }
 
+        @Override
+        public ListBuilder checkpointLayers(int... segmentStarts) {
+            super.checkpointLayers(segmentStarts);
+            return this;
+        }
+
+        @Override
+        public ListBuilder autoCheckpoint(boolean autoCheckpoint) {
+            super.autoCheckpoint(autoCheckpoint);
+            return this;
+        }
+
+        @Override
+        public ListBuilder gradientAccumulationSteps(int steps) {
+            super.gradientAccumulationSteps(steps);
+            return this;
+        }
+
         public ListBuilder layer(int ind, @NonNull Layer layer) {
             if (layerwise.containsKey(ind)) {
                 log.info("Layer index {} already exists, layer of type {} will be replace by layer type {}",
@@ -300,7 +318,9 @@ public class NeuralNetConfiguration implements Serializable, Cloneable {
                             .pretrain(pretrain).backpropType(backpropType).tBPTTForwardLength(tbpttFwdLength)
                             .tBPTTBackwardLength(tbpttBackLength).setInputType(this.inputType)
                             .trainingWorkspaceMode(wsmTrain).cacheMode(globalConfig.cacheMode)
-                            .inferenceWorkspaceMode(wsmTest).confs(list).build();
+                            .inferenceWorkspaceMode(wsmTest).checkpointLayers(checkpointLayers)
+                            .autoCheckpoint(autoCheckpoint).gradientAccumulationSteps(gradientAccumulationSteps)
+                            .confs(list).build();
         }
 
         /** Helper class for setting input types */
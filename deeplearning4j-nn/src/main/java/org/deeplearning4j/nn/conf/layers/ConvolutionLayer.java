@@ -34,6 +34,9 @@ public class ConvolutionLayer extends FeedForwardLayer {
     protected int[] stride; // Default is 2. Down-sample by a factor of 2
     protected int[] padding;
     protected boolean cudnnAllowFallback = true;
+    protected boolean cpuHelperEnabled = true;
+    protected boolean cpuHelperAutotune = true;
+    protected boolean cpuHelperAllowFallback = true;
 
     /** The "PREFER_FASTEST" mode will pick the fastest algorithm for the specified parameters
      * from the {@link FwdAlgo}, {@link BwdFilterAlgo}, and {@link BwdDataAlgo} lists, but they
@@ -41,7 +44,8 @@ public class ConvolutionLayer extends FeedForwardLayer {
      * "NO_WORKSPACE" mode. Alternatively, it is possible to specify the algorithm manually by
      * setting the "USER_SPECIFIED" mode, but this is not recommended.
      *
-     * Note: Currently only supported with cuDNN.
+     * Note: Currently only supported with cuDNN, and with the CPU helper (see CpuConvolutionHelper), where
+     * "NO_WORKSPACE" excludes the Winograd algorithm from autotuning.
      */
     public enum AlgoMode {
         NO_WORKSPACE, PREFER_FASTEST, USER_SPECIFIED
@@ -49,7 +53,8 @@ public class ConvolutionLayer extends FeedForwardLayer {
 
     /** The forward algorithm to use when {@link AlgoMode} is set to "USER_SPECIFIED".
      *
-     * Note: Currently only supported with cuDNN.
+     * Note: Currently only supported with cuDNN and the CPU helper (see CpuConvolutionHelper). The CPU helper supports
+     * IMPLICIT_GEMM, DIRECT and WINOGRAD where applicable, and uses the built-in implementation (GEMM) otherwise.
      */
     public enum FwdAlgo {
         IMPLICIT_GEMM, IMPLICIT_PRECOMP_GEMM, GEMM, DIRECT, FFT, FFT_TILING, WINOGRAD, WINOGRAD_NONFUSED, COUNT
@@ -103,6 +108,9 @@ public class ConvolutionLayer extends FeedForwardLayer {
         this.cudnnBwdFilterAlgo = builder.cudnnBwdFilterAlgo;
         this.cudnnBwdDataAlgo = builder.cudnnBwdDataAlgo;
         this.cudnnAllowFallback = builder.cudnnAllowFallback;
+        this.cpuHelperEnabled = builder.cpuHelperEnabled;
+        this.cpuHelperAutotune = builder.cpuHelperAutotune;
+        this.cpuHelperAllowFallback = builder.cpuHelperAllowFallback;
 
         initializeConstraints(builder);
     }
@@ -315,6 +323,9 @@ public class ConvolutionLayer extends FeedForwardLayer {
         protected BwdFilterAlgo cudnnBwdFilterAlgo;
         protected BwdDataAlgo cudnnBwdDataAlgo;
         protected boolean cudnnAllowFallback = true;
+        protected boolean cpuHelperEnabled = true;
+        protected boolean cpuHelperAutotune = true;
+        protected boolean cpuHelperAllowFallback = true;
 
 
         protected BaseConvBuilder(int[] kernelSize, int[] stride, int[] padding) {
@@ -396,7 +407,8 @@ public class ConvolutionLayer extends FeedForwardLayer {
         /**
          * When using CuDNN and an error is encountered, should fallback to the non-CuDNN implementatation be allowed?
          * If set to false, an exception in CuDNN will be propagated back to the user. If false, the built-in (non-CuDNN)
-         * implementation for ConvolutionLayer will be used
+         * implementation for ConvolutionLayer will be used.<br>
+         * Note: applies to cuDNN only; for the CPU helper, see {@link #cpuHelperAllowFallback(boolean)}
          *
          * @param allowFallback Whether fallback to non-CuDNN implementation should be used
          */
@@ -404,5 +416,40 @@ public class ConvolutionLayer extends FeedForwardLayer {
             this.cudnnAllowFallback = allowFallback;
             return (T) this;
         }
+
+        /**
+         * Whether the CPU convolution helper (see CpuConvolutionHelper) may be used for this layer, on the CPU backend
+         * when cuDNN isn't available. Default: true
+         *
+         * @param enabled Whether the CPU helper should be used
+         */
+        public T cpuHelper(boolean enabled){
+            this.cpuHelperEnabled = enabled;
+            return (T) this;
+        }
+
+        /**
+         * When using the CPU helper: whether all applicable algorithms (including the built-in implementation) should
+         * be timed on the first forward pass for each input shape, to select the fastest one. If false, the built-in
+         * implementation is used unless an algorithm is user specified (see {@link #cudnnAlgoMode(AlgoMode)}).
+         * Default: true
+         *
+         * @param autotune Whether to autotune the CPU helper algorithm
+         */
+        public T cpuHelperAutotune(boolean autotune){
+            this.cpuHelperAutotune = autotune;
+            return (T) this;
+        }
+
+        /**
+         * When using the CPU helper and an error is encountered, should fallback to the built-in implementation be
+         * allowed? If set to false, the exception will be propagated back to the user. Default: true
+         *
+         * @param allowFallback Whether fallback to the built-in implementation should be used
+         */
+        public T cpuHelperAllowFallback(boolean allowFallback){
+            this.cpuHelperAllowFallback = allowFallback;
+            return (T) this;
+        }
     }
 }
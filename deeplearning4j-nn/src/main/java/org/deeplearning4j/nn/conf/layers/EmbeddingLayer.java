@@ -35,10 +35,12 @@ import java.util.Map;
 @EqualsAndHashCode(callSuper = true)
 public class EmbeddingLayer extends FeedForwardLayer {
     private boolean hasBias = true; //Default for pre-0.9.2 implementations
+    private boolean sparseGradients = false;
 
     private EmbeddingLayer(Builder builder) {
         super(builder);
         this.hasBias = builder.hasBias;
+        this.sparseGradients = builder.sparseGradients;
         initializeConstraints(builder);
     }
 
@@ -88,6 +90,7 @@ public class EmbeddingLayer extends FeedForwardLayer {
     public static class Builder extends FeedForwardLayer.Builder<Builder> {
 
         private boolean hasBias = false;
+        private boolean sparseGradients = false;
 
         /**
          * If true: include bias parameters in the layer. False (default): no bias.
@@ -99,6 +102,25 @@ public class EmbeddingLayer extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * If true: weight gradients are row-sparse, and the updater is applied only to the rows of the examples in
+         * the current minibatch, instead of the full [nIn, nOut] weights array. False (default): dense updates.<br>
+         * Updater state of the other rows is caught up lazily, when the row is next touched: i.e., momentum/moving
+         * averages are decayed for the skipped iterations (as would happen with zero gradients), but the parameters
+         * aren't moved by the remaining momentum meanwhile. L1/L2 are caught up the same way.<br>
+         * This is useful for large numbers of classes (for example, word embeddings for large vocabularies), where
+         * dense updates would cost O(nIn) per iteration.<br>
+         * PLEASE NOTE: supported for Sgd, NoOp, Adam, AdaMax, Nadam, RmsProp, AdaDelta, AdaGrad and Nesterovs updaters;
+         * other updaters use dense updates. Not supported with gradient sharing (i.e., ParallelWrapper with shared
+         * gradients), which writes dense updates into the gradient arrays.
+         *
+         * @param sparseGradients If true: use row-sparse gradients and updates for the weights
+         */
+        public Builder sparseGradients(boolean sparseGradients) {
+            this.sparseGradients = sparseGradients;
+            return this;
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public EmbeddingLayer build() {
@@ -31,6 +31,7 @@ import org.deeplearning4j.nn.conf.layers.convolutional.Cropping1D;
 import org.deeplearning4j.nn.conf.layers.convolutional.Cropping2D;
 import org.deeplearning4j.nn.conf.layers.misc.ElementWiseMultiplicationLayer;
 import org.deeplearning4j.nn.conf.layers.misc.FrozenLayer;
+import org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer;
 import org.deeplearning4j.nn.conf.layers.objdetect.Yolo2OutputLayer;
 import org.deeplearning4j.nn.conf.layers.recurrent.Bidirectional;
 import org.deeplearning4j.nn.conf.layers.recurrent.SimpleRnn;
@@ -86,7 +87,8 @@ import java.util.*;
                 @JsonSubTypes.Type(value = MaskLayer.class, name = "MaskLayer"),
                 @JsonSubTypes.Type(value = MaskZeroLayer.class, name = "MaskZeroLayer"),
                 @JsonSubTypes.Type(value = Cropping1D.class, name = "Cropping1D"),
-                @JsonSubTypes.Type(value = Cropping2D.class, name = "Cropping2D")}
+                @JsonSubTypes.Type(value = Cropping2D.class, name = "Cropping2D"),
+                @JsonSubTypes.Type(value = QuantizedLayer.class, name = "QuantizedLayer")}
 )
 @Data
 @NoArgsConstructor
@@ -0,0 +1,111 @@
+package org.deeplearning4j.nn.conf.layers.misc;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.Convolution2D;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.conf.layers.wrapper.BaseWrapperLayer;
+import org.deeplearning4j.nn.conf.memory.LayerMemoryReport;
+import org.deeplearning4j.optimize.api.IterationListener;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.learning.config.IUpdater;
+import org.nd4j.linalg.learning.config.NoOp;
+
+import java.util.Collection;
+
+/**
+ * QuantizedLayer is a "wrapper" layer that simulates inference with 8-bit integer weights and activations: it wraps a
+ * {@link DenseLayer} or {@link ConvolutionLayer} whose weights (W) have been quantized to integer values in range
+ * [-127, 127] with one scale per output channel, and whose biases (b) have been quantized to the accumulator scale
+ * (i.e., b / (inputScale * weightScale)).<br>
+ * During forward pass, the input is quantized to integer values in range [-127, 127] using the calibrated
+ * (per-tensor) input scale; the integer matrix multiplication/convolution and bias addition are then done by the
+ * underlying layer, and the dequantization (multiplication by inputScale * weightScale, per output channel) is applied
+ * just before the activation function.
+ * <p>
+ * QuantizedLayer instances are usually created by {@link org.deeplearning4j.nn.quantization.PostTrainingQuantizer},
+ * and can be used for inference only.
+ * <p>
+ * PLEASE NOTE: this is simulated quantization. ND4J has no int8 data type or int8 matrix multiplication at present,
+ * hence integer values are stored in (and accumulated as) the network's floating point data type: there are no memory
+ * or speed savings compared to the original layer - the extra quantization and dequantization steps make the forward
+ * pass somewhat slower. Accumulation is exact while partial sums stay below 2^24 in magnitude (for float data type),
+ * otherwise it's subject to usual floating point rounding.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class QuantizedLayer extends BaseWrapperLayer {
+
+    private double inputScale;
+    private double[] weightScales;
+
+    private QuantizedLayer() {}
+
+    /**
+     * @param underlying   Layer with quantized parameters: {@link DenseLayer}, {@link ConvolutionLayer} or
+     *                     {@link Convolution2D}
+     * @param inputScale   Scale of the quantized input: i.e., input values are quantized as round(x / inputScale)
+     * @param weightScales Scale of the quantized weights, for each output channel
+     */
+    public QuantizedLayer(@NonNull Layer underlying, double inputScale, @NonNull double[] weightScales) {
+        super(underlying);
+        if (underlying.getClass() != DenseLayer.class && underlying.getClass() != ConvolutionLayer.class
+                        && underlying.getClass() != Convolution2D.class) {
+            throw new IllegalArgumentException("Only DenseLayer and ConvolutionLayer can be quantized, got "
+                            + underlying.getClass().getSimpleName());
+        }
+        if (inputScale <= 0.0) {
+            throw new IllegalArgumentException("Input scale should be positive value, got " + inputScale);
+        }
+        this.inputScale = inputScale;
+        this.weightScales = weightScales;
+        this.layerName = underlying.getLayerName();
+    }
+
+    @Override
+    public org.deeplearning4j.nn.api.Layer instantiate(NeuralNetConfiguration conf,
+                    Collection<IterationListener> iterationListeners, int layerIndex, INDArray layerParamsView,
+                    boolean initializeParams) {
+        NeuralNetConfiguration conf2 = conf.clone();
+        conf2.setLayer(((QuantizedLayer) conf2.getLayer()).getUnderlying());
+        return new org.deeplearning4j.nn.layers.QuantizedLayer(underlying.instantiate(conf2, iterationListeners,
+                        layerIndex, layerParamsView, initializeParams), inputScale, weightScales);
+    }
+
+    @Override
+    public Layer clone() {
+        QuantizedLayer l = (QuantizedLayer) super.clone();
+        l.underlying = underlying.clone();
+        l.weightScales = weightScales.clone();
+        return l;
+    }
+
+    @Override
+    public IUpdater getUpdaterByParam(String paramName) {
+        //Inference only: parameters are never updated
+        return new NoOp();
+    }
+
+    @Override
+    public LayerMemoryReport getMemoryReport(InputType inputType) {
+        LayerMemoryReport r = underlying.getMemoryReport(inputType);
+        r.setLayerType(QuantizedLayer.class);
+        r.setUpdaterStateSize(0);
+        //Quantized copy of the input
+        long quantizedInput = inputType.arrayElementsPerExample();
+        r.setWorkingMemoryVariableInference(r.getWorkingMemoryVariableInference() + quantizedInput);
+        return r;
+    }
+
+    @Override
+    public void setLayerName(String layerName) {
+        super.setLayerName(layerName);
+        if (underlying != null)
+            underlying.setLayerName(layerName);
+    }
+}
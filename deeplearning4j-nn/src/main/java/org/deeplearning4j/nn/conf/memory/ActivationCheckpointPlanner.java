@@ -0,0 +1,96 @@
+package org.deeplearning4j.nn.conf.memory;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Planning and validation of activation checkpointing (also known as gradient checkpointing or activation
+ * recomputation) segments for a {@link org.deeplearning4j.nn.multilayer.MultiLayerNetwork}.<br>
+ * The layers of the network are split into contiguous segments, described by the index of the first layer of each
+ * segment. During training, only the activations at the segment boundaries are retained after the forward pass; the
+ * activations within each segment are recomputed (one segment at a time) during backprop.
+ * <p>
+ * With n layers and approximately sqrt(n) segments of similar activation size, activation memory during training is
+ * reduced from O(n) to O(sqrt(n)) layers, at the cost of one additional forward pass.
+ */
+public class ActivationCheckpointPlanner {
+
+    private ActivationCheckpointPlanner() {}
+
+    /**
+     * Plan the checkpoint segments for a network, given the activation size (per example) of each layer.
+     * The number of segments is ceil(sqrt(nLayers)), and the segments are chosen (greedily) such that the total
+     * activation size of each segment is approximately equal.
+     *
+     * @param activationSizes Activation (output) size per example, for each layer
+     * @return Index of the first layer of each segment. The first value is always 0
+     */
+    public static int[] plan(@NonNull long[] activationSizes) {
+        int nLayers = activationSizes.length;
+        if (nLayers <= 2) {
+            return new int[] {0};
+        }
+        int nSegments = (int) Math.ceil(Math.sqrt(nLayers));
+
+        long total = 0;
+        for (long l : activationSizes) {
+            total += Math.max(l, 1);
+        }
+        double target = total / (double) nSegments;
+
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        long current = 0;
+        //The output layer is never the first layer of a segment: it is always computed with the layers before it
+        for (int i = 0; i < nLayers - 1 && starts.size() < nSegments; i++) {
+            current += Math.max(activationSizes[i], 1);
+            if (current >= target && i + 1 < nLayers - 1) {
+                starts.add(i + 1);
+                current = 0;
+            }
+        }
+
+        int[] out = new int[starts.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = starts.get(i);
+        }
+        return out;
+    }
+
+    /**
+     * Validate and normalize the user-specified segment start indices: i.e., sort, remove duplicates, and add layer 0
+     * if not present
+     *
+     * @param segmentStarts Index of the first layer of each segment
+     * @param nLayers       Number of layers in the network
+     * @return Sorted segment starts, with first value 0
+     */
+    public static int[] validate(@NonNull int[] segmentStarts, int nLayers) {
+        int[] sorted = Arrays.copyOf(segmentStarts, segmentStarts.length);
+        Arrays.sort(sorted);
+        List<Integer> out = new ArrayList<>();
+        out.add(0);
+        for (int s : sorted) {
+            if (s < 0 || s >= nLayers) {
+                throw new IllegalStateException("Invalid activation checkpoint: layer index " + s
+                                + " is out of range for network with " + nLayers + " layers");
+            }
+            if (s == nLayers - 1 && nLayers > 1) {
+                throw new IllegalStateException("Invalid activation checkpoint: output layer (index " + s
+                                + ") cannot be the first layer of a segment");
+            }
+            if (s != out.get(out.size() - 1)) {
+                out.add(s);
+            }
+        }
+
+        int[] arr = new int[out.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = out.get(i);
+        }
+        return arr;
+    }
+}
@@ -3,14 +3,17 @@ package org.deeplearning4j.nn.conf.memory;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import org.deeplearning4j.nn.conf.CacheMode;
 import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,6 +34,12 @@ public class NetworkMemoryReport extends MemoryReport {
     private final Class<?> modelClass;
     private final String modelName;
     private final InputType[] networkInputTypes;
+    /**
+     * Index of the first layer of each activation checkpointing segment (MultiLayerNetwork only); null if
+     * activation checkpointing is not used. See {@link ActivationCheckpointPlanner}
+     */
+    @Setter
+    private int[] activationCheckpoints;
 
     public NetworkMemoryReport(
                     @NonNull @JsonProperty("layerAndVertexReports") Map<String, MemoryReport> layerAndVertexReports,
@@ -88,6 +97,8 @@ public class NetworkMemoryReport extends MemoryReport {
             }
         }
 
+        totalBytes -= getActivationCheckpointingSavingsBytes(minibatchSize, memoryUseMode, cacheMode, dataType);
+
         return totalBytes + maxWorkingFixed + maxWorkingVariable;
     }
 
@@ -106,9 +117,58 @@ public class NetworkMemoryReport extends MemoryReport {
             }
         }
 
+        if (memoryType == MemoryType.ACTIVATIONS) {
+            totalBytes -= getActivationCheckpointingSavingsBytes(minibatchSize, memoryUseMode, cacheMode, dataType);
+        }
+
         return totalBytes;
     }
 
+    /**
+     * Get the predicted reduction in activation memory due to activation checkpointing, if any. With checkpointing,
+     * the activations retained during training are the activations at the segment boundaries, plus the activations
+     * of the (largest) segment currently being recomputed.
+     *
+     * @param minibatchSize Mini batch size to estimate the memory for
+     * @param memoryUseMode The memory use mode (training or inference)
+     * @param cacheMode     The CacheMode to use
+     * @param dataType      Data type
+     * @return Reduction in activation memory, in bytes. 0 for inference, or if activation checkpointing is not used
+     */
+    public long getActivationCheckpointingSavingsBytes(int minibatchSize, @NonNull MemoryUseMode memoryUseMode,
+                    @NonNull CacheMode cacheMode, @NonNull DataBuffer.Type dataType) {
+        if (memoryUseMode == MemoryUseMode.INFERENCE || activationCheckpoints == null
+                        || activationCheckpoints.length <= 1) {
+            return 0;
+        }
+
+        List<MemoryReport> reports = new ArrayList<>(layerAndVertexReports.values());
+        long[] act = new long[reports.size()];
+        long total = 0;
+        for (int i = 0; i < act.length; i++) {
+            act[i] = reports.get(i).getMemoryBytes(MemoryType.ACTIVATIONS, minibatchSize, memoryUseMode, cacheMode,
+                            dataType);
+            total += act[i];
+        }
+
+        long boundaries = 0;
+        long maxSegment = 0;
+        for (int s = 0; s < activationCheckpoints.length; s++) {
+            int start = activationCheckpoints[s];
+            int end = (s == activationCheckpoints.length - 1 ? act.length : activationCheckpoints[s + 1]);
+            long segment = 0;
+            for (int i = start; i < end && i < act.length; i++) {
+                segment += act[i];
+            }
+            maxSegment = Math.max(maxSegment, segment);
+            if (s > 0 && start - 1 < act.length) {
+                boundaries += act[start - 1];
+            }
+        }
+
+        return Math.max(0, total - boundaries - maxSegment);
+    }
+
     @Override
     public String toString() {
 
@@ -145,6 +205,15 @@ public class NetworkMemoryReport extends MemoryReport {
 
         appendFixedPlusVariable(sb, "  Inference Memory (FP32)             ", fixedMemBytes, perEx);
         appendFixedPlusVariable(sb, "  Training Memory (FP32):             ", fixedMemBytesTrain, perExTrain);
+        if (activationCheckpoints != null && activationCheckpoints.length > 1) {
+            long savingsFixed = getActivationCheckpointingSavingsBytes(0, MemoryUseMode.TRAINING, CacheMode.NONE,
+                            DataBuffer.Type.FLOAT);
+            long savingsPerEx = getActivationCheckpointingSavingsBytes(1, MemoryUseMode.TRAINING, CacheMode.NONE,
+                            DataBuffer.Type.FLOAT) - savingsFixed;
+            sb.append("  Activation Checkpoints:             ").append(Arrays.toString(activationCheckpoints))
+                            .append("\n");
+            appendFixedPlusVariable(sb, "  Checkpointing Savings (FP32):       ", savingsFixed, savingsPerEx);
+        }
 
         sb.append("  Inference Memory Breakdown (FP32):\n");
         appendBreakDown(sb, MemoryUseMode.INFERENCE, CacheMode.NONE, DataBuffer.Type.FLOAT);
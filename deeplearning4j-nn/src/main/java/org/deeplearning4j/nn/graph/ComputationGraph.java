@@ -42,6 +42,7 @@ import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.graph.util.ComputationGraphUtil;
+import org.deeplearning4j.nn.graph.util.ParallelVertexExecutor;
 import org.deeplearning4j.nn.graph.vertex.GraphVertex;
 import org.deeplearning4j.nn.graph.vertex.VertexIndices;
 import org.deeplearning4j.nn.graph.vertex.impl.InputVertex;
@@ -52,8 +53,11 @@ import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.deeplearning4j.optimize.Solver;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
 import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.api.LayerProfilingListener;
 import org.deeplearning4j.optimize.api.TrainingListener;
+import org.deeplearning4j.optimize.listeners.profiler.ProfilingSupport;
 import org.deeplearning4j.optimize.solvers.accumulation.GradientsAccumulator;
+import org.deeplearning4j.optimize.solvers.accumulation.MicroBatchAccumulator;
 import org.deeplearning4j.util.ModelSerializer;
 import org.deeplearning4j.util.NetworkUtils;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
@@ -95,6 +99,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
     protected ComputationGraphConfiguration configuration;
     protected boolean initCalled = false;
     protected transient Solver solver; //Used to call optimizers during backprop
+    protected transient MicroBatchAccumulator microBatchAccumulator; //Used only with gradient accumulation
     protected INDArray flattenedParams; //Params for all layers are a view/subset of this array
     @Getter
     protected transient INDArray flattenedGradients; //Gradients for all layers are a view/subset of this array
@@ -173,6 +178,9 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
     private transient INDArray[] inputMaskArrays;
     private transient INDArray[] labelMaskArrays;
 
+    //Created on first use, when inter-op parallelism is enabled
+    private transient ParallelVertexExecutor parallelVertexExecutor;
+
     private NeuralNetConfiguration defaultConfiguration;
     private Collection<IterationListener> listeners = new ArrayList<>();
     private Collection<TrainingListener> trainingListeners = new ArrayList<>();
@@ -928,6 +936,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
         if (configuration.isBackprop()) {
             update(TaskUtils.buildTask(dataSetIterator));
+            initMicroBatchAccumulator();
 
             long time1 = System.currentTimeMillis();
             while (dataSetIterator.hasNext()) {
@@ -967,7 +976,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
                     try (MemoryWorkspace wsCache = cache.notifyScopeEntered()) {
                         try (MemoryWorkspace ws = workspace.notifyScopeEntered()) {
-                            solver.optimize();
+                            optimizeOrAccumulate(dataSetIterator.hasNext());
                         }
                     }
                 }
@@ -996,6 +1005,40 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         incrementEpochCount();
     }
 
+    /**
+     * Create (or reset) the gradient accumulation state at the start of a fit call, if gradient accumulation is
+     * enabled: see {@link ComputationGraphConfiguration.GraphBuilder#gradientAccumulationSteps(int)}
+     */
+    protected void initMicroBatchAccumulator() {
+        int steps = configuration.getGradientAccumulationSteps();
+        if (steps <= 1 || configuration.getBackpropType() == BackpropType.TruncatedBPTT) {
+            microBatchAccumulator = null;
+        } else if (microBatchAccumulator == null || microBatchAccumulator.getSteps() != steps) {
+            microBatchAccumulator = new MicroBatchAccumulator(steps);
+        } else {
+            microBatchAccumulator.reset();
+        }
+    }
+
+    /**
+     * Apply the optimizer for the current minibatch or, with gradient accumulation, only accumulate its gradients
+     * unless it is the last micro-batch of the current step
+     *
+     * @param hasNext Whether more minibatches are available from the iterator
+     */
+    protected void optimizeOrAccumulate(boolean hasNext) {
+        if (microBatchAccumulator == null) {
+            solver.optimize();
+        } else if (microBatchAccumulator.isStepComplete(hasNext)) {
+            solver.optimize();
+            microBatchAccumulator.reset();
+        } else {
+            //Accumulate only: gradients are applied after the last micro-batch of the step
+            computeGradientAndScore();
+            microBatchAccumulator.store(flattenedGradients, score, batchSize());
+        }
+    }
+
     /**
      * Fit the ComputationGraph using a MultiDataSet
      */
@@ -1038,6 +1081,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 WORKSPACE_CACHE);
 
         if (configuration.isBackprop()) {
+            initMicroBatchAccumulator();
 
             long time1 = System.currentTimeMillis();
             while (multiDataSetIterator.hasNext()) {
@@ -1072,7 +1116,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
                     try (MemoryWorkspace wsCache = cache.notifyScopeEntered()) {
                         try (MemoryWorkspace ws = workspace.notifyScopeEntered()) {
-                            solver.optimize();
+                            optimizeOrAccumulate(multiDataSetIterator.hasNext());
                         }
                     }
 
@@ -1371,6 +1415,10 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 l1 = 0.0;
                 l2 = 0.0;
             }
+            if (microBatchAccumulator != null) {
+                //Gradient accumulation: add the gradients of the previous micro-batches of this step
+                score = microBatchAccumulator.merge(flattenedGradients, score, inputs[0].size(0));
+            }
 
             //Listeners
             if (!trainingListeners.isEmpty()) {
@@ -1599,6 +1647,8 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
         boolean wseOpenSingle = (wsm == WorkspaceMode.SINGLE) &&
                 Nd4j.getWorkspaceManager().checkIfWorkspaceExistsAndActive(WORKSPACE_EXTERNAL);
+        List<LayerProfilingListener> profilers =
+                        (train ? ProfilingSupport.getProfilingListeners(trainingListeners) : null);
 
         //Do forward pass according to the topological ordering of the network
         for (int i = 0; i < topologicalOrder.length; i++) {
@@ -1666,6 +1716,8 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                         continue;
                     }
                     // once again, pushing stuff out of this workspace
+                    long startNanos = (profilers == null ? 0 : System.nanoTime());
+                    long startAlloc = (profilers == null ? 0 : ProfilingSupport.currentWorkspaceAllocations());
                     INDArray out;
                     if (publicApi) {
                         out = current.doForward(train).detach();
@@ -1680,6 +1732,11 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                             out = current.doForward(train).leverageOrDetach(WORKSPACE_EXTERNAL);
                         }
                     }
+                    if (profilers != null) {
+                        ProfilingSupport.notifyForward(profilers, this, current.getVertexIndex(),
+                                        current.getVertexName(), current.hasLayer() ? current.getLayer() : current,
+                                        startNanos, startAlloc);
+                    }
 
                     if (includeNonLayerVertexActivations || current.hasLayer() || current.isOutputVertex()) {
                         layerActivations.put(current.getVertexName(), out);
@@ -1832,6 +1889,9 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
     protected INDArray[] silentOutput(boolean train, INDArray... input) {
         setInputs(input);
+        if (configuration.getInterOpParallelism() > 1) {
+            return parallelOutput(train);
+        }
         Map<String, INDArray> activations = feedForward(train, false, false, false);
         INDArray[] outputs = new INDArray[numOutputArrays];
         int i = 0;
@@ -1841,6 +1901,30 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         return outputs;
     }
 
+    /**
+     * Forward pass with independent vertices executed concurrently, as per
+     * {@link ComputationGraphConfiguration#getInterOpParallelism()}. Inputs should be set beforehand.
+     *
+     * @return Network output activations, detached
+     */
+    protected INDArray[] parallelOutput(boolean train) {
+        int parallelism = configuration.getInterOpParallelism();
+        if (parallelVertexExecutor == null || parallelVertexExecutor.getParallelism() != parallelism) {
+            if (parallelVertexExecutor != null)
+                parallelVertexExecutor.shutdown();
+            parallelVertexExecutor = new ParallelVertexExecutor(parallelism);
+        }
+
+        INDArray[] activations = parallelVertexExecutor.output(vertices, inputs, train,
+                        configuration.getTrainingWorkspaceMode());
+        INDArray[] outputs = new INDArray[numOutputArrays];
+        int i = 0;
+        for (String s : configuration.getNetworkOutputs()) {
+            outputs[i++] = activations[verticesMap.get(s).getVertexIndex()];
+        }
+        return outputs;
+    }
+
     /**
      * A convenience method that returns a single INDArray, instead of an INDArray[].
      * Useful for ComputationGraphs that have only a single output.
@@ -1966,6 +2050,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         }
 
         LinkedList<Triple<String, INDArray, Character>> gradients = new LinkedList<>();
+        List<LayerProfilingListener> profilers = ProfilingSupport.getProfilingListeners(trainingListeners);
 
         boolean wsExternalActive = false;
         if (wsm == WorkspaceMode.SINGLE) {
@@ -2009,7 +2094,13 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                     }
                 }
 
+                long startNanos = (profilers == null ? 0 : System.nanoTime());
+                long startAlloc = (profilers == null ? 0 : ProfilingSupport.currentWorkspaceAllocations());
                 Pair<Gradient, INDArray[]> pair = current.doBackward(truncatedBPTT);
+                if (profilers != null) {
+                    ProfilingSupport.notifyBackward(profilers, this, current.getVertexIndex(), current.getVertexName(),
+                                    current.hasLayer() ? current.getLayer() : current, startNanos, startAlloc);
+                }
                 INDArray[] epsilons = pair.getSecond();
 
                 for (int x = 0; x < epsilons.length; x++) {
@@ -2598,6 +2689,10 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
     @Override
     public int batchSize() {
+        if (microBatchAccumulator != null) {
+            //Total number of examples for the current parameter update, with gradient accumulation
+            return microBatchAccumulator.getEffectiveBatchSize(inputs[0].size(0));
+        }
         return inputs[0].size(0);
     }
 
@@ -0,0 +1,184 @@
+package org.deeplearning4j.nn.graph.util;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.graph.vertex.GraphVertex;
+import org.deeplearning4j.nn.graph.vertex.VertexIndices;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.memory.abstracts.DummyWorkspace;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+
+/**
+ * Inter-op scheduler for {@link ComputationGraph} forward pass: vertices whose inputs are all available are executed
+ * concurrently on a bounded thread pool, instead of one after another in topological order. This helps with
+ * inception-style and multi-tower graphs, where branches are independent and each of them is too small to saturate
+ * all cores on its own - i.e., inference with small minibatches.
+ * <p>
+ * Dependency DAG is derived from {@link GraphVertex#getInputVertices()}/{@link GraphVertex#getOutputVertices()}. Each
+ * vertex is executed within the feed-forward workspace of the thread executing it, and its output is detached, so
+ * workspaces are never shared between threads. Inputs of the next vertices are set by the calling thread only, as
+ * vertices complete. When exactly one vertex is ready and nothing else is running (i.e., sequential parts of the
+ * graph), it's executed by the calling thread directly, without handing it over to the pool.
+ * <p>
+ * PLEASE NOTE: each vertex still uses intra-op parallelism of the backend, so for large minibatches inter-op
+ * parallelism usually doesn't help, and may even hurt due to oversubscription of cores.
+ */
+@Slf4j
+public class ParallelVertexExecutor {
+    @Getter
+    private final int parallelism;
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param parallelism Maximum number of vertices executed concurrently
+     */
+    public ParallelVertexExecutor(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism should be positive value, got " + parallelism);
+
+        this.parallelism = parallelism;
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                            @Override
+                            public Thread newThread(Runnable r) {
+                                Thread thread = Executors.defaultThreadFactory().newThread(r);
+                                thread.setName("ParallelVertexExecutor thread " + thread.getId());
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+        //Idle pools shouldn't keep threads alive: i.e., for graphs that were cloned and then discarded
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Do forward pass through all vertices of the graph. Network inputs should be provided, and mask arrays set
+     * beforehand.
+     *
+     * @param vertices      Vertices of the graph, by vertex index
+     * @param inputs        Network inputs, by input vertex index
+     * @param train         Training or inference mode
+     * @param workspaceMode Workspace mode to use for each vertex
+     * @return Detached output activations, by vertex index. Null for input vertices.
+     */
+    public INDArray[] output(@NonNull GraphVertex[] vertices, @NonNull INDArray[] inputs, final boolean train,
+                    final WorkspaceMode workspaceMode) {
+        final INDArray[] activations = new INDArray[vertices.length];
+        int[] pendingInputs = new int[vertices.length];
+        Deque<GraphVertex> ready = new ArrayDeque<>();
+
+        for (GraphVertex v : vertices) {
+            if (!v.isInputVertex()) {
+                pendingInputs[v.getVertexIndex()] = v.getInputVertices() == null ? 0 : v.getInputVertices().length;
+                if (pendingInputs[v.getVertexIndex()] == 0)
+                    ready.add(v);
+            }
+        }
+
+        //Network inputs first
+        for (GraphVertex v : vertices) {
+            if (v.isInputVertex()) {
+                propagate(vertices, v, inputs[v.getVertexIndex()], pendingInputs, ready);
+            }
+        }
+
+        final int deviceId = Nd4j.getAffinityManager().getDeviceForCurrentThread();
+        CompletionService<GraphVertex> completionService = new ExecutorCompletionService<>(pool);
+        int running = 0;
+        try {
+            while (!ready.isEmpty() || running > 0) {
+                if (running == 0 && ready.size() == 1) {
+                    //Sequential part of the graph: no point in using the pool
+                    GraphVertex v = ready.poll();
+                    activations[v.getVertexIndex()] = doForward(v, train, workspaceMode);
+                    propagate(vertices, v, activations[v.getVertexIndex()], pendingInputs, ready);
+                    continue;
+                }
+
+                while (!ready.isEmpty()) {
+                    final GraphVertex v = ready.poll();
+                    completionService.submit(new Callable<GraphVertex>() {
+                        @Override
+                        public GraphVertex call() throws Exception {
+                            Nd4j.getAffinityManager().unsafeSetDevice(deviceId);
+                            activations[v.getVertexIndex()] = doForward(v, train, workspaceMode);
+                            return v;
+                        }
+                    });
+                    running++;
+                }
+
+                GraphVertex done = completionService.take().get();
+                running--;
+                propagate(vertices, done, activations[done.getVertexIndex()], pendingInputs, ready);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            //Don't leave vertices running in background, when one of them has failed
+            while (running > 0) {
+                try {
+                    completionService.take();
+                    running--;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        return activations;
+    }
+
+    private static INDArray doForward(GraphVertex v, boolean train, WorkspaceMode workspaceMode) {
+        MemoryWorkspace workspace = workspaceMode == WorkspaceMode.NONE ? new DummyWorkspace()
+                        : Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(
+                                        ComputationGraph.workspaceConfigurationFeedForward,
+                                        ComputationGraph.WORKSPACE_FEED_FORWARD);
+        try (MemoryWorkspace ws = workspace.notifyScopeEntered()) {
+            return v.doForward(train).detach();
+        }
+    }
+
+    /**
+     * Set output of the given vertex as input to the vertices it's connected to, and queue vertices that have all
+     * inputs now
+     */
+    private static void propagate(GraphVertex[] vertices, GraphVertex from, INDArray out, int[] pendingInputs,
+                    Deque<GraphVertex> ready) {
+        VertexIndices[] outputsTo = from.getOutputVertices();
+        if (outputsTo == null)
+            return;
+
+        for (VertexIndices vi : outputsTo) {
+            GraphVertex to = vertices[vi.getVertexIndex()];
+            //Output is detached, but some vertices copy their input on setInput: keep those copies out of workspaces
+            try (MemoryWorkspace scopeOut = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                to.setInput(vi.getVertexEdgeNumber(), out);
+                to.migrateInput();
+            }
+            if (--pendingInputs[to.getVertexIndex()] == 0)
+                ready.add(to);
+        }
+    }
+
+    /**
+     * Stop the worker threads. Executor shouldn't be used after this method is called.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,119 @@
+package org.deeplearning4j.nn.inference;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RnnStateStore} that keeps the session states in memory, with optional time-to-live (TTL) eviction: sessions
+ * that haven't been accessed (via {@link #get(String)} or {@link #put(String, Map)}) within the TTL are removed.
+ * Expired sessions are evicted lazily (on access, and periodically on put), or explicitly via
+ * {@link #evictExpired()}.
+ * <p>
+ * PLEASE NOTE: the state arrays themselves are standard (detached) ND4J arrays, and hence are stored off-heap;
+ * only the session bookkeeping is on-heap.
+ */
+public class InMemoryRnnStateStore implements RnnStateStore {
+
+    private static final int EVICTION_CHECK_FREQUENCY = 1000;
+
+    private final long ttlMs;
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+    private int putCount;
+
+    /**
+     * Create a store without TTL: sessions are stored until removed
+     */
+    public InMemoryRnnStateStore() {
+        this(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param ttl      Time to live for sessions, since last access. 0 or negative: no expiry
+     * @param timeUnit Time unit for the TTL
+     */
+    public InMemoryRnnStateStore(long ttl, @NonNull TimeUnit timeUnit) {
+        this.ttlMs = timeUnit.toMillis(ttl);
+    }
+
+    @Override
+    public Map<String, Map<String, INDArray>> get(String sessionId) {
+        Entry e = sessions.get(sessionId);
+        if (e == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (isExpired(e, now)) {
+            sessions.remove(sessionId);
+            return null;
+        }
+        e.lastAccess = now;
+        return e.state;
+    }
+
+    @Override
+    public void put(@NonNull String sessionId, @NonNull Map<String, Map<String, INDArray>> state) {
+        sessions.put(sessionId, new Entry(state, System.currentTimeMillis()));
+        boolean evict;
+        synchronized (this) {
+            evict = ttlMs > 0 && ++putCount % EVICTION_CHECK_FREQUENCY == 0;
+        }
+        if (evict) {
+            evictExpired();
+        }
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    @Override
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public void clear() {
+        sessions.clear();
+    }
+
+    /**
+     * Remove all sessions that have not been accessed within the TTL
+     *
+     * @return Number of sessions removed
+     */
+    public int evictExpired() {
+        if (ttlMs <= 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        int count = 0;
+        Iterator<Entry> iter = sessions.values().iterator();
+        while (iter.hasNext()) {
+            if (isExpired(iter.next(), now)) {
+                iter.remove();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isExpired(Entry e, long now) {
+        return ttlMs > 0 && now - e.lastAccess > ttlMs;
+    }
+
+    private static class Entry {
+        private final Map<String, Map<String, INDArray>> state;
+        private volatile long lastAccess;
+
+        private Entry(Map<String, Map<String, INDArray>> state, long lastAccess) {
+            this.state = state;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.deeplearning4j.nn.inference;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.InputPreProcessor;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.GraphVertex;
+import org.deeplearning4j.nn.conf.graph.LayerVertex;
+import org.deeplearning4j.nn.conf.graph.ScaleVertex;
+import org.deeplearning4j.nn.conf.graph.ShiftVertex;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.nd4j.linalg.activations.impl.ActivationIdentity;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.*;
+
+/**
+ * InferenceOptimizer rewrites a trained network into an equivalent network for inference only, with fewer and
+ * cheaper layers/vertices:<br>
+ * - {@link BatchNormalization} layers are folded into the weights and bias of the preceding {@link DenseLayer} or
+ *   {@link ConvolutionLayer}, using the global mean/variance statistics<br>
+ * - {@link ScaleVertex} and {@link ShiftVertex} are folded into the preceding DenseLayer or ConvolutionLayer the
+ *   same way<br>
+ * - {@link ActivationLayer} is fused into the preceding DenseLayer or ConvolutionLayer (as its activation function),
+ *   and ActivationLayers with identity activation are removed<br>
+ * - {@link DropoutLayer} layers are removed, and dropout/weight noise configurations are removed from all layers<br>
+ * <br>
+ * Folding is done only where it's legal: the preceding layer must have identity activation function, and its output
+ * must be used by the folded layer/vertex only. Layers/vertices with input preprocessors, and network outputs, are
+ * never removed.
+ * <p>
+ * The original network isn't modified. The returned network has no updater state, and shouldn't be trained further:
+ * i.e., BatchNormalization statistics are gone, and fused activations change what's being regularized.
+ * <p>
+ * PLEASE NOTE: outputs are equal to those of the original network in test mode (train = false) only, up to floating
+ * point rounding.
+ */
+@Slf4j
+public class InferenceOptimizer {
+
+    private InferenceOptimizer() {}
+
+    /**
+     * Create an optimized copy of the given network, for inference
+     *
+     * @param network Trained network. Isn't modified.
+     * @return Equivalent network for inference
+     */
+    public static MultiLayerNetwork optimize(@NonNull MultiLayerNetwork network) {
+        MultiLayerConfiguration conf = network.getLayerWiseConfigurations().clone();
+        List<NeuralNetConfiguration> confs = conf.getConfs();
+        Map<Integer, InputPreProcessor> preProcessors = conf.getInputPreProcessors();
+        if (preProcessors == null) {
+            preProcessors = new HashMap<>();
+            conf.setInputPreProcessors(preProcessors);
+        }
+
+        List<Map<String, INDArray>> params = new ArrayList<>();
+        for (int i = 0; i < network.getnLayers(); i++) {
+            params.add(copyParams(network.getLayer(i).paramTable()));
+        }
+
+        for (NeuralNetConfiguration c : confs) {
+            stripDropout(c.getLayer());
+        }
+
+        //Layer 0 is never removed: its input preprocessor and input type validation would have to move
+        int i = 1;
+        while (i < confs.size()) {
+            if (preProcessors.get(i) != null || !removeOrFold(confs.get(i - 1), params.get(i - 1), confs.get(i),
+                            params.get(i))) {
+                i++;
+                continue;
+            }
+
+            confs.remove(i);
+            params.remove(i);
+            Map<Integer, InputPreProcessor> shifted = new HashMap<>();
+            for (Map.Entry<Integer, InputPreProcessor> e : preProcessors.entrySet()) {
+                shifted.put(e.getKey() > i ? e.getKey() - 1 : e.getKey(), e.getValue());
+            }
+            preProcessors.clear();
+            preProcessors.putAll(shifted);
+        }
+
+        log.info("Optimized network for inference: {} layers -> {} layers", network.getnLayers(), confs.size());
+
+        MultiLayerNetwork ret = new MultiLayerNetwork(conf);
+        ret.init();
+        for (int j = 0; j < confs.size(); j++) {
+            setParams(ret.getLayer(j), params.get(j));
+        }
+        return ret;
+    }
+
+    /**
+     * Create an optimized copy of the given network, for inference
+     *
+     * @param network Trained network. Isn't modified.
+     * @return Equivalent network for inference
+     */
+    public static ComputationGraph optimize(@NonNull ComputationGraph network) {
+        ComputationGraphConfiguration conf = network.getConfiguration().clone();
+        Map<String, GraphVertex> vertices = conf.getVertices();
+        Map<String, List<String>> vertexInputs = conf.getVertexInputs();
+
+        Map<String, Map<String, INDArray>> params = new HashMap<>();
+        for (Map.Entry<String, GraphVertex> e : vertices.entrySet()) {
+            if (e.getValue() instanceof LayerVertex) {
+                params.put(e.getKey(), copyParams(network.getLayer(e.getKey()).paramTable()));
+                stripDropout(((LayerVertex) e.getValue()).getLayerConf().getLayer());
+            }
+        }
+
+        int numVertices = vertices.size();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (String name : new ArrayList<>(vertices.keySet())) {
+                List<String> inputs = vertexInputs.get(name);
+                if (inputs == null || inputs.size() != 1 || conf.getNetworkOutputs().contains(name))
+                    continue;
+
+                String prevName = inputs.get(0);
+                GraphVertex v = vertices.get(name);
+                GraphVertex prev = vertices.get(prevName);
+                if (v instanceof LayerVertex && ((LayerVertex) v).getPreProcessor() != null)
+                    continue;
+
+                boolean remove;
+                if (v instanceof LayerVertex && isIdentity(((LayerVertex) v).getLayerConf().getLayer())) {
+                    remove = true;
+                } else if (prev instanceof LayerVertex && !conf.getNetworkOutputs().contains(prevName)
+                                && numConsumers(vertexInputs, prevName) == 1) {
+                    NeuralNetConfiguration prevConf = ((LayerVertex) prev).getLayerConf();
+                    if (v instanceof LayerVertex) {
+                        remove = removeOrFold(prevConf, params.get(prevName), ((LayerVertex) v).getLayerConf(),
+                                        params.get(name));
+                    } else if (v instanceof ScaleVertex && canFoldInto(prevConf.getLayer())) {
+                        int nOut = ((FeedForwardLayer) prevConf.getLayer()).getNOut();
+                        foldScaleShift(prevConf, params.get(prevName),
+                                        Nd4j.valueArrayOf(new int[] {1, nOut}, ((ScaleVertex) v).getScaleFactor()),
+                                        Nd4j.zeros(1, nOut));
+                        remove = true;
+                    } else if (v instanceof ShiftVertex && canFoldInto(prevConf.getLayer())) {
+                        int nOut = ((FeedForwardLayer) prevConf.getLayer()).getNOut();
+                        foldScaleShift(prevConf, params.get(prevName), Nd4j.ones(1, nOut),
+                                        Nd4j.valueArrayOf(new int[] {1, nOut}, ((ShiftVertex) v).getShiftFactor()));
+                        remove = true;
+                    } else {
+                        remove = false;
+                    }
+                } else {
+                    remove = false;
+                }
+
+                if (remove) {
+                    //Vertices that used the removed vertex as input now use its input directly
+                    vertices.remove(name);
+                    vertexInputs.remove(name);
+                    params.remove(name);
+                    for (List<String> l : vertexInputs.values()) {
+                        Collections.replaceAll(l, name, prevName);
+                    }
+                    changed = true;
+                }
+            }
+        }
+
+        log.info("Optimized network for inference: {} vertices -> {} vertices", numVertices, vertices.size());
+
+        ComputationGraph ret = new ComputationGraph(conf);
+        ret.init();
+        for (Map.Entry<String, Map<String, INDArray>> e : params.entrySet()) {
+            setParams(ret.getLayer(e.getKey()), e.getValue());
+        }
+        return ret;
+    }
+
+    /**
+     * Try to remove the given layer, folding it into the previous one if required
+     *
+     * @return true if the layer can be removed (and was folded into the previous one, if required)
+     */
+    private static boolean removeOrFold(NeuralNetConfiguration prevConf, Map<String, INDArray> prevParams,
+                    NeuralNetConfiguration conf, Map<String, INDArray> params) {
+        Layer layer = conf.getLayer();
+        if (isIdentity(layer))
+            return true;
+
+        if (!canFoldInto(prevConf.getLayer()))
+            return false;
+
+        if (layer instanceof BatchNormalization) {
+            BatchNormalization bn = (BatchNormalization) layer;
+
+            //Same as BatchNormalization layer in test mode: eps is already included in the global variance
+            INDArray std = Transforms.sqrt(params.get(BatchNormalizationParamInitializer.GLOBAL_VAR), true);
+            INDArray mean = params.get(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+            INDArray gamma;
+            INDArray beta;
+            if (bn.isLockGammaBeta()) {
+                //Layer applies fixed gamma and beta only if both of them differ from defaults
+                boolean apply = bn.getGamma() != 1.0 && bn.getBeta() != 0.0;
+                gamma = Nd4j.valueArrayOf(mean.shape(), apply ? bn.getGamma() : 1.0);
+                beta = Nd4j.valueArrayOf(mean.shape(), apply ? bn.getBeta() : 0.0);
+            } else {
+                gamma = params.get(BatchNormalizationParamInitializer.GAMMA);
+                beta = params.get(BatchNormalizationParamInitializer.BETA);
+            }
+
+            //gamma * (x - mean) / std + beta = scale * x + shift
+            INDArray scale = gamma.div(std);
+            INDArray shift = beta.sub(mean.mul(scale));
+            foldScaleShift(prevConf, prevParams, scale, shift);
+            return true;
+        }
+
+        if (layer instanceof ActivationLayer) {
+            ((BaseLayer) prevConf.getLayer()).setActivationFn(((ActivationLayer) layer).getActivationFn());
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return True if the layer is an identity op at inference time
+     */
+    private static boolean isIdentity(Layer layer) {
+        return layer instanceof DropoutLayer || (layer instanceof ActivationLayer
+                        && ((ActivationLayer) layer).getActivationFn() instanceof ActivationIdentity);
+    }
+
+    /**
+     * @return True if per-output scale/shift and activation function can be folded into the given layer
+     */
+    private static boolean canFoldInto(Layer layer) {
+        //Subclasses of ConvolutionLayer (deconvolution, separable and 1d convolution) have different weight layouts
+        Class<?> c = layer.getClass();
+        if (c != DenseLayer.class && c != ConvolutionLayer.class && c != Convolution2D.class)
+            return false;
+        return ((BaseLayer) layer).getActivationFn() instanceof ActivationIdentity;
+    }
+
+    /**
+     * Fold per-output scale and shift (i.e., y = scale * (Wx + b) + shift) into the weights and bias of the layer
+     *
+     * @param scale Row vector of length nOut
+     * @param shift Row vector of length nOut
+     */
+    private static void foldScaleShift(NeuralNetConfiguration conf, Map<String, INDArray> params, INDArray scale,
+                    INDArray shift) {
+        Layer layer = conf.getLayer();
+        INDArray w = params.get(DefaultParamInitializer.WEIGHT_KEY);
+        int nOut = scale.length();
+
+        if (layer instanceof DenseLayer) {
+            //Weights: [nIn, nOut]
+            w.muliRowVector(scale);
+        } else {
+            //Weights: [nOut, nIn, kH, kW]
+            INDArray w2d = w.dup('c');
+            w2d.reshape('c', nOut, w.length() / nOut).muliColumnVector(scale.reshape(nOut, 1));
+            params.put(DefaultParamInitializer.WEIGHT_KEY, w2d);
+        }
+
+        INDArray b = params.get(DefaultParamInitializer.BIAS_KEY);
+        if (b == null) {
+            //Layer without bias: need one for the shift
+            if (layer instanceof DenseLayer) {
+                ((DenseLayer) layer).setHasBias(true);
+            } else {
+                ((ConvolutionLayer) layer).setHasBias(true);
+            }
+            conf.clearVariables();
+            params.put(DefaultParamInitializer.BIAS_KEY, shift.dup());
+        } else {
+            b.muli(scale).addi(shift);
+        }
+    }
+
+    private static void stripDropout(Layer layer) {
+        layer.setIDropout(null);
+        if (layer instanceof BaseLayer) {
+            ((BaseLayer) layer).setWeightNoise(null);
+        }
+    }
+
+    private static int numConsumers(Map<String, List<String>> vertexInputs, String vertexName) {
+        int count = 0;
+        for (List<String> l : vertexInputs.values()) {
+            for (String s : l) {
+                if (s.equals(vertexName))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Copy of the given parameter table (same iteration order), with each parameter array duplicated
+     */
+    public static Map<String, INDArray> copyParams(Map<String, INDArray> paramTable) {
+        Map<String, INDArray> ret = new LinkedHashMap<>();
+        for (Map.Entry<String, INDArray> e : paramTable.entrySet()) {
+            ret.put(e.getKey(), e.getValue().dup());
+        }
+        return ret;
+    }
+
+    /**
+     * Assign the given parameters to the parameter views of the layer. Arrays are reshaped to the shape and order of
+     * the corresponding views as required
+     */
+    public static void setParams(org.deeplearning4j.nn.api.Layer layer, Map<String, INDArray> params) {
+        for (Map.Entry<String, INDArray> e : params.entrySet()) {
+            INDArray view = layer.getParam(e.getKey());
+            view.assign(e.getValue().reshape(view.ordering(), view.shape()));
+        }
+    }
+}
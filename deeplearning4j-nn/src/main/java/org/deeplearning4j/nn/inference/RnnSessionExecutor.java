@@ -0,0 +1,247 @@
+package org.deeplearning4j.nn.inference;
+
+import lombok.NonNull;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.layers.RecurrentLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.*;
+
+/**
+ * RnnSessionExecutor allows a single {@link MultiLayerNetwork} or {@link ComputationGraph} to serve many independent
+ * streaming sequences ("sessions") using rnnTimeStep, instead of one network instance per sequence.<br>
+ * The recurrent state (hidden state, cell state etc) of each session is kept in an external {@link RnnStateStore}.
+ * On each call to {@link #rnnTimeStep(List, INDArray...)}:<br>
+ * (a) the stored states of all of the specified sessions are gathered into one minibatch, and set as the state of the
+ *     recurrent layers of the network (new or expired sessions start with the default initialization: i.e., zeros)<br>
+ * (b) a single rnnTimeStep call is done for the whole minibatch<br>
+ * (c) the updated recurrent layer states are split by example, and stored for each session<br>
+ * Row i of the input (and output) arrays corresponds to session i in the list of session IDs.
+ * <p>
+ * Calls are serialized, as the underlying network isn't thread safe: callers with many concurrent sessions should
+ * batch their requests (one time step for many sessions per call) to get the throughput benefit.
+ * <p>
+ * PLEASE NOTE: the network should not be used for rnnTimeStep directly while used with an RnnSessionExecutor, as the
+ * network's own rnnTimeStep state is cleared after each call. Recurrent layers within nested MultiLayerNetworks are
+ * not supported.
+ */
+public class RnnSessionExecutor {
+
+    private final MultiLayerNetwork network;
+    private final ComputationGraph graph;
+    private final RnnStateStore stateStore;
+    private final Map<String, RecurrentLayer> recurrentLayers = new LinkedHashMap<>();
+
+    /**
+     * Create an executor for a MultiLayerNetwork, with in-memory session states and no session expiry
+     *
+     * @param network Network to use
+     */
+    public RnnSessionExecutor(@NonNull MultiLayerNetwork network) {
+        this(network, new InMemoryRnnStateStore());
+    }
+
+    /**
+     * @param network    Network to use
+     * @param stateStore Storage for the session states
+     */
+    public RnnSessionExecutor(@NonNull MultiLayerNetwork network, @NonNull RnnStateStore stateStore) {
+        this.network = network;
+        this.graph = null;
+        this.stateStore = stateStore;
+        Layer[] layers = network.getLayers();
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i] instanceof RecurrentLayer) {
+                recurrentLayers.put(String.valueOf(i), (RecurrentLayer) layers[i]);
+            }
+        }
+    }
+
+    /**
+     * Create an executor for a ComputationGraph, with in-memory session states and no session expiry
+     *
+     * @param graph Network to use
+     */
+    public RnnSessionExecutor(@NonNull ComputationGraph graph) {
+        this(graph, new InMemoryRnnStateStore());
+    }
+
+    /**
+     * @param graph      Network to use
+     * @param stateStore Storage for the session states
+     */
+    public RnnSessionExecutor(@NonNull ComputationGraph graph, @NonNull RnnStateStore stateStore) {
+        this.network = null;
+        this.graph = graph;
+        this.stateStore = stateStore;
+        for (Layer l : graph.getLayers()) {
+            if (l instanceof RecurrentLayer) {
+                recurrentLayers.put(l.conf().getLayer().getLayerName(), (RecurrentLayer) l);
+            }
+        }
+    }
+
+    /**
+     * @return The state store used for the sessions
+     */
+    public RnnStateStore getStateStore() {
+        return stateStore;
+    }
+
+    /**
+     * Do a forward pass (one or more time steps) for each of the specified sessions, in one minibatch, using and
+     * updating the stored state of each session. See {@link MultiLayerNetwork#rnnTimeStep(INDArray)} and
+     * {@link ComputationGraph#rnnTimeStep(INDArray...)} for details on the input and output shapes.
+     *
+     * @param sessionIds IDs of the sessions. Must be unique. Row i of the inputs is the input for sessionIds.get(i)
+     * @param inputs     Network inputs, with minibatch size equal to the number of sessions. For MultiLayerNetwork,
+     *                   exactly one input
+     * @return Network outputs, with row i being the output for sessionIds.get(i)
+     */
+    public synchronized INDArray[] rnnTimeStep(@NonNull List<String> sessionIds, @NonNull INDArray... inputs) {
+        int nSessions = sessionIds.size();
+        if (new HashSet<>(sessionIds).size() != nSessions) {
+            throw new IllegalArgumentException("Session IDs must be unique: got " + sessionIds);
+        }
+        for (INDArray in : inputs) {
+            if (in.size(0) != nSessions) {
+                throw new IllegalArgumentException("Invalid input: minibatch size (" + in.size(0)
+                                + ") must be equal to the number of sessions (" + nSessions + ")");
+            }
+        }
+        if (network != null && inputs.length != 1) {
+            throw new IllegalArgumentException(
+                            "MultiLayerNetwork has 1 input, got " + inputs.length + " input arrays");
+        }
+
+        List<Map<String, Map<String, INDArray>>> states = new ArrayList<>(nSessions);
+        for (String s : sessionIds) {
+            states.add(stateStore.get(s));
+        }
+
+        try {
+            gather(states);
+
+            INDArray[] out;
+            if (network != null) {
+                out = new INDArray[] {network.rnnTimeStep(inputs[0])};
+            } else {
+                out = graph.rnnTimeStep(inputs);
+            }
+
+            scatter(sessionIds);
+            return out;
+        } finally {
+            clearNetworkState();
+        }
+    }
+
+    /**
+     * Convenience method for MultiLayerNetwork and single input/output ComputationGraph:
+     * see {@link #rnnTimeStep(List, INDArray...)}
+     */
+    public INDArray rnnTimeStepSingle(@NonNull List<String> sessionIds, @NonNull INDArray input) {
+        INDArray[] out = rnnTimeStep(sessionIds, input);
+        if (out.length != 1) {
+            throw new IllegalStateException("Cannot use rnnTimeStepSingle with " + out.length + " outputs");
+        }
+        return out[0];
+    }
+
+    /**
+     * Remove the stored state of the given session: i.e., at the end of the session
+     *
+     * @param sessionId ID of the session
+     */
+    public void endSession(String sessionId) {
+        stateStore.remove(sessionId);
+    }
+
+    /**
+     * Set the stored states of the sessions as the state of each recurrent layer, one session per example
+     */
+    protected void gather(List<Map<String, Map<String, INDArray>>> states) {
+        int nSessions = states.size();
+        for (Map.Entry<String, RecurrentLayer> e : recurrentLayers.entrySet()) {
+            String layerKey = e.getKey();
+
+            //Find the state keys and shapes for this layer, from any session that has state
+            Map<String, INDArray> template = null;
+            for (Map<String, Map<String, INDArray>> s : states) {
+                if (s != null && s.get(layerKey) != null && !s.get(layerKey).isEmpty()) {
+                    template = s.get(layerKey);
+                    break;
+                }
+            }
+            if (template == null) {
+                //All new sessions: use default initialization
+                e.getValue().rnnClearPreviousState();
+                continue;
+            }
+
+            Map<String, INDArray> batchState = new HashMap<>();
+            for (Map.Entry<String, INDArray> t : template.entrySet()) {
+                INDArray[] toConcat = new INDArray[nSessions];
+                for (int i = 0; i < nSessions; i++) {
+                    Map<String, INDArray> layerState = (states.get(i) == null ? null : states.get(i).get(layerKey));
+                    INDArray arr = (layerState == null ? null : layerState.get(t.getKey()));
+                    //No state for this session: zeros, same as the default initialization of the recurrent layers
+                    toConcat[i] = (arr != null ? arr : Nd4j.zeros(t.getValue().shape()));
+                }
+                batchState.put(t.getKey(), nSessions == 1 ? toConcat[0].dup() : Nd4j.concat(0, toConcat));
+            }
+            e.getValue().rnnSetPreviousState(batchState);
+        }
+    }
+
+    /**
+     * Split the updated state of each recurrent layer by example, and store the state of each session
+     */
+    protected void scatter(List<String> sessionIds) {
+        int nSessions = sessionIds.size();
+        List<Map<String, Map<String, INDArray>>> newStates = new ArrayList<>(nSessions);
+        for (int i = 0; i < nSessions; i++) {
+            newStates.add(new HashMap<String, Map<String, INDArray>>());
+        }
+
+        for (Map.Entry<String, RecurrentLayer> e : recurrentLayers.entrySet()) {
+            Map<String, INDArray> batchState = e.getValue().rnnGetPreviousState();
+            if (batchState == null || batchState.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < nSessions; i++) {
+                Map<String, INDArray> layerState = new HashMap<>();
+                for (Map.Entry<String, INDArray> s : batchState.entrySet()) {
+                    layerState.put(s.getKey(), getExample(s.getValue(), i));
+                }
+                newStates.get(i).put(e.getKey(), layerState);
+            }
+        }
+
+        for (int i = 0; i < nSessions; i++) {
+            stateStore.put(sessionIds.get(i), newStates.get(i));
+        }
+    }
+
+    protected void clearNetworkState() {
+        if (network != null) {
+            network.rnnClearPreviousState();
+        } else {
+            graph.rnnClearPreviousState();
+        }
+    }
+
+    private static INDArray getExample(INDArray arr, int example) {
+        INDArrayIndex[] idx = new INDArrayIndex[arr.rank()];
+        idx[0] = NDArrayIndex.interval(example, example + 1);
+        for (int i = 1; i < idx.length; i++) {
+            idx[i] = NDArrayIndex.all();
+        }
+        return arr.get(idx).dup();
+    }
+}
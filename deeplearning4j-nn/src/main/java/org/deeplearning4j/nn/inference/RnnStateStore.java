@@ -0,0 +1,51 @@
+package org.deeplearning4j.nn.inference;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Map;
+
+/**
+ * Storage of recurrent layer state (hidden state, cell state etc) for multiple independent sessions, as used by
+ * {@link RnnSessionExecutor}.<br>
+ * The state of one session is a map of layer key (layer index for MultiLayerNetwork, layer name for ComputationGraph)
+ * to the layer state map, as returned by {@link org.deeplearning4j.nn.api.layers.RecurrentLayer#rnnGetPreviousState()}.
+ * Each state array has a minibatch size of 1.
+ * <p>
+ * Implementations should be thread safe.
+ */
+public interface RnnStateStore {
+
+    /**
+     * Get the state for the given session
+     *
+     * @param sessionId ID of the session
+     * @return State of the session (layer key to layer state), or null if no state is present for the session (i.e.,
+     * new session, or session has expired)
+     */
+    Map<String, Map<String, INDArray>> get(String sessionId);
+
+    /**
+     * Store the state for the given session, replacing any existing state
+     *
+     * @param sessionId ID of the session
+     * @param state     State of the session (layer key to layer state)
+     */
+    void put(String sessionId, Map<String, Map<String, INDArray>> state);
+
+    /**
+     * Remove the state of the given session, if present
+     *
+     * @param sessionId ID of the session
+     */
+    void remove(String sessionId);
+
+    /**
+     * @return Number of sessions currently stored
+     */
+    int size();
+
+    /**
+     * Remove all stored sessions
+     */
+    void clear();
+}
@@ -0,0 +1,128 @@
+package org.deeplearning4j.nn.layers;
+
+import lombok.NonNull;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.layers.BaseLayer;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.layers.wrapper.BaseWrapperLayer;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastMulOp;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+import org.nd4j.linalg.primitives.Pair;
+
+/**
+ * Inference-only layer that simulates 8-bit integer weights and activations: the input is quantized using the
+ * calibrated input scale, the underlying layer computes the integer-valued matrix multiplication/convolution plus
+ * (integer-valued) bias in floating point, and the result is dequantized per output channel before the activation
+ * function is applied. See {@link org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer} for details.
+ */
+public class QuantizedLayer extends BaseWrapperLayer {
+
+    public static final double QUANTIZED_MAX = 127.0;
+
+    private final double inputScale;
+    private final double[] weightScales;
+    private INDArray dequantizationScales;
+
+    public QuantizedLayer(@NonNull Layer underlying, double inputScale, @NonNull double[] weightScales) {
+        super(underlying);
+        this.inputScale = inputScale;
+        this.weightScales = weightScales;
+    }
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(INDArray epsilon) {
+        throw new UnsupportedOperationException("Quantized layers can be used for inference only " + layerId());
+    }
+
+    @Override
+    public void fit(INDArray data) {
+        throw new UnsupportedOperationException("Quantized layers can be used for inference only " + layerId());
+    }
+
+    @Override
+    public INDArray preOutput(INDArray x) {
+        return preOutput(x, false);
+    }
+
+    @Override
+    public INDArray preOutput(INDArray x, TrainingMode training) {
+        return preOutput(x, training == TrainingMode.TRAIN);
+    }
+
+    @Override
+    public INDArray preOutput(INDArray x, boolean training) {
+        INDArray z = underlying.preOutput(quantize(x), training);
+        //Restore the original input: i.e., for anything inspecting layer inputs
+        underlying.setInput(x);
+        return dequantize(z);
+    }
+
+    @Override
+    public INDArray activate(TrainingMode training) {
+        return activate(training == TrainingMode.TRAIN);
+    }
+
+    @Override
+    public INDArray activate(INDArray input, TrainingMode training) {
+        return activate(input, training == TrainingMode.TRAIN);
+    }
+
+    @Override
+    public INDArray activate(boolean training) {
+        if (underlying.input() == null) {
+            throw new IllegalArgumentException("Cannot perform forward pass with null input " + layerId());
+        }
+        return activate(underlying.input(), training);
+    }
+
+    @Override
+    public INDArray activate(INDArray input, boolean training) {
+        INDArray z = preOutput(input, training);
+        return ((BaseLayer) conf().getLayer()).getActivationFn().getActivation(z, training);
+    }
+
+    @Override
+    public INDArray activate() {
+        return activate(false);
+    }
+
+    @Override
+    public INDArray activate(INDArray input) {
+        return activate(input, false);
+    }
+
+    /**
+     * @return Input values quantized to integers in range [-127, 127], in a new array
+     */
+    protected INDArray quantize(INDArray x) {
+        INDArray q = x.div(inputScale);
+        Transforms.round(q, false);
+        Transforms.min(q, QUANTIZED_MAX, false);
+        Transforms.max(q, -QUANTIZED_MAX, false);
+        return q;
+    }
+
+    /**
+     * Multiply the accumulator values by inputScale * weightScale, in place, for each output channel (dimension 1)
+     */
+    protected INDArray dequantize(INDArray z) {
+        if (dequantizationScales == null) {
+            double[] d = new double[weightScales.length];
+            for (int i = 0; i < d.length; i++) {
+                d[i] = inputScale * weightScales[i];
+            }
+            try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                dequantizationScales = Nd4j.create(d);
+            }
+        }
+        return Nd4j.getExecutioner().execAndReturn(new BroadcastMulOp(z, dequantizationScales, z, 1));
+    }
+
+    protected String layerId() {
+        String name = underlying.conf().getLayer().getLayerName();
+        return "(layer name: " + (name == null ? "\"\"" : name) + ", layer index: " + underlying.getIndex() + ")";
+    }
+}
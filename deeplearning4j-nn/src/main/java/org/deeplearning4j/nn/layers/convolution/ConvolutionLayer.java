@@ -92,6 +92,26 @@ public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
                 }
             }
         }
+        if (helper == null && layerConf().isCpuHelperEnabled()) {
+            ConvolutionHelper cpuHelper = new CpuConvolutionHelper(layerConf().isCpuHelperAutotune());
+            if (cpuHelper.checkSupported()) {
+                helper = cpuHelper;
+                log.debug("CpuConvolutionHelper successfully initialized");
+            }
+        }
+    }
+
+    /**
+     * Whether to fall back on the built-in implementation when the helper fails: the layer's cudnnAllowFallback
+     * setting for cuDNN, or the layer's cpuHelperAllowFallback setting for the CPU helper
+     */
+    protected boolean helperAllowFallback() {
+        return helper instanceof CpuConvolutionHelper ? layerConf().isCpuHelperAllowFallback()
+                        : layerConf().isCudnnAllowFallback();
+    }
+
+    protected String helperName() {
+        return helper instanceof CpuConvolutionHelper ? "CPU convolution helper" : "CuDNN";
     }
 
     @Override
@@ -170,7 +190,7 @@ public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
         Pair<INDArray, INDArray> p = preOutput4d(true, true);
         delta = afn.backprop(p.getFirst(), epsilon).getFirst(); //TODO handle activation function params
 
-        if (helper != null && (helperCountFail == 0 || !layerConf().isCudnnAllowFallback())) {
+        if (helper != null && (helperCountFail == 0 || !helperAllowFallback())) {
 
             if(!hasBias()){
                 if(dummyBiasGrad == null){
@@ -187,14 +207,18 @@ public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
                         biasGradView, weightGradView, afn, layerConf().getCudnnAlgoMode(),
                         layerConf().getCudnnBwdFilterAlgo(), layerConf().getCudnnBwdDataAlgo(), convolutionMode, dilation);
             } catch (Exception e){
-                if(layerConf().isCudnnAllowFallback()){
+                if(helperAllowFallback()){
                     helperCountFail++;
-                    log.warn("CuDNN execution failed - falling back on built-in implementation",e);
+                    log.warn(helperName() + " execution failed - falling back on built-in implementation",e);
                 } else {
                     throw new RuntimeException(e);
                 }
             }
             if (ret != null) {
+                if (!hasBias()) {
+                    //Helpers also calculate the gradient for the (all 0s) dummy bias
+                    ret.getFirst().gradientForVariable().remove(ConvolutionParamInitializer.BIAS_KEY);
+                }
                 return ret;
             }
         }
@@ -342,7 +366,7 @@ public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
         int outW = outSize[1];
 
 
-        if (helper != null && (helperCountFail == 0 || !layerConf().isCudnnAllowFallback())) {
+        if (helper != null && (helperCountFail == 0 || !helperAllowFallback())) {
             if (preOutput != null && forBackprop) {
                 return new Pair<>(preOutput, null);
             }
@@ -362,9 +386,9 @@ public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
                 ret = helper.preOutput(input, weights, bias, kernel, strides, pad, layerConf().getCudnnAlgoMode(),
                         layerConf().getCudnnFwdAlgo(), convolutionMode, dilation);
             } catch (Exception e){
-                if(layerConf().isCudnnAllowFallback()){
+                if(helperAllowFallback()){
                     helperCountFail++;
-                    log.warn("CuDNN execution failed - falling back on built-in implementation",e);
+                    log.warn(helperName() + " execution failed - falling back on built-in implementation",e);
                 } else {
                     throw new RuntimeException(e);
                 }
@@ -0,0 +1,583 @@
+package org.deeplearning4j.nn.layers.convolution;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer.AlgoMode;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer.BwdDataAlgo;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer.BwdFilterAlgo;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer.FwdAlgo;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.params.ConvolutionParamInitializer;
+import org.deeplearning4j.util.ConvolutionUtils;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastAddOp;
+import org.nd4j.linalg.api.shape.Shape;
+import org.nd4j.linalg.convolution.Convolution;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CPU helper for the convolution layer. The built-in implementation uses im2col followed by a GEMM, which materializes
+ * an array of shape [miniBatch*outH*outW, inDepth*kH*kW] - kH*kW times the size of the input. This helper implements
+ * the following alternatives, for stride 1 convolutions without dilation:
+ * <ul>
+ * <li>1x1 kernels (no padding): implicit GEMM - one GEMM per example, directly on the input array
+ *     ({@link FwdAlgo#IMPLICIT_GEMM})</li>
+ * <li>1x1 and 3x3 kernels: direct convolution as kH*kW GEMMs per example, one for each kernel position, on shifted
+ *     views of a zero-padded copy of the input ({@link FwdAlgo#DIRECT}). This needs a buffer about the size of the
+ *     input, instead of kH*kW times the size of the input</li>
+ * <li>3x3 kernels: Winograd F(2x2,3x3) ({@link FwdAlgo#WINOGRAD}), which needs 2.25x fewer multiplications: the
+ *     input and output tile transforms are elementwise operations on strided views of the input/output, and the
+ *     products are 16 GEMMs over the transformed tiles and the transformed weights</li>
+ * </ul>
+ * The backward pass uses implicit GEMM for 1x1 kernels (no padding), and the shifted GEMM formulation otherwise, for
+ * both the weight gradients and the epsilons. All other configurations, double precision networks, and
+ * configurations where the built-in implementation ({@link FwdAlgo#GEMM}) is selected fall back to the built-in
+ * implementation.<br>
+ * <br>
+ * The algorithm for each layer is selected as follows:<br>
+ * - {@link AlgoMode#USER_SPECIFIED}: the layer's {@link FwdAlgo}, if it applies to the layer<br>
+ * - Otherwise, if autotuning is enabled (the default, see the layer's cpuHelperAutotune setting): each applicable
+ *   algorithm, including the built-in implementation, is timed on the first forward pass for each input shape, and
+ *   the fastest one is used for all subsequent passes with that shape. Winograd is not considered for
+ *   {@link AlgoMode#NO_WORKSPACE}, as it needs transformed input tiles 4x the size of the input<br>
+ * - Otherwise, the built-in implementation is used<br>
+ * <br>
+ * PLEASE NOTE: The helper is used by default on the CPU backend, when cuDNN is not available; it can be disabled per
+ * layer via the layer's cpuHelper setting. If the helper fails, the layer falls back to the built-in implementation
+ * unless disabled via the layer's cpuHelperAllowFallback setting.
+ */
+@Slf4j
+public class CpuConvolutionHelper implements ConvolutionHelper {
+
+    private static final int AUTOTUNE_REPEATS = 2;
+
+    private static final Map<String, FwdAlgo> autotuneCache = new ConcurrentHashMap<>();
+
+    private final boolean autotune;
+
+    //Algorithm used in the last forward pass of this layer
+    private FwdAlgo lastFwdAlgo;
+
+    public CpuConvolutionHelper() {
+        this(true);
+    }
+
+    /**
+     * @param autotune If true: all applicable algorithms (including the built-in im2col implementation) are timed on
+     *                 the first forward pass for each distinct layer and input shape, unless the algorithm is user
+     *                 specified. If false: the built-in implementation is used unless the algorithm is user specified
+     */
+    public CpuConvolutionHelper(boolean autotune) {
+        this.autotune = autotune;
+    }
+
+    /**
+     * Clear the algorithms selected by autotuning, so that they are timed again on the next forward pass
+     */
+    public static void clearAutotuneCache() {
+        autotuneCache.clear();
+    }
+
+    @Override
+    public boolean checkSupported() {
+        return "CPU".equals(Nd4j.getExecutioner().getEnvironmentInformation().getProperty("backend"));
+    }
+
+    @Override
+    public INDArray preOutput(INDArray input, INDArray weights, INDArray bias, int[] kernel, int[] strides, int[] pad,
+                    AlgoMode mode, FwdAlgo fwdAlgo, ConvolutionMode convolutionMode, int[] dilation) {
+        ConvShape s = ConvShape.of(input, weights, strides, pad, convolutionMode, dilation);
+        if (s == null) {
+            return null;
+        }
+        FwdAlgo algo = selectAlgorithm(s, mode, fwdAlgo, input, weights, bias);
+        lastFwdAlgo = algo;
+        if (algo == FwdAlgo.GEMM) {
+            return null;
+        }
+        return forward(algo, s, input, weights, bias);
+    }
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(INDArray input, INDArray weights, INDArray delta, int[] kernel,
+                    int[] strides, int[] pad, INDArray biasGradView, INDArray weightGradView, IActivation afn,
+                    AlgoMode mode, BwdFilterAlgo bwdFilterAlgo, BwdDataAlgo bwdDataAlgo,
+                    ConvolutionMode convolutionMode, int[] dilation) {
+        ConvShape s = ConvShape.of(input, weights, strides, pad, convolutionMode, dilation);
+        if (s == null) {
+            return null;
+        }
+        if (lastFwdAlgo == null || lastFwdAlgo == FwdAlgo.GEMM) {
+            //Built-in forward pass was used: the built-in backward pass can reuse its im2col array
+            return null;
+        }
+
+        INDArray epsNext;
+        if (s.isOneByOne()) {
+            epsNext = implicitGemmBackprop(s, input, weights, delta, biasGradView, weightGradView);
+        } else {
+            epsNext = shiftedGemmBackprop(s, input, weights, delta, biasGradView, weightGradView);
+        }
+
+        Gradient retGradient = new DefaultGradient();
+        retGradient.setGradientFor(ConvolutionParamInitializer.BIAS_KEY, biasGradView);
+        retGradient.setGradientFor(ConvolutionParamInitializer.WEIGHT_KEY, weightGradView, 'c');
+        return new Pair<>(retGradient, epsNext);
+    }
+
+    @Override
+    public INDArray activate(INDArray z, IActivation afn) {
+        //Built-in activation functions are used
+        return null;
+    }
+
+    /**
+     * Select the algorithm for the given layer and input shape
+     *
+     * @return The algorithm to use; {@link FwdAlgo#GEMM} for the built-in implementation
+     */
+    private FwdAlgo selectAlgorithm(ConvShape s, AlgoMode mode, FwdAlgo fwdAlgo, INDArray input, INDArray weights,
+                    INDArray bias) {
+        if (mode == AlgoMode.USER_SPECIFIED && fwdAlgo != null) {
+            return candidates(s, mode).contains(fwdAlgo) ? fwdAlgo : FwdAlgo.GEMM;
+        }
+        if (!autotune) {
+            return FwdAlgo.GEMM;
+        }
+
+        String key = s.key() + "," + mode;
+        FwdAlgo algo = autotuneCache.get(key);
+        if (algo == null) {
+            algo = autotune(s, mode, input, weights, bias);
+            autotuneCache.put(key, algo);
+        }
+        return algo;
+    }
+
+    private static List<FwdAlgo> candidates(ConvShape s, AlgoMode mode) {
+        if (s.isOneByOne()) {
+            return Arrays.asList(FwdAlgo.IMPLICIT_GEMM, FwdAlgo.DIRECT, FwdAlgo.GEMM);
+        }
+        if (mode == AlgoMode.NO_WORKSPACE) {
+            return Arrays.asList(FwdAlgo.DIRECT, FwdAlgo.GEMM);
+        }
+        return Arrays.asList(FwdAlgo.DIRECT, FwdAlgo.WINOGRAD, FwdAlgo.GEMM);
+    }
+
+    private FwdAlgo autotune(ConvShape s, AlgoMode mode, INDArray input, INDArray weights, INDArray bias) {
+        FwdAlgo best = null;
+        long bestTime = Long.MAX_VALUE;
+        StringBuilder sb = new StringBuilder();
+        try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+            for (FwdAlgo algo : candidates(s, mode)) {
+                //First run is warmup
+                long time = Long.MAX_VALUE;
+                for (int i = 0; i <= AUTOTUNE_REPEATS; i++) {
+                    long start = System.nanoTime();
+                    forward(algo, s, input, weights, bias);
+                    Nd4j.getExecutioner().commit();
+                    if (i > 0) {
+                        time = Math.min(time, System.nanoTime() - start);
+                    }
+                }
+                sb.append(algo).append("=").append(time / 1000).append("us ");
+                if (time < bestTime) {
+                    bestTime = time;
+                    best = algo;
+                }
+            }
+        }
+        log.debug("Convolution autotuning for shape {}: selected {} ({})", s.key(), best, sb.toString().trim());
+        return best;
+    }
+
+    private INDArray forward(FwdAlgo algo, ConvShape s, INDArray input, INDArray weights, INDArray bias) {
+        switch (algo) {
+            case IMPLICIT_GEMM:
+                return implicitGemmForward(s, input, weights, bias);
+            case DIRECT:
+                return shiftedGemmForward(s, input, weights, bias);
+            case WINOGRAD:
+                return winogradForward(s, input, weights, bias);
+            case GEMM:
+                return im2colForward(s, input, weights, bias);
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm for CPU convolution: " + algo);
+        }
+    }
+
+    /**
+     * Built-in im2col + GEMM forward pass (as per {@link ConvolutionLayer}), used only for autotuning
+     */
+    private static INDArray im2colForward(ConvShape s, INDArray input, INDArray weights, INDArray bias) {
+        INDArray col = Nd4j.createUninitialized(
+                        new int[] {s.miniBatch, s.outH, s.outW, s.inDepth, s.kH, s.kW}, 'c');
+        INDArray col2 = col.permute(0, 3, 4, 5, 1, 2);
+        Convolution.im2col(input, s.kH, s.kW, 1, 1, s.padTop, s.padLeft, 1, 1, s.same, col2);
+        INDArray im2col2d = col.reshape('c', s.miniBatch * s.outH * s.outW, s.inDepth * s.kH * s.kW);
+        INDArray reshapedW = weights.permute(3, 2, 1, 0).reshape('f', s.kW * s.kH * s.inDepth, s.outDepth);
+        INDArray z = im2col2d.mmul(reshapedW);
+        z.addiRowVector(bias);
+        return Shape.newShapeNoCopy(z, new int[] {s.outW, s.outH, s.miniBatch, s.outDepth}, true).permute(2, 3, 1, 0);
+    }
+
+    /**
+     * 1x1 convolution as one GEMM per example: z[i] = W * x[i], with x[i] as [inDepth, H*W] and W as
+     * [outDepth, inDepth]. Results are written directly to the output via the f-order transposed views, as
+     * z[i]^T = x[i]^T * W^T
+     */
+    private static INDArray implicitGemmForward(ConvShape s, INDArray input, INDArray weights, INDArray bias) {
+        INDArray x = cContiguous(input);
+        INDArray w2d = as2d(weights, s.outDepth, s.inDepth);
+        int hw = s.outH * s.outW;
+        INDArray z = createExternal(new int[] {s.miniBatch, s.outDepth, s.outH, s.outW});
+        for (int i = 0; i < s.miniBatch; i++) {
+            INDArray xi = as2d(x.slice(i), s.inDepth, hw);
+            INDArray ziT = Shape.newShapeNoCopy(z.slice(i), new int[] {s.outDepth, hw}, false).transpose();
+            Nd4j.gemm(xi, w2d, ziT, true, true, 1.0, 0.0);
+        }
+        Nd4j.getExecutioner().exec(new BroadcastAddOp(z, bias, z, 1));
+        return z;
+    }
+
+    private static INDArray implicitGemmBackprop(ConvShape s, INDArray input, INDArray weights, INDArray delta,
+                    INDArray biasGradView, INDArray weightGradView) {
+        INDArray x = cContiguous(input);
+        INDArray d = cContiguous(delta);
+        INDArray w2d = as2d(weights, s.outDepth, s.inDepth);
+        int hw = s.outH * s.outW;
+
+        //Weight gradients: dL/dW = sum_i delta[i] * x[i]^T; as an f order [inDepth, outDepth] view: x[i] * delta[i]^T
+        INDArray wGradT = Shape.newShapeNoCopy(weightGradView, new int[] {s.outDepth, s.inDepth}, false).transpose();
+        INDArray epsNext = createExternal(new int[] {s.miniBatch, s.inDepth, s.inH, s.inW});
+        for (int i = 0; i < s.miniBatch; i++) {
+            INDArray xi = as2d(x.slice(i), s.inDepth, hw);
+            INDArray di = as2d(d.slice(i), s.outDepth, hw);
+            Nd4j.gemm(xi, di, wGradT, false, true, 1.0, i == 0 ? 0.0 : 1.0);
+
+            //Epsilons: eps[i] = W^T * delta[i]; as an f order [H*W, inDepth] view: delta[i]^T * W
+            INDArray epsT = Shape.newShapeNoCopy(epsNext.slice(i), new int[] {s.inDepth, hw}, false).transpose();
+            Nd4j.gemm(di, w2d, epsT, true, false, 1.0, 0.0);
+        }
+        biasGradView.assign(d.sum(0, 2, 3).reshape(biasGradView.shape()));
+        return epsNext;
+    }
+
+    /**
+     * Direct convolution as kH*kW GEMMs per example. The input is copied (once) into a zero-padded array with
+     * rows of width W' = outW + kW - 1. For kernel position (ky, kx), the input values used by all output positions
+     * are then the contiguous range of length outH*W' starting at ky*W' + kx in each padded channel, so that
+     * z[i] (as [outDepth, outH*W']) = sum over (ky, kx) of W[:, :, ky, kx] * shifted(x[i]). The last kW-1 columns of
+     * each output row are discarded.
+     */
+    private static INDArray shiftedGemmForward(ConvShape s, INDArray input, INDArray weights, INDArray bias) {
+        int cols = s.outW + s.kW - 1;
+        int length = s.outH * cols;
+        INDArray xPadded = pad(input, s.padTop, s.padLeft, s.outH + s.kH, cols);
+        INDArray wByPosition = byKernelPosition(weights, s);
+
+        INDArray z = createExternal(new int[] {s.miniBatch, s.outDepth, s.outH, s.outW});
+        INDArray zWide = Nd4j.create(new int[] {s.outDepth, length}, 'c');
+        INDArray zWideT = zWide.transpose();
+        for (int i = 0; i < s.miniBatch; i++) {
+            INDArray xi = as2d(xPadded.slice(i), s.inDepth, xPadded.size(2) * cols);
+            for (int k = 0; k < s.kH * s.kW; k++) {
+                int offset = (k / s.kW) * cols + k % s.kW;
+                INDArray shifted = xi.get(NDArrayIndex.all(), NDArrayIndex.interval(offset, offset + length));
+                //As f order [outH*W', outDepth]: shifted^T * W_k^T
+                Nd4j.gemm(shifted, wByPosition.slice(k), zWideT, true, true, 1.0, k == 0 ? 0.0 : 1.0);
+            }
+            z.slice(i).assign(crop(zWide, s.outDepth, s.outH, cols, s.outW));
+        }
+        Nd4j.getExecutioner().exec(new BroadcastAddOp(z, bias, z, 1));
+        return z;
+    }
+
+    /**
+     * Backprop for {@link #shiftedGemmForward(ConvShape, INDArray, INDArray, INDArray)}. Weight gradients use the
+     * same shifted input views, with the deltas zero-padded to rows of width W': dL/dW[:, :, ky, kx] = sum over i of
+     * delta[i] * shifted(x[i])^T. Epsilons are the full correlation of the deltas with the rotated kernel, calculated
+     * the same way as the forward pass, on the deltas zero-padded by kH-1-padTop and kW-1-padLeft.
+     */
+    private static INDArray shiftedGemmBackprop(ConvShape s, INDArray input, INDArray weights, INDArray delta,
+                    INDArray biasGradView, INDArray weightGradView) {
+        int kernelSize = s.kH * s.kW;
+        int cols = s.outW + s.kW - 1;
+        int length = s.outH * cols;
+        INDArray xPadded = pad(input, s.padTop, s.padLeft, s.outH + s.kH, cols);
+        INDArray dPadded = pad(delta, 0, 0, s.outH + 1, cols);
+
+        //Weight gradients, as [kH*kW, outDepth, inDepth]
+        INDArray wGrad = Nd4j.create(new int[] {kernelSize, s.outDepth, s.inDepth}, 'c');
+        for (int i = 0; i < s.miniBatch; i++) {
+            INDArray xi = as2d(xPadded.slice(i), s.inDepth, xPadded.size(2) * cols);
+            INDArray di = as2d(dPadded.slice(i), s.outDepth, dPadded.size(2) * cols)
+                            .get(NDArrayIndex.all(), NDArrayIndex.interval(0, length));
+            for (int k = 0; k < kernelSize; k++) {
+                int offset = (k / s.kW) * cols + k % s.kW;
+                INDArray shifted = xi.get(NDArrayIndex.all(), NDArrayIndex.interval(offset, offset + length));
+                //As f order [inDepth, outDepth]: shifted * delta[i]^T
+                Nd4j.gemm(shifted, di, wGrad.slice(k).transpose(), false, true, 1.0, i == 0 ? 0.0 : 1.0);
+            }
+        }
+        weightGradView.assign(wGrad.reshape('c', s.kH, s.kW, s.outDepth, s.inDepth).permute(2, 3, 0, 1));
+        biasGradView.assign(delta.sum(0, 2, 3).reshape(biasGradView.shape()));
+
+        //Epsilons: eps[i][c, y, x] = sum over (o, ky, kx) of W[o, c, ky, kx] * delta[i][o, y+padTop-ky, x+padLeft-kx]
+        int epsCols = s.inW + s.kW - 1;
+        int epsLength = s.inH * epsCols;
+        INDArray dFull = pad(delta, s.kH - 1 - s.padTop, s.kW - 1 - s.padLeft, s.inH + s.kH, epsCols);
+        INDArray wByPosition = byKernelPosition(weights, s);
+
+        INDArray epsNext = createExternal(new int[] {s.miniBatch, s.inDepth, s.inH, s.inW});
+        INDArray epsWide = Nd4j.create(new int[] {s.inDepth, epsLength}, 'c');
+        INDArray epsWideT = epsWide.transpose();
+        for (int i = 0; i < s.miniBatch; i++) {
+            INDArray di = as2d(dFull.slice(i), s.outDepth, dFull.size(2) * epsCols);
+            for (int k = 0; k < kernelSize; k++) {
+                int offset = (k / s.kW) * epsCols + k % s.kW;
+                INDArray shifted = di.get(NDArrayIndex.all(), NDArrayIndex.interval(offset, offset + epsLength));
+                //Rotated kernel: position (ky, kx) uses W[:, :, kH-1-ky, kW-1-kx]. As f order [H*W', inDepth]
+                Nd4j.gemm(shifted, wByPosition.slice(kernelSize - 1 - k), epsWideT, true, false, 1.0,
+                                k == 0 ? 0.0 : 1.0);
+            }
+            epsNext.slice(i).assign(crop(epsWide, s.inDepth, s.inH, epsCols, s.inW));
+        }
+        return epsNext;
+    }
+
+    /**
+     * Winograd F(2x2,3x3): Y = A^T [ (G g G^T) .* (B^T d B) ] A for each 4x4 input tile d (overlapping by 2) and 2x2
+     * output tile Y. Element (r, q) of all input tiles is a strided view of the padded input, so the transforms are
+     * elementwise operations over all tiles at once. The elementwise product, summed over input channels, is
+     * calculated as 16 GEMMs: M[xi] = U[xi] * V[xi], for U[xi] of shape [outDepth, inDepth] (transformed weights) and
+     * V[xi] of shape [inDepth, numTiles] (transformed input tiles), for each of the 16 tile positions xi
+     */
+    private static INDArray winogradForward(ConvShape s, INDArray input, INDArray weights, INDArray bias) {
+        int tilesH = (s.outH + 1) / 2;
+        int tilesW = (s.outW + 1) / 2;
+        int numTiles = s.miniBatch * tilesH * tilesW;
+        INDArray xPadded = pad(input, s.padTop, s.padLeft, 2 * tilesH + 2, 2 * tilesW + 2);
+
+        //Input tiles: d[r][q] as [inDepth, miniBatch, tilesH, tilesW]
+        INDArray[] d = new INDArray[16];
+        for (int r = 0; r < 4; r++) {
+            for (int q = 0; q < 4; q++) {
+                d[4 * r + q] = xPadded.get(NDArrayIndex.all(), NDArrayIndex.all(),
+                                NDArrayIndex.interval(r, 2, r + 2 * tilesH),
+                                NDArrayIndex.interval(q, 2, q + 2 * tilesW)).permute(1, 0, 2, 3);
+            }
+        }
+
+        //Input transform, rows then columns: B^T = [1,0,-1,0; 0,1,1,0; 0,-1,1,0; 0,1,0,-1]
+        INDArray[] t = new INDArray[16];
+        for (int q = 0; q < 4; q++) {
+            t[q] = d[q].sub(d[8 + q]);
+            t[4 + q] = d[4 + q].add(d[8 + q]);
+            t[8 + q] = d[8 + q].sub(d[4 + q]);
+            t[12 + q] = d[4 + q].sub(d[12 + q]);
+        }
+        INDArray v = Nd4j.create(new int[] {16, s.inDepth, s.miniBatch, tilesH, tilesW}, 'c');
+        for (int r = 0; r < 4; r++) {
+            int row = 4 * r;
+            v.slice(row).assign(t[row]).subi(t[row + 2]);
+            v.slice(row + 1).assign(t[row + 1]).addi(t[row + 2]);
+            v.slice(row + 2).assign(t[row + 2]).subi(t[row + 1]);
+            v.slice(row + 3).assign(t[row + 1]).subi(t[row + 3]);
+        }
+
+        //Products: M[xi] = U[xi] * V[xi], as [outDepth, miniBatch, tilesH, tilesW]
+        INDArray[] u = winogradWeights(byKernelPosition(weights, s));
+        INDArray[] m = new INDArray[16];
+        for (int xi = 0; xi < 16; xi++) {
+            m[xi] = u[xi].mmul(as2d(v.slice(xi), s.inDepth, numTiles))
+                            .reshape('c', s.outDepth, s.miniBatch, tilesH, tilesW);
+        }
+
+        //Output transform: Y = A^T M A, A^T = [1,1,1,0; 0,1,-1,-1]
+        INDArray[] mt = new INDArray[8];
+        for (int q = 0; q < 4; q++) {
+            mt[q] = m[q].add(m[4 + q]).addi(m[8 + q]);
+            mt[4 + q] = m[4 + q].sub(m[8 + q]).subi(m[12 + q]);
+        }
+        INDArray zTiles = Nd4j.create(new int[] {s.miniBatch, s.outDepth, 2 * tilesH, 2 * tilesW}, 'c');
+        for (int r = 0; r < 2; r++) {
+            int row = 4 * r;
+            INDArray y0 = mt[row].add(mt[row + 1]).addi(mt[row + 2]);
+            INDArray y1 = mt[row + 1].sub(mt[row + 2]).subi(mt[row + 3]);
+            zTiles.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(r, 2, r + 2 * tilesH),
+                            NDArrayIndex.interval(0, 2, 2 * tilesW)).assign(y0.permute(1, 0, 2, 3));
+            zTiles.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(r, 2, r + 2 * tilesH),
+                            NDArrayIndex.interval(1, 2, 2 * tilesW)).assign(y1.permute(1, 0, 2, 3));
+        }
+
+        INDArray z = createExternal(new int[] {s.miniBatch, s.outDepth, s.outH, s.outW});
+        z.assign(zTiles.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(0, s.outH),
+                        NDArrayIndex.interval(0, s.outW)));
+        Nd4j.getExecutioner().exec(new BroadcastAddOp(z, bias, z, 1));
+        return z;
+    }
+
+    /**
+     * Weight transform for Winograd F(2x2,3x3): U = G g G^T, G = [1,0,0; 0.5,0.5,0.5; 0.5,-0.5,0.5; 0,0,1]
+     *
+     * @param g Weights by kernel position, as [9, outDepth, inDepth]
+     * @return Transformed weights: 16 arrays of shape [outDepth, inDepth]
+     */
+    private static INDArray[] winogradWeights(INDArray g) {
+        INDArray[] a = new INDArray[12];
+        for (int j = 0; j < 3; j++) {
+            INDArray g0 = g.slice(j);
+            INDArray g1 = g.slice(3 + j);
+            INDArray g2 = g.slice(6 + j);
+            a[j] = g0;
+            a[3 + j] = g0.add(g1).addi(g2).muli(0.5);
+            a[6 + j] = g0.sub(g1).addi(g2).muli(0.5);
+            a[9 + j] = g2;
+        }
+        INDArray[] u = new INDArray[16];
+        for (int r = 0; r < 4; r++) {
+            INDArray a0 = a[3 * r];
+            INDArray a1 = a[3 * r + 1];
+            INDArray a2 = a[3 * r + 2];
+            u[4 * r] = a0;
+            u[4 * r + 1] = a0.add(a1).addi(a2).muli(0.5);
+            u[4 * r + 2] = a0.sub(a1).addi(a2).muli(0.5);
+            u[4 * r + 3] = a2;
+        }
+        return u;
+    }
+
+    /**
+     * @return Weights as [kH*kW, outDepth, inDepth], so that each slice is the weight matrix for one kernel position
+     */
+    private static INDArray byKernelPosition(INDArray weights, ConvShape s) {
+        return weights.permute(2, 3, 0, 1).dup('c').reshape('c', s.kH * s.kW, s.outDepth, s.inDepth);
+    }
+
+    /**
+     * Copy src [miniBatch, depth, h, w] into a new zero-filled array [miniBatch, depth, rows, cols], with src
+     * element (y, x) at (y + top, x + left). Any part of src outside the new array is dropped
+     */
+    private static INDArray pad(INDArray src, int top, int left, int rows, int cols) {
+        INDArray out = Nd4j.create(new int[] {src.size(0), src.size(1), rows, cols}, 'c');
+        int y0 = Math.max(0, -top);
+        int y1 = Math.min(src.size(2), rows - top);
+        int x0 = Math.max(0, -left);
+        int x1 = Math.min(src.size(3), cols - left);
+        if (y0 < y1 && x0 < x1) {
+            out.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(y0 + top, y1 + top),
+                            NDArrayIndex.interval(x0 + left, x1 + left))
+                            .assign(src.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(y0, y1),
+                                            NDArrayIndex.interval(x0, x1)));
+        }
+        return out;
+    }
+
+    /**
+     * @return View of the first w columns of each row, for an array [depth, h*cols] with rows of width cols
+     */
+    private static INDArray crop(INDArray wide, int depth, int h, int cols, int w) {
+        return wide.reshape('c', depth, h, cols).get(NDArrayIndex.all(), NDArrayIndex.all(),
+                        NDArrayIndex.interval(0, w));
+    }
+
+    private static INDArray cContiguous(INDArray arr) {
+        return arr.ordering() == 'c' && !arr.isView() ? arr : arr.dup('c');
+    }
+
+    private static INDArray as2d(INDArray arr, int rows, int cols) {
+        INDArray ret = Shape.newShapeNoCopy(arr, new int[] {rows, cols}, false);
+        return ret != null ? ret : arr.dup('c').reshape('c', rows, cols);
+    }
+
+    /**
+     * Create an uninitialized array in the external workspace (if active), as per the built-in implementation
+     */
+    private static INDArray createExternal(int[] shape) {
+        if (Nd4j.getWorkspaceManager().checkIfWorkspaceExistsAndActive(ComputationGraph.WORKSPACE_EXTERNAL)
+                        && Nd4j.getMemoryManager().getCurrentWorkspace() != Nd4j.getWorkspaceManager()
+                                        .getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_EXTERNAL)) {
+            try (MemoryWorkspace wsB = Nd4j.getWorkspaceManager()
+                            .getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_EXTERNAL).notifyScopeBorrowed()) {
+                return Nd4j.createUninitialized(shape, 'c');
+            }
+        }
+        return Nd4j.createUninitialized(shape, 'c');
+    }
+
+    /**
+     * Input, weight and output dimensions for a supported convolution: stride 1, no dilation, float data
+     */
+    private static class ConvShape {
+        private int miniBatch;
+        private int inDepth;
+        private int inH;
+        private int inW;
+        private int outDepth;
+        private int kH;
+        private int kW;
+        private int padTop;
+        private int padLeft;
+        private int outH;
+        private int outW;
+        private boolean same;
+
+        /**
+         * @return The shape, or null if the configuration isn't supported by this helper
+         */
+        private static ConvShape of(INDArray input, INDArray weights, int[] strides, int[] pad,
+                        ConvolutionMode convolutionMode, int[] dilation) {
+            if (input.rank() != 4 || strides[0] != 1 || strides[1] != 1 || dilation[0] != 1 || dilation[1] != 1
+                            || input.data().dataType() != DataBuffer.Type.FLOAT
+                            || weights.data().dataType() != DataBuffer.Type.FLOAT) {
+                return null;
+            }
+            ConvShape s = new ConvShape();
+            s.kH = weights.size(2);
+            s.kW = weights.size(3);
+            s.padTop = pad[0];
+            s.padLeft = pad[1];
+            boolean oneByOne = s.kH == 1 && s.kW == 1 && s.padTop == 0 && s.padLeft == 0;
+            if (!oneByOne && (s.kH != 3 || s.kW != 3)) {
+                return null;
+            }
+
+            s.same = convolutionMode == ConvolutionMode.Same;
+            int[] outSize = ConvolutionUtils.getOutputSize(input, new int[] {s.kH, s.kW}, strides,
+                            s.same ? null : pad, convolutionMode, dilation);
+            s.miniBatch = input.size(0);
+            s.inDepth = input.size(1);
+            s.inH = input.size(2);
+            s.inW = input.size(3);
+            s.outDepth = weights.size(0);
+            s.outH = outSize[0];
+            s.outW = outSize[1];
+            if (oneByOne && (s.outH != s.inH || s.outW != s.inW)) {
+                return null;
+            }
+            return s;
+        }
+
+        private boolean isOneByOne() {
+            return kH == 1 && kW == 1;
+        }
+
+        private String key() {
+            return miniBatch + "," + inDepth + "," + inH + "," + inW + "," + outDepth + "," + kH + "," + kW + ","
+                            + padTop + "," + padLeft + "," + outH + "," + outW;
+        }
+    }
+}
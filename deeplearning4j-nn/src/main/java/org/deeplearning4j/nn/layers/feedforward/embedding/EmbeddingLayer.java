@@ -22,15 +22,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.nd4j.linalg.api.ops.custom.ScatterUpdate;
 import org.nd4j.linalg.primitives.Pair;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.nn.api.layers.RowSparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.layers.BaseLayer;
 import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.deeplearning4j.nn.updater.UpdaterUtils;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Pair;
 
+import java.util.Arrays;
+
 /**Embedding layer: feed-forward layer that expects single integers per example as input (class numbers, in range 0 to numClass-1)
  * as input. This input has shape [numExamples,1] instead of [numExamples,numClasses] for the equivalent one-hot representation.
  * Mathematically, EmbeddingLayer is equivalent to using a DenseLayer with a one-hot representation for the input; however,
@@ -42,9 +46,14 @@ import org.nd4j.linalg.primitives.Pair;
  * @author Alex Black
  */
 @Slf4j
-public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer> {
+public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer>
+                implements RowSparseGradientLayer {
     private static final int[] DIM_1 = new int[]{1};
 
+    //Rows of the weight gradient view touched by the last backprop: for sparse gradients, only these are zeroed
+    private int[] gradientRows;
+    private INDArray gradientRowsView;
+
     public EmbeddingLayer(NeuralNetConfiguration conf) {
         super(conf);
     }
@@ -61,13 +70,28 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
         }
 
         INDArray weightGradients = gradientViews.get(DefaultParamInitializer.WEIGHT_KEY);
-        weightGradients.assign(0);
 
         int[] indexes = new int[input.length()];
         for (int i = 0; i < indexes.length; i++) {
             indexes[i] = input.getInt(i, 0);
         }
 
+        if (isRowSparseGradient(DefaultParamInitializer.WEIGHT_KEY)) {
+            //Other rows are still zero from the previous iteration: only need to zero the rows we touched last time
+            if (gradientRows == null || gradientRowsView != weightGradients) {
+                weightGradients.assign(0);
+            } else if (gradientRows.length > 0) {
+                INDArray zeros = Nd4j.zeros(gradientRows.length, weightGradients.columns());
+                Nd4j.getExecutioner().exec(new ScatterUpdate(weightGradients, zeros, gradientRows, DIM_1,
+                                ScatterUpdate.UpdateOp.ASSIGN));
+            }
+            gradientRows = uniqueSorted(indexes);
+            gradientRowsView = weightGradients;
+        } else {
+            weightGradients.assign(0);
+            gradientRows = null;
+        }
+
         ScatterUpdate op = new ScatterUpdate(weightGradients, delta, indexes, DIM_1, ScatterUpdate.UpdateOp.ADD);
         Nd4j.getExecutioner().exec(op);
 
@@ -83,6 +107,31 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
         return new Pair<>(ret, null); //Don't bother returning epsilons: no layer below this one...
     }
 
+    private static int[] uniqueSorted(int[] indexes) {
+        int[] sorted = Arrays.copyOf(indexes, indexes.length);
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n == 0 || sorted[i] != sorted[n - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
+    @Override
+    public boolean isRowSparseGradient(String paramName) {
+        return DefaultParamInitializer.WEIGHT_KEY.equals(paramName) && layerConf().isSparseGradients()
+                        && UpdaterUtils.lazyStateDecay(layerConf().getUpdaterByParam(paramName)) != null;
+    }
+
+    @Override
+    public int[] getGradientRows(String paramName) {
+        if (!DefaultParamInitializer.WEIGHT_KEY.equals(paramName))
+            return null;
+        return gradientRows;
+    }
+
     @Override
     public INDArray preOutput(boolean training) {
         if (input.columns() != 1) {
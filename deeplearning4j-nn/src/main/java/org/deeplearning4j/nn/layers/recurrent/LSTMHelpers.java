@@ -13,6 +13,7 @@ import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.layers.BaseLayer;
+import org.deeplearning4j.util.TimeSeriesUtils;
 import org.nd4j.linalg.activations.IActivation;
 import org.nd4j.linalg.activations.impl.ActivationSigmoid;
 import org.nd4j.linalg.api.blas.Level1;
@@ -155,8 +156,6 @@ public class LSTMHelpers {
             toReturn.fwdPassOutput = outputActivations;
         }
 
-        Level1 l1BLAS = Nd4j.getBlasWrapper().level1();
-
         //Input validation: check input data matches nIn
         if (input.size(1) != inputWeights.size(0)) {
             throw new DL4JInvalidInputException("Received input with size(1) = " + input.size(1)
@@ -186,172 +185,275 @@ public class LSTMHelpers {
             }
         }
 
-        for (int iTimeIndex = 0; iTimeIndex < timeSeriesLength; iTimeIndex++) {
-            int time = iTimeIndex;
+        activateHoisted(afn, gateActivationFn, input, inputWeights, biases, recurrentWeightsIFOG, wFFTranspose,
+                        wOOTranspose, wGGTranspose, training, prevOutputActivations, prevMemCellState,
+                        forBackprop, forwards, maskArray, hasPeepholeConnections, cacheMode, outputActivations,
+                        toReturn);
 
-            if (!forwards) {
-                time = timeSeriesLength - iTimeIndex - 1;
+        toReturn.prevAct = originalPrevOutputActivations;
+        toReturn.prevMemCell = originalPrevMemCellState;
+        return toReturn;
+    }
+
+    static public Pair<Gradient, INDArray> backpropGradientHelper(final NeuralNetConfiguration conf,
+                    final IActivation gateActivationFn, final INDArray input, final INDArray recurrentWeights, //Shape: [hiddenLayerSize,4*hiddenLayerSize+3]; order: [wI,wF,wO,wG,wFF,wOO,wGG]
+                    final INDArray inputWeights, //Shape: [n^(L-1),4*hiddenLayerSize]; order: [wi,wf,wo,wg]
+                    final INDArray epsilon, final boolean truncatedBPTT, final int tbpttBackwardLength,
+                    final FwdPassReturn fwdPass, final boolean forwards, final String inputWeightKey,
+                    final String recurrentWeightKey, final String biasWeightKey,
+                    final Map<String, INDArray> gradientViews, INDArray maskArray, //Input mask: should only be used with bidirectional RNNs + variable length
+                    final boolean hasPeepholeConnections, //True for GravesLSTM, false for LSTM
+                    final LSTMHelper helper) {
+
+
+        //Expect errors to have shape: [miniBatchSize,n^(L+1),timeSeriesLength]
+        int hiddenLayerSize = recurrentWeights.size(0); //i.e., n^L
+        int prevLayerSize = inputWeights.size(0); //n^(L-1)
+        int miniBatchSize = epsilon.size(0);
+        boolean is2dInput = epsilon.rank() < 3; //Edge case: T=1 may have shape [miniBatchSize,n^(L+1)], equiv. to [miniBatchSize,n^(L+1),1]
+        int timeSeriesLength = (is2dInput ? 1 : epsilon.size(2));
+
+        INDArray wFFTranspose = null;
+        INDArray wOOTranspose = null;
+        INDArray wGGTranspose = null;
+        if (hasPeepholeConnections) {
+            wFFTranspose = recurrentWeights.get(NDArrayIndex.all(), point(4 * hiddenLayerSize)).transpose();
+            wOOTranspose = recurrentWeights.get(NDArrayIndex.all(), point(4 * hiddenLayerSize + 1)).transpose();
+            wGGTranspose = recurrentWeights.get(NDArrayIndex.all(), point(4 * hiddenLayerSize + 2)).transpose();
+        }
+
+
+        INDArray wIFOG = recurrentWeights.get(NDArrayIndex.all(), NDArrayIndex.interval(0, 4 * hiddenLayerSize));
+        //F order here so that content for time steps are together
+        INDArray epsilonNext = Nd4j.create(new int[] {miniBatchSize, prevLayerSize, timeSeriesLength}, 'f'); //i.e., what would be W^L*(delta^L)^T. Shape: [m,n^(L-1),T]
+
+        INDArray deltaifogNext = Nd4j.create(new int[] {miniBatchSize, 4 * hiddenLayerSize}, 'f');
+
+        int endIdx = 0;
+
+        if (truncatedBPTT) {
+            endIdx = Math.max(0, timeSeriesLength - tbpttBackwardLength);
+        }
+
+        //Get gradients. Note that we have to manually zero these, as they might not be initialized (or still has data from last iteration)
+        //Also note that they are in f order (as per param initializer) so can be used in gemm etc
+        INDArray iwGradientsOut = gradientViews.get(inputWeightKey);
+        INDArray rwGradientsOut = gradientViews.get(recurrentWeightKey); //Order: {I,F,O,G,FF,OO,GG}
+        INDArray bGradientsOut = gradientViews.get(biasWeightKey);
+        iwGradientsOut.assign(0);
+        rwGradientsOut.assign(0);
+        bGradientsOut.assign(0);
+
+        INDArray rwGradientsIFOG =
+                        rwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.interval(0, 4 * hiddenLayerSize));
+        INDArray rwGradientsFF = null;
+        INDArray rwGradientsOO = null;
+        INDArray rwGradientsGG = null;
+        if (hasPeepholeConnections) {
+            rwGradientsFF = rwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.point(4 * hiddenLayerSize));
+            rwGradientsOO = rwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.point(4 * hiddenLayerSize + 1));
+            rwGradientsGG = rwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.point(4 * hiddenLayerSize + 2));
+        }
+
+        if (helper != null) {
+            Pair<Gradient, INDArray> ret = helper.backpropGradient(conf, gateActivationFn, input, recurrentWeights,
+                            inputWeights, epsilon, truncatedBPTT, tbpttBackwardLength, fwdPass, forwards,
+                            inputWeightKey, recurrentWeightKey, biasWeightKey, gradientViews, maskArray,
+                            hasPeepholeConnections);
+            if (ret != null) {
+                return ret;
             }
+        }
 
+        IActivation afn = ((org.deeplearning4j.nn.conf.layers.BaseLayer) conf.getLayer()).getActivationFn();
 
-            INDArray miniBatchData = (is2dInput ? input : input.tensorAlongDimension(time, 1, 0)); //[Expected shape: [m,nIn]. Also deals with edge case of T=1, with 'time series' data of shape [m,nIn], equiv. to [m,nIn,1]
-            miniBatchData = Shape.toMmulCompatible(miniBatchData);
+        // we check, if we have defined workspace here. If we don't - we working without workspace, and we're skipping internal LSTM one. Otherwise - we go for it
+        MemoryWorkspace workspace = Nd4j.getMemoryManager().getCurrentWorkspace() != null && !Nd4j.getMemoryManager()
+                        .getCurrentWorkspace().getId().equals(ComputationGraph.WORKSPACE_EXTERNAL)
+                                        ? Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(
+                                                        ComputationGraph.workspaceConfigurationLSTM,
+                                                        ComputationGraph.WORKSPACE_LSTM)
+                                        : null;
 
-            // if we're using cache here - let's create ifogActivations within cache workspace, so all views from this array will be valid in cache
+        backpropGradientHoisted(afn, gateActivationFn, input, inputWeights, epsilon, endIdx, fwdPass, forwards,
+                        maskArray, hasPeepholeConnections, workspace, wIFOG, wFFTranspose, wOOTranspose,
+                        wGGTranspose, epsilonNext, deltaifogNext, iwGradientsOut, rwGradientsIFOG,
+                        rwGradientsFF, rwGradientsOO, rwGradientsGG, bGradientsOut);
+        return toGradient(inputWeightKey, recurrentWeightKey, biasWeightKey, iwGradientsOut, rwGradientsOut,
+                        bGradientsOut, epsilonNext);
+    }
+
+    private static Pair<Gradient, INDArray> toGradient(String inputWeightKey, String recurrentWeightKey,
+                    String biasWeightKey, INDArray iwGradientsOut, INDArray rwGradientsOut, INDArray bGradientsOut,
+                    INDArray epsilonNext) {
+        Gradient retGradient = new DefaultGradient();
+        retGradient.gradientForVariable().put(inputWeightKey, iwGradientsOut);
+        retGradient.gradientForVariable().put(recurrentWeightKey, rwGradientsOut);
+        retGradient.gradientForVariable().put(biasWeightKey, bGradientsOut);
+
+        return new Pair<>(retGradient, epsilonNext);
+    }
+
+    /**
+     * Reshapes input of shape [m,nIn,T] to [m*T,nIn]; rows time*m ... time*m+m-1 are for time step 'time'
+     */
+    private static INDArray inputAsRows(INDArray input) {
+        if (input.rank() < 3)
+            return Shape.toMmulCompatible(input);
+        if (input.ordering() != 'f')
+            input = input.dup('f');
+        return Shape.toMmulCompatible(TimeSeriesUtils.reshape3dTo2d(input));
+    }
+
+    /**
+     * Forward pass with input projections (and biases) for all time steps calculated up front, with a single GEMM.
+     * Everything needed for backprop is written to [m,n,T] buffers allocated once per call; per time step arrays are
+     * views of these buffers (f order and contiguous, as per tensorAlongDimension(time, 1, 0) on f order buffers)
+     */
+    private static void activateHoisted(final IActivation afn, final IActivation gateActivationFn,
+                    final INDArray input, final INDArray inputWeights, final INDArray biases,
+                    final INDArray recurrentWeightsIFOG, final INDArray wFFTranspose, final INDArray wOOTranspose,
+                    final INDArray wGGTranspose, final boolean training, INDArray prevOutputActivations,
+                    INDArray prevMemCellState, final boolean forBackprop, final boolean forwards,
+                    final INDArray maskArray, final boolean hasPeepholeConnections, final CacheMode cacheMode,
+                    final INDArray outputActivations, final FwdPassReturn toReturn) {
+
+        boolean is2dInput = input.rank() < 3;
+        int timeSeriesLength = (is2dInput ? 1 : input.size(2));
+        int hiddenLayerSize = recurrentWeightsIFOG.size(0);
+        int miniBatchSize = input.size(0);
+        boolean sigmoidGates = gateActivationFn instanceof ActivationSigmoid;
+        Level1 l1BLAS = Nd4j.getBlasWrapper().level1();
+
+        //Input projections for all time steps: [m*T,nIn] x [nIn,4*nL]. Rows time*m ... time*m+m-1 are for time step 'time'
+        INDArray input2d = inputAsRows(input);
+        INDArray projections = input2d.mmul(inputWeights);
+        projections.addiRowVector(biases);
+
+        INDArray ifogBuffer = null; //Shape [m,4*nL,T]: gate activations are needed for backprop
+        INDArray[] ifogSteps = null; //Two [m,4*nL] arrays, used alternately: memory cell state is a view of previous one
+        INDArray izBuffer = null;
+        INDArray fzBuffer = null;
+        INDArray ozBuffer = null;
+        INDArray gzBuffer = null;
+        INDArray memCellStateBuffer = null;
+        INDArray memCellActBuffer;
+        INDArray hiddenBuffer = outputActivations;
+        if (forBackprop) {
             if (cacheMode != CacheMode.NONE)
                 Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
                                 .notifyScopeBorrowed();
 
-            //Calculate activations for: network input + forget, output, input modulation gates. Next 3 lines are first part of those
-            INDArray ifogActivations = miniBatchData.mmul(inputWeights); //Shape: [miniBatch,4*layerSize]
+            ifogBuffer = Nd4j.create(new int[] {miniBatchSize, 4 * hiddenLayerSize, timeSeriesLength}, 'f');
+            izBuffer = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize, timeSeriesLength}, 'f');
+            if (!sigmoidGates) {
+                fzBuffer = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize, timeSeriesLength}, 'f');
+                ozBuffer = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize, timeSeriesLength}, 'f');
+                gzBuffer = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize, timeSeriesLength}, 'f');
+            }
+            memCellStateBuffer = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize, timeSeriesLength}, 'f');
+            memCellActBuffer = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize, timeSeriesLength}, 'f');
+            if (hiddenBuffer == null)
+                hiddenBuffer = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize, timeSeriesLength}, 'f');
 
             if (cacheMode != CacheMode.NONE)
                 Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
                                 .notifyScopeLeft();
+        } else {
+            ifogSteps = new INDArray[] {Nd4j.create(new int[] {miniBatchSize, 4 * hiddenLayerSize}, 'f'),
+                            Nd4j.create(new int[] {miniBatchSize, 4 * hiddenLayerSize}, 'f')};
+            memCellActBuffer = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize}, 'f');
+        }
+        //Peephole products and input modulation gate * input activations; not stored
+        INDArray scratch = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize}, 'f');
 
+        for (int iTimeIndex = 0; iTimeIndex < timeSeriesLength; iTimeIndex++) {
+            int time = iTimeIndex;
+
+            if (!forwards) {
+                time = timeSeriesLength - iTimeIndex - 1;
+            }
+
+            INDArray ifogActivations = forBackprop ? ifogBuffer.tensorAlongDimension(time, 1, 0)
+                            : ifogSteps[iTimeIndex % 2];
+            ifogActivations.assign(projections.get(
+                            NDArrayIndex.interval(time * miniBatchSize, (time + 1) * miniBatchSize),
+                            NDArrayIndex.all()));
             Nd4j.gemm(prevOutputActivations, recurrentWeightsIFOG, ifogActivations, false, false, 1.0, 1.0);
-            ifogActivations.addiRowVector(biases);
 
             INDArray inputActivations =
                             ifogActivations.get(NDArrayIndex.all(), NDArrayIndex.interval(0, hiddenLayerSize));
-            if (forBackprop) {
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeBorrowed();
-
-                toReturn.iz[time] = inputActivations.dup('f');
-
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeLeft();
-            }
-            layer.layerConf().getActivationFn().getActivation(inputActivations, training);
+            if (forBackprop)
+                toReturn.iz[time] = izBuffer.tensorAlongDimension(time, 1, 0).assign(inputActivations);
+            afn.getActivation(inputActivations, training);
             if (forBackprop)
                 toReturn.ia[time] = inputActivations;
 
             INDArray forgetGateActivations = ifogActivations.get(NDArrayIndex.all(),
                             NDArrayIndex.interval(hiddenLayerSize, 2 * hiddenLayerSize));
             if (hasPeepholeConnections) {
-                INDArray pmcellWFF = prevMemCellState.dup('f').muliRowVector(wFFTranspose);
-                l1BLAS.axpy(pmcellWFF.length(), 1.0, pmcellWFF, forgetGateActivations); //y = a*x + y i.e., forgetGateActivations.addi(pmcellWFF)
-            }
-            //Above line: treats matrix as a vector. Can only do this because we're sure both pwcelWFF and forgetGateACtivations are f order, offset 0 and have same strides
-            if (forBackprop && !sigmoidGates) {
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeBorrowed();
-
-                toReturn.fz[time] = forgetGateActivations.dup('f'); //Forget gate pre-out (z)
-
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeLeft();
+                scratch.assign(prevMemCellState).muliRowVector(wFFTranspose);
+                l1BLAS.axpy(scratch.length(), 1.0, scratch, forgetGateActivations);
             }
+            if (forBackprop && !sigmoidGates)
+                toReturn.fz[time] = fzBuffer.tensorAlongDimension(time, 1, 0).assign(forgetGateActivations);
             gateActivationFn.getActivation(forgetGateActivations, training);
-
             if (forBackprop)
                 toReturn.fa[time] = forgetGateActivations;
 
-
             INDArray inputModGateActivations = ifogActivations.get(NDArrayIndex.all(),
                             NDArrayIndex.interval(3 * hiddenLayerSize, 4 * hiddenLayerSize));
             if (hasPeepholeConnections) {
-                INDArray pmcellWGG = prevMemCellState.dup('f').muliRowVector(wGGTranspose);
-                l1BLAS.axpy(pmcellWGG.length(), 1.0, pmcellWGG, inputModGateActivations); //inputModGateActivations.addi(pmcellWGG)
-            }
-            if (forBackprop && !sigmoidGates) {
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeBorrowed();
-
-                toReturn.gz[time] = inputModGateActivations.dup('f'); //Input modulation gate pre-out (z)
-
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeLeft();
+                scratch.assign(prevMemCellState).muliRowVector(wGGTranspose);
+                l1BLAS.axpy(scratch.length(), 1.0, scratch, inputModGateActivations);
             }
+            if (forBackprop && !sigmoidGates)
+                toReturn.gz[time] = gzBuffer.tensorAlongDimension(time, 1, 0).assign(inputModGateActivations);
             gateActivationFn.getActivation(inputModGateActivations, training);
             if (forBackprop)
                 toReturn.ga[time] = inputModGateActivations;
 
             //Memory cell state
             INDArray currentMemoryCellState;
-            INDArray inputModMulInput;
             if (forBackprop) {
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeBorrowed();
-
-                currentMemoryCellState = prevMemCellState.dup('f').muli(forgetGateActivations);
-
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeLeft();
-
-                // this variable isn't stored in cache
-                inputModMulInput = inputModGateActivations.dup('f').muli(inputActivations);
+                //Gate activations are needed for backprop: can't modify them in-place
+                currentMemoryCellState = memCellStateBuffer.tensorAlongDimension(time, 1, 0);
+                Nd4j.getExecutioner().exec(new OldMulOp(prevMemCellState, forgetGateActivations,
+                                currentMemoryCellState));
+                Nd4j.getExecutioner().exec(new OldMulOp(inputModGateActivations, inputActivations, scratch));
+                l1BLAS.axpy(currentMemoryCellState.length(), 1.0, scratch, currentMemoryCellState);
             } else {
                 currentMemoryCellState = forgetGateActivations.muli(prevMemCellState);
-                inputModMulInput = inputModGateActivations.muli(inputActivations);
+                INDArray inputModMulInput = inputModGateActivations.muli(inputActivations);
+                l1BLAS.axpy(currentMemoryCellState.length(), 1.0, inputModMulInput, currentMemoryCellState);
             }
-            l1BLAS.axpy(currentMemoryCellState.length(), 1.0, inputModMulInput, currentMemoryCellState); //currentMemoryCellState.addi(inputModMulInput)
 
             INDArray outputGateActivations = ifogActivations.get(NDArrayIndex.all(),
                             NDArrayIndex.interval(2 * hiddenLayerSize, 3 * hiddenLayerSize));
             if (hasPeepholeConnections) {
-                INDArray pmcellWOO = currentMemoryCellState.dup('f').muliRowVector(wOOTranspose);
-                l1BLAS.axpy(pmcellWOO.length(), 1.0, pmcellWOO, outputGateActivations); //outputGateActivations.addi(pmcellWOO)
-            }
-            if (forBackprop && !sigmoidGates) {
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeBorrowed();
-
-                toReturn.oz[time] = outputGateActivations.dup('f'); //Output gate activations
-
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeLeft();
+                scratch.assign(currentMemoryCellState).muliRowVector(wOOTranspose);
+                l1BLAS.axpy(scratch.length(), 1.0, scratch, outputGateActivations);
             }
+            if (forBackprop && !sigmoidGates)
+                toReturn.oz[time] = ozBuffer.tensorAlongDimension(time, 1, 0).assign(outputGateActivations);
             gateActivationFn.getActivation(outputGateActivations, training);
             if (forBackprop)
                 toReturn.oa[time] = outputGateActivations;
 
-
-            ////////////// same as with iFogActivations - if we use cache, let's create this array right there
-            if (cacheMode != CacheMode.NONE)
-                Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                .notifyScopeBorrowed();
-
             //LSTM unit outputs:
-            INDArray currMemoryCellActivation = afn.getActivation(currentMemoryCellState.dup('f'), training);
-
-
-            if (cacheMode != CacheMode.NONE)
-                Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                .notifyScopeLeft();
-            ///////////////////
+            INDArray currMemoryCellActivation =
+                            forBackprop ? memCellActBuffer.tensorAlongDimension(time, 1, 0) : memCellActBuffer;
+            currMemoryCellActivation.assign(currentMemoryCellState);
+            afn.getActivation(currMemoryCellActivation, training);
 
-            INDArray currHiddenUnitActivations;
-            if (forBackprop) {
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeBorrowed();
-
-                currHiddenUnitActivations = currMemoryCellActivation.dup('f').muli(outputGateActivations); //Expected shape: [m,hiddenLayerSize]
-
-                if (cacheMode != CacheMode.NONE)
-                    Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(ComputationGraph.WORKSPACE_CACHE)
-                                    .notifyScopeLeft();
-            } else {
-                currHiddenUnitActivations = currMemoryCellActivation.muli(outputGateActivations); //Expected shape: [m,hiddenLayerSize]
-            }
+            INDArray currHiddenUnitActivations = hiddenBuffer.tensorAlongDimension(time, 1, 0); //Expected shape: [m,hiddenLayerSize]
+            Nd4j.getExecutioner().exec(new OldMulOp(currMemoryCellActivation, outputGateActivations,
+                            currHiddenUnitActivations));
 
             if (maskArray != null) {
                 //Mask array is present: bidirectional RNN -> need to zero out these activations to avoid
                 // incorrectly using activations from masked time steps (i.e., want 0 initialization in both directions)
                 //We *also* need to apply this to the memory cells, as they are carried forward
-                //Mask array has shape [minibatch, timeSeriesLength] -> get column
                 INDArray timeStepMaskColumn = maskArray.getColumn(time);
                 currHiddenUnitActivations.muliColumnVector(timeStepMaskColumn);
                 currentMemoryCellState.muliColumnVector(timeStepMaskColumn);
@@ -361,69 +463,37 @@ public class LSTMHelpers {
                 toReturn.fwdPassOutputAsArrays[time] = currHiddenUnitActivations;
                 toReturn.memCellState[time] = currentMemoryCellState;
                 toReturn.memCellActivations[time] = currMemoryCellActivation;
-
-                if (cacheMode != CacheMode.NONE) {
-                    outputActivations.tensorAlongDimension(time, 1, 0).assign(currHiddenUnitActivations);
-                }
-            } else {
-                outputActivations.tensorAlongDimension(time, 1, 0).assign(currHiddenUnitActivations);
             }
 
             prevOutputActivations = currHiddenUnitActivations;
             prevMemCellState = currentMemoryCellState;
 
-            // no need to dup here, if that's cache - it's already within Cache workspace
             toReturn.lastAct = currHiddenUnitActivations;
-
-            // the same as above, already in cache
             toReturn.lastMemCell = currentMemoryCellState;
         }
-
-
-
-        //toReturn.leverageTo(ComputationGraph.workspaceExternal);
-
-        toReturn.prevAct = originalPrevOutputActivations;
-        toReturn.prevMemCell = originalPrevMemCellState;
-
-        return toReturn;
     }
 
-    static public Pair<Gradient, INDArray> backpropGradientHelper(final NeuralNetConfiguration conf,
-                    final IActivation gateActivationFn, final INDArray input, final INDArray recurrentWeights, //Shape: [hiddenLayerSize,4*hiddenLayerSize+3]; order: [wI,wF,wO,wG,wFF,wOO,wGG]
-                    final INDArray inputWeights, //Shape: [n^(L-1),4*hiddenLayerSize]; order: [wi,wf,wo,wg]
-                    final INDArray epsilon, final boolean truncatedBPTT, final int tbpttBackwardLength,
-                    final FwdPassReturn fwdPass, final boolean forwards, final String inputWeightKey,
-                    final String recurrentWeightKey, final String biasWeightKey,
-                    final Map<String, INDArray> gradientViews, INDArray maskArray, //Input mask: should only be used with bidirectional RNNs + variable length
-                    final boolean hasPeepholeConnections, //True for GravesLSTM, false for LSTM
-                    final LSTMHelper helper) {
-
-
-        //Expect errors to have shape: [miniBatchSize,n^(L+1),timeSeriesLength]
-        int hiddenLayerSize = recurrentWeights.size(0); //i.e., n^L
-        int prevLayerSize = inputWeights.size(0); //n^(L-1)
+    /**
+     * Backward pass, with deltas for all time steps collected into one [m*T,4*nL] array: input weight gradients,
+     * bias gradients and epsilons are then calculated with a single GEMM/reduction each, after the time loop.
+     * Temporary arrays of the time loop are allocated once per call.
+     */
+    private static void backpropGradientHoisted(final IActivation afn, final IActivation gateActivationFn,
+                    final INDArray input, final INDArray inputWeights, final INDArray epsilon, final int endIdx,
+                    final FwdPassReturn fwdPass, final boolean forwards, final INDArray maskArray,
+                    final boolean hasPeepholeConnections, final MemoryWorkspace workspace, final INDArray wIFOG,
+                    final INDArray wFFTranspose, final INDArray wOOTranspose, final INDArray wGGTranspose,
+                    final INDArray epsilonNext, final INDArray deltaifogNext, final INDArray iwGradientsOut,
+                    final INDArray rwGradientsIFOG, final INDArray rwGradientsFF, final INDArray rwGradientsOO,
+                    final INDArray rwGradientsGG, final INDArray bGradientsOut) {
+
+        int hiddenLayerSize = wIFOG.size(0);
         int miniBatchSize = epsilon.size(0);
-        boolean is2dInput = epsilon.rank() < 3; //Edge case: T=1 may have shape [miniBatchSize,n^(L+1)], equiv. to [miniBatchSize,n^(L+1),1]
+        boolean is2dInput = epsilon.rank() < 3;
         int timeSeriesLength = (is2dInput ? 1 : epsilon.size(2));
+        boolean sigmoidGates = gateActivationFn instanceof ActivationSigmoid;
+        Level1 l1BLAS = Nd4j.getBlasWrapper().level1();
 
-        INDArray wFFTranspose = null;
-        INDArray wOOTranspose = null;
-        INDArray wGGTranspose = null;
-        if (hasPeepholeConnections) {
-            wFFTranspose = recurrentWeights.get(NDArrayIndex.all(), point(4 * hiddenLayerSize)).transpose();
-            wOOTranspose = recurrentWeights.get(NDArrayIndex.all(), point(4 * hiddenLayerSize + 1)).transpose();
-            wGGTranspose = recurrentWeights.get(NDArrayIndex.all(), point(4 * hiddenLayerSize + 2)).transpose();
-        }
-
-
-        INDArray wIFOG = recurrentWeights.get(NDArrayIndex.all(), NDArrayIndex.interval(0, 4 * hiddenLayerSize));
-        //F order here so that content for time steps are together
-        INDArray epsilonNext = Nd4j.create(new int[] {miniBatchSize, prevLayerSize, timeSeriesLength}, 'f'); //i.e., what would be W^L*(delta^L)^T. Shape: [m,n^(L-1),T]
-
-        INDArray nablaCellStateNext = null;
-
-        INDArray deltaifogNext = Nd4j.create(new int[] {miniBatchSize, 4 * hiddenLayerSize}, 'f');
         INDArray deltaiNext = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(0, hiddenLayerSize));
         INDArray deltafNext = deltaifogNext.get(NDArrayIndex.all(),
                         NDArrayIndex.interval(hiddenLayerSize, 2 * hiddenLayerSize));
@@ -432,62 +502,27 @@ public class LSTMHelpers {
         INDArray deltagNext = deltaifogNext.get(NDArrayIndex.all(),
                         NDArrayIndex.interval(3 * hiddenLayerSize, 4 * hiddenLayerSize));
 
-        Level1 l1BLAS = Nd4j.getBlasWrapper().level1();
-        int endIdx = 0;
-
-        if (truncatedBPTT) {
-            endIdx = Math.max(0, timeSeriesLength - tbpttBackwardLength);
-        }
-
-        //Get gradients. Note that we have to manually zero these, as they might not be initialized (or still has data from last iteration)
-        //Also note that they are in f order (as per param initializer) so can be used in gemm etc
-        INDArray iwGradientsOut = gradientViews.get(inputWeightKey);
-        INDArray rwGradientsOut = gradientViews.get(recurrentWeightKey); //Order: {I,F,O,G,FF,OO,GG}
-        INDArray bGradientsOut = gradientViews.get(biasWeightKey);
-        iwGradientsOut.assign(0);
-        rwGradientsOut.assign(0);
-        bGradientsOut.assign(0);
+        //Time steps we backprop through (all, unless TBPTT) are contiguous: firstTime ... firstTime+numSteps-1
+        int numSteps = timeSeriesLength - endIdx;
+        int firstTime = forwards ? endIdx : 0;
 
-        INDArray rwGradientsIFOG =
-                        rwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.interval(0, 4 * hiddenLayerSize));
-        INDArray rwGradientsFF = null;
-        INDArray rwGradientsOO = null;
-        INDArray rwGradientsGG = null;
-        if (hasPeepholeConnections) {
-            rwGradientsFF = rwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.point(4 * hiddenLayerSize));
-            rwGradientsOO = rwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.point(4 * hiddenLayerSize + 1));
-            rwGradientsGG = rwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.point(4 * hiddenLayerSize + 2));
-        }
+        //Deltas for all time steps. Rows (time-firstTime)*m ... (time-firstTime)*m+m-1 are for time step 'time'
+        INDArray deltaifogAll = Nd4j.create(new int[] {numSteps * miniBatchSize, 4 * hiddenLayerSize}, 'f');
 
-        if (helper != null) {
-            Pair<Gradient, INDArray> ret = helper.backpropGradient(conf, gateActivationFn, input, recurrentWeights,
-                            inputWeights, epsilon, truncatedBPTT, tbpttBackwardLength, fwdPass, forwards,
-                            inputWeightKey, recurrentWeightKey, biasWeightKey, gradientViews, maskArray,
-                            hasPeepholeConnections);
-            if (ret != null) {
-                return ret;
-            }
-        }
-
-        boolean sigmoidGates = gateActivationFn instanceof ActivationSigmoid;
-        IActivation afn = ((org.deeplearning4j.nn.conf.layers.BaseLayer) conf.getLayer()).getActivationFn();
+        //Allocated outside of LSTM workspace: valid through all time steps. nablaCellState is needed for 2 time steps
+        INDArray[] nablaCellStates = new INDArray[] {Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize}, 'f'),
+                        Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize}, 'f')};
+        INDArray nablaOut = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize}, 'f');
+        INDArray scratch = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize}, 'f');
+        INDArray scratch2 = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize}, 'f');
 
-        // we check, if we have defined workspace here. If we don't - we working without workspace, and we're skipping internal LSTM one. Otherwise - we go for it
-        MemoryWorkspace workspace = Nd4j.getMemoryManager().getCurrentWorkspace() != null && !Nd4j.getMemoryManager()
-                        .getCurrentWorkspace().getId().equals(ComputationGraph.WORKSPACE_EXTERNAL)
-                                        ? Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(
-                                                        ComputationGraph.workspaceConfigurationLSTM,
-                                                        ComputationGraph.WORKSPACE_LSTM)
-                                        : null;
-
-        INDArray timeStepMaskColumn = null;
+        INDArray nablaCellStateNext = null;
         for (int iTimeIndex = timeSeriesLength - 1; iTimeIndex >= endIdx; iTimeIndex--) {
 
             // we're emulating try block here
             if (workspace != null)
                 workspace.notifyScopeEntered();
 
-
             int time = iTimeIndex;
             int inext = 1;
 
@@ -496,15 +531,14 @@ public class LSTMHelpers {
                 inext = -1;
             }
 
-
             //First: calclate the components of nablaCellState that relies on the next time step deltas, so we can overwrite the deltas
-            INDArray nablaCellState;
+            INDArray nablaCellState = nablaCellStates[iTimeIndex % 2];
             if (iTimeIndex != timeSeriesLength - 1 && hasPeepholeConnections) {
-                nablaCellState = deltafNext.dup('f').muliRowVector(wFFTranspose);
-                l1BLAS.axpy(nablaCellState.length(), 1.0, deltagNext.dup('f').muliRowVector(wGGTranspose),
-                                nablaCellState);
+                nablaCellState.assign(deltafNext).muliRowVector(wFFTranspose);
+                scratch.assign(deltagNext).muliRowVector(wGGTranspose);
+                l1BLAS.axpy(nablaCellState.length(), 1.0, scratch, nablaCellState);
             } else {
-                nablaCellState = Nd4j.create(new int[] {miniBatchSize, hiddenLayerSize}, 'f');
+                nablaCellState.assign(0);
             }
 
             INDArray prevMemCellState = (iTimeIndex == 0 ? fwdPass.prevMemCell : fwdPass.memCellState[time - inext]);
@@ -512,11 +546,8 @@ public class LSTMHelpers {
                             (iTimeIndex == 0 ? fwdPass.prevAct : fwdPass.fwdPassOutputAsArrays[time - inext]);
             INDArray currMemCellState = fwdPass.memCellState[time];
 
-
             //LSTM unit output errors (dL/d(a_out)); not to be confused with \delta=dL/d(z_out)
-            INDArray epsilonSlice = (is2dInput ? epsilon : epsilon.tensorAlongDimension(time, 1, 0)); //(w^{L+1}*(delta^{(L+1)t})^T)^T or equiv.
-
-            INDArray nablaOut = Shape.toOffsetZeroCopy(epsilonSlice, 'f'); //Shape: [m,n^L]
+            nablaOut.assign(is2dInput ? epsilon : epsilon.tensorAlongDimension(time, 1, 0)); //Shape: [m,n^L]
             if (iTimeIndex != timeSeriesLength - 1) {
                 //if t == timeSeriesLength-1 then deltaiNext etc are zeros
                 Nd4j.gemm(deltaifogNext, wIFOG, nablaOut, false, true, 1.0, 1.0);
@@ -526,23 +557,22 @@ public class LSTMHelpers {
             INDArray sigmahOfS = fwdPass.memCellActivations[time];
             INDArray ao = fwdPass.oa[time];
 
-            //Normally would use zo.dup() in above line, but won't be using zo again (for this time step). Ditto for zf, zg, zi
             INDArray deltao = deltaoNext;
             Nd4j.getExecutioner().exec(new OldMulOp(nablaOut, sigmahOfS, deltao));
             if (sigmoidGates) {
-                INDArray sigmaoPrimeOfZo = Nd4j.getExecutioner().execAndReturn(new TimesOneMinus(ao.dup('f'))); //Equivalent to sigmoid deriv on zo
-                deltao.muli(sigmaoPrimeOfZo);
+                Nd4j.getExecutioner().exec(new TimesOneMinus(ao, scratch)); //Equivalent to sigmoid deriv on zo
+                deltao.muli(scratch);
             } else {
                 deltao.assign(gateActivationFn.backprop(fwdPass.oz[time], deltao).getFirst()); //Deltao needs to be modified in-place
-                //TODO: optimize (no assign)
             }
 
             //Memory cell error:
-            INDArray temp = afn.backprop(currMemCellState.dup('f'), ao.muli(nablaOut)).getFirst(); //TODO activation functions with params
+            scratch2.assign(currMemCellState);
+            INDArray temp = afn.backprop(scratch2, ao.muli(nablaOut)).getFirst();
             l1BLAS.axpy(nablaCellState.length(), 1.0, temp, nablaCellState);
             if (hasPeepholeConnections) {
-                INDArray deltaMulRowWOO = deltao.dup('f').muliRowVector(wOOTranspose);
-                l1BLAS.axpy(nablaCellState.length(), 1.0, deltaMulRowWOO, nablaCellState); //nablaCellState.addi(deltao.mulRowVector(wOOTranspose));
+                scratch.assign(deltao).muliRowVector(wOOTranspose);
+                l1BLAS.axpy(nablaCellState.length(), 1.0, scratch, nablaCellState); //nablaCellState.addi(deltao.mulRowVector(wOOTranspose));
             }
             if (iTimeIndex != timeSeriesLength - 1) {
                 INDArray nextForgetGateAs = fwdPass.fa[time + inext];
@@ -550,10 +580,7 @@ public class LSTMHelpers {
                 l1BLAS.axpy(length, 1.0, nextForgetGateAs.muli(nablaCellStateNext), nablaCellState); //nablaCellState.addi(nextForgetGateAs.mul(nablaCellStateNext))
             }
 
-
-            //Store for use in next iteration, and IF we're in workspace, we need to push it out of current workspace
-            nablaCellStateNext = workspace == null ? nablaCellState : nablaCellState.leverage();
-
+            nablaCellStateNext = nablaCellState;
 
             //Forget gate delta:
             INDArray af = fwdPass.fa[time];
@@ -566,9 +593,9 @@ public class LSTMHelpers {
                     deltaf.muli(nablaCellState);
                     deltaf.muli(prevMemCellState);
                 } else {
-                    INDArray temp2 = nablaCellState.mul(prevMemCellState);
-                    deltaf.assign(gateActivationFn.backprop(fwdPass.fz[time].dup('f'), temp2).getFirst()); //deltaf needs to be modified in-place
-                    //TODO activation functions with params
+                    Nd4j.getExecutioner().exec(new OldMulOp(nablaCellState, prevMemCellState, scratch));
+                    scratch2.assign(fwdPass.fz[time]);
+                    deltaf.assign(gateActivationFn.backprop(scratch2, scratch).getFirst()); //deltaf needs to be modified in-place
                 }
             }
             //Shape: [m,n^L]
@@ -582,116 +609,77 @@ public class LSTMHelpers {
                 deltag.muli(ai);
                 deltag.muli(nablaCellState);
             } else {
-                INDArray temp2 = Nd4j.getExecutioner().execAndReturn(
-                                new OldMulOp(ai, nablaCellState, Nd4j.createUninitialized(ai.shape(), 'f')));
-                deltag.assign(gateActivationFn.backprop(fwdPass.gz[time], temp2).getFirst());
-                //TODO activation functions with params; optimize (no assign)
+                Nd4j.getExecutioner().exec(new OldMulOp(ai, nablaCellState, scratch));
+                deltag.assign(gateActivationFn.backprop(fwdPass.gz[time], scratch).getFirst());
             }
             //Shape: [m,n^L]
 
             //Network input delta:
             INDArray zi = fwdPass.iz[time];
             INDArray deltai = deltaiNext;
-            temp = Nd4j.getExecutioner().execAndReturn(
-                            new OldMulOp(ag, nablaCellState, Nd4j.createUninitialized(deltai.shape(), 'f')));
-            deltai.assign(afn.backprop(zi, temp).getFirst());
-            //TODO activation functions with params; also: optimize this (no assign)
+            Nd4j.getExecutioner().exec(new OldMulOp(ag, nablaCellState, scratch));
+            deltai.assign(afn.backprop(zi, scratch).getFirst());
             //Shape: [m,n^L]
 
-
             //Handle masking
             if (maskArray != null) {
                 //Mask array is present: bidirectional RNN -> need to zero out these errors to avoid using errors from a masked time step
                 // to calculate the parameter gradients.  Mask array has shape [minibatch, timeSeriesLength] -> get column(this time step)
-                timeStepMaskColumn = maskArray.getColumn(time);
-                deltaifogNext.muliColumnVector(timeStepMaskColumn);
+                deltaifogNext.muliColumnVector(maskArray.getColumn(time));
                 //Later, the deltaifogNext is used to calculate: input weight gradients, recurrent weight gradients, bias gradients
             }
 
-            INDArray prevLayerActivationSlice =
-                            Shape.toMmulCompatible(is2dInput ? input : input.tensorAlongDimension(time, 1, 0));
-            if (iTimeIndex > 0 || prevHiddenUnitActivation != null) { //For time == 0 && no prevMemCellState, equivalent to muli by 0
-                //Note that prevHiddenUnitActivations may be non-null at t=0 for TBPTT
-                //Again, deltaifog_current == deltaifogNext at this point... same array
-                Nd4j.gemm(prevLayerActivationSlice, deltaifogNext, iwGradientsOut, true, false, 1.0, 1.0);
-            } else {
-                INDArray iwGradients_i =
-                                iwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.interval(0, hiddenLayerSize));
-                Nd4j.gemm(prevLayerActivationSlice, deltai, iwGradients_i, true, false, 1.0, 1.0);
-                INDArray iwGradients_og = iwGradientsOut.get(NDArrayIndex.all(),
-                                NDArrayIndex.interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                INDArray deltaog = deltaifogNext.get(NDArrayIndex.all(),
-                                NDArrayIndex.interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                Nd4j.gemm(prevLayerActivationSlice, deltaog, iwGradients_og, true, false, 1.0, 1.0);
+            //Store deltas for input weight gradients, bias gradients and epsilons
+            int row = (time - firstTime) * miniBatchSize;
+            INDArray deltaifogStep = deltaifogAll.get(NDArrayIndex.interval(row, row + miniBatchSize),
+                            NDArrayIndex.all());
+            deltaifogStep.assign(deltaifogNext);
+            if (iTimeIndex == 0 && prevHiddenUnitActivation == null) {
+                //No contribution from forget gate at t=0
+                deltaifogStep.get(NDArrayIndex.all(), NDArrayIndex.interval(hiddenLayerSize, 2 * hiddenLayerSize))
+                                .assign(0);
             }
 
             if (iTimeIndex > 0 || prevHiddenUnitActivation != null) {
                 //If t==0 and prevHiddenUnitActivation==null, equiv. to zeros(n^L,n^L), so dL/dW for recurrent weights
                 // will end up as 0 anyway
-                //At this point: deltaifog and deltaifogNext are the same thing...
-                //So what we are actually doing here is sum of (prevAct^transpose * deltaifog_current)
                 Nd4j.gemm(prevHiddenUnitActivation, deltaifogNext, rwGradientsIFOG, true, false, 1.0, 1.0);
 
-                //Shape: [1,n^L]. sum(0) is sum over examples in mini-batch.
-                //Can use axpy here because result of sum and rwGradients[4 to 6] have order Nd4j.order(), via Nd4j.create()
                 if (hasPeepholeConnections) {
-                    INDArray dLdwFF = deltaf.dup('f').muli(prevMemCellState).sum(0); //mul not mmul because these weights are from unit j->j only (whereas other recurrent weights are i->j for all i,j)
-                    l1BLAS.axpy(hiddenLayerSize, 1.0, dLdwFF, rwGradientsFF); //rwGradients[4].addi(dLdwFF);    //dL/dw_{FF}
-                    INDArray dLdwGG = deltag.dup('f').muli(prevMemCellState).sum(0);
-                    l1BLAS.axpy(hiddenLayerSize, 1.0, dLdwGG, rwGradientsGG); //rwGradients[6].addi(dLdwGG);
+                    Nd4j.getExecutioner().exec(new OldMulOp(deltaf, prevMemCellState, scratch));
+                    l1BLAS.axpy(hiddenLayerSize, 1.0, scratch.sum(0), rwGradientsFF); //dL/dw_{FF}
+                    Nd4j.getExecutioner().exec(new OldMulOp(deltag, prevMemCellState, scratch));
+                    l1BLAS.axpy(hiddenLayerSize, 1.0, scratch.sum(0), rwGradientsGG); //dL/dw_{GG}
                 }
             }
 
             if (hasPeepholeConnections) {
-                INDArray dLdwOO = deltao.dup('f').muli(currMemCellState).sum(0); //Expected shape: [n^L,1]. sum(0) is sum over examples in mini-batch.
-                l1BLAS.axpy(hiddenLayerSize, 1.0, dLdwOO, rwGradientsOO); //rwGradients[5].addi(dLdwOO);    //dL/dw_{OOxy}
-            }
-
-            if (iTimeIndex > 0 || prevHiddenUnitActivation != null) { //For time == 0 && no prevMemCellState, equivalent to muli by 0
-                //Note that prevHiddenUnitActivation may be non-null at t=0 for TBPTT
-                l1BLAS.axpy(4 * hiddenLayerSize, 1.0, deltaifogNext.sum(0), bGradientsOut);
-            } else {
-                l1BLAS.axpy(hiddenLayerSize, 1.0, deltai.sum(0), bGradientsOut); //Sneaky way to do bGradients_i += deltai.sum(0)
-                INDArray ogBiasToAdd = deltaifogNext.get(NDArrayIndex.all(),
-                                NDArrayIndex.interval(2 * hiddenLayerSize, 4 * hiddenLayerSize)).sum(0);
-                INDArray ogBiasGrad = bGradientsOut.get(NDArrayIndex.point(0),
-                                NDArrayIndex.interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                l1BLAS.axpy(2 * hiddenLayerSize, 1.0, ogBiasToAdd, ogBiasGrad);
-            }
-
-            //Calculate epsilonNext - i.e., equiv. to what would be (w^L*(d^(Lt))^T)^T in a normal network
-            //But here, need to add 4 weights * deltas for the IFOG gates
-            INDArray epsilonNextSlice = epsilonNext.tensorAlongDimension(time, 1, 0); //This slice: f order and contiguous, due to epsilonNext being defined as f order.
-            if (iTimeIndex > 0 || prevHiddenUnitActivation != null) {
-                //Note that prevHiddenUnitActivation may be non-null at t=0 for TBPTT
-                Nd4j.gemm(deltaifogNext, inputWeights, epsilonNextSlice, false, true, 1.0, 1.0);
-            } else {
-                //No contribution from forget gate at t=0
-                INDArray wi = inputWeights.get(NDArrayIndex.all(), NDArrayIndex.interval(0, hiddenLayerSize));
-                Nd4j.gemm(deltai, wi, epsilonNextSlice, false, true, 1.0, 1.0);
-                INDArray deltaog = deltaifogNext.get(NDArrayIndex.all(),
-                                NDArrayIndex.interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                INDArray wog = inputWeights.get(NDArrayIndex.all(),
-                                NDArrayIndex.interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                Nd4j.gemm(deltaog, wog, epsilonNextSlice, false, true, 1.0, 1.0); //epsilonNextSlice.addi(deltao.mmul(woTranspose)).addi(deltag.mmul(wgTranspose));
-            }
-
-            if (maskArray != null) {
-                //Mask array is present: bidirectional RNN -> need to zero out these errors to avoid sending anything
-                // but 0s to the layer below at this time step (for the given example)
-                epsilonNextSlice.muliColumnVector(timeStepMaskColumn);
+                Nd4j.getExecutioner().exec(new OldMulOp(deltao, currMemCellState, scratch));
+                l1BLAS.axpy(hiddenLayerSize, 1.0, scratch.sum(0), rwGradientsOO); //dL/dw_{OOxy}
             }
 
             if (workspace != null)
                 workspace.close();
         }
 
-        Gradient retGradient = new DefaultGradient();
-        retGradient.gradientForVariable().put(inputWeightKey, iwGradientsOut);
-        retGradient.gradientForVariable().put(recurrentWeightKey, rwGradientsOut);
-        retGradient.gradientForVariable().put(biasWeightKey, bGradientsOut);
+        //Input weight gradients: sum over time steps of input^T * deltas, as one GEMM
+        INDArray input2d = inputAsRows(input);
+        if (numSteps != timeSeriesLength) {
+            input2d = Shape.toMmulCompatible(input2d.get(NDArrayIndex.interval(firstTime * miniBatchSize,
+                            (firstTime + numSteps) * miniBatchSize), NDArrayIndex.all()));
+        }
+        Nd4j.gemm(input2d, deltaifogAll, iwGradientsOut, true, false, 1.0, 1.0);
 
-        return new Pair<>(retGradient, epsilonNext);
+        l1BLAS.axpy(4 * hiddenLayerSize, 1.0, deltaifogAll.sum(0), bGradientsOut);
+
+        //Epsilons for all time steps. Deltas are already masked, so no need to mask the epsilons again
+        INDArray epsilon2d = Nd4j.create(new int[] {numSteps * miniBatchSize, inputWeights.size(0)}, 'f');
+        Nd4j.gemm(deltaifogAll, inputWeights, epsilon2d, false, true, 1.0, 0.0);
+        for (int time = firstTime; time < firstTime + numSteps; time++) {
+            int row = (time - firstTime) * miniBatchSize;
+            epsilonNext.tensorAlongDimension(time, 1, 0).assign(
+                            epsilon2d.get(NDArrayIndex.interval(row, row + miniBatchSize), NDArrayIndex.all()));
+        }
     }
 
 
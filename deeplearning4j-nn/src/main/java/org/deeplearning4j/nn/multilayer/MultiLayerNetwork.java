@@ -47,8 +47,11 @@ import org.deeplearning4j.nn.weights.WeightInit;
 import org.deeplearning4j.optimize.Solver;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
 import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.api.LayerProfilingListener;
 import org.deeplearning4j.optimize.api.TrainingListener;
+import org.deeplearning4j.optimize.listeners.profiler.ProfilingSupport;
 import org.deeplearning4j.optimize.solvers.accumulation.GradientsAccumulator;
+import org.deeplearning4j.optimize.solvers.accumulation.MicroBatchAccumulator;
 import org.deeplearning4j.util.ModelSerializer;
 import org.deeplearning4j.util.NetworkUtils;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
@@ -122,17 +125,19 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     protected int layerIndex; //For Layer.get/setIndex()
 
     protected transient Solver solver; //Used to call optimizers during backprop
+    protected transient MicroBatchAccumulator microBatchAccumulator; //Used only with gradient accumulation
 
     protected final static String WORKSPACE_EXTERNAL = "LOOP_EXTERNAL";
     protected final static String WORKSPACE_FEED_FORWARD = "LOOP_FF";
     protected final static String WORKSPACE_BACK_PROP = "LOOP_BP";
     public final static String WORKSPACE_TBPTT = "LOOP_TBPTT";
 
-    protected final static WorkspaceConfiguration workspaceConfigurationExternal = WorkspaceConfiguration.builder()
+    public final static WorkspaceConfiguration workspaceConfigurationExternal = WorkspaceConfiguration.builder()
                     .initialSize(0).overallocationLimit(0.3).policyLearning(LearningPolicy.FIRST_LOOP)
                     .policyReset(ResetPolicy.BLOCK_LEFT).policySpill(SpillPolicy.REALLOCATE)
                     .policyAllocation(AllocationPolicy.OVERALLOCATE).build();
 
+    @Getter
     protected WorkspaceConfiguration workspaceConfigurationFeedForward = WorkspaceConfiguration.builder().initialSize(0)
                     .overallocationLimit(0.2).policyReset(ResetPolicy.BLOCK_LEFT)
                     .policyLearning(LearningPolicy.OVER_TIME).policySpill(SpillPolicy.REALLOCATE)
@@ -411,6 +416,10 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
     @Override
     public int batchSize() {
+        if (microBatchAccumulator != null) {
+            //Total number of examples for the current parameter update, with gradient accumulation
+            return microBatchAccumulator.getEffectiveBatchSize(input.size(0));
+        }
         return input.size(0);
     }
 
@@ -980,11 +989,19 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
         boolean wseOpenSingle = (wsm == WorkspaceMode.SINGLE) &&
                 Nd4j.getWorkspaceManager().checkIfWorkspaceExistsAndActive(WORKSPACE_EXTERNAL);
+        List<LayerProfilingListener> profilers =
+                        (train ? ProfilingSupport.getProfilingListeners(trainingListeners) : null);
 
         for (int i = 0; i <= layerNum; i++) {
             // log.info("Activating layer: {}", i);
             try (MemoryWorkspace ws = workspace.notifyScopeEntered()) {
+                long startNanos = (profilers == null ? 0 : System.nanoTime());
+                long startAlloc = (profilers == null ? 0 : ProfilingSupport.currentWorkspaceAllocations());
                 currInput = activationFromPrevLayer(i, currInput, train);
+                if (profilers != null) {
+                    ProfilingSupport.notifyForward(profilers, this, i, layers[i].conf().getLayer().getLayerName(),
+                                    layers[i], startNanos, startAlloc);
+                }
 
                 if(publicApi || (wsm == WorkspaceMode.SINGLE && !wseOpenSingle)){
                     //Case 1: public api -> always detatch
@@ -1296,6 +1313,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
             if (!iter.hasNext() && iter.resetSupported()) {
                 iter.reset();
             }
+            initMicroBatchAccumulator();
             long time1 = System.currentTimeMillis();
             while (iter.hasNext()) {
 
@@ -1331,7 +1349,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
                     try (MemoryWorkspace wsCache = cache.notifyScopeEntered()) {
                         try (MemoryWorkspace ws = workspace.notifyScopeEntered()) {
-                            solver.optimize();
+                            optimizeOrAccumulate(iter.hasNext());
                         }
                     }
                 }
@@ -1359,6 +1377,40 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         incrementEpochCount();
     }
 
+    /**
+     * Create (or reset) the gradient accumulation state at the start of a fit call, if gradient accumulation is
+     * enabled: see {@link MultiLayerConfiguration.Builder#gradientAccumulationSteps(int)}
+     */
+    protected void initMicroBatchAccumulator() {
+        int steps = layerWiseConfigurations.getGradientAccumulationSteps();
+        if (steps <= 1 || layerWiseConfigurations.getBackpropType() == BackpropType.TruncatedBPTT) {
+            microBatchAccumulator = null;
+        } else if (microBatchAccumulator == null || microBatchAccumulator.getSteps() != steps) {
+            microBatchAccumulator = new MicroBatchAccumulator(steps);
+        } else {
+            microBatchAccumulator.reset();
+        }
+    }
+
+    /**
+     * Apply the optimizer for the current minibatch or, with gradient accumulation, only accumulate its gradients
+     * unless it is the last micro-batch of the current step
+     *
+     * @param hasNext Whether more minibatches are available from the iterator
+     */
+    protected void optimizeOrAccumulate(boolean hasNext) {
+        if (microBatchAccumulator == null) {
+            solver.optimize();
+        } else if (microBatchAccumulator.isStepComplete(hasNext)) {
+            solver.optimize();
+            microBatchAccumulator.reset();
+        } else {
+            //Accumulate only: gradients are applied after the last micro-batch of the step
+            computeGradientAndScore();
+            microBatchAccumulator.store(flattenedGradients, score, batchSize());
+        }
+    }
+
     /** Calculate and set gradients for MultiLayerNetwork, based on OutputLayer and labels*/
     protected void backprop() {
         Pair<Gradient, INDArray> pair = calcBackpropGradients(null, true);
@@ -1366,6 +1418,178 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         this.epsilon = (pair == null ? null : pair.getSecond());
     }
 
+    /**
+     * Backprop with activation checkpointing: see {@link MultiLayerConfiguration.Builder#checkpointLayers(int...)}.<br>
+     * During the forward pass, only the activations at the segment boundaries are retained (in the external
+     * workspace); the remaining activations of each segment are released at the end of the segment. During backprop,
+     * the segments are processed in reverse order: the forward pass of each segment is recomputed from its (retained)
+     * input, followed by the backward pass for the layers of that segment.<br>
+     * The RNG is re-seeded before the forward pass and the recomputation of each segment, hence random operations
+     * such as dropout are identical in both passes.<br>
+     * PLEASE NOTE: {@link TrainingListener#onForwardPass(Model, List)} is not called when checkpointing, as the
+     * activations of all layers are never retained at the same time.
+     */
+    protected void checkpointedBackprop() {
+        if (!(getOutputLayer() instanceof IOutputLayer)) {
+            throw new DL4JException(
+                            "Cannot calculate gradient and score with respect to labels: final layer is not an IOutputLayer");
+        }
+        if (labels == null)
+            throw new IllegalStateException("No labels found");
+        if (flattenedGradients == null) {
+            initGradientsView();
+        }
+
+        int[] segmentStarts = layerWiseConfigurations.getCheckpointLayers();
+        int nSegments = segmentStarts.length;
+        int numLayers = getnLayers();
+
+        WorkspaceMode wsm = layerWiseConfigurations.getTrainingWorkspaceMode();
+        MemoryWorkspace workspace;
+        switch (wsm) {
+            case NONE:
+                workspace = new DummyWorkspace();
+                break;
+            case SINGLE:
+                workspace = Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(workspaceConfigurationExternal, WORKSPACE_EXTERNAL);
+                break;
+            case SEPARATE:
+                workspace = Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(workspaceConfigurationFeedForward, WORKSPACE_FEED_FORWARD);
+                break;
+            default:
+                throw new IllegalStateException("Unknown workspace mode: " + wsm);
+        }
+
+        //One seed per segment, so random operations (dropout etc) are the same when the segment is recomputed.
+        // The final seed is used to continue the RNG sequence after backprop
+        long[] seeds = new long[nSegments + 1];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = Nd4j.getRandom().nextLong();
+        }
+
+        List<LayerProfilingListener> profilers = ProfilingSupport.getProfilingListeners(trainingListeners);
+
+        //Forward pass: retain only the input of each segment. No forward pass is required for the last segment here,
+        // as it is immediately recomputed for backprop
+        INDArray currInput = (wsm == WorkspaceMode.NONE || !input.isAttached() ? input : input.migrate());
+        INDArray[] segmentInputs = new INDArray[nSegments];
+        segmentInputs[0] = currInput;
+        for (int s = 0; s < nSegments - 1; s++) {
+            Nd4j.getRandom().setSeed(seeds[s]);
+            try (MemoryWorkspace ws = workspace.notifyScopeEntered()) {
+                for (int i = segmentStarts[s]; i < segmentStarts[s + 1]; i++) {
+                    long startNanos = (profilers == null ? 0 : System.nanoTime());
+                    long startAlloc = (profilers == null ? 0 : ProfilingSupport.currentWorkspaceAllocations());
+                    currInput = activationFromPrevLayer(i, currInput, true);
+                    if (profilers != null) {
+                        ProfilingSupport.notifyForward(profilers, this, i,
+                                        layers[i].conf().getLayer().getLayerName(), layers[i], startNanos, startAlloc);
+                    }
+                }
+                currInput = currInput.leverageOrDetach(WORKSPACE_EXTERNAL);
+            }
+            segmentInputs[s + 1] = currInput;
+        }
+
+        //Note: TrainingListener.onForwardPass is not called here - the full list of activations (input, then one
+        // per layer, as expected by listeners) is never available at once with checkpointing
+
+        //Backward pass: recompute the forward pass for each segment (in reverse order), then backprop through it
+        LinkedList<Triple<String, INDArray, Character>> gradientList = new LinkedList<>();
+        INDArray eps = null;
+        boolean frozen = false;
+        for (int s = nSegments - 1; s >= 0 && !frozen; s--) {
+            boolean lastSegment = (s == nSegments - 1);
+            int start = segmentStarts[s];
+            int end = (lastSegment ? numLayers - 1 : segmentStarts[s + 1] - 1);
+
+            Nd4j.getRandom().setSeed(seeds[s]);
+            try (MemoryWorkspace ws = workspace.notifyScopeEntered()) {
+                INDArray act = segmentInputs[s];
+                for (int i = start; i < (lastSegment ? end : end + 1); i++) {
+                    act = activationFromPrevLayer(i, act, true);
+                }
+
+                if (lastSegment) {
+                    //Output layer input needs to remain valid after backprop, for score calculation
+                    if (layerWiseConfigurations.getInputPreProcess(numLayers - 1) != null)
+                        act = layerWiseConfigurations.getInputPreProcess(numLayers - 1).preProcess(act,
+                                        getInputMiniBatchSize());
+                    act = act.leverageOrDetach(WORKSPACE_EXTERNAL);
+                    getOutputLayer().setInput(act);
+
+                    IOutputLayer outputLayer = (IOutputLayer) getOutputLayer();
+                    outputLayer.setLabels(labels);
+                    long startNanos = (profilers == null ? 0 : System.nanoTime());
+                    long startAlloc = (profilers == null ? 0 : ProfilingSupport.currentWorkspaceAllocations());
+                    Pair<Gradient, INDArray> p = outputLayer.backpropGradient(null);
+                    if (profilers != null) {
+                        ProfilingSupport.notifyBackward(profilers, this, numLayers - 1,
+                                        outputLayer.conf().getLayer().getLayerName(), outputLayer, startNanos,
+                                        startAlloc);
+                    }
+                    LinkedList<Triple<String, INDArray, Character>> tempList = new LinkedList<>();
+                    for (Map.Entry<String, INDArray> entry : p.getFirst().gradientForVariable().entrySet()) {
+                        tempList.addFirst(new Triple<>((numLayers - 1) + "_" + entry.getKey(), entry.getValue(),
+                                        p.getFirst().flatteningOrderForVariable(entry.getKey())));
+                    }
+                    for (Triple<String, INDArray, Character> triple : tempList)
+                        gradientList.addFirst(triple);
+                    eps = p.getSecond();
+                    if (layerWiseConfigurations.getInputPreProcess(numLayers - 1) != null)
+                        eps = layerWiseConfigurations.getInputPreProcess(numLayers - 1).backprop(eps,
+                                        getInputMiniBatchSize());
+                    end = numLayers - 2;
+                }
+
+                for (int j = end; j >= start; j--) {
+                    Layer currLayer = getLayer(j);
+                    if (currLayer instanceof FrozenLayer) {
+                        frozen = true;
+                        break;
+                    }
+                    long startNanos = (profilers == null ? 0 : System.nanoTime());
+                    long startAlloc = (profilers == null ? 0 : ProfilingSupport.currentWorkspaceAllocations());
+                    Pair<Gradient, INDArray> p = currLayer.backpropGradient(eps);
+                    if (profilers != null) {
+                        ProfilingSupport.notifyBackward(profilers, this, j,
+                                        currLayer.conf().getLayer().getLayerName(), currLayer, startNanos, startAlloc);
+                    }
+
+                    LinkedList<Triple<String, INDArray, Character>> tempList = new LinkedList<>();
+                    for (Map.Entry<String, INDArray> entry : p.getFirst().gradientForVariable().entrySet()) {
+                        tempList.addFirst(new Triple<>(j + "_" + entry.getKey(), entry.getValue(),
+                                        p.getFirst().flatteningOrderForVariable(entry.getKey())));
+                    }
+                    for (Triple<String, INDArray, Character> triple : tempList)
+                        gradientList.addFirst(triple);
+
+                    eps = p.getSecond();
+                    if (eps != null && getLayerWiseConfigurations().getInputPreProcess(j) != null)
+                        eps = getLayerWiseConfigurations().getInputPreProcess(j).backprop(eps,
+                                        getInputMiniBatchSize());
+                }
+
+                //Epsilons (may be null for embedding layer, etc) are the only arrays passed between segments
+                if (eps != null) {
+                    eps = eps.leverageOrDetach(WORKSPACE_EXTERNAL);
+                }
+            }
+        }
+
+        if (wsm == WorkspaceMode.SEPARATE) {
+            Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(WORKSPACE_FEED_FORWARD).initializeWorkspace();
+        }
+        Nd4j.getRandom().setSeed(seeds[nSegments]);
+
+        Gradient gradient = new DefaultGradient(flattenedGradients);
+        for (Triple<String, INDArray, Character> triple : gradientList) {
+            gradient.setGradientFor(triple.getFirst(), triple.getSecond(), triple.getThird());
+        }
+        this.gradient = gradient;
+        this.epsilon = eps;
+    }
+
     /** Calculate gradients and errors. Used in two places:
      * (a) backprop (for standard multi layer network learning)
      * (b) backpropGradient (layer method, for when MultiLayerNetwork is used as a layer)
@@ -1398,6 +1622,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         int numLayers = getnLayers();
         //Store gradients is a list; used to ensure iteration order in DefaultGradient linked hash map. i.e., layer 0 first instead of output layer
         LinkedList<Triple<String, INDArray, Character>> gradientList = new LinkedList<>();
+        List<LayerProfilingListener> profilers = ProfilingSupport.getProfilingListeners(trainingListeners);
 
         int layerFrom;
         Pair<Gradient, INDArray> currPair;
@@ -1411,7 +1636,13 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
             if (labels == null)
                 throw new IllegalStateException("No labels found");
             outputLayer.setLabels(labels);
+            long startNanos = (profilers == null ? 0 : System.nanoTime());
+            long startAlloc = (profilers == null ? 0 : ProfilingSupport.currentWorkspaceAllocations());
             currPair = outputLayer.backpropGradient(null);
+            if (profilers != null) {
+                ProfilingSupport.notifyBackward(profilers, this, numLayers - 1,
+                                outputLayer.conf().getLayer().getLayerName(), outputLayer, startNanos, startAlloc);
+            }
 
             for (Map.Entry<String, INDArray> entry : currPair.getFirst().gradientForVariable().entrySet()) {
                 String origName = entry.getKey();
@@ -1461,7 +1692,13 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                 if (currLayer instanceof FrozenLayer) {
                     break;
                 }
+                long startNanos = (profilers == null ? 0 : System.nanoTime());
+                long startAlloc = (profilers == null ? 0 : ProfilingSupport.currentWorkspaceAllocations());
                 currPair = currLayer.backpropGradient(currPair.getSecond());
+                if (profilers != null) {
+                    ProfilingSupport.notifyBackward(profilers, this, j, currLayer.conf().getLayer().getLayerName(),
+                                    currLayer, startNanos, startAlloc);
+                }
 
 
                 LinkedList<Triple<String, INDArray, Character>> tempList = new LinkedList<>();
@@ -2385,6 +2622,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                 if(clearTbpttState) {
                     rnnClearPreviousState();
                 }
+            } else if (layerWiseConfigurations.isActivationCheckpointing()) {
+                synchronizeIterEpochCounts();
+                checkpointedBackprop();
             } else {
                 synchronizeIterEpochCounts();
 
@@ -2413,6 +2653,10 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                         "Cannot calculate gradient and score with respect to labels: final layer is not an IOutputLayer");
             }
             score = ((IOutputLayer) getOutputLayer()).computeScore(calcL1(true), calcL2(true), true);
+            if (microBatchAccumulator != null) {
+                //Gradient accumulation: add the gradients of the previous micro-batches of this step
+                score = microBatchAccumulator.merge(flattenedGradients, score, getInputMiniBatchSize());
+            }
 
             //Listeners
             if (!trainingListeners.isEmpty()) {
@@ -0,0 +1,277 @@
+package org.deeplearning4j.nn.quantization;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.GraphVertex;
+import org.deeplearning4j.nn.conf.graph.LayerVertex;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.Convolution2D;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer;
+import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.inference.InferenceOptimizer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.*;
+
+/**
+ * Post-training quantization of trained networks: simulates inference with 8-bit integer weights and activations.<br>
+ * Quantization is done as follows:<br>
+ * 1. The network is optimized for inference using {@link InferenceOptimizer}: i.e., BatchNormalization layers are
+ * folded into the preceding layers, so that they get quantized too<br>
+ * 2. The weights of each {@link DenseLayer} and {@link ConvolutionLayer} are quantized to integers in range [-127, 127]
+ * with one (symmetric) scale per output channel: weightScale = max(abs(W[channel])) / 127<br>
+ * 3. The input scale of each such layer is calibrated on a sample of data: inputScale = max(abs(input)) / 127<br>
+ * 4. The biases are quantized to the scale of the accumulator: b / (inputScale * weightScale)<br>
+ * 5. The layers are wrapped in {@link QuantizedLayer}, which quantizes the input and dequantizes the output (before
+ * the activation function) during forward pass<br>
+ * Output layers and all other layer types are left as they are.
+ * <p>
+ * Quantized networks can be saved and restored using ModelSerializer just like any other network.
+ * Use {@link #evaluate(MultiLayerNetwork, MultiLayerNetwork, DataSetIterator, InputType)} to get the accuracy delta
+ * of the quantized network.
+ * <p>
+ * PLEASE NOTE: this is simulated quantization. ND4J has no int8 data type or int8 matrix multiplication at present,
+ * hence the quantized (integer) values are stored and computed in the network's floating point data type. Quantized
+ * networks are therefore no smaller than the original networks, and inference is somewhat slower (due to the extra
+ * quantization/dequantization steps). The purpose is to measure the accuracy impact of int8 inference before
+ * deploying on an int8 capable runtime: the integer weights can be read from the parameters, and the scales from
+ * {@link QuantizedLayer#getInputScale()} and {@link QuantizedLayer#getWeightScales()}.
+ */
+@Slf4j
+public class PostTrainingQuantizer {
+
+    public static final double QUANTIZED_MAX = org.deeplearning4j.nn.layers.QuantizedLayer.QUANTIZED_MAX;
+
+    private PostTrainingQuantizer() {}
+
+    /**
+     * Quantize the given network for inference
+     *
+     * @param network               Trained network. Isn't modified.
+     * @param calibrationData       Data used to calibrate the scale of the inputs of each quantized layer. Should be
+     *                              representative of the data that will be used for inference.
+     * @param maxCalibrationBatches Maximum number of minibatches to use from calibrationData
+     * @return Quantized network, for inference only
+     */
+    public static MultiLayerNetwork quantize(@NonNull MultiLayerNetwork network,
+                    @NonNull DataSetIterator calibrationData, int maxCalibrationBatches) {
+        MultiLayerNetwork optimized = InferenceOptimizer.optimize(network);
+        int nLayers = optimized.getnLayers();
+
+        //Input of layer i: activations i (index 0 is network input). Preprocessors don't change max(abs(x))
+        double[] inputMaxAbs = new double[nLayers];
+        if (calibrationData.resetSupported())
+            calibrationData.reset();
+        int count = 0;
+        while (count < maxCalibrationBatches && calibrationData.hasNext()) {
+            count++;
+            DataSet ds = calibrationData.next();
+            List<INDArray> activations = optimized.feedForward(ds.getFeatures(), false);
+            for (int i = 0; i < nLayers; i++) {
+                if (isQuantizable(optimized.getLayerWiseConfigurations().getConf(i).getLayer())) {
+                    inputMaxAbs[i] = Math.max(inputMaxAbs[i], maxAbs(activations.get(i)));
+                }
+            }
+        }
+        checkCalibrated(count);
+
+        MultiLayerConfiguration conf = optimized.getLayerWiseConfigurations().clone();
+        List<Map<String, INDArray>> params = new ArrayList<>();
+        int numQuantized = 0;
+        for (int i = 0; i < nLayers; i++) {
+            NeuralNetConfiguration c = conf.getConf(i);
+            Map<String, INDArray> p = InferenceOptimizer.copyParams(optimized.getLayer(i).paramTable());
+            if (isQuantizable(c.getLayer())) {
+                c.setLayer(quantizeLayer(c.getLayer(), p, inputMaxAbs[i]));
+                numQuantized++;
+            }
+            params.add(p);
+        }
+        log.info("Quantized {} of {} layers", numQuantized, nLayers);
+
+        MultiLayerNetwork ret = new MultiLayerNetwork(conf);
+        ret.init();
+        for (int i = 0; i < nLayers; i++) {
+            InferenceOptimizer.setParams(ret.getLayer(i), params.get(i));
+        }
+        return ret;
+    }
+
+    /**
+     * Quantize the given network for inference
+     *
+     * @param network               Trained network, with a single input. Isn't modified.
+     * @param calibrationData       Data used to calibrate the scale of the inputs of each quantized layer. Should be
+     *                              representative of the data that will be used for inference.
+     * @param maxCalibrationBatches Maximum number of minibatches to use from calibrationData
+     * @return Quantized network, for inference only
+     */
+    public static ComputationGraph quantize(@NonNull ComputationGraph network,
+                    @NonNull DataSetIterator calibrationData, int maxCalibrationBatches) {
+        if (network.getNumInputArrays() != 1) {
+            throw new IllegalArgumentException("Cannot calibrate network with " + network.getNumInputArrays()
+                            + " inputs using DataSetIterator: only single input networks are supported");
+        }
+        ComputationGraph optimized = InferenceOptimizer.optimize(network);
+        Map<String, List<String>> vertexInputs = optimized.getConfiguration().getVertexInputs();
+
+        //Layer vertices have exactly one input: max(abs(x)) of the output of that vertex
+        Map<String, Double> inputMaxAbs = new HashMap<>();
+        for (Map.Entry<String, GraphVertex> e : optimized.getConfiguration().getVertices().entrySet()) {
+            if (e.getValue() instanceof LayerVertex
+                            && isQuantizable(((LayerVertex) e.getValue()).getLayerConf().getLayer())) {
+                inputMaxAbs.put(e.getKey(), 0.0);
+            }
+        }
+
+        if (calibrationData.resetSupported())
+            calibrationData.reset();
+        int count = 0;
+        while (count < maxCalibrationBatches && calibrationData.hasNext()) {
+            count++;
+            DataSet ds = calibrationData.next();
+            Map<String, INDArray> activations = optimized.feedForward(new INDArray[] {ds.getFeatures()}, false);
+            for (Map.Entry<String, Double> e : inputMaxAbs.entrySet()) {
+                INDArray in = activations.get(vertexInputs.get(e.getKey()).get(0));
+                e.setValue(Math.max(e.getValue(), maxAbs(in)));
+            }
+        }
+        checkCalibrated(count);
+
+        ComputationGraphConfiguration conf = optimized.getConfiguration().clone();
+        Map<String, Map<String, INDArray>> params = new HashMap<>();
+        for (Map.Entry<String, GraphVertex> e : conf.getVertices().entrySet()) {
+            if (!(e.getValue() instanceof LayerVertex))
+                continue;
+            Map<String, INDArray> p = InferenceOptimizer.copyParams(optimized.getLayer(e.getKey()).paramTable());
+            if (inputMaxAbs.containsKey(e.getKey())) {
+                NeuralNetConfiguration c = ((LayerVertex) e.getValue()).getLayerConf();
+                c.setLayer(quantizeLayer(c.getLayer(), p, inputMaxAbs.get(e.getKey())));
+            }
+            params.put(e.getKey(), p);
+        }
+        log.info("Quantized {} of {} layers", inputMaxAbs.size(), params.size());
+
+        ComputationGraph ret = new ComputationGraph(conf);
+        ret.init();
+        for (Map.Entry<String, Map<String, INDArray>> e : params.entrySet()) {
+            InferenceOptimizer.setParams(ret.getLayer(e.getKey()), e.getValue());
+        }
+        return ret;
+    }
+
+    /**
+     * Evaluate the original and quantized networks on the same data, and estimate their memory use
+     *
+     * @param original  Original network
+     * @param quantized Quantized network, as returned by {@link #quantize(MultiLayerNetwork, DataSetIterator, int)}
+     * @param testData  Test data
+     * @param inputType Input type of the network, for memory reports. May be null: no memory reports in that case
+     * @return Accuracy and memory use of both networks
+     */
+    public static QuantizationReport evaluate(@NonNull MultiLayerNetwork original, @NonNull MultiLayerNetwork quantized,
+                    @NonNull DataSetIterator testData, InputType inputType) {
+        Evaluation originalEvaluation = original.evaluate(testData);
+        testData.reset();
+        Evaluation quantizedEvaluation = quantized.evaluate(testData);
+
+        NetworkMemoryReport originalMemory = null;
+        NetworkMemoryReport quantizedMemory = null;
+        if (inputType != null) {
+            originalMemory = original.getLayerWiseConfigurations().getMemoryReport(inputType);
+            quantizedMemory = quantized.getLayerWiseConfigurations().getMemoryReport(inputType);
+        }
+
+        return new QuantizationReport(originalEvaluation, quantizedEvaluation, originalMemory, quantizedMemory);
+    }
+
+    /**
+     * Evaluate the original and quantized networks on the same data, and estimate their memory use
+     *
+     * @param original   Original network
+     * @param quantized  Quantized network, as returned by {@link #quantize(ComputationGraph, DataSetIterator, int)}
+     * @param testData   Test data
+     * @param inputTypes Input types of the network, for memory reports. May be null: no memory reports in that case
+     * @return Accuracy and memory use of both networks
+     */
+    public static QuantizationReport evaluate(@NonNull ComputationGraph original, @NonNull ComputationGraph quantized,
+                    @NonNull DataSetIterator testData, InputType... inputTypes) {
+        Evaluation originalEvaluation = original.evaluate(testData);
+        testData.reset();
+        Evaluation quantizedEvaluation = quantized.evaluate(testData);
+
+        NetworkMemoryReport originalMemory = null;
+        NetworkMemoryReport quantizedMemory = null;
+        if (inputTypes != null && inputTypes.length > 0) {
+            originalMemory = original.getConfiguration().getMemoryReport(inputTypes);
+            quantizedMemory = quantized.getConfiguration().getMemoryReport(inputTypes);
+        }
+
+        return new QuantizationReport(originalEvaluation, quantizedEvaluation, originalMemory, quantizedMemory);
+    }
+
+    /**
+     * @return True if the layer can be quantized: dense and 2d convolution layers. Subclasses (deconvolution,
+     * separable and 1d convolutions) have different weight layouts, and aren't quantized
+     */
+    public static boolean isQuantizable(Layer layer) {
+        Class<?> c = layer.getClass();
+        return c == DenseLayer.class || c == ConvolutionLayer.class || c == Convolution2D.class;
+    }
+
+    /**
+     * Quantize the parameters of the given layer in place, and wrap the layer configuration
+     */
+    private static QuantizedLayer quantizeLayer(Layer layer, Map<String, INDArray> params, double inputMaxAbs) {
+        INDArray w = params.get(DefaultParamInitializer.WEIGHT_KEY);
+        boolean dense = layer instanceof DenseLayer;
+        //Dense weights: [nIn, nOut]; convolution weights: [nOut, nIn, kH, kW]
+        int nOut = dense ? w.size(1) : w.size(0);
+        INDArray w2d = dense ? w : w.dup('c').reshape('c', nOut, w.length() / nOut);
+
+        INDArray wMaxAbs = Transforms.abs(w2d, true).max(dense ? 0 : 1);
+        double[] weightScales = new double[nOut];
+        for (int i = 0; i < nOut; i++) {
+            double m = wMaxAbs.getDouble(i);
+            weightScales[i] = m > 0.0 ? m / QUANTIZED_MAX : 1.0;
+        }
+        double inputScale = inputMaxAbs > 0.0 ? inputMaxAbs / QUANTIZED_MAX : 1.0;
+
+        INDArray scaleRow = Nd4j.create(weightScales);
+        INDArray wq = dense ? w2d.divRowVector(scaleRow) : w2d.divColumnVector(scaleRow.reshape(nOut, 1));
+        Transforms.round(wq, false);
+        params.put(DefaultParamInitializer.WEIGHT_KEY, dense ? wq : wq.reshape('c', w.shape()));
+
+        INDArray b = params.get(DefaultParamInitializer.BIAS_KEY);
+        if (b != null) {
+            b.divi(scaleRow.muli(inputScale));
+            Transforms.round(b, false);
+        }
+
+        return new QuantizedLayer(layer, inputScale, weightScales);
+    }
+
+    private static double maxAbs(INDArray arr) {
+        return arr.amaxNumber().doubleValue();
+    }
+
+    private static void checkCalibrated(int count) {
+        if (count == 0) {
+            throw new IllegalStateException("Cannot calibrate quantized network: no calibration data");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.deeplearning4j.nn.quantization;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.memory.MemoryType;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+
+/**
+ * Comparison of a network and its quantized version: see
+ * {@link PostTrainingQuantizer#evaluate(org.deeplearning4j.nn.multilayer.MultiLayerNetwork,
+ * org.deeplearning4j.nn.multilayer.MultiLayerNetwork, org.nd4j.linalg.dataset.api.iterator.DataSetIterator,
+ * org.deeplearning4j.nn.conf.inputs.InputType)}.
+ * <p>
+ * Memory reports (if present) are the estimates of the actual memory use of both networks, as per
+ * {@link NetworkMemoryReport}. Note that quantization is simulated (see {@link PostTrainingQuantizer}): quantized
+ * parameters are held in the network's floating point data type, so they use the same amount of memory as the
+ * original parameters.
+ */
+@Data
+@AllArgsConstructor
+public class QuantizationReport {
+
+    private Evaluation originalEvaluation;
+    private Evaluation quantizedEvaluation;
+    private NetworkMemoryReport originalMemoryReport;
+    private NetworkMemoryReport quantizedMemoryReport;
+
+    /**
+     * @return Accuracy of the quantized network minus accuracy of the original network
+     */
+    public double getAccuracyDelta() {
+        return quantizedEvaluation.accuracy() - originalEvaluation.accuracy();
+    }
+
+    /**
+     * @return F1 score of the quantized network minus F1 score of the original network
+     */
+    public double getF1Delta() {
+        return quantizedEvaluation.f1() - originalEvaluation.f1();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Accuracy: ").append(String.format("%.4f", originalEvaluation.accuracy())).append(" -> ")
+                        .append(String.format("%.4f", quantizedEvaluation.accuracy()))
+                        .append(String.format(" (delta %+.4f)", getAccuracyDelta())).append("\n");
+        sb.append("F1: ").append(String.format("%.4f", originalEvaluation.f1())).append(" -> ")
+                        .append(String.format("%.4f", quantizedEvaluation.f1()))
+                        .append(String.format(" (delta %+.4f)", getF1Delta())).append("\n");
+        if (originalMemoryReport != null && quantizedMemoryReport != null) {
+            sb.append("Inference memory, minibatch size 1 (bytes): ")
+                            .append(inferenceBytes(originalMemoryReport)).append(" -> ")
+                            .append(inferenceBytes(quantizedMemoryReport)).append("\n");
+            sb.append("Parameter memory (bytes): ")
+                            .append(originalMemoryReport.getMemoryBytes(MemoryType.PARAMETERS, 1,
+                                            MemoryUseMode.INFERENCE, CacheMode.NONE, DataBuffer.Type.FLOAT))
+                            .append(" -> ").append(quantizedMemoryReport.getMemoryBytes(MemoryType.PARAMETERS, 1,
+                                            MemoryUseMode.INFERENCE, CacheMode.NONE, DataBuffer.Type.FLOAT));
+        }
+        return sb.toString();
+    }
+
+    private static long inferenceBytes(NetworkMemoryReport r) {
+        return r.getTotalMemoryBytes(1, MemoryUseMode.INFERENCE, CacheMode.NONE, DataBuffer.Type.FLOAT);
+    }
+}
@@ -0,0 +1,553 @@
+package org.deeplearning4j.nn.transferlearning;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A disk-backed cache of featurized data, for training the unfrozen part of a network via
+ * {@link TransferLearningHelper#fitFeaturized(DataSetIterator)}: the frozen layers are applied to all of the data
+ * once (see {@link TransferLearningHelper#featurize(DataSet)}), rather than in every epoch.<br>
+ * <br>
+ * The featurized data (the activations of the frozen layers, the labels and any mask arrays) is stored in fixed size
+ * records in memory-mapped files in the specified directory, optionally with the activations in half precision.
+ * Featurization can be performed by multiple threads, each using its own copy of the original network. The cached
+ * data can then be iterated over (in shuffled order, if required) via {@link #iterator(int, boolean, long)}, and the
+ * cache can be reopened later via {@link #load(File)}.<br>
+ * <br>
+ * PLEASE NOTE: All examples must have the same shape (for example, time series must be the same length), and only
+ * single input, single output networks (i.e., DataSets) are supported.
+ */
+@Slf4j
+public class FeaturizedDataCache implements Closeable {
+
+    public static final String METADATA_FILE = "metadata.properties";
+
+    private static final int FEATURES = 0;
+    private static final int LABELS = 1;
+    private static final int FEATURES_MASK = 2;
+    private static final int LABELS_MASK = 3;
+    private static final String[] ARRAY_NAMES = {"features", "labels", "featuresMask", "labelsMask"};
+
+    //MappedByteBuffers are limited to 2GB: larger files are mapped in chunks of (up to) this size
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final File directory;
+    private final DataBuffer.Type dataType;
+    private final int numExamples;
+    private final int[][] shapes;
+    private final Store[] stores = new Store[ARRAY_NAMES.length];
+
+    private FeaturizedDataCache(File directory, DataBuffer.Type dataType, int numExamples, int[][] shapes)
+                    throws IOException {
+        this.directory = directory;
+        this.dataType = dataType;
+        this.numExamples = numExamples;
+        this.shapes = shapes;
+        for (int i = 0; i < ARRAY_NAMES.length; i++) {
+            if (shapes[i] != null) {
+                stores[i] = new Store(new File(directory, ARRAY_NAMES[i] + ".bin"), length(shapes[i]),
+                                bytesPerValue(i, dataType), false);
+                stores[i].mapForReading(numExamples);
+            }
+        }
+    }
+
+    /**
+     * Open an existing cache of featurized data
+     *
+     * @param directory Directory the cache was created in
+     */
+    public static FeaturizedDataCache load(@NonNull File directory) throws IOException {
+        File f = new File(directory, METADATA_FILE);
+        if (!f.exists()) {
+            throw new IOException("No featurized data found in directory " + directory.getAbsolutePath()
+                            + ": metadata file " + METADATA_FILE + " does not exist");
+        }
+        Properties p = new Properties();
+        try (InputStream is = new BufferedInputStream(new FileInputStream(f))) {
+            p.load(is);
+        }
+        int numExamples = Integer.parseInt(p.getProperty("numExamples"));
+        DataBuffer.Type dataType = DataBuffer.Type.valueOf(p.getProperty("dataType"));
+        int[][] shapes = new int[ARRAY_NAMES.length][0];
+        for (int i = 0; i < ARRAY_NAMES.length; i++) {
+            shapes[i] = parseShape(p.getProperty("shape." + ARRAY_NAMES[i]));
+        }
+        return new FeaturizedDataCache(directory, dataType, numExamples, shapes);
+    }
+
+    /**
+     * @return Total number of examples in the cache
+     */
+    public int numExamples() {
+        return numExamples;
+    }
+
+    /**
+     * @return Data type of the cached features (activations of the frozen layers): FLOAT or HALF
+     */
+    public DataBuffer.Type getDataType() {
+        return dataType;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return Shape of the features of each example, excluding the minibatch dimension
+     */
+    public int[] getFeatureShape() {
+        return shapes[FEATURES].clone();
+    }
+
+    /**
+     * @return Shape of the labels of each example, excluding the minibatch dimension
+     */
+    public int[] getLabelShape() {
+        return shapes[LABELS].clone();
+    }
+
+    /**
+     * Get the specified examples as a DataSet
+     *
+     * @param examples Indices of the examples, in range 0 to numExamples()-1
+     */
+    public DataSet get(int... examples) {
+        INDArray[] arrays = new INDArray[ARRAY_NAMES.length];
+        for (int i = 0; i < ARRAY_NAMES.length; i++) {
+            if (stores[i] == null) {
+                continue;
+            }
+            int perExample = stores[i].valuesPerExample;
+            float[] values = new float[examples.length * perExample];
+            for (int j = 0; j < examples.length; j++) {
+                if (examples[j] < 0 || examples[j] >= numExamples) {
+                    throw new IllegalArgumentException("Invalid example index " + examples[j]
+                                    + ": must be in range 0 to " + (numExamples - 1) + " inclusive");
+                }
+                stores[i].read(examples[j], values, j * perExample);
+            }
+            int[] shape = new int[shapes[i].length + 1];
+            shape[0] = examples.length;
+            System.arraycopy(shapes[i], 0, shape, 1, shapes[i].length);
+            arrays[i] = Nd4j.create(values, shape, 'c');
+        }
+        return new DataSet(arrays[FEATURES], arrays[LABELS], arrays[FEATURES_MASK], arrays[LABELS_MASK]);
+    }
+
+    /**
+     * Get an iterator over the cached data
+     *
+     * @param batchSize Minibatch size
+     * @param shuffle   If true: iterate over the examples in a different random order in each epoch
+     * @param seed      Random seed for shuffling
+     */
+    public DataSetIterator iterator(int batchSize, boolean shuffle, long seed) {
+        return new FeaturizedDataSetIterator(this, batchSize, shuffle, seed);
+    }
+
+    /**
+     * Close the underlying files. Note that the memory mapped regions are only released once they are garbage
+     * collected.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Store s : stores) {
+            if (s != null) {
+                s.close();
+            }
+        }
+    }
+
+    private static int bytesPerValue(int array, DataBuffer.Type dataType) {
+        //Only the features (activations) are stored in reduced precision: labels and masks are always stored as floats
+        return (array == FEATURES && dataType == DataBuffer.Type.HALF) ? 2 : 4;
+    }
+
+    private static int length(int[] shape) {
+        int l = 1;
+        for (int i : shape) {
+            l *= i;
+        }
+        return l;
+    }
+
+    private static int[] parseShape(String s) {
+        if (s == null || s.isEmpty()) {
+            return null;
+        }
+        String[] split = s.split(",");
+        int[] out = new int[split.length];
+        for (int i = 0; i < split.length; i++) {
+            out[i] = Integer.parseInt(split[i].trim());
+        }
+        return out;
+    }
+
+    private static String shapeToString(int[] shape) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < shape.length; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(shape[i]);
+        }
+        return sb.toString();
+    }
+
+    private static INDArray[] arrays(DataSet ds) {
+        return new INDArray[] {ds.getFeatures(), ds.getLabels(), ds.getFeaturesMaskArray(), ds.getLabelsMaskArray()};
+    }
+
+    private static int[] perExampleShape(INDArray arr) {
+        return arr == null ? null : Arrays.copyOfRange(arr.shape(), 1, arr.rank());
+    }
+
+    /**
+     * Convert a float to IEEE 754 half precision (binary16), rounding to nearest
+     */
+    static short toHalf(float f) {
+        int bits = Float.floatToIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int val = (bits & 0x7fffffff) + 0x1000;
+        if (val >= 0x47800000) {
+            if ((bits & 0x7fffffff) >= 0x47800000) {
+                if (val < 0x7f800000) {
+                    //Too large: infinity
+                    return (short) (sign | 0x7c00);
+                }
+                //NaN or infinity
+                return (short) (sign | 0x7c00 | ((bits & 0x007fffff) >>> 13));
+            }
+            //Largest finite value
+            return (short) (sign | 0x7bff);
+        }
+        if (val >= 0x38800000) {
+            //Normal value
+            return (short) (sign | ((val - 0x38000000) >>> 13));
+        }
+        if (val < 0x33000000) {
+            //Too small: zero
+            return (short) sign;
+        }
+        //Subnormal value
+        val = (bits & 0x7fffffff) >>> 23;
+        return (short) (sign | ((((bits & 0x7fffff) | 0x800000) + (0x800000 >>> (val - 102))) >>> (126 - val)));
+    }
+
+    /**
+     * Convert an IEEE 754 half precision (binary16) value to a float
+     */
+    static float fromHalf(short h) {
+        int bits = h & 0xffff;
+        int mantissa = bits & 0x03ff;
+        int exp = bits & 0x7c00;
+        if (exp == 0x7c00) {
+            //NaN or infinity
+            exp = 0x3fc00;
+        } else if (exp != 0) {
+            //Normal value
+            exp += 0x1c000;
+        } else if (mantissa != 0) {
+            //Subnormal value: normalize
+            exp = 0x1c400;
+            do {
+                mantissa <<= 1;
+                exp -= 0x400;
+            } while ((mantissa & 0x400) == 0);
+            mantissa &= 0x3ff;
+        }
+        return Float.intBitsToFloat((bits & 0x8000) << 16 | (exp | mantissa) << 13);
+    }
+
+    /**
+     * Fixed size records of one array type (features, labels, etc), in a single memory mapped file
+     */
+    private static class Store implements Closeable {
+        private final FileChannel channel;
+        private final int valuesPerExample;
+        private final int bytesPerValue;
+        private final long bytesPerExample;
+        private final int examplesPerChunk;
+        private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+        private Store(File file, int valuesPerExample, int bytesPerValue, boolean write) throws IOException {
+            this.valuesPerExample = valuesPerExample;
+            this.bytesPerValue = bytesPerValue;
+            this.bytesPerExample = (long) valuesPerExample * bytesPerValue;
+            this.examplesPerChunk = (int) Math.max(1, Math.min(Integer.MAX_VALUE, MAX_CHUNK_BYTES / bytesPerExample));
+            if (write) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } else {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+        }
+
+        private void mapForReading(int numExamples) throws IOException {
+            long expected = numExamples * bytesPerExample;
+            if (channel.size() < expected) {
+                throw new IOException("Featurized data file is too small: expected " + expected + " bytes, got "
+                                + channel.size() + " bytes");
+            }
+            for (long first = 0; first < numExamples; first += examplesPerChunk) {
+                long n = Math.min(examplesPerChunk, numExamples - first);
+                chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, first * bytesPerExample, n * bytesPerExample));
+            }
+        }
+
+        /**
+         * Write the values of consecutive examples, starting at the specified example. Thread safe, for
+         * non-overlapping ranges of examples.
+         */
+        private void write(int firstExample, float[] values) throws IOException {
+            MappedByteBuffer bb = channel.map(FileChannel.MapMode.READ_WRITE, firstExample * bytesPerExample,
+                            (long) values.length * bytesPerValue);
+            bb.order(ByteOrder.LITTLE_ENDIAN);
+            if (bytesPerValue == 4) {
+                bb.asFloatBuffer().put(values);
+            } else {
+                ShortBuffer sb = bb.asShortBuffer();
+                for (float f : values) {
+                    sb.put(toHalf(f));
+                }
+            }
+        }
+
+        /**
+         * Read the values of a single example. Thread safe.
+         */
+        private void read(int example, float[] out, int outOffset) {
+            ByteBuffer bb = chunks.get(example / examplesPerChunk).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            bb.position((int) ((example % examplesPerChunk) * bytesPerExample));
+            if (bytesPerValue == 4) {
+                bb.asFloatBuffer().get(out, outOffset, valuesPerExample);
+            } else {
+                ShortBuffer sb = bb.asShortBuffer();
+                for (int i = 0; i < valuesPerExample; i++) {
+                    out[outOffset + i] = fromHalf(sb.get());
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static class Builder {
+        private final TransferLearningHelper helper;
+        private final File directory;
+        private DataBuffer.Type dataType = DataBuffer.Type.FLOAT;
+        private int numWorkers = 1;
+
+        /**
+         * @param helper    Transfer learning helper, used to featurize the data
+         * @param directory Directory to store the featurized data in. Any existing cache in this directory is
+         *                  overwritten
+         */
+        public Builder(@NonNull TransferLearningHelper helper, @NonNull File directory) {
+            this.helper = helper;
+            this.directory = directory;
+        }
+
+        /**
+         * @param dataType Data type for storing the features (activations of the frozen layers): FLOAT (default) or
+         *                 HALF (half the disk space and I/O, with reduced precision). Labels and masks are always
+         *                 stored as FLOAT.
+         */
+        public Builder dataType(@NonNull DataBuffer.Type dataType) {
+            if (dataType != DataBuffer.Type.FLOAT && dataType != DataBuffer.Type.HALF) {
+                throw new IllegalArgumentException("Only FLOAT and HALF data types are supported, got " + dataType);
+            }
+            this.dataType = dataType;
+            return this;
+        }
+
+        /**
+         * @param numWorkers Number of threads to featurize the data with. Each thread uses its own copy of the
+         *                   original network. Default: 1 (featurize on the calling thread)
+         */
+        public Builder numWorkers(int numWorkers) {
+            if (numWorkers < 1) {
+                throw new IllegalArgumentException("Number of workers must be positive, got " + numWorkers);
+            }
+            this.numWorkers = numWorkers;
+            return this;
+        }
+
+        /**
+         * Featurize all of the data in the iterator, and store it in the directory
+         *
+         * @param iter Data to featurize
+         * @return The cache of featurized data
+         */
+        public FeaturizedDataCache build(@NonNull DataSetIterator iter) throws IOException {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Could not create directory: " + directory.getAbsolutePath());
+            }
+            File metadataFile = new File(directory, METADATA_FILE);
+            if (metadataFile.exists() && !metadataFile.delete()) {
+                throw new IOException("Could not delete existing metadata file: " + metadataFile.getAbsolutePath());
+            }
+
+            if (!iter.hasNext() && iter.resetSupported()) {
+                iter.reset();
+            }
+            if (!iter.hasNext()) {
+                throw new IllegalStateException("Cannot featurize data: iterator has no data");
+            }
+
+            //Featurize the first minibatch on this thread, to determine the shapes of the records
+            long start = System.currentTimeMillis();
+            DataSet first = helper.featurize(iter.next());
+            INDArray[] firstArrays = arrays(first);
+            int[][] shapes = new int[ARRAY_NAMES.length][0];
+            final Store[] stores = new Store[ARRAY_NAMES.length];
+            int numExamples;
+            ExecutorService executor = null;
+            try {
+                for (int i = 0; i < ARRAY_NAMES.length; i++) {
+                    shapes[i] = perExampleShape(firstArrays[i]);
+                    if (shapes[i] != null) {
+                        stores[i] = new Store(new File(directory, ARRAY_NAMES[i] + ".bin"), length(shapes[i]),
+                                        bytesPerValue(i, dataType), true);
+                    }
+                }
+                final int[][] fShapes = shapes;
+                write(stores, fShapes, first, 0);
+                numExamples = first.getFeatures().size(0);
+
+                final ThreadLocal<Object[]> models = new ThreadLocal<Object[]>() {
+                    @Override
+                    protected Object[] initialValue() {
+                        //Copy of the original network, for use by a single worker thread
+                        if (helper.isGraph()) {
+                            return new Object[] {helper.getOrigGraph().clone(), null};
+                        } else {
+                            return new Object[] {null, helper.getOrigMLN().clone()};
+                        }
+                    }
+                };
+                if (numWorkers > 1) {
+                    executor = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "FeaturizedDataCache-worker");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                }
+
+                LinkedList<Future<?>> pending = new LinkedList<>();
+                while (iter.hasNext()) {
+                    final DataSet next = iter.next();
+                    final int firstExample = numExamples;
+                    numExamples += next.getFeatures().size(0);
+                    if (executor == null) {
+                        write(stores, fShapes, helper.featurize(next), firstExample);
+                    } else {
+                        //Featurized asynchronously, while later minibatches are fetched: the source iterator (for
+                        //example, AsyncDataSetIterator) may reuse its workspace memory for those minibatches
+                        next.detach();
+                        pending.add(executor.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                Object[] m = models.get();
+                                DataSet featurized = helper.featurize(next, (ComputationGraph) m[0],
+                                                (MultiLayerNetwork) m[1]);
+                                write(stores, fShapes, featurized, firstExample);
+                                return null;
+                            }
+                        }));
+                        //Limit the number of minibatches in memory
+                        while (pending.size() > 2 * numWorkers) {
+                            waitFor(pending.removeFirst());
+                        }
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    waitFor(pending.removeFirst());
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+                for (Store s : stores) {
+                    if (s != null) {
+                        s.close();
+                    }
+                }
+            }
+
+            //Metadata is written last: an incomplete cache can't be loaded
+            Properties p = new Properties();
+            p.setProperty("numExamples", String.valueOf(numExamples));
+            p.setProperty("dataType", dataType.name());
+            for (int i = 0; i < ARRAY_NAMES.length; i++) {
+                if (shapes[i] != null) {
+                    p.setProperty("shape." + ARRAY_NAMES[i], shapeToString(shapes[i]));
+                }
+            }
+            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(metadataFile))) {
+                p.store(os, "Featurized data cache");
+            }
+
+            log.info("Featurized {} examples in {} ms, stored in {}", numExamples, System.currentTimeMillis() - start,
+                            directory.getAbsolutePath());
+            return load(directory);
+        }
+
+        private static void write(Store[] stores, int[][] shapes, DataSet ds, int firstExample) throws IOException {
+            INDArray[] arr = arrays(ds);
+            for (int i = 0; i < ARRAY_NAMES.length; i++) {
+                int[] shape = perExampleShape(arr[i]);
+                if (!Arrays.equals(shape, shapes[i])) {
+                    throw new IllegalStateException("Cannot cache featurized data: all examples must have the same "
+                                    + ARRAY_NAMES[i] + " shape. Expected " + Arrays.toString(shapes[i])
+                                    + " per example, got " + Arrays.toString(shape) + " at example " + firstExample);
+                }
+                if (stores[i] != null) {
+                    stores[i].write(firstExample, arr[i].dup('c').data().asFloat());
+                }
+            }
+        }
+
+        private static void waitFor(Future<?> f) throws IOException {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while featurizing data", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException("Error featurizing data", cause);
+            }
+        }
+    }
+}
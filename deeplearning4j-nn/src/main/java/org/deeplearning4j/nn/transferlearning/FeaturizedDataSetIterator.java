@@ -0,0 +1,141 @@
+package org.deeplearning4j.nn.transferlearning;
+
+import lombok.NonNull;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Iterator over the data in a {@link FeaturizedDataCache}, optionally in a different random order in each epoch.
+ * Obtain instances via {@link FeaturizedDataCache#iterator(int, boolean, long)}.
+ */
+public class FeaturizedDataSetIterator implements DataSetIterator {
+
+    private final FeaturizedDataCache cache;
+    private final int batchSize;
+    private final boolean shuffle;
+    private final Random rng;
+    private final int[] order;
+    private int cursor;
+    private DataSetPreProcessor preProcessor;
+
+    FeaturizedDataSetIterator(@NonNull FeaturizedDataCache cache, int batchSize, boolean shuffle, long seed) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+        }
+        this.cache = cache;
+        this.batchSize = batchSize;
+        this.shuffle = shuffle;
+        this.rng = new Random(seed);
+        this.order = new int[cache.numExamples()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        reset();
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        return cursor < order.length;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(batchSize);
+    }
+
+    @Override
+    public synchronized DataSet next(int num) {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more elements");
+        }
+        int n = Math.min(num, order.length - cursor);
+        int[] examples = Arrays.copyOfRange(order, cursor, cursor + n);
+        cursor += n;
+        //Order within a minibatch doesn't matter: read the examples in file order
+        Arrays.sort(examples);
+        DataSet ds = cache.get(examples);
+        if (preProcessor != null) {
+            preProcessor.preProcess(ds);
+        }
+        return ds;
+    }
+
+    @Override
+    public synchronized void reset() {
+        cursor = 0;
+        if (shuffle) {
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int temp = order[i];
+                order[i] = order[j];
+                order[j] = temp;
+            }
+        }
+    }
+
+    @Override
+    public int totalExamples() {
+        return cache.numExamples();
+    }
+
+    @Override
+    public int inputColumns() {
+        return cache.getFeatureShape()[0];
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return cache.getLabelShape()[0];
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public synchronized int cursor() {
+        return cursor;
+    }
+
+    @Override
+    public int numExamples() {
+        return cache.numExamples();
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -14,6 +14,8 @@ import org.nd4j.linalg.dataset.MultiDataSet;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -302,6 +304,13 @@ public class TransferLearningHelper {
      * @return a multidataset with input features that are the outputs of the frozen layer vertices and the original labels.
      */
     public MultiDataSet featurize(MultiDataSet input) {
+        return featurize(input, origGraph);
+    }
+
+    /**
+     * As per {@link #featurize(MultiDataSet)}, using the specified copy of the original computation graph
+     */
+    MultiDataSet featurize(MultiDataSet input, ComputationGraph graph) {
         if (!isGraph) {
             throw new IllegalArgumentException("Cannot use multidatasets with MultiLayerNetworks.");
         }
@@ -314,13 +323,13 @@ public class TransferLearningHelper {
         INDArray[] labelMasks = input.getLabelsMaskArrays();
 
         INDArray[] featuresNow = new INDArray[graphInputs.size()];
-        Map<String, INDArray> activationsNow = origGraph.feedForward(features, false);
+        Map<String, INDArray> activationsNow = graph.feedForward(features, false);
         for (int i = 0; i < graphInputs.size(); i++) {
             String anInput = graphInputs.get(i);
-            if (origGraph.getVertex(anInput).isInputVertex()) {
+            if (graph.getVertex(anInput).isInputVertex()) {
                 //was an original input to the graph
-                int inputIndex = origGraph.getConfiguration().getNetworkInputs().indexOf(anInput);
-                featuresNow[i] = origGraph.getInput(inputIndex);
+                int inputIndex = graph.getConfiguration().getNetworkInputs().indexOf(anInput);
+                featuresNow[i] = graph.getInput(inputIndex);
             } else {
                 //needs to be grabbed from the internal activations
                 featuresNow[i] = activationsNow.get(anInput);
@@ -340,9 +349,16 @@ public class TransferLearningHelper {
      * @return a multidataset with input features that are the outputs of the frozen layer vertices and the original labels.
      */
     public DataSet featurize(DataSet input) {
+        return featurize(input, origGraph, origMLN);
+    }
+
+    /**
+     * As per {@link #featurize(DataSet)}, using the specified copy of the original network
+     */
+    DataSet featurize(DataSet input, ComputationGraph graph, MultiLayerNetwork mln) {
         if (isGraph) {
             //trying to featurize for a computation graph
-            if (origGraph.getNumInputArrays() > 1 || origGraph.getNumOutputArrays() > 1) {
+            if (graph.getNumInputArrays() > 1 || graph.getNumOutputArrays() > 1) {
                 throw new IllegalArgumentException(
                                 "Input or output size to a computation graph is greater than one. Requires use of a MultiDataSet.");
             } else {
@@ -352,18 +368,43 @@ public class TransferLearningHelper {
                 }
                 MultiDataSet inbW = new MultiDataSet(new INDArray[] {input.getFeatures()},
                                 new INDArray[] {input.getLabels()}, null, new INDArray[] {input.getLabelsMaskArray()});
-                MultiDataSet ret = featurize(inbW);
+                MultiDataSet ret = featurize(inbW, graph);
                 return new DataSet(ret.getFeatures()[0], input.getLabels(), ret.getLabelsMaskArrays()[0],
                                 input.getLabelsMaskArray());
             }
         } else {
             if (input.getFeaturesMaskArray() != null)
                 throw new UnsupportedOperationException("Feature masks not supported with featurizing currently");
-            return new DataSet(origMLN.feedForwardToLayer(frozenInputLayer + 1, input.getFeatures(), false)
+            return new DataSet(mln.feedForwardToLayer(frozenInputLayer + 1, input.getFeatures(), false)
                             .get(frozenInputLayer + 1), input.getLabels(), null, input.getLabelsMaskArray());
         }
     }
 
+    /**
+     * Featurize all of the data in the iterator once, and store the featurized data on disk: see
+     * {@link FeaturizedDataCache}
+     *
+     * @param iter      Data to featurize
+     * @param directory Directory to store the featurized data in
+     * @return The cache of featurized data, from which a (shuffling) iterator can be obtained for
+     * {@link #fitFeaturized(DataSetIterator)}
+     */
+    public FeaturizedDataCache featurize(DataSetIterator iter, File directory) throws IOException {
+        return new FeaturizedDataCache.Builder(this, directory).build(iter);
+    }
+
+    boolean isGraph() {
+        return isGraph;
+    }
+
+    ComputationGraph getOrigGraph() {
+        return origGraph;
+    }
+
+    MultiLayerNetwork getOrigMLN() {
+        return origMLN;
+    }
+
     /**
      * Fit from a featurized dataset.
      * The fit is conducted on an internally instantiated subset model that is representative of the unfrozen part of the original model.
@@ -89,8 +89,10 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
                     }
 
                     //First: decide whether to add to the existing updater block, or create a new one
+                    //Row-sparse params always get their own block, as they are updated separately
                     if (currentBlock == null || !UpdaterUtils.updaterConfigurationsEquals(lastLayer, lastVariable,
-                                    layers[i], var)) {
+                                    layers[i], var) || UpdaterUtils.isRowSparseGradient(lastLayer, lastVariable)
+                                    || UpdaterUtils.isRowSparseGradient(layers[i], var)) {
                         //Create a new block
                         List<UpdaterBlock.ParamState> list = new ArrayList<>();
                         list.add(new UpdaterBlock.ParamState(layers[i], var, paramsViewSoFar,
@@ -263,19 +265,29 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
 
 
         //Apply the updaters in blocks. This also applies LR and momentum schedules, L1 and L2
-        //
-        for (UpdaterBlock ub : updaterBlocks) {
+        //Row-sparse blocks (i.e., embedding weights) are updated only for the touched rows, and divided by minibatch
+        // size at the same time
+        int divisor = isMiniBatch() ? batchSize : 1;
+        boolean[] rowSparseUpdated = new boolean[updaterBlocks.size()];
+        boolean anyRowSparse = false;
+        for (int i = 0; i < updaterBlocks.size(); i++) {
+            UpdaterBlock ub = updaterBlocks.get(i);
             if (ub.skipDueToPretrainConfig()) {
                 //Should skip some updater blocks sometimes
                 //For example, VAE decoder params while doing supervised backprop
                 continue;
             }
+            int[] rows = isExternal ? null : ub.getRowSparseGradientRows();
+            rowSparseUpdated[i] = rows != null;
+            anyRowSparse |= rows != null;
             if (Nd4j.getWorkspaceManager().checkIfWorkspaceExistsAndActive(ComputationGraph.WORKSPACE_FEED_FORWARD)) {
                 try (MemoryWorkspace workspace = Nd4j.getWorkspaceManager()
                                 .getAndActivateWorkspace(ComputationGraph.WORKSPACE_FEED_FORWARD)) {
                     if (isExternal) {
                         //RL4J etc type case: calculate gradients in 1 net, update them in another
                         ub.updateExternalGradient(iteration, epoch, gradient.gradient(), getParams());
+                    } else if (rows != null) {
+                        ub.updateRowSparse(iteration, epoch, rows, divisor);
                     } else {
                         //Standard case
                         ub.update(iteration, epoch);
@@ -285,6 +297,8 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
                 if (isExternal) {
                     //RL4J etc type case: calculate gradients in 1 net, update them in another
                     ub.updateExternalGradient(iteration, epoch, gradient.gradient(), getParams());
+                } else if (rows != null) {
+                    ub.updateRowSparse(iteration, epoch, rows, divisor);
                 } else {
                     //Standard case
                     ub.update(iteration, epoch);
@@ -297,6 +311,14 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             //OK even with pretrain layers: their gradients will get modified during next backprop iteration
             if (isExternal) {
                 gradient.gradient().divi(batchSize);
+            } else if (anyRowSparse) {
+                //Row-sparse blocks are already divided; other rows of them are zeros anyway
+                for (int i = 0; i < updaterBlocks.size(); i++) {
+                    INDArray blockGrad = updaterBlocks.get(i).getGradientView();
+                    if (!rowSparseUpdated[i] && blockGrad != null) {
+                        blockGrad.divi(batchSize);
+                    }
+                }
             } else {
                 //Standard case
                 INDArray grad = getFlattenedGradientsView();
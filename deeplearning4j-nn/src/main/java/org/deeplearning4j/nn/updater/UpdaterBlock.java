@@ -6,13 +6,17 @@ import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.BaseLayer;
 import org.deeplearning4j.nn.layers.FrozenLayer;
+import org.deeplearning4j.nn.api.layers.RowSparseGradientLayer;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.custom.ScatterUpdate;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.learning.GradientUpdater;
+import org.nd4j.linalg.learning.config.IUpdater;
 import org.nd4j.linalg.ops.transforms.Transforms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -23,6 +27,8 @@ import java.util.List;
  */
 @Data
 public class UpdaterBlock {
+    private static final int[] DIM_1 = new int[] {1};
+
     private int paramOffsetStart;
     private int paramOffsetEnd;
     private int updaterViewOffsetStart;
@@ -35,6 +41,8 @@ public class UpdaterBlock {
 
     private GradientUpdater gradientUpdater;
 
+    //Row-sparse blocks only: for each row, the first iteration it hasn't been updated for yet
+    private transient int[] rowNextIteration;
 
     @AllArgsConstructor
     @Data
@@ -159,6 +167,132 @@ public class UpdaterBlock {
         }
     }
 
+    /**
+     * @return Rows touched by the last backprop, if this block consists of a single row-sparse parameter (see
+     * {@link RowSparseGradientLayer}), or null if the block should be updated as usual
+     */
+    public int[] getRowSparseGradientRows() {
+        if (layersAndVariablesInBlock.size() != 1)
+            return null;
+        ParamState p = layersAndVariablesInBlock.get(0);
+        if (!UpdaterUtils.isRowSparseGradient(p.getLayer(), p.getParamName()))
+            return null;
+        return ((RowSparseGradientLayer) p.getLayer()).getGradientRows(p.getParamName());
+    }
+
+    /**
+     * Update only the given rows of the gradient for this (row-sparse) block, including L1/L2 and division by
+     * minibatch size. Gradient, parameters and updater state of other rows aren't accessed at all.<br>
+     * Rows not updated for some iterations are caught up first: their updater state is decayed as it would have been
+     * with zero gradients (see {@link UpdaterUtils#lazyStateDecay(IUpdater)}), and the L1/L2 terms for the skipped
+     * iterations are added to their gradient. Unlike dense updates, the parameters of rows that aren't touched aren't
+     * moved by the remaining momentum meanwhile.
+     *
+     * @param iteration The current iteration (i.e., total number of parameter updates so far)
+     * @param rows      Sorted, unique rows to update
+     * @param batchSize Divisor for the gradient: minibatch size, or 1 if gradient shouldn't be divided
+     */
+    public void updateRowSparse(int iteration, int epoch, int[] rows, int batchSize) {
+        if (gradientUpdater == null) {
+            init();
+        }
+
+        int n = rows.length;
+        if (n == 0) {
+            return;
+        }
+
+        ParamState p = layersAndVariablesInBlock.get(0);
+        Layer layer = p.getLayer();
+        String paramName = p.getParamName();
+        IUpdater updaterConfig = layer.conf().getLayer().getUpdaterByParam(paramName);
+        double[] decay = UpdaterUtils.lazyStateDecay(updaterConfig);
+
+        INDArray paramMatrix = layer.getParam(paramName);
+        int nRows = paramMatrix.rows();
+        int nCols = paramMatrix.columns();
+        INDArray gradMatrix = gradientView.reshape('f', nRows, nCols);
+
+        //Number of iterations each row wasn't updated for
+        if (rowNextIteration == null || rowNextIteration.length != nRows) {
+            rowNextIteration = new int[nRows];
+            Arrays.fill(rowNextIteration, iteration);
+        }
+        int[] skipped = new int[n];
+        boolean anySkipped = false;
+        for (int i = 0; i < n; i++) {
+            skipped[i] = Math.max(0, iteration - rowNextIteration[rows[i]]);
+            anySkipped |= skipped[i] > 0;
+            rowNextIteration[rows[i]] = iteration + 1;
+        }
+
+        //Gather the updater state rows into a temporary state array, laid out as the updater expects it: one segment
+        // after another, each segment with the same shape as the gathered gradient
+        INDArray gradRows = Nd4j.pullRows(gradMatrix, 1, rows, 'c');
+        INDArray[] stateMatrices = new INDArray[decay.length];
+        INDArray[] stateRows = new INDArray[decay.length];
+        GradientUpdater rowsUpdater = gradientUpdater;
+        if (decay.length > 0) {
+            int segmentLength = nRows * nCols;
+            int rowsSegmentLength = n * nCols;
+            INDArray rowsState = Nd4j.create(new int[] {1, decay.length * rowsSegmentLength}, 'c');
+            for (int j = 0; j < decay.length; j++) {
+                stateMatrices[j] = updaterView.get(NDArrayIndex.point(0),
+                                NDArrayIndex.interval(j * segmentLength, (j + 1) * segmentLength)).reshape('f', nRows,
+                                                nCols);
+                stateRows[j] = rowsState.get(NDArrayIndex.point(0),
+                                NDArrayIndex.interval(j * rowsSegmentLength, (j + 1) * rowsSegmentLength))
+                                .reshape('c', n, nCols);
+                stateRows[j].assign(Nd4j.pullRows(stateMatrices[j], 1, rows, 'c'));
+
+                if (anySkipped && decay[j] != 1.0) {
+                    double[] factors = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        factors[i] = Math.pow(decay[j], skipped[i]);
+                    }
+                    stateRows[j].muliColumnVector(Nd4j.create(factors, new int[] {n, 1}));
+                }
+            }
+            rowsUpdater = updaterConfig.instantiate(rowsState, false);
+        }
+
+        rowsUpdater.applyUpdater(gradRows.reshape('c', 1, n * nCols), iteration, epoch);
+
+        //L1 and L2, including the terms for skipped iterations: after k iterations of plain L2 decay, parameters would
+        // have been multiplied by (1 - l2/batchSize)^k
+        double l2 = layer.conf().getL2ByParam(paramName);
+        double l1 = layer.conf().getL1ByParam(paramName);
+        if (l2 > 0 || l1 > 0) {
+            INDArray paramRows = Nd4j.pullRows(paramMatrix, 1, rows, 'c');
+            if (l2 > 0) {
+                double[] factors = new double[n];
+                for (int i = 0; i < n; i++) {
+                    factors[i] = l2 + batchSize * (1.0 - Math.pow(1.0 - l2 / batchSize, skipped[i]));
+                }
+                gradRows.addi(paramRows.mulColumnVector(Nd4j.create(factors, new int[] {n, 1})));
+            }
+            if (l1 > 0) {
+                double[] factors = new double[n];
+                for (int i = 0; i < n; i++) {
+                    factors[i] = l1 * (skipped[i] + 1);
+                }
+                INDArray sign = Transforms.sign(paramRows, false);
+                gradRows.addi(sign.muliColumnVector(Nd4j.create(factors, new int[] {n, 1})));
+            }
+        }
+
+        if (batchSize != 1) {
+            gradRows.divi(batchSize);
+        }
+
+        //Scatter gradient and updater state back
+        Nd4j.getExecutioner().exec(new ScatterUpdate(gradMatrix, gradRows, rows, DIM_1, ScatterUpdate.UpdateOp.ASSIGN));
+        for (int j = 0; j < decay.length; j++) {
+            Nd4j.getExecutioner().exec(new ScatterUpdate(stateMatrices[j], stateRows[j], rows, DIM_1,
+                            ScatterUpdate.UpdateOp.ASSIGN));
+        }
+    }
+
     /**
      * Apply L1 and L2 regularization, if necessary. Note that L1/L2 may differ for different layers in the same block
      *
@@ -1,7 +1,8 @@
 package org.deeplearning4j.nn.updater;
 
 import org.deeplearning4j.nn.api.Layer;
-import org.nd4j.linalg.learning.config.IUpdater;
+import org.deeplearning4j.nn.api.layers.RowSparseGradientLayer;
+import org.nd4j.linalg.learning.config.*;
 
 /**
  * Created by Alex on 14/04/2017.
@@ -36,4 +37,47 @@ public class UpdaterUtils {
 
         return true;
     }
+
+    /**
+     * @return True if the given parameter of the given layer has row-sparse gradients, and hence should be updated
+     * in its own {@link UpdaterBlock}, only for the touched rows
+     */
+    public static boolean isRowSparseGradient(Layer layer, String param) {
+        return layer instanceof RowSparseGradientLayer && ((RowSparseGradientLayer) layer).isRowSparseGradient(param);
+    }
+
+    /**
+     * Decay factors used to catch up updater state lazily for rows that weren't updated for some iterations. When a
+     * gradient is zero, each updater state segment (of length equal to the number of parameters) is simply multiplied
+     * by a constant factor - i.e., momentum for Nesterovs, or the first and second moment for Adam.
+     *
+     * @param updater Updater configuration
+     * @return Decay factor for each state segment of the updater, in the order the updater lays its state out;
+     * null if the updater doesn't support lazy row updates
+     */
+    public static double[] lazyStateDecay(IUpdater updater) {
+        if (updater instanceof Sgd || updater instanceof NoOp) {
+            return new double[0];
+        } else if (updater instanceof Adam) {
+            Adam a = (Adam) updater;
+            return new double[] {a.getBeta1(), a.getBeta2()};
+        } else if (updater instanceof AdaMax) {
+            AdaMax a = (AdaMax) updater;
+            return new double[] {a.getBeta1(), a.getBeta2()};
+        } else if (updater instanceof Nadam) {
+            Nadam n = (Nadam) updater;
+            return new double[] {n.getBeta1(), n.getBeta2()};
+        } else if (updater instanceof RmsProp) {
+            return new double[] {((RmsProp) updater).getRmsDecay()};
+        } else if (updater instanceof AdaDelta) {
+            double rho = ((AdaDelta) updater).getRho();
+            return new double[] {rho, rho};
+        } else if (updater instanceof AdaGrad) {
+            //Sum of squared gradients: no decay
+            return new double[] {1.0};
+        } else if (updater instanceof Nesterovs) {
+            return new double[] {((Nesterovs) updater).getMomentum()};
+        }
+        return null;
+    }
 }
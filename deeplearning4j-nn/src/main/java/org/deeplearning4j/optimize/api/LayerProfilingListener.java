@@ -0,0 +1,45 @@
+package org.deeplearning4j.optimize.api;
+
+import org.deeplearning4j.nn.api.Model;
+
+/**
+ * LayerProfilingListener: an extension of {@link TrainingListener} that is notified of the forward and backward pass
+ * of each individual layer (or graph vertex) during training, for profiling purposes.<br>
+ * These methods are called (synchronously) from within the forward/backward pass of
+ * {@link org.deeplearning4j.nn.multilayer.MultiLayerNetwork} and {@link org.deeplearning4j.nn.graph.ComputationGraph},
+ * and hence implementations should be fast, and should not modify the model.
+ *
+ * @see org.deeplearning4j.optimize.listeners.profiler.LayerProfilerListener
+ */
+public interface LayerProfilingListener extends TrainingListener {
+
+    /**
+     * Called after the forward pass of one layer or vertex, at training time
+     *
+     * @param model          Model
+     * @param index          Index of the layer (MultiLayerNetwork) or vertex (ComputationGraph)
+     * @param name           Name of the layer or vertex
+     * @param type           Type of the layer or vertex: i.e., the class simple name
+     * @param startNanos     Start time of the forward pass of this layer, as per {@link System#nanoTime()}
+     * @param durationNanos  Duration of the forward pass of this layer
+     * @param workspaceId    ID of the workspace that was open during the forward pass (null if none)
+     * @param workspaceBytes Number of bytes allocated in that workspace during the forward pass
+     */
+    void onLayerForward(Model model, int index, String name, String type, long startNanos, long durationNanos,
+                    String workspaceId, long workspaceBytes);
+
+    /**
+     * Called after the backward pass of one layer or vertex
+     *
+     * @param model          Model
+     * @param index          Index of the layer (MultiLayerNetwork) or vertex (ComputationGraph)
+     * @param name           Name of the layer or vertex
+     * @param type           Type of the layer or vertex: i.e., the class simple name
+     * @param startNanos     Start time of the backward pass of this layer, as per {@link System#nanoTime()}
+     * @param durationNanos  Duration of the backward pass of this layer
+     * @param workspaceId    ID of the workspace that was open during the backward pass (null if none)
+     * @param workspaceBytes Number of bytes allocated in that workspace during the backward pass
+     */
+    void onLayerBackward(Model model, int index, String name, String type, long startNanos, long durationNanos,
+                    String workspaceId, long workspaceBytes);
+}
@@ -1,21 +1,29 @@
 package org.deeplearning4j.optimize.listeners.checkpoint;
 
 import com.google.common.io.Files;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.layers.FrozenLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.optimize.api.BaseTrainingListener;
 import org.deeplearning4j.optimize.api.TrainingListener;
+import org.deeplearning4j.util.ContainerModelSerializer;
 import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 /**
  *
@@ -65,6 +73,15 @@ import java.util.concurrent.TimeUnit;
  * {@code .saveEveryEpoch().saveEvery(15, TimeUnit.MINUTES, true)}<br>
  * Note that is this last example, the <i>sinceLast</i> parameter is true. This means the 15-minute counter will be
  * reset any time a model is saved.<br>
+ * <br>
+ * <b>Asynchronous saving</b>: with {@code .asyncSaving(true)} the training thread only copies parameters and updater
+ * state into snapshot buffers (allocated once and reused), and checkpoint files are written by background thread
+ * while training continues. Call {@link #flush()} after training to make sure the last checkpoint is written.<br>
+ * <b>Delta saving</b>: with {@code .deltaSaving(true)} parameters of frozen layers ({@link FrozenLayer}) are stored
+ * only in the first checkpoint, and later checkpoints refer to it. That first checkpoint is never deleted.<br>
+ * Both modes save models in {@link ContainerModelSerializer} format, which is restored by {@link ModelSerializer}
+ * as usual. Stall time and write throughput are available via {@link #getStats()}.<br>
+ * In all modes, checkpoint files are written to temporary file first, and renamed when complete.
  *
  * @author Alex Black
  */
@@ -73,6 +90,7 @@ public class CheckpointListener extends BaseTrainingListener {
 
     private enum KeepMode {ALL, LAST, LAST_AND_EVERY};
     private static final String[] MODEL_TYPES = new String[]{"MultiLayerNetwork", "ComputationGraph", "Model"};
+    private static final String[] EXTENSIONS = new String[]{".zip", ".bin"};
 
     private File rootDir;
     private KeepMode keepMode;
@@ -91,11 +109,27 @@ public class CheckpointListener extends BaseTrainingListener {
     private int lastCheckpointNum = -1;
     private File checkpointRecordFile;
 
-    private Checkpoint lastCheckpoint;
+    // last checkpoint that was written successfully; set by background writer in async mode
+    private volatile Checkpoint lastCheckpoint;
     private long startTime = -1;
     private int startIter = -1;
     private Long lastSaveEveryMsNoSinceLast;
 
+    private boolean asyncSaving;
+    private boolean deltaSaving;
+
+    @Getter
+    private final CheckpointStats stats = new CheckpointStats();
+
+    // reusable snapshot buffers, and background writer for async mode
+    private INDArray paramsSnapshot;
+    private INDArray updaterSnapshot;
+    private ExecutorService writer;
+    private Future<?> pendingWrite;
+
+    // file name of checkpoint with frozen layers, referred to by delta checkpoints
+    private volatile String deltaBase;
+
     private CheckpointListener(Builder builder){
         this.rootDir = builder.rootDir;
         this.keepMode = builder.keepMode;
@@ -109,6 +143,8 @@ public class CheckpointListener extends BaseTrainingListener {
         this.saveEveryAmount = builder.saveEveryAmount;
         this.saveEveryUnit = builder.saveEveryUnit;
         this.saveEverySinceLast = builder.saveEverySinceLast;
+        this.asyncSaving = builder.asyncSaving;
+        this.deltaSaving = builder.deltaSaving;
 
         if(saveEveryAmount != null){
             saveEveryMs = TimeUnit.MILLISECONDS.convert(saveEveryAmount, saveEveryUnit);
@@ -139,9 +175,10 @@ public class CheckpointListener extends BaseTrainingListener {
         //Check iterations saving condition:
         if(saveEveryNIterations != null){
             if(saveEveryNIterSinceLast){
-                //Consider last saved model when deciding whether to save
+                //Consider last saved model when deciding whether to save. It's updated only once the checkpoint is
+                //written, so nothing is saved while a checkpoint is still being written in background
                 long lastSaveIter = (lastCheckpoint != null ? lastCheckpoint.getIteration() : startIter);
-                if(iteration - lastSaveIter >= saveEveryNIterations){
+                if(!isWritePending() && iteration - lastSaveIter >= saveEveryNIterations){
                     saveCheckpoint(model);
                     return;
                 }
@@ -160,7 +197,7 @@ public class CheckpointListener extends BaseTrainingListener {
             if(saveEverySinceLast){
                 //Consider last saved when when deciding whether to save
                 long lastSaveTime = (lastCheckpoint != null ? lastCheckpoint.getTimestamp() : startTime);
-                if((time - lastSaveTime) >= saveEveryMs){
+                if(!isWritePending() && (time - lastSaveTime) >= saveEveryMs){
                     saveCheckpoint(model);
                     return;
                 }
@@ -185,17 +222,244 @@ public class CheckpointListener extends BaseTrainingListener {
     }
 
     private void saveCheckpointHelper(Model model) throws Exception {
+        long start = System.nanoTime();
+
+        // previous checkpoint must be written before its snapshot buffers are reused
+        flush();
+
         if(!checkpointRecordFile.exists()){
             checkpointRecordFile.createNewFile();
             write(Checkpoint.getFileHeader() + "\n", checkpointRecordFile);
         }
 
-        Checkpoint c = new Checkpoint(++lastCheckpointNum, System.currentTimeMillis(), getIter(model), getEpoch(model),
+        boolean container = (asyncSaving || deltaSaving)
+                && (model instanceof MultiLayerNetwork || model instanceof ComputationGraph);
+
+        final Checkpoint c = new Checkpoint(++lastCheckpointNum, System.currentTimeMillis(), getIter(model), getEpoch(model),
                 getModelType(model), null);
-        setFileName(c);
+        c.setFilename(getFileName(c.getCheckpointNum(), c.getModelType(), container));
+
+        if(!container){
+            File tmp = new File(rootDir, c.getFilename() + ".tmp");
+            File file;
+            try {
+                ModelSerializer.writeModel(model, tmp, true);
+                file = commitFile(tmp, c);
+            } catch (Exception e){
+                deleteTmp(tmp);
+                throw e;
+            }
+            long time = System.nanoTime() - start;
+            stats.recordStall(time);
+            stats.recordWrite(time, file.length());
+            checkpointWritten(c);
+            return;
+        }
+
+        final String modelType = ContainerModelSerializer.modelType(model);
+        final String json = ContainerModelSerializer.configuration(model);
+        final List<ContainerModelSerializer.Block> blocks = snapshot(model);
+        final String base = deltaBase;
+        if(deltaSaving && base == null && hasFrozenLayers(model)){
+            // this checkpoint has everything, so following checkpoints will refer to it
+            deltaBase = c.getFilename();
+        }
+
+        Callable<Void> task = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                long time = System.nanoTime();
+                File tmp = new File(rootDir, c.getFilename() + ".tmp");
+                File file;
+                try {
+                    ContainerModelSerializer.write(tmp, modelType, json, paramsSnapshot, blocks, updaterSnapshot, null,
+                            base);
+                    file = commitFile(tmp, c);
+                } catch (Exception e){
+                    deleteTmp(tmp);
+                    throw e;
+                }
+                stats.recordWrite(System.nanoTime() - time, file.length());
+                checkpointWritten(c);
+                return null;
+            }
+        };
+
+        if(asyncSaving){
+            pendingWrite = writer().submit(task);
+            stats.recordStall(System.nanoTime() - start);
+        } else {
+            try {
+                task.call();
+            } catch (Exception e){
+                resetDeltaBaseIfMissing();
+                throw e;
+            }
+            stats.recordStall(System.nanoTime() - start);
+        }
+    }
+
+    private void resetDeltaBaseIfMissing(){
+        //Base checkpoint failed to save: next checkpoint will be saved fully instead
+        if(deltaBase != null && !new File(rootDir, deltaBase).exists()){
+            deltaBase = null;
+        }
+    }
+
+    /**
+     * This method copies params and updater state of the model into snapshot buffers.
+     * In delta mode, params of frozen layers are copied only when there's no base checkpoint yet.
+     *
+     * @return layout of params, with frozen layers marked as external when base checkpoint is available
+     */
+    private List<ContainerModelSerializer.Block> snapshot(Model model) {
+        INDArray params = model.params();
+        INDArray updaterState = null;
+        if (model instanceof MultiLayerNetwork && ((MultiLayerNetwork) model).getUpdater() != null) {
+            updaterState = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
+        } else if (model instanceof ComputationGraph && ((ComputationGraph) model).getUpdater() != null) {
+            updaterState = ((ComputationGraph) model).getUpdater().getStateViewArray();
+        }
+
+        List<ContainerModelSerializer.Block> blocks = params == null
+                ? Collections.<ContainerModelSerializer.Block>emptyList()
+                : ContainerModelSerializer.parameterBlocks(model, params.length());
+
+        boolean external = false;
+        if(deltaSaving && deltaBase != null){
+            for(ContainerModelSerializer.Block block : blocks){
+                if(ContainerModelSerializer.PARAMS_BLOCK.equals(block.getName())){
+                    //Params aren't split by layers for this model
+                    break;
+                }
+                if(getLayer(model, block.getName()) instanceof FrozenLayer){
+                    block.setPosition(ContainerModelSerializer.EXTERNAL);
+                    external = true;
+                }
+            }
+        }
+
+        // snapshots must outlive any workspace training is running in
+        try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+            paramsSnapshot = copyTo(paramsSnapshot, params, external ? blocks : null);
+            updaterSnapshot = copyTo(updaterSnapshot, updaterState, null);
+        }
+
+        Nd4j.getExecutioner().commit();
+        return blocks;
+    }
+
+    private static INDArray copyTo(INDArray snapshot, INDArray array, List<ContainerModelSerializer.Block> blocks) {
+        if(array == null || array.length() == 0){
+            return null;
+        }
+
+        if(snapshot == null || snapshot.length() != array.length()){
+            snapshot = Nd4j.create(1, array.length());
+        }
+
+        if(blocks == null){
+            snapshot.assign(array);
+        } else {
+            for(ContainerModelSerializer.Block block : blocks){
+                if(block.getPosition() == ContainerModelSerializer.EXTERNAL){
+                    continue;
+                }
+                long from = block.getArrayOffset();
+                long to = from + block.getLength();
+                snapshot.get(NDArrayIndex.point(0), NDArrayIndex.interval(from, to))
+                        .assign(array.get(NDArrayIndex.point(0), NDArrayIndex.interval(from, to)));
+            }
+        }
+        return snapshot;
+    }
+
+    private static Layer getLayer(Model model, String blockName){
+        if(model instanceof MultiLayerNetwork){
+            return ((MultiLayerNetwork) model).getLayer(Integer.parseInt(blockName));
+        } else {
+            return ((ComputationGraph) model).getLayer(blockName);
+        }
+    }
 
-        ModelSerializer.writeModel(model, new File(rootDir, c.getFilename()), true);
+    private static boolean hasFrozenLayers(Model model){
+        Layer[] layers = model instanceof MultiLayerNetwork ? ((MultiLayerNetwork) model).getLayers()
+                : ((ComputationGraph) model).getLayers();
+        for(Layer l : layers){
+            if(l instanceof FrozenLayer){
+                return true;
+            }
+        }
+        return false;
+    }
 
+    private synchronized ExecutorService writer(){
+        if(writer == null){
+            writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = Executors.defaultThreadFactory().newThread(r);
+                    t.setName("CheckpointListener writer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return writer;
+    }
+
+    /**
+     * Block until the checkpoint being written in background (if any) is complete.
+     * Should be called after training when async saving is used, otherwise the last checkpoint may be lost on exit.
+     *
+     * @throws RuntimeException if writing of the checkpoint has failed
+     */
+    public void flush(){
+        Future<?> f = pendingWrite;
+        if(f == null){
+            return;
+        }
+        try {
+            f.get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for checkpoint to be written", e);
+        } catch (ExecutionException e){
+            resetDeltaBaseIfMissing();
+            throw new RuntimeException("Error saving checkpoint", e.getCause());
+        } finally {
+            pendingWrite = null;
+        }
+    }
+
+    /**
+     * Renames completed temporary file to the checkpoint file, so partially written checkpoints are never visible
+     */
+    private File commitFile(File tmp, Checkpoint c) throws IOException {
+        File file = new File(rootDir, c.getFilename());
+        try {
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e){
+            // atomic move isn't supported by every file system
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    private static void deleteTmp(File tmp){
+        if(tmp.exists() && !tmp.delete()){
+            log.warn("Unable to delete temporary checkpoint file: {}", tmp.getPath());
+        }
+    }
+
+    private boolean isWritePending(){
+        Future<?> f = pendingWrite;
+        return f != null && !f.isDone();
+    }
+
+    private void checkpointWritten(Checkpoint c) {
+        this.lastCheckpoint = c;
         String s = c.toFileString();
         write(s + "\n", checkpointRecordFile);
 
@@ -203,7 +467,6 @@ public class CheckpointListener extends BaseTrainingListener {
             log.info("Model checkpoint saved: epoch {}, iteration {}, path: {}", c.getEpoch(), c.getIteration(),
                     new File(rootDir, c.getFilename()).getPath() );
         }
-        this.lastCheckpoint = c;
 
 
         //Finally: determine if we should delete some old models...
@@ -212,6 +475,13 @@ public class CheckpointListener extends BaseTrainingListener {
         } else if(keepMode == KeepMode.LAST){
             List<Checkpoint> checkpoints = availableCheckpoints();
             Iterator<Checkpoint> iter = checkpoints.iterator();
+            while(iter.hasNext()){
+                //Base of delta checkpoints is always kept
+                if(iter.next().getFilename().equals(deltaBase)){
+                    iter.remove();
+                }
+            }
+            iter = checkpoints.iterator();
             while(checkpoints.size() > keepLast){
                 Checkpoint toRemove = iter.next();
                 File f = getFileForCheckpoint(toRemove);
@@ -224,9 +494,12 @@ public class CheckpointListener extends BaseTrainingListener {
                 if(cp.getCheckpointNum() > 0 && (cp.getCheckpointNum()+1) % keepEvery == 0){
                     //One of the "every M to keep" models
                     continue;
-                } else if(cp.getCheckpointNum() > lastCheckpointNum - keepLast ){        //Example: latest is 5, keep last 2 -> keep checkpoints 4 and 5
+                } else if(cp.getCheckpointNum() > c.getCheckpointNum() - keepLast ){        //Example: latest is 5, keep last 2 -> keep checkpoints 4 and 5
                     //One of last N to keep
                     continue;
+                } else if(cp.getFilename().equals(deltaBase)){
+                    //Base of delta checkpoints
+                    continue;
                 }
                 //Otherwise: delete file
                 File f = getFileForCheckpoint(cp);
@@ -235,13 +508,8 @@ public class CheckpointListener extends BaseTrainingListener {
         }
     }
 
-    private static void setFileName(Checkpoint c){
-        String filename = getFileName(c.getCheckpointNum(), c.getModelType());
-        c.setFilename(filename);
-    }
-
-    private static String getFileName(int checkpointNum, String modelType){
-        return "checkpoint_" + checkpointNum + "_" + modelType + ".zip";
+    private static String getFileName(int checkpointNum, String modelType, boolean container){
+        return "checkpoint_" + checkpointNum + "_" + modelType + (container ? EXTENSIONS[1] : EXTENSIONS[0]);
     }
 
     private static String write(String str, File f){
@@ -347,9 +615,11 @@ public class CheckpointListener extends BaseTrainingListener {
         }
         File f = null;
         for(String s : MODEL_TYPES){
-            f = new File(rootDir, getFileName(checkpointNum, s));
-            if(f.exists()){
-                return f;
+            for(String ext : EXTENSIONS){
+                f = new File(rootDir, "checkpoint_" + checkpointNum + "_" + s + ext);
+                if(f.exists()){
+                    return f;
+                }
             }
         }
         throw new IllegalStateException("Model file for checkpoint " + checkpointNum + " does not exist");
@@ -419,6 +689,8 @@ public class CheckpointListener extends BaseTrainingListener {
         private Long saveEveryAmount;
         private TimeUnit saveEveryUnit;
         private boolean saveEverySinceLast;
+        private boolean asyncSaving;
+        private boolean deltaSaving;
 
         /**
          * @param rootDir Root directory to save models to
@@ -545,6 +817,28 @@ public class CheckpointListener extends BaseTrainingListener {
             return this;
         }
 
+        /**
+         * If true, checkpoint files are written by background thread: training thread is only blocked while params and
+         * updater state are copied. Default: false
+         *
+         * @param asyncSaving Whether checkpoints should be written asynchronously
+         */
+        public Builder asyncSaving(boolean asyncSaving){
+            this.asyncSaving = asyncSaving;
+            return this;
+        }
+
+        /**
+         * If true, parameters of frozen layers are saved only once, in the first checkpoint, and all subsequent
+         * checkpoints refer to it. First checkpoint is never deleted then. Default: false
+         *
+         * @param deltaSaving Whether only changed layers should be saved
+         */
+        public Builder deltaSaving(boolean deltaSaving){
+            this.deltaSaving = deltaSaving;
+            return this;
+        }
+
         public CheckpointListener build(){
             if(saveEveryNEpochs == null && saveEveryAmount == null && saveEveryNIterations == null){
                 throw new IllegalStateException("Cannot construct listener: no models will be saved (must use at least" +
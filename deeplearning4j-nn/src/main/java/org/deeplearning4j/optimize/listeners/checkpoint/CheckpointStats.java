@@ -0,0 +1,60 @@
+package org.deeplearning4j.optimize.listeners.checkpoint;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cumulative counters for {@link CheckpointListener}. All times are in nanoseconds.
+ */
+@Getter
+public class CheckpointStats {
+    private final AtomicLong checkpoints = new AtomicLong(0);
+
+    // time training thread was blocked by checkpoints: snapshot + waiting for previous write in async mode
+    private final AtomicLong stallTime = new AtomicLong(0);
+    private final AtomicLong maxStallTime = new AtomicLong(0);
+
+    // time spent on writing checkpoint files, and their total size
+    private final AtomicLong writeTime = new AtomicLong(0);
+    private final AtomicLong writtenBytes = new AtomicLong(0);
+
+    protected void recordStall(long nanos) {
+        checkpoints.incrementAndGet();
+        stallTime.addAndGet(nanos);
+
+        long max;
+        while (nanos > (max = maxStallTime.get()) && !maxStallTime.compareAndSet(max, nanos));
+    }
+
+    protected void recordWrite(long nanos, long bytes) {
+        writeTime.addAndGet(nanos);
+        writtenBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @return average write throughput, in megabytes per second
+     */
+    public double getWriteThroughput() {
+        long time = writeTime.get();
+        return time == 0 ? 0.0 : (writtenBytes.get() / (1024.0 * 1024.0)) / (time / 1e9);
+    }
+
+    public void reset() {
+        checkpoints.set(0);
+        stallTime.set(0);
+        maxStallTime.set(0);
+        writeTime.set(0);
+        writtenBytes.set(0);
+    }
+
+    @Override
+    public String toString() {
+        long count = checkpoints.get();
+        return "CheckpointStats(checkpoints: " + count + "; stall: "
+                        + TimeUnit.NANOSECONDS.toMillis(count == 0 ? 0 : stallTime.get() / count) + " ms avg, "
+                        + TimeUnit.NANOSECONDS.toMillis(maxStallTime.get()) + " ms max; write: "
+                        + String.format("%.1f", getWriteThroughput()) + " MB/s)";
+    }
+}
@@ -0,0 +1,106 @@
+package org.deeplearning4j.optimize.listeners.profiler;
+
+import java.io.Serializable;
+
+/**
+ * A low overhead histogram of durations (in nanoseconds), with power-of-two bucket boundaries: i.e., bucket i holds
+ * values in range [2^i, 2^(i+1)). Recording a value is O(1) with no allocation; percentiles are approximate (within
+ * a factor of 2), while count, mean, min and max are exact.
+ */
+public class LatencyHistogram implements Serializable {
+
+    private static final int NUM_BUCKETS = 64;
+
+    private final long[] buckets = new long[NUM_BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * @param nanos Duration to record, in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos)]++;
+        count++;
+        sum += nanos;
+        min = Math.min(min, nanos);
+        max = Math.max(max, nanos);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Sum of all recorded durations, in nanoseconds
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return Mean duration in nanoseconds, or 0 if no values have been recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0.0 : sum / (double) count;
+    }
+
+    /**
+     * Approximate percentile: the upper bound of the bucket containing the percentile, limited to the maximum
+     * recorded value
+     *
+     * @param percentile Percentile, in range 0 to 100
+     * @return Approximate duration at the given percentile, in nanoseconds
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percentile / 100.0);
+        target = Math.max(1, Math.min(count, target));
+        long cumulative = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            cumulative += buckets[i];
+            if (cumulative >= target) {
+                long upper = (i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1);
+                return Math.max(getMin(), Math.min(upper, max));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Add all values recorded in the other histogram to this histogram
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package org.deeplearning4j.optimize.listeners.profiler;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Profiling statistics for a single layer (or graph vertex), as collected by {@link LayerProfilerListener}
+ */
+@Data
+public class LayerProfile implements Serializable {
+
+    private final String name;
+    private final int index;
+    private final String type;
+    private final LatencyHistogram forward = new LatencyHistogram();
+    private final LatencyHistogram backward = new LatencyHistogram();
+    /** Total bytes allocated by this layer, for each workspace ID */
+    private final Map<String, Long> workspaceBytes = new LinkedHashMap<>();
+    /** Sum and count of the ratio norm2(update) / norm2(parameters), over all parameters of the layer */
+    private double updateRatioSum;
+    private long updateRatioCount;
+
+    public LayerProfile(String name, int index, String type) {
+        this.name = name;
+        this.index = index;
+        this.type = type;
+    }
+
+    protected void addWorkspaceBytes(String workspaceId, long bytes) {
+        if (workspaceId == null || bytes <= 0) {
+            return;
+        }
+        Long current = workspaceBytes.get(workspaceId);
+        workspaceBytes.put(workspaceId, current == null ? bytes : current + bytes);
+    }
+
+    protected void addUpdateRatio(double ratio) {
+        updateRatioSum += ratio;
+        updateRatioCount++;
+    }
+
+    /**
+     * @return Mean ratio of norm2(parameter update) / norm2(parameters), or NaN if not available (i.e., layer has no
+     * parameters)
+     */
+    public double getMeanUpdateRatio() {
+        return updateRatioCount == 0 ? Double.NaN : updateRatioSum / updateRatioCount;
+    }
+
+    /**
+     * @return Total bytes allocated in all workspaces by this layer
+     */
+    public long getTotalWorkspaceBytes() {
+        long sum = 0;
+        for (Long l : workspaceBytes.values()) {
+            sum += l;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,374 @@
+package org.deeplearning4j.optimize.listeners.profiler;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.LayerProfilingListener;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * LayerProfilerListener records per-layer (or per-vertex, for ComputationGraph) profiling information during
+ * training:<br>
+ * - Forward and backward pass time for each layer, aggregated in {@link LatencyHistogram}s<br>
+ * - Bytes allocated in each workspace, during the forward and backward pass of each layer<br>
+ * - Parameter update magnitude for each layer: norm2(update) / norm2(parameters), averaged over all parameters of
+ *   the layer<br>
+ * - Time spent in the updater (and the remainder of the iteration) for the whole network: the updater is applied to
+ *   blocks of parameters spanning multiple layers, and hence isn't timed per layer<br>
+ * <br>
+ * Profiles are keyed by layer name: for MultiLayerNetwork, the default layer names are "layer0", "layer1", etc.<br>
+ * Results can be obtained as a table ({@link #getTable()}, also logged every {@code reportFrequency} iterations),
+ * as {@link LayerProfile} objects ({@link #getProfiles()}), or as a Chrome trace JSON file
+ * ({@link #exportChromeTrace(File)}; open via chrome://tracing), if trace recording is enabled.
+ * Subclasses can export the profiles elsewhere (for example, to a StatsStorage) by overriding
+ * {@link #onReport(Model, int)}.
+ * <p>
+ * The listener should be used with a single model, from a single thread.
+ */
+@Slf4j
+public class LayerProfilerListener implements LayerProfilingListener, Serializable {
+
+    private final int reportFrequency;
+    private final int updateRatioFrequency;
+    private final int maxTraceEvents;
+
+    private final Map<String, LayerProfile> profiles = new LinkedHashMap<>();
+    private final LatencyHistogram updater = new LatencyHistogram();
+    private final LatencyHistogram iteration = new LatencyHistogram();
+    private final List<TraceEvent> traceEvents = new ArrayList<>();
+    private transient long gradientCalcNanos = -1;
+    private transient long iterationStartNanos = -1;
+    private long traceStartNanos = System.nanoTime();
+    private int iterationCount;
+
+    protected LayerProfilerListener(Builder builder) {
+        this.reportFrequency = builder.reportFrequency;
+        this.updateRatioFrequency = builder.updateRatioFrequency;
+        this.maxTraceEvents = builder.maxTraceEvents;
+    }
+
+    /**
+     * Create a profiler that logs the profiling table every reportFrequency iterations, without trace recording
+     *
+     * @param reportFrequency Frequency (in iterations) for logging the table. 0 to disable logging
+     */
+    public LayerProfilerListener(int reportFrequency) {
+        this(new Builder().reportFrequency(reportFrequency));
+    }
+
+    @Override
+    public void onLayerForward(Model model, int index, String name, String type, long startNanos,
+                    long durationNanos, String workspaceId, long workspaceBytes) {
+        LayerProfile p = getOrCreate(index, name, type);
+        p.getForward().record(durationNanos);
+        p.addWorkspaceBytes(workspaceId, workspaceBytes);
+        addTraceEvent(name, "forward", startNanos, durationNanos);
+        if (iterationStartNanos < 0) {
+            iterationStartNanos = startNanos;
+        }
+    }
+
+    @Override
+    public void onLayerBackward(Model model, int index, String name, String type, long startNanos,
+                    long durationNanos, String workspaceId, long workspaceBytes) {
+        LayerProfile p = getOrCreate(index, name, type);
+        p.getBackward().record(durationNanos);
+        p.addWorkspaceBytes(workspaceId, workspaceBytes);
+        addTraceEvent(name, "backward", startNanos, durationNanos);
+        if (iterationStartNanos < 0) {
+            iterationStartNanos = startNanos;
+        }
+    }
+
+    @Override
+    public void onGradientCalculation(Model model) {
+        gradientCalcNanos = System.nanoTime();
+    }
+
+    @Override
+    public void iterationDone(Model model, int iteration, int epoch) {
+        long now = System.nanoTime();
+        if (gradientCalcNanos > 0) {
+            updater.record(now - gradientCalcNanos);
+            addTraceEvent("updater", "updater", gradientCalcNanos, now - gradientCalcNanos);
+        }
+        if (iterationStartNanos > 0) {
+            this.iteration.record(now - iterationStartNanos);
+        }
+        gradientCalcNanos = -1;
+        iterationStartNanos = -1;
+        iterationCount++;
+
+        if (updateRatioFrequency > 0 && iterationCount % updateRatioFrequency == 0) {
+            recordUpdateRatios(model);
+        }
+
+        if (reportFrequency > 0 && iterationCount % reportFrequency == 0) {
+            onReport(model, iteration);
+        }
+    }
+
+    /**
+     * Called every reportFrequency iterations. By default, logs the profiling table
+     *
+     * @param model     Model
+     * @param iteration Current iteration number
+     */
+    protected void onReport(Model model, int iteration) {
+        log.info("Layer profile at iteration {}:\n{}", iteration, getTable());
+    }
+
+    /**
+     * @return Profiling statistics for each layer/vertex, in order of first execution
+     */
+    public Map<String, LayerProfile> getProfiles() {
+        return Collections.unmodifiableMap(profiles);
+    }
+
+    /**
+     * @return Histogram of the updater time (from the end of gradient calculation to the end of the iteration)
+     */
+    public LatencyHistogram getUpdaterHistogram() {
+        return updater;
+    }
+
+    /**
+     * Reset all recorded statistics and trace events
+     */
+    public void reset() {
+        profiles.clear();
+        updater.reset();
+        iteration.reset();
+        traceEvents.clear();
+        traceStartNanos = System.nanoTime();
+    }
+
+    /**
+     * @return Table of the per-layer statistics: times are in milliseconds, and percentiles are approximate
+     */
+    public String getTable() {
+        long totalNanos = 0;
+        for (LayerProfile p : profiles.values()) {
+            totalNanos += p.getForward().getSum() + p.getBackward().getSum();
+        }
+        totalNanos += updater.getSum();
+
+        StringBuilder sb = new StringBuilder();
+        String header = String.format("%-25s %-22s %10s %10s %10s %10s %10s %7s %14s %12s", "Layer", "Type",
+                        "Fwd mean", "Fwd p90", "Bwd mean", "Bwd p90", "Total", "%", "WS bytes/iter", "Update ratio");
+        sb.append(header).append("\n");
+        for (LayerProfile p : profiles.values()) {
+            long layerTotal = p.getForward().getSum() + p.getBackward().getSum();
+            long n = Math.max(1, Math.max(p.getForward().getCount(), p.getBackward().getCount()));
+            sb.append(String.format("%-25s %-22s %10.3f %10.3f %10.3f %10.3f %10.1f %6.1f%% %14d %12.2e",
+                            truncate(p.getName(), 25), truncate(p.getType(), 22), ms(p.getForward().getMean()),
+                            ms(p.getForward().getPercentile(90)), ms(p.getBackward().getMean()),
+                            ms(p.getBackward().getPercentile(90)), ms(layerTotal), percent(layerTotal, totalNanos),
+                            p.getTotalWorkspaceBytes() / n, p.getMeanUpdateRatio())).append("\n");
+        }
+        sb.append(String.format("%-25s %-22s %10.3f %10.3f %10s %10s %10.1f %6.1f%%", "(updater)", "",
+                        ms(updater.getMean()), ms(updater.getPercentile(90)), "", "", ms(updater.getSum()),
+                        percent(updater.getSum(), totalNanos))).append("\n");
+        sb.append("Iterations: ").append(iterationCount).append(", mean iteration time (ms): ")
+                        .append(String.format("%.3f", ms(iteration.getMean())));
+        return sb.toString();
+    }
+
+    /**
+     * Export the recorded trace events as a Chrome trace JSON file (see chrome://tracing). Trace events are recorded
+     * only if maxTraceEvents > 0 in the builder
+     *
+     * @param file File to write to
+     */
+    public void exportChromeTrace(@NonNull File file) throws IOException {
+        List<Map<String, Object>> events = new ArrayList<>(traceEvents.size());
+        for (TraceEvent e : traceEvents) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("name", e.name);
+            m.put("cat", e.category);
+            m.put("ph", "X");
+            m.put("ts", (e.startNanos - traceStartNanos) / 1000.0);
+            m.put("dur", e.durationNanos / 1000.0);
+            m.put("pid", 1);
+            m.put("tid", e.threadId);
+            events.add(m);
+        }
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("traceEvents", events);
+        trace.put("displayTimeUnit", "ms");
+        new ObjectMapper().writeValue(file, trace);
+    }
+
+    /**
+     * @return Number of trace events recorded so far
+     */
+    public int getNumTraceEvents() {
+        return traceEvents.size();
+    }
+
+    protected void recordUpdateRatios(Model model) {
+        Gradient g = model.gradient();
+        if (g == null) {
+            return;
+        }
+        Map<String, INDArray> updates = g.gradientForVariable();
+        if (model instanceof MultiLayerNetwork) {
+            //Gradients are keyed by layer index for MultiLayerNetwork, profiles by layer name
+            Layer[] layers = ((MultiLayerNetwork) model).getLayers();
+            for (int i = 0; i < layers.length; i++) {
+                recordUpdateRatios(layers[i], profileKey(i, layers[i].conf().getLayer().getLayerName()),
+                                String.valueOf(i), updates);
+            }
+        } else if (model instanceof ComputationGraph) {
+            for (Layer l : ((ComputationGraph) model).getLayers()) {
+                String name = l.conf().getLayer().getLayerName();
+                recordUpdateRatios(l, profileKey(l.getIndex(), name), name, updates);
+            }
+        }
+    }
+
+    private void recordUpdateRatios(Layer layer, String key, String prefix, Map<String, INDArray> updates) {
+        LayerProfile p = profiles.get(key);
+        if (p == null) {
+            return;
+        }
+        for (Map.Entry<String, INDArray> e : layer.paramTable().entrySet()) {
+            INDArray update = updates.get(prefix + "_" + e.getKey());
+            if (update == null) {
+                continue;
+            }
+            double paramNorm = e.getValue().norm2Number().doubleValue();
+            if (paramNorm > 0) {
+                p.addUpdateRatio(update.norm2Number().doubleValue() / paramNorm);
+            }
+        }
+    }
+
+    /**
+     * Profiles are keyed by layer name (MultiLayerNetwork: "layer0", "layer1", ... unless set; ComputationGraph:
+     * vertex name), or by index if no name is available
+     */
+    private static String profileKey(int index, String name) {
+        return (name == null ? String.valueOf(index) : name);
+    }
+
+    private LayerProfile getOrCreate(int index, String name, String type) {
+        String key = profileKey(index, name);
+        LayerProfile p = profiles.get(key);
+        if (p == null) {
+            p = new LayerProfile(key, index, type);
+            profiles.put(key, p);
+        }
+        return p;
+    }
+
+    private void addTraceEvent(String name, String category, long startNanos, long durationNanos) {
+        if (traceEvents.size() < maxTraceEvents) {
+            traceEvents.add(new TraceEvent(name, category, startNanos, durationNanos,
+                            Thread.currentThread().getId()));
+        }
+    }
+
+    private static double ms(double nanos) {
+        return nanos / 1e6;
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0.0 : 100.0 * part / total;
+    }
+
+    private static String truncate(String s, int length) {
+        if (s == null) {
+            return "";
+        }
+        return s.length() <= length ? s : s.substring(0, length - 2) + "..";
+    }
+
+    @Override
+    public void onEpochStart(Model model) {
+        //No op
+    }
+
+    @Override
+    public void onEpochEnd(Model model) {
+        //No op
+    }
+
+    @Override
+    public void onForwardPass(Model model, List<INDArray> activations) {
+        //No op
+    }
+
+    @Override
+    public void onForwardPass(Model model, Map<String, INDArray> activations) {
+        //No op
+    }
+
+    @Override
+    public void onBackwardPass(Model model) {
+        //No op
+    }
+
+    private static class TraceEvent implements Serializable {
+        private final String name;
+        private final String category;
+        private final long startNanos;
+        private final long durationNanos;
+        private final long threadId;
+
+        private TraceEvent(String name, String category, long startNanos, long durationNanos, long threadId) {
+            this.name = name;
+            this.category = category;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.threadId = threadId;
+        }
+    }
+
+    public static class Builder {
+        private int reportFrequency = 0;
+        private int updateRatioFrequency = 10;
+        private int maxTraceEvents = 0;
+
+        /**
+         * @param reportFrequency Frequency (in iterations) for reporting (by default: logging) the profiling table.
+         *                        0 to disable. Default: 0
+         */
+        public Builder reportFrequency(int reportFrequency) {
+            this.reportFrequency = reportFrequency;
+            return this;
+        }
+
+        /**
+         * @param updateRatioFrequency Frequency (in iterations) for calculating the parameter update ratios. 0 to
+         *                             disable. Default: 10
+         */
+        public Builder updateRatioFrequency(int updateRatioFrequency) {
+            this.updateRatioFrequency = updateRatioFrequency;
+            return this;
+        }
+
+        /**
+         * @param maxTraceEvents Maximum number of trace events (one per layer forward/backward pass) to record for
+         *                       {@link #exportChromeTrace(File)}. 0 to disable trace recording. Default: 0
+         */
+        public Builder maxTraceEvents(int maxTraceEvents) {
+            this.maxTraceEvents = maxTraceEvents;
+            return this;
+        }
+
+        public LayerProfilerListener build() {
+            return new LayerProfilerListener(this);
+        }
+    }
+}
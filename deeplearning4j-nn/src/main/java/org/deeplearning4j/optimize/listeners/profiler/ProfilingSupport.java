@@ -0,0 +1,96 @@
+package org.deeplearning4j.optimize.listeners.profiler;
+
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.optimize.api.LayerProfilingListener;
+import org.deeplearning4j.optimize.api.TrainingListener;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.memory.abstracts.Nd4jWorkspace;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Utility methods used by {@link org.deeplearning4j.nn.multilayer.MultiLayerNetwork} and
+ * {@link org.deeplearning4j.nn.graph.ComputationGraph} to notify {@link LayerProfilingListener} instances.
+ * These are no-ops (other than a single check) when no profiling listeners are present.
+ */
+public class ProfilingSupport {
+
+    private ProfilingSupport() {}
+
+    /**
+     * @param listeners Training listeners of the model
+     * @return The profiling listeners, or null if there are none
+     */
+    public static List<LayerProfilingListener> getProfilingListeners(Collection<TrainingListener> listeners) {
+        if (listeners == null || listeners.isEmpty()) {
+            return null;
+        }
+        List<LayerProfilingListener> out = null;
+        for (TrainingListener l : listeners) {
+            if (l instanceof LayerProfilingListener) {
+                if (out == null) {
+                    out = new ArrayList<>(1);
+                }
+                out.add((LayerProfilingListener) l);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return Number of bytes allocated so far in the current cycle of the current workspace, or 0 if no workspace is
+     * open
+     */
+    public static long currentWorkspaceAllocations() {
+        MemoryWorkspace ws = Nd4j.getMemoryManager().getCurrentWorkspace();
+        if (ws instanceof Nd4jWorkspace) {
+            return ((Nd4jWorkspace) ws).getThisCycleAllocations();
+        }
+        return 0;
+    }
+
+    /**
+     * @return ID of the current workspace, or null if no workspace is open
+     */
+    public static String currentWorkspaceId() {
+        MemoryWorkspace ws = Nd4j.getMemoryManager().getCurrentWorkspace();
+        return ws == null ? null : ws.getId();
+    }
+
+    /**
+     * Notify the profiling listeners of the forward pass of one layer or vertex
+     *
+     * @param startNanos       Start time, as per {@link System#nanoTime()}
+     * @param startAllocations Workspace allocations at the start, as per {@link #currentWorkspaceAllocations()}
+     */
+    public static void notifyForward(List<LayerProfilingListener> listeners, Model model, int index, String name,
+                    Object layer, long startNanos, long startAllocations) {
+        long duration = System.nanoTime() - startNanos;
+        long bytes = Math.max(0, currentWorkspaceAllocations() - startAllocations);
+        String wsId = currentWorkspaceId();
+        String type = layer.getClass().getSimpleName();
+        for (LayerProfilingListener l : listeners) {
+            l.onLayerForward(model, index, name, type, startNanos, duration, wsId, bytes);
+        }
+    }
+
+    /**
+     * Notify the profiling listeners of the backward pass of one layer or vertex
+     *
+     * @param startNanos       Start time, as per {@link System#nanoTime()}
+     * @param startAllocations Workspace allocations at the start, as per {@link #currentWorkspaceAllocations()}
+     */
+    public static void notifyBackward(List<LayerProfilingListener> listeners, Model model, int index, String name,
+                    Object layer, long startNanos, long startAllocations) {
+        long duration = System.nanoTime() - startNanos;
+        long bytes = Math.max(0, currentWorkspaceAllocations() - startAllocations);
+        String wsId = currentWorkspaceId();
+        String type = layer.getClass().getSimpleName();
+        for (LayerProfilingListener l : listeners) {
+            l.onLayerBackward(model, index, name, type, startNanos, duration, wsId, bytes);
+        }
+    }
+}
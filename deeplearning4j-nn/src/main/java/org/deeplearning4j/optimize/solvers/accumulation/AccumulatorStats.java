@@ -0,0 +1,61 @@
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cumulative counters for EncodedGradientsAccumulator, summed over all workers. All times are in nanoseconds.
+ */
+@Getter
+public class AccumulatorStats {
+    // time spent in MessageHandler.broadcastUpdates(): encoding & handing off updates
+    private final AtomicLong encodeTime = new AtomicLong(0);
+    private final AtomicLong encodeCalls = new AtomicLong(0);
+
+    // time spent on decoding received messages
+    private final AtomicLong decodeTime = new AtomicLong(0);
+    private final AtomicLong decodedMessages = new AtomicLong(0);
+
+    // size of received messages, per party copy
+    private final AtomicLong messages = new AtomicLong(0);
+    private final AtomicLong messageBytes = new AtomicLong(0);
+    private final AtomicLong maxMessageBytes = new AtomicLong(0);
+
+    // time spent waiting at barriers, or for registration of consumers
+    private final AtomicLong waitTime = new AtomicLong(0);
+
+    protected void recordMessage(long bytes) {
+        messages.incrementAndGet();
+        messageBytes.addAndGet(bytes);
+
+        long max;
+        while (bytes > (max = maxMessageBytes.get()) && !maxMessageBytes.compareAndSet(max, bytes));
+    }
+
+    public void reset() {
+        encodeTime.set(0);
+        encodeCalls.set(0);
+        decodeTime.set(0);
+        decodedMessages.set(0);
+        messages.set(0);
+        messageBytes.set(0);
+        maxMessageBytes.set(0);
+        waitTime.set(0);
+    }
+
+    private static long average(long value, long count) {
+        return count == 0 ? 0 : value / count;
+    }
+
+    @Override
+    public String toString() {
+        return "AccumulatorStats(encode: " + TimeUnit.NANOSECONDS.toMicros(average(encodeTime.get(), encodeCalls.get()))
+                        + " us/call; decode: "
+                        + TimeUnit.NANOSECONDS.toMicros(average(decodeTime.get(), decodedMessages.get()))
+                        + " us/message; message size: " + average(messageBytes.get(), messages.get())
+                        + " bytes avg, " + maxMessageBytes.get() + " bytes max; wait: "
+                        + TimeUnit.NANOSECONDS.toMillis(waitTime.get()) + " ms total)";
+    }
+}
@@ -0,0 +1,60 @@
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import org.deeplearning4j.util.ThreadUtils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waiting strategy for short waits between worker threads: caller spins first, then yields, and parks afterwards.
+ * Parked threads are woken up via wakeAll(), so waits don't have fixed sleep granularity.
+ *
+ * PLEASE NOTE: park is always bounded, so wakeAll() call racing with backoff() call can't cause lost wakeup,
+ * it just delays waiting thread for PARK_NANOS at most.
+ */
+public class BackoffWaiter {
+    protected static final int SPINS = 128;
+    protected static final int YIELDS = 64;
+    protected static final long PARK_NANOS = 100000L;
+
+    private final Queue<Thread> parked = new ConcurrentLinkedQueue<>();
+
+    /**
+     * This method should be called by waiting thread on each unsuccessful check of its condition
+     *
+     * @param iteration number of unsuccessful checks so far
+     */
+    public void backoff(int iteration) {
+        if (iteration < SPINS)
+            return;
+
+        if (iteration < SPINS + YIELDS) {
+            Thread.yield();
+            return;
+        }
+
+        Thread current = Thread.currentThread();
+        parked.add(current);
+        try {
+            LockSupport.parkNanos(this, PARK_NANOS);
+        } finally {
+            parked.remove(current);
+        }
+
+        // we must check the interrupted status, otherwise we may end up spinning without breaking out on an interruption
+        if (current.isInterrupted())
+            throw new ThreadUtils.UncheckedInterruptedException();
+    }
+
+    /**
+     * This method wakes up all currently parked threads. Should be called after waited condition was changed.
+     */
+    public void wakeAll() {
+        if (parked.isEmpty())
+            return;
+
+        for (Thread thread : parked)
+            LockSupport.unpark(thread);
+    }
+}
@@ -0,0 +1,100 @@
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for single consumer, used to hand off encoded updates to worker.
+ *
+ * PLEASE NOTE: offer()/put() calls must be serialized by caller, i.e. with external lock.
+ * poll() must be called by single consumer thread only. clear() is supposed to be called when there's no activity.
+ */
+public class BoundedRingBuffer<T> {
+    @Getter
+    private final int capacity;
+    private final AtomicReferenceArray<T> buffer;
+
+    // next position to be read
+    private final AtomicLong head = new AtomicLong(0);
+    // next position to be written
+    private final AtomicLong tail = new AtomicLong(0);
+
+    private final BackoffWaiter waiter = new BackoffWaiter();
+
+    public BoundedRingBuffer(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity should be positive value");
+
+        this.capacity = capacity;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * This method adds element to the buffer if there's free slot
+     *
+     * @param element
+     * @return false if buffer is full
+     */
+    public boolean offer(T element) {
+        long t = tail.get();
+        if (t - head.get() >= capacity)
+            return false;
+
+        buffer.lazySet((int) (t % capacity), element);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * This method adds element to the buffer, waiting for free slot if necessary
+     *
+     * @param element
+     * @throws InterruptedException
+     */
+    public void put(T element) throws InterruptedException {
+        int iteration = 0;
+        while (!offer(element)) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            waiter.backoff(iteration++);
+        }
+    }
+
+    /**
+     * This method returns next element, or null if buffer is empty
+     *
+     * @return
+     */
+    public T poll() {
+        long h = head.get();
+        if (h >= tail.get())
+            return null;
+
+        int position = (int) (h % capacity);
+        T element = buffer.get(position);
+        buffer.lazySet(position, null);
+        head.lazySet(h + 1);
+
+        // producer might be waiting for free slot
+        waiter.wakeAll();
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * This method removes all elements from the buffer
+     */
+    public void clear() {
+        while (poll() != null);
+    }
+}
@@ -5,7 +5,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.exception.DL4JInvalidConfigException;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.optimize.api.StepFunction;
-import org.deeplearning4j.util.ThreadUtils;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 import org.nd4j.linalg.api.memory.enums.*;
@@ -18,15 +17,17 @@ import org.nd4j.linalg.util.AtomicThrowable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This GradientsAccumulator is suited for CUDA backend.
  *
+ * Encoded updates are handed off to each party via bounded ring buffer, and workers wait for each other
+ * with spin-then-yield-then-park strategy instead of fixed sleeps.
+ *
  * @author raver119@gmail.com
  */
 @Slf4j
@@ -35,7 +36,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     protected int parties;
     protected MessageHandler handler;
-    protected List<BlockingQueue<INDArray>> messages = new ArrayList<>();
+    protected List<BoundedRingBuffer<INDArray>> messages = new ArrayList<>();
     protected List<MemoryWorkspace> workspaces = new ArrayList<>();
     protected List<ReentrantLock> locks = new ArrayList<>();
 
@@ -47,17 +48,19 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     protected Queue<INDArray> externalSource;
 
-    protected AtomicBoolean isFirst = new AtomicBoolean(false);
-    protected AtomicBoolean isDone = new AtomicBoolean(true);
-
+    // barrier state: number of threads arrived, and generation, which is incremented once all threads arrived
     protected AtomicInteger barrier = new AtomicInteger(0);
-    protected AtomicInteger secondary = new AtomicInteger(0);
+    protected AtomicLong generation = new AtomicLong(0);
+    protected final BackoffWaiter waiter = new BackoffWaiter();
+
     protected AtomicBoolean registered = new AtomicBoolean(false);
     protected AtomicBoolean bypassMode = new AtomicBoolean(false);
     protected final AtomicInteger currentConsumers = new AtomicInteger(0);
 
     protected final AtomicThrowable throwable = new AtomicThrowable();
 
+    protected final AccumulatorStats stats = new AccumulatorStats();
+
     protected boolean isDebug = false;
     protected final boolean relocatable;
 
@@ -107,7 +110,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         int curDev = Nd4j.getAffinityManager().getDeviceForCurrentThread();
 
         for (int i = 0; i < parties; i++) {
-            messages.add(new LinkedBlockingQueue<INDArray>(queueSize));
+            messages.add(new BoundedRingBuffer<INDArray>(queueSize));
 
             // we don't want device index to step out of boundaries here
             int cDevice = numDevices > 1 ? i % numDevices : 0;
@@ -164,11 +167,13 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
             if (isDebug)
                 log.info("Master thread locks at RC");
 
+            long time = System.nanoTime();
+            int iteration = 0;
             while (registered.get()) {
-                ThreadUtils.uncheckedSleep(1);
-                if (throwable.isTriggered())
-                    throw new RuntimeException(throwable.get());
+                checkThrowable();
+                waiter.backoff(iteration++);
             }
+            stats.getWaitTime().addAndGet(System.nanoTime() - time);
 
             if (isDebug)
                 log.info("Master thread unlocks at RC");
@@ -180,6 +185,21 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
         currentConsumers.set(numConsumers);
         registered.set(true);
+        waiter.wakeAll();
+    }
+
+    /**
+     * This method returns cumulative metrics of this accumulator
+     *
+     * @return
+     */
+    public AccumulatorStats getStats() {
+        return stats;
+    }
+
+    protected void checkThrowable() {
+        if (throwable.isTriggered())
+            throw new RuntimeException(throwable.get());
     }
 
     protected void synchronize(int consumers) {
@@ -188,8 +208,10 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     protected void synchronize(int consumers, boolean finalLock) {
         if (consumers == 1 || bypassMode.get()) {
-            if (finalLock)
+            if (finalLock) {
                 registered.set(false);
+                waiter.wakeAll();
+            }
 
             return;
         }
@@ -197,36 +219,25 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         if (isDebug)
             log.info("thread {} locking at CGA: {}", Thread.currentThread().getId(), currentConsumers.get());
 
-        // any first thread entering this block - will reset this field to false
-        isDone.compareAndSet(true, false);
+        // generation must be read before arrival, so last thread can't release us before we start waiting
+        long currentGeneration = generation.get();
 
-        // last thread will set isDone to true
         if (barrier.incrementAndGet() == consumers) {
-            secondary.set(0);
+            // last thread resets barrier and releases everyone else
             barrier.set(0);
-            isFirst.set(false);
-            isDone.set(true);
-        } else {
-            // just wait, till last thread will set isDone to true
-            while (!isDone.get()) {
-                ThreadUtils.uncheckedSleep(1);
-                if (throwable.isTriggered())
-                    throw new RuntimeException(throwable.get());
-            }
-        }
-
-        // second lock here needed only to ensure we won't get overrun over isDone flag
-        if (secondary.incrementAndGet() == consumers) {
             if (finalLock)
                 registered.set(false);
 
-            isFirst.set(true);
+            generation.incrementAndGet();
+            waiter.wakeAll();
         } else {
-            while (!isFirst.get()) {
-                ThreadUtils.uncheckedSleep(1);
-                if (throwable.isTriggered())
-                    throw new RuntimeException(throwable.get());
+            long time = System.nanoTime();
+            int iteration = 0;
+            while (generation.get() == currentGeneration) {
+                checkThrowable();
+                waiter.backoff(iteration++);
             }
+            stats.getWaitTime().addAndGet(System.nanoTime() - time);
         }
 
         if (isDebug)
@@ -234,6 +245,27 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     }
 
+    /**
+     * This method decodes given message into updates array
+     *
+     * @param compressed
+     * @param updates
+     */
+    protected void decode(INDArray compressed, INDArray updates) {
+        long time = System.nanoTime();
+
+        int encoding = compressed.data().getInt(3);
+        if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
+            Nd4j.getExecutioner().thresholdDecode(compressed, updates);
+        else if (encoding == ThresholdCompression.BITMAP_ENCODING)
+            Nd4j.getExecutioner().bitmapDecode(compressed, updates);
+        else
+            throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
+
+        stats.getDecodeTime().addAndGet(System.nanoTime() - time);
+        stats.getDecodedMessages().incrementAndGet();
+    }
+
     /**
      * This method applies accumulated updates via given StepFunction
      *
@@ -248,17 +280,10 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
             //updates.assign(0.0);
 
             int cnt = 0;
-            while (!messages.get(index.get()).isEmpty()) {
-                INDArray compressed = messages.get(index.get()).poll();
-
-                int encoding = compressed.data().getInt(3);
-                if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                    Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                    Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                else
-                    throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
-
+            BoundedRingBuffer<INDArray> queue = messages.get(index.get());
+            INDArray compressed;
+            while ((compressed = queue.poll()) != null) {
+                decode(compressed, updates);
                 cnt++;
             }
 
@@ -275,24 +300,10 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
                         try (MemoryWorkspace workspace = Nd4j.getWorkspaceManager()
                                         .getAndActivateWorkspace(appliedConfiguration, "CGA_APPLY")) {
                             INDArray compressed_copy = compressed.unsafeDuplication(true);
-
-                            int encoding = compressed.data().getInt(3);
-                            if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                                Nd4j.getExecutioner().thresholdDecode(compressed_copy, updates);
-                            else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                                Nd4j.getExecutioner().bitmapDecode(compressed_copy, updates);
-                            else
-                                throw new DL4JInvalidConfigException(
-                                                "Unknown compression header received: " + encoding);
+                            decode(compressed_copy, updates);
                         }
                     } else {
-                        int encoding = compressed.data().getInt(3);
-                        if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                            Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                        else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                            Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                        else
-                            throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
+                        decode(compressed, updates);
                     }
                     cnt++;
                     ent++;
@@ -332,17 +343,10 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
             //updates.assign(0.0);
 
             int cnt = 0;
-            while (!messages.get(index.get()).isEmpty()) {
-                INDArray compressed = messages.get(index.get()).poll();
-
-                int encoding = compressed.data().getInt(3);
-                if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                    Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                    Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                else
-                    throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
-
+            BoundedRingBuffer<INDArray> queue = messages.get(index.get());
+            INDArray compressed;
+            while ((compressed = queue.poll()) != null) {
+                decode(compressed, updates);
                 cnt++;
             }
 
@@ -360,23 +364,10 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
                         try (MemoryWorkspace workspace = Nd4j.getWorkspaceManager()
                                         .getAndActivateWorkspace(appliedConfiguration, "CGA_APPLY")) {
                             INDArray compressed_copy = compressed.unsafeDuplication(true);
-                            int encoding = compressed.data().getInt(3);
-                            if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                                Nd4j.getExecutioner().thresholdDecode(compressed_copy, updates);
-                            else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                                Nd4j.getExecutioner().bitmapDecode(compressed_copy, updates);
-                            else
-                                throw new DL4JInvalidConfigException(
-                                                "Unknown compression header received: " + encoding);
+                            decode(compressed_copy, updates);
                         }
                     } else {
-                        int encoding = compressed.data().getInt(3);
-                        if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                            Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                        else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                            Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                        else
-                            throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
+                        decode(compressed, updates);
                     }
                     cnt++;
                     ent++;
@@ -453,18 +444,24 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
                 log.info("thread {} locking at Register", Thread.currentThread().getId());
 
             // block until ParallelWrapper sends us message about number of threads in this cycle
-            if (!bypassMode.get())
+            if (!bypassMode.get() && !registered.get()) {
+                long time = System.nanoTime();
+                int iteration = 0;
                 while (!registered.get()) {
-                    ThreadUtils.uncheckedSleep(1);
-                    if (throwable.isTriggered())
-                        throw new RuntimeException(throwable.get());
+                    checkThrowable();
+                    waiter.backoff(iteration++);
                 }
+                stats.getWaitTime().addAndGet(System.nanoTime() - time);
+            }
 
             if (isDebug)
                 log.info("thread {} unlocking at Register", Thread.currentThread().getId());
 
             // propagate changes & modify accumulator
+            long time = System.nanoTime();
             handler.broadcastUpdates(accumulator.get());
+            stats.getEncodeTime().addAndGet(System.nanoTime() - time);
+            stats.getEncodeCalls().incrementAndGet();
 
             // we're blocking here, untill all done broadcasting updates
             synchronize(currentConsumers.get());
@@ -484,6 +481,9 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
     @Override
     public void receiveUpdate(INDArray array) {
         try {
+            // one encoded message, regardless of the number of consumers it's replicated to
+            stats.recordMessage(array.data().length() * Nd4j.sizeOfDataType(array.data().dataType()));
+
             // we're replicating COMPRESSED MESSAGES, decompression will be thread-local
             for (int i = 0; i < parties; i++) {
                 // we don't want to have same workspace to be accessible by 2 different threads for now
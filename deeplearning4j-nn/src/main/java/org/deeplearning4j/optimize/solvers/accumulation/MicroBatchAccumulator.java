@@ -0,0 +1,127 @@
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Serializable;
+
+/**
+ * Accumulates the gradients and scores of consecutive micro-batches in a single network (unlike
+ * {@link GradientsAccumulator}, which shares updates between workers), such that the updater is applied once per
+ * N micro-batches. Used by MultiLayerNetwork and ComputationGraph when gradient accumulation is enabled: see
+ * {@link org.deeplearning4j.nn.conf.MultiLayerConfiguration.Builder#gradientAccumulationSteps(int)}.<br>
+ * <br>
+ * Gradients are summed over the micro-batches rather than averaged: the (unnormalized) gradients calculated by
+ * backprop are divided by the minibatch size in the updater, so dividing by the total number of examples in all
+ * micro-batches (see {@link #getEffectiveBatchSize(int)}) gives exactly the same gradient as a single minibatch
+ * containing all of the examples - including when masks are used. Scores are averaged over the micro-batches,
+ * weighted by the number of examples in each.<br>
+ * <br>
+ * Usage, for each micro-batch: the network calls {@link #merge(INDArray, double, int)} at the end of each gradient
+ * calculation, which adds the gradients of any previous micro-batches to the current gradients. For all but the last
+ * micro-batch of each step, the fit method then calls {@link #store(INDArray, double, int)} instead of applying the
+ * updater.
+ */
+public class MicroBatchAccumulator implements Serializable {
+
+    private final int steps;
+
+    private transient INDArray gradientSum;
+    private double scoreSum;
+    private int examples;
+    private int microBatches;
+    private int effectiveBatchSize = -1;
+
+    /**
+     * @param steps Number of micro-batches per optimizer step. Must be 2 or more
+     */
+    public MicroBatchAccumulator(int steps) {
+        if (steps < 2) {
+            throw new IllegalArgumentException("Number of gradient accumulation steps must be 2 or more, got " + steps);
+        }
+        this.steps = steps;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @param hasNext Whether more micro-batches are available in the current epoch
+     * @return True if the updater should be applied after the current micro-batch: i.e., it completes N
+     * micro-batches, or is the last micro-batch of the epoch
+     */
+    public boolean isStepComplete(boolean hasNext) {
+        return !hasNext || microBatches + 1 >= steps;
+    }
+
+    /**
+     * Add the gradients of the previous micro-batches (if any) to the gradients of the current micro-batch
+     *
+     * @param gradients Flattened gradients of the current micro-batch: modified in-place
+     * @param score     Score of the current micro-batch
+     * @param batchSize Number of examples in the current micro-batch
+     * @return Score for all micro-batches so far, including the current one
+     */
+    public double merge(INDArray gradients, double score, int batchSize) {
+        if (examples == 0) {
+            effectiveBatchSize = -1;
+            return score;
+        }
+        if (gradients != null) {
+            gradients.addi(gradientSum);
+        }
+        effectiveBatchSize = examples + batchSize;
+        return (scoreSum + score * batchSize) / effectiveBatchSize;
+    }
+
+    /**
+     * Store the merged gradients and score (as per {@link #merge(INDArray, double, int)}) after a micro-batch that
+     * doesn't complete the step
+     *
+     * @param gradients   Merged flattened gradients
+     * @param score       Merged score
+     * @param numExamples Total number of examples in the merged micro-batches: i.e., the network's batchSize()
+     */
+    public void store(INDArray gradients, double score, int numExamples) {
+        if (gradients != null) {
+            if (gradientSum == null || gradientSum.length() != gradients.length()) {
+                try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                    gradientSum = Nd4j.create(gradients.shape(), gradients.ordering());
+                }
+            }
+            gradientSum.assign(gradients);
+        }
+        scoreSum = score * numExamples;
+        examples = numExamples;
+        microBatches++;
+        effectiveBatchSize = -1;
+    }
+
+    /**
+     * Clear the accumulated state. Called after the updater has been applied, and at the start of each fit call
+     */
+    public void reset() {
+        scoreSum = 0.0;
+        examples = 0;
+        microBatches = 0;
+        effectiveBatchSize = -1;
+    }
+
+    /**
+     * @param defaultBatchSize Minibatch size of the current input
+     * @return Total number of examples in the micro-batches merged by the last gradient calculation, or the default
+     * if no micro-batches were merged
+     */
+    public int getEffectiveBatchSize(int defaultBatchSize) {
+        return effectiveBatchSize > 0 ? effectiveBatchSize : defaultBatchSize;
+    }
+
+    /**
+     * @return Number of micro-batches accumulated (and not yet applied) so far
+     */
+    public int getNumMicroBatches() {
+        return microBatches;
+    }
+}
@@ -0,0 +1,756 @@
+package org.deeplearning4j.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.graph.vertex.GraphVertex;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.preprocessor.Normalizer;
+import org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Uncompressed container format for models, suited for large models and frequent checkpoints.
+ *
+ * File layout:
+ * - 64 bytes header: magic, version, byte order of data blocks, manifest length
+ * - manifest: model type, configuration JSON, data type, and table of blocks
+ * - data blocks, each aligned to 64 bytes: one block per layer with parameters, updater state, normalizer
+ *
+ * Parameter blocks are written straight from the flattened params view of the model, in parallel.
+ * On restore, blocks are copied from the memory-mapped file into the newly allocated params array, so no intermediate
+ * copies of parameters are created, and skipped blocks (i.e. updater state) aren't read at all.
+ *
+ * PLEASE NOTE: use {@link ModelSerializer} restore methods to load models, they handle both zip and container formats.
+ */
+@Slf4j
+public class ContainerModelSerializer {
+    public static final int MAGIC = 0x4D344C44; // "DL4M"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int ALIGNMENT = 64;
+
+    public static final String MULTI_LAYER_NETWORK = "MultiLayerNetwork";
+    public static final String COMPUTATION_GRAPH = "ComputationGraph";
+
+    public static final String PARAMS_BLOCK = "params";
+    public static final String UPDATER_BLOCK = "updaterState";
+    public static final String NORMALIZER_BLOCK = "normalizer";
+
+    // position of blocks stored in the base file
+    public static final long EXTERNAL = -1L;
+
+    // mapped regions & chunked conversions are done with this granularity
+    private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+    public enum BlockType {
+        PARAMS, UPDATER, NORMALIZER
+    }
+
+    /**
+     * Single data block of the container.
+     * For PARAMS and UPDATER blocks, length and arrayOffset are in elements; for NORMALIZER block length is in bytes.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Block {
+        private String name;
+        private BlockType type;
+        // position of block within the file
+        private long position;
+        private long length;
+        // offset of this block within flattened array it belongs to
+        private long arrayOffset;
+    }
+
+    /**
+     * Everything stored in the container except data blocks
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Manifest {
+        private String modelType;
+        private String configuration;
+        private DataBuffer.Type dataType;
+        private ByteOrder byteOrder;
+        private List<Block> blocks;
+        // file with external blocks, if any
+        private String base;
+
+        public List<Block> getBlocks(BlockType type) {
+            List<Block> result = new ArrayList<>();
+            for (Block block : blocks)
+                if (block.getType() == type)
+                    result.add(block);
+
+            return result;
+        }
+
+        public Block getBlock(String name) {
+            for (Block block : blocks)
+                if (block.getName().equals(name))
+                    return block;
+
+            return null;
+        }
+
+        public long getLength(BlockType type) {
+            long length = 0;
+            for (Block block : getBlocks(type))
+                length += block.getLength();
+
+            return length;
+        }
+    }
+
+    private ContainerModelSerializer() {}
+
+    protected static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * This method checks if given file is container model file
+     *
+     * @param file
+     * @return
+     */
+    public static boolean isContainer(@NonNull File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return false;
+
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+            return Integer.reverseBytes(dis.readInt()) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * This method writes given model into container file
+     *
+     * @param model model to save
+     * @param file file to write to
+     * @param saveUpdater whether to save the updater state or not
+     * @param normalizer normalizer to save (optional)
+     * @throws IOException
+     */
+    public static void write(@NonNull Model model, @NonNull File file, boolean saveUpdater, Normalizer<?> normalizer)
+            throws IOException {
+        INDArray updaterState = null;
+        if (saveUpdater && model instanceof MultiLayerNetwork && ((MultiLayerNetwork) model).getUpdater() != null)
+            updaterState = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
+        else if (saveUpdater && model instanceof ComputationGraph && ((ComputationGraph) model).getUpdater() != null)
+            updaterState = ((ComputationGraph) model).getUpdater().getStateViewArray();
+
+        byte[] normalizerBytes = null;
+        if (normalizer != null) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try {
+                NormalizerSerializer.getDefault().write(normalizer, bos);
+            } catch (Exception e) {
+                throw new IOException("Unable to serialize normalizer", e);
+            }
+            normalizerBytes = bos.toByteArray();
+        }
+
+        INDArray params = model.params();
+        List<Block> blocks = params == null ? Collections.<Block>emptyList() : parameterBlocks(model, params.length());
+        write(file, modelType(model), configuration(model), params, blocks, updaterState, normalizerBytes, null);
+    }
+
+    /**
+     * This method writes container file from given params and updater state, i.e. snapshot of the model taken earlier.
+     *
+     * PLEASE NOTE: param blocks with position set to {@link #EXTERNAL} aren't written, on restore they are read from
+     * the same blocks of the base file instead. Base file is expected to be located in the same directory.
+     *
+     * @param file file to write to
+     * @param modelType {@link #MULTI_LAYER_NETWORK} or {@link #COMPUTATION_GRAPH}
+     * @param json model configuration
+     * @param params flattened params of the model
+     * @param paramBlocks layout of params, as returned by {@link #parameterBlocks(Model, long)}
+     * @param updaterState updater state (optional)
+     * @param normalizer serialized normalizer (optional)
+     * @param base name of base file for external blocks (optional)
+     * @throws IOException
+     */
+    public static void write(@NonNull File file, @NonNull String modelType, @NonNull String json, INDArray params,
+            @NonNull List<Block> paramBlocks, INDArray updaterState, byte[] normalizer, String base)
+            throws IOException {
+        final INDArray paramsArray = hostArray(params);
+        final INDArray updaterArray = hostArray(updaterState);
+
+        DataBuffer.Type dataType = paramsArray != null ? paramsArray.data().dataType() : Nd4j.dataType();
+        int elementSize = paramsArray != null ? paramsArray.data().getElementSize() : Nd4j.sizeOfDataType();
+
+        // block positions are relative to the data section here, since its position depends on manifest length
+        List<Block> blocks = new ArrayList<>();
+        long position = 0;
+        for (Block paramBlock : paramBlocks) {
+            Block block = new Block(paramBlock.getName(), BlockType.PARAMS, paramBlock.getPosition(),
+                    paramBlock.getLength(), paramBlock.getArrayOffset());
+            blocks.add(block);
+
+            if (block.getPosition() == EXTERNAL) {
+                if (base == null)
+                    throw new ND4JIllegalStateException("Block [" + block.getName() + "] is external, but base file isn't set");
+                continue;
+            }
+
+            block.setPosition(position);
+            position = align(position + block.getLength() * elementSize);
+        }
+
+        if (updaterArray != null && updaterArray.length() > 0) {
+            blocks.add(new Block(UPDATER_BLOCK, BlockType.UPDATER, position, updaterArray.length(), 0));
+            position = align(position + updaterArray.length() * elementSize);
+        }
+
+        if (normalizer != null)
+            blocks.add(new Block(NORMALIZER_BLOCK, BlockType.NORMALIZER, position, normalizer.length, 0));
+
+        // manifest length doesn't depend on block positions, so it's serialized again once they are known
+        ByteOrder byteOrder = ByteOrder.nativeOrder();
+        Manifest descriptor = new Manifest(modelType, json, dataType, byteOrder, blocks, base);
+        long dataPosition = align(HEADER_SIZE + writeManifest(descriptor).length);
+        for (Block block : blocks)
+            if (block.getPosition() != EXTERNAL)
+                block.setPosition(block.getPosition() + dataPosition);
+
+        byte[] manifest = writeManifest(descriptor);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(byteOrder == ByteOrder.LITTLE_ENDIAN ? 0 : 1);
+        header.putInt(manifest.length);
+        header.clear();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            final FileChannel channel = raf.getChannel();
+            writeFully(channel, header, 0);
+            writeFully(channel, ByteBuffer.wrap(manifest), HEADER_SIZE);
+
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Block block : blocks) {
+                if (block.getPosition() == EXTERNAL)
+                    continue;
+
+                if (block.getType() == BlockType.PARAMS)
+                    tasks.add(writeTask(channel, paramsArray, block, elementSize));
+                else if (block.getType() == BlockType.UPDATER)
+                    tasks.add(writeTask(channel, updaterArray, block, elementSize));
+                else
+                    writeFully(channel, ByteBuffer.wrap(normalizer), block.getPosition());
+            }
+
+            invokeAll(tasks);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * This method returns model type, as stored in container manifest
+     */
+    public static String modelType(@NonNull Model model) {
+        if (model instanceof MultiLayerNetwork)
+            return MULTI_LAYER_NETWORK;
+        else if (model instanceof ComputationGraph)
+            return COMPUTATION_GRAPH;
+        else
+            throw new ND4JIllegalStateException("Unsupported model type: " + model.getClass().getSimpleName());
+    }
+
+    /**
+     * This method returns JSON configuration of the model
+     */
+    public static String configuration(@NonNull Model model) {
+        if (model instanceof MultiLayerNetwork)
+            return ((MultiLayerNetwork) model).getLayerWiseConfigurations().toJson();
+        else if (model instanceof ComputationGraph)
+            return ((ComputationGraph) model).getConfiguration().toJson();
+        else
+            throw new ND4JIllegalStateException("Unsupported model type: " + model.getClass().getSimpleName());
+    }
+
+    /**
+     * This method splits flattened params of the model into per-layer blocks, following params layout of the model.
+     * Blocks are named after layer index for MultiLayerNetwork, and after vertex name for ComputationGraph.
+     */
+    public static List<Block> parameterBlocks(Model model, long numParams) {
+        List<Block> blocks = new ArrayList<>();
+        long offset = 0;
+        if (model instanceof MultiLayerNetwork) {
+            Layer[] layers = ((MultiLayerNetwork) model).getLayers();
+            for (int i = 0; i < layers.length; i++) {
+                int n = layers[i].numParams();
+                if (n > 0)
+                    blocks.add(new Block(String.valueOf(i), BlockType.PARAMS, 0, n, offset));
+                offset += n;
+            }
+        } else {
+            ComputationGraph graph = (ComputationGraph) model;
+            GraphVertex[] vertices = graph.getVertices();
+            for (int idx : graph.topologicalSortOrder()) {
+                GraphVertex vertex = vertices[idx];
+                if (!vertex.hasLayer())
+                    continue;
+
+                int n = vertex.getLayer().numParams();
+                if (n > 0)
+                    blocks.add(new Block(vertex.getVertexName(), BlockType.PARAMS, 0, n, offset));
+                offset += n;
+            }
+        }
+
+        // that's not expected to happen, but we don't want to produce broken file in any case
+        if (offset != numParams) {
+            log.warn("Per-layer params don't match flattened params: {} vs {}, saving params as single block", offset,
+                    numParams);
+            return Collections.singletonList(new Block(PARAMS_BLOCK, BlockType.PARAMS, 0, numParams, 0));
+        }
+
+        return blocks;
+    }
+
+    /**
+     * This method makes sure array is available on host, and its buffer can be written out directly
+     */
+    protected static INDArray hostArray(INDArray array) {
+        if (array == null)
+            return null;
+
+        Nd4j.getExecutioner().commit();
+
+        // views, non-contiguous arrays and arrays with partially used buffers are copied
+        if (array.offset() != 0 || array.elementWiseStride() != 1 || array.data().length() != array.length())
+            array = array.dup('c');
+
+        Nd4j.getAffinityManager().ensureLocation(array, AffinityManager.Location.HOST);
+        return array;
+    }
+
+    protected static Callable<Void> writeTask(final FileChannel channel, final INDArray array, final Block block,
+            final int elementSize) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                long bytes = block.getLength() * elementSize;
+                long start = block.getArrayOffset() * elementSize;
+
+                if (start + bytes <= Integer.MAX_VALUE) {
+                    // zero-copy path: block is written straight from the params buffer
+                    ByteBuffer buffer = array.data().asNio().duplicate();
+                    buffer.limit((int) (start + bytes));
+                    buffer.position((int) start);
+                    writeFully(channel, buffer, block.getPosition());
+                } else {
+                    // direct buffer can't address this block, so it's written via chunked copies
+                    long from = block.getArrayOffset();
+                    long to = from + block.getLength();
+                    int chunkElements = CHUNK_SIZE / elementSize;
+                    long position = block.getPosition();
+                    for (long i = from; i < to; i += chunkElements) {
+                        long end = Math.min(to, i + chunkElements);
+                        INDArray chunk = array.get(NDArrayIndex.point(0), NDArrayIndex.interval(i, end)).dup('c');
+                        Nd4j.getAffinityManager().ensureLocation(chunk, AffinityManager.Location.HOST);
+                        ByteBuffer buffer = chunk.data().asNio().duplicate();
+                        buffer.limit((int) ((end - i) * elementSize));
+                        buffer.position(0);
+                        writeFully(channel, buffer, position);
+                        position += (end - i) * elementSize;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    protected static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    protected static byte[] writeManifest(Manifest manifest) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.writeUTF(manifest.getModelType());
+
+            // configuration can easily exceed 64k limit of writeUTF
+            byte[] json = manifest.getConfiguration().getBytes(StandardCharsets.UTF_8);
+            dos.writeInt(json.length);
+            dos.write(json);
+
+            dos.writeUTF(manifest.getDataType().name());
+            dos.writeUTF(manifest.getBase() == null ? "" : manifest.getBase());
+            dos.writeInt(manifest.getBlocks().size());
+            for (Block block : manifest.getBlocks()) {
+                dos.writeUTF(block.getName());
+                dos.writeByte(block.getType().ordinal());
+                dos.writeLong(block.getPosition());
+                dos.writeLong(block.getLength());
+                dos.writeLong(block.getArrayOffset());
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * This method reads manifest of the container file, without touching any data blocks
+     *
+     * @param file container file
+     * @return
+     * @throws IOException
+     */
+    public static Manifest readManifest(@NonNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return readManifest(raf.getChannel(), file);
+        }
+    }
+
+    protected static Manifest readManifest(FileChannel channel, File file) throws IOException {
+        if (channel.size() < HEADER_SIZE)
+            throw new ND4JIllegalStateException("File [" + file.getAbsolutePath() + "] isn't container model file");
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        header.clear();
+
+        if (header.getInt() != MAGIC)
+            throw new ND4JIllegalStateException("File [" + file.getAbsolutePath() + "] isn't container model file");
+
+        int version = header.getInt();
+        if (version != VERSION)
+            throw new ND4JIllegalStateException("Unsupported container model version: " + version);
+
+        ByteOrder byteOrder = header.getInt() == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        int manifestLength = header.getInt();
+        if (manifestLength < 0 || HEADER_SIZE + (long) manifestLength > channel.size())
+            throw new ND4JIllegalStateException("File [" + file.getAbsolutePath() + "] is truncated");
+
+        ByteBuffer manifest = ByteBuffer.allocate(manifestLength);
+        readFully(channel, manifest, HEADER_SIZE);
+
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(manifest.array()))) {
+            String modelType = dis.readUTF();
+
+            byte[] json = new byte[dis.readInt()];
+            dis.readFully(json);
+
+            DataBuffer.Type dataType = DataBuffer.Type.valueOf(dis.readUTF());
+            String base = dis.readUTF();
+            int numBlocks = dis.readInt();
+            List<Block> blocks = new ArrayList<>(numBlocks);
+            for (int i = 0; i < numBlocks; i++) {
+                blocks.add(new Block(dis.readUTF(), BlockType.values()[dis.readByte()], dis.readLong(), dis.readLong(),
+                        dis.readLong()));
+            }
+
+            return new Manifest(modelType, new String(json, StandardCharsets.UTF_8), dataType, byteOrder, blocks,
+                    base.isEmpty() ? null : base);
+        }
+    }
+
+    protected static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new EOFException("Unexpected end of file");
+            position += read;
+        }
+    }
+
+    /**
+     * This method restores MultiLayerNetwork from container file
+     *
+     * @param file container file
+     * @param loadUpdater whether to load the updater state or not. If false, updater block isn't read at all
+     * @return
+     * @throws IOException
+     */
+    public static MultiLayerNetwork restoreMultiLayerNetwork(@NonNull File file, boolean loadUpdater)
+            throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            Manifest manifest = readManifest(channel, file);
+
+            MultiLayerNetwork network =
+                    new MultiLayerNetwork(ModelSerializer.multiLayerConfigurationFromJson(manifest.getConfiguration()));
+            network.init(readArray(file, channel, manifest, BlockType.PARAMS), false);
+
+            if (loadUpdater) {
+                INDArray updaterState = readArray(file, channel, manifest, BlockType.UPDATER);
+                if (updaterState != null)
+                    network.getUpdater().setStateViewArray(network, updaterState, false);
+            }
+
+            return network;
+        }
+    }
+
+    /**
+     * This method restores ComputationGraph from container file
+     *
+     * @param file container file
+     * @param loadUpdater whether to load the updater state or not. If false, updater block isn't read at all
+     * @return
+     * @throws IOException
+     */
+    public static ComputationGraph restoreComputationGraph(@NonNull File file, boolean loadUpdater)
+            throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            Manifest manifest = readManifest(channel, file);
+
+            ComputationGraph graph =
+                    new ComputationGraph(ModelSerializer.computationGraphConfigurationFromJson(manifest.getConfiguration()));
+            graph.init(readArray(file, channel, manifest, BlockType.PARAMS), false);
+
+            if (loadUpdater) {
+                INDArray updaterState = readArray(file, channel, manifest, BlockType.UPDATER);
+                if (updaterState != null)
+                    graph.getUpdater().setStateViewArray(updaterState);
+            }
+
+            return graph;
+        }
+    }
+
+    /**
+     * This method restores normalizer from container file
+     *
+     * @param file container file
+     * @return normalizer, or null if file has no normalizer
+     * @throws IOException
+     */
+    public static <T extends Normalizer> T restoreNormalizer(@NonNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            Block block = readManifest(channel, file).getBlock(NORMALIZER_BLOCK);
+            if (block == null)
+                return null;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) block.getLength());
+            readFully(channel, buffer, block.getPosition());
+            try {
+                return NormalizerSerializer.getDefault().restore(new ByteArrayInputStream(buffer.array()));
+            } catch (Exception e) {
+                throw new IOException("Unable to restore normalizer", e);
+            }
+        }
+    }
+
+    /**
+     * This method reads parameters of single layer, without reading the rest of the model.
+     *
+     * @param file container file
+     * @param layerName layer index for MultiLayerNetwork, or vertex name for ComputationGraph
+     * @return row vector with layer parameters, or null if layer has no parameters
+     * @throws IOException
+     */
+    public static INDArray restoreLayerParams(@NonNull File file, @NonNull String layerName) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            Manifest manifest = readManifest(channel, file);
+            Block block = manifest.getBlock(layerName);
+            if (block == null || block.getType() != BlockType.PARAMS)
+                return null;
+
+            if (block.getPosition() == EXTERNAL)
+                return restoreLayerParams(baseFile(file, manifest), layerName);
+
+            INDArray array = Nd4j.create(1, (int) block.getLength());
+            readBlock(channel, manifest, block, array, 0);
+            Nd4j.getAffinityManager().tagLocation(array, AffinityManager.Location.HOST);
+            return array;
+        }
+    }
+
+    protected static File baseFile(File file, Manifest manifest) {
+        File base = new File(file.getAbsoluteFile().getParentFile(), manifest.getBase());
+        if (!base.isFile())
+            throw new ND4JIllegalStateException("Base file [" + base.getAbsolutePath() + "] of container ["
+                    + file.getAbsolutePath() + "] doesn't exist");
+        return base;
+    }
+
+    /**
+     * This method reads all blocks of given type into single flattened array, block by block in parallel.
+     * External blocks are read from the base file.
+     */
+    protected static INDArray readArray(File file, final FileChannel channel, final Manifest manifest, BlockType type)
+            throws IOException {
+        final List<Block> blocks = manifest.getBlocks(type);
+        if (blocks.isEmpty())
+            return null;
+
+        long length = manifest.getLength(type);
+        if (length > Integer.MAX_VALUE)
+            throw new ND4JIllegalStateException("Arrays with more than Integer.MAX_VALUE elements aren't supported");
+
+        final INDArray array = Nd4j.create(1, (int) length);
+
+        RandomAccessFile baseRaf = null;
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (final Block block : blocks) {
+                final FileChannel source;
+                final Manifest sourceManifest;
+                final Block sourceBlock;
+                if (block.getPosition() == EXTERNAL) {
+                    File base = baseFile(file, manifest);
+                    if (baseRaf == null)
+                        baseRaf = new RandomAccessFile(base, "r");
+
+                    source = baseRaf.getChannel();
+                    sourceManifest = readManifest(source, base);
+                    sourceBlock = sourceManifest.getBlock(block.getName());
+                    if (sourceBlock == null || sourceBlock.getPosition() == EXTERNAL
+                            || sourceBlock.getLength() != block.getLength())
+                        throw new ND4JIllegalStateException("Base file [" + base.getAbsolutePath()
+                                + "] doesn't contain block [" + block.getName() + "]");
+                } else {
+                    source = channel;
+                    sourceManifest = manifest;
+                    sourceBlock = block;
+                }
+
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        readBlock(source, sourceManifest, sourceBlock, array, block.getArrayOffset());
+                        return null;
+                    }
+                });
+            }
+            invokeAll(tasks);
+        } finally {
+            if (baseRaf != null)
+                baseRaf.close();
+        }
+
+        // array was filled on host side
+        Nd4j.getAffinityManager().tagLocation(array, AffinityManager.Location.HOST);
+        return array;
+    }
+
+    /**
+     * This method copies single block from mapped file into given array, starting at given element
+     */
+    protected static void readBlock(FileChannel channel, Manifest manifest, Block block, INDArray array, long offset)
+            throws IOException {
+        DataBuffer.Type sourceType = manifest.getDataType();
+        int sourceSize = sourceType == DataBuffer.Type.DOUBLE ? 8 : sourceType == DataBuffer.Type.FLOAT ? 4 : -1;
+        if (sourceSize < 0)
+            throw new ND4JIllegalStateException("Unsupported data type of container: " + sourceType);
+
+        DataBuffer target = array.data();
+        long targetBytes = (offset + block.getLength()) * target.getElementSize();
+        boolean direct = target.dataType() == sourceType && manifest.getByteOrder() == ByteOrder.nativeOrder()
+                && targetBytes <= Integer.MAX_VALUE;
+
+        ByteBuffer targetBuffer = direct ? target.asNio().duplicate() : null;
+
+        int chunkElements = CHUNK_SIZE / sourceSize;
+        for (long i = 0; i < block.getLength(); i += chunkElements) {
+            int elements = (int) Math.min(chunkElements, block.getLength() - i);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    block.getPosition() + i * sourceSize, (long) elements * sourceSize);
+            mapped.order(manifest.getByteOrder());
+
+            if (direct) {
+                // bulk copy from page cache straight into params buffer
+                targetBuffer.limit((int) ((offset + i + elements) * sourceSize));
+                targetBuffer.position((int) ((offset + i) * sourceSize));
+                targetBuffer.put(mapped);
+            } else {
+                // data type or byte order mismatch: values are converted chunk by chunk
+                INDArray chunk;
+                if (sourceType == DataBuffer.Type.DOUBLE) {
+                    DoubleBuffer doubles = mapped.asDoubleBuffer();
+                    double[] values = new double[elements];
+                    doubles.get(values);
+                    chunk = Nd4j.create(values, new int[] {1, elements});
+                } else {
+                    FloatBuffer floats = mapped.asFloatBuffer();
+                    float[] values = new float[elements];
+                    floats.get(values);
+                    chunk = Nd4j.create(values, new int[] {1, elements});
+                }
+
+                array.get(NDArrayIndex.point(0), NDArrayIndex.interval(offset + i, offset + i + elements))
+                        .assign(chunk);
+            }
+        }
+    }
+
+    protected static void invokeAll(List<Callable<Void>> tasks) throws IOException {
+        if (tasks.isEmpty())
+            return;
+
+        if (tasks.size() == 1) {
+            try {
+                tasks.get(0).call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            return;
+        }
+
+        int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService service = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = Executors.defaultThreadFactory().newThread(r);
+                thread.setName("ContainerModelSerializer thread " + thread.getId());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            for (Future<Void> future : service.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException)
+                        throw (IOException) e.getCause();
+                    if (e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) e.getCause();
+                    throw new IOException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for container IO");
+        } finally {
+            service.shutdownNow();
+        }
+    }
+}
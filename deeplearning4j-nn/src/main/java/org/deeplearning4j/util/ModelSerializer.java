@@ -169,6 +169,36 @@ public class ModelSerializer {
         zipfile.close();
     }
 
+    /**
+     * Write a model to a file, using uncompressed container format.
+     * Unlike {@link #writeModel(Model, File, boolean)}, parameters are written straight from the model, layer by layer
+     * and in parallel, and restored with memory-mapped reads. Restore methods of this class handle both formats.
+     *
+     * @param model the model to write
+     * @param file the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @throws IOException
+     * @see ContainerModelSerializer
+     */
+    public static void writeContainer(@NonNull Model model, @NonNull File file, boolean saveUpdater) throws IOException {
+        writeContainer(model, file, saveUpdater, null);
+    }
+
+    /**
+     * Write a model to a file, using uncompressed container format.
+     *
+     * @param model the model to write
+     * @param file the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @param dataNormalization the normalizer to save (optional)
+     * @throws IOException
+     * @see ContainerModelSerializer
+     */
+    public static void writeContainer(@NonNull Model model, @NonNull File file, boolean saveUpdater,
+            Normalizer<?> dataNormalization) throws IOException {
+        ContainerModelSerializer.write(model, file, saveUpdater, dataNormalization);
+    }
+
     /**
      * Load a multi layer network from a file
      *
@@ -190,6 +220,9 @@ public class ModelSerializer {
      */
     public static MultiLayerNetwork restoreMultiLayerNetwork(@NonNull File file, boolean loadUpdater)
             throws IOException {
+        if (ContainerModelSerializer.isContainer(file))
+            return ContainerModelSerializer.restoreMultiLayerNetwork(file, loadUpdater);
+
         ZipFile zipFile = new ZipFile(file);
 
         boolean gotConfig = false;
@@ -268,20 +301,7 @@ public class ModelSerializer {
         zipFile.close();
 
         if (gotConfig && gotCoefficients) {
-            MultiLayerConfiguration confFromJson;
-            try{
-               confFromJson = MultiLayerConfiguration.fromJson(json);
-            } catch (Exception e){
-                try{
-                    ComputationGraphConfiguration.fromJson(json);
-                } catch (Exception e2){
-                    //Invalid, and not a compgraph
-                    throw new RuntimeException("Error deserializing JSON MultiLayerConfiguration. Saved model JSON is" +
-                            " not a valid MultiLayerConfiguration");
-                }
-                throw new RuntimeException("Error deserializing JSON MultiLayerConfiguration. Saved model appears to be " +
-                        "a ComputationGraph - use ModelSerializer.restoreComputationGraph instead");
-            }
+            MultiLayerConfiguration confFromJson = multiLayerConfigurationFromJson(json);
             MultiLayerNetwork network = new MultiLayerNetwork(confFromJson);
             network.init(params, false);
 
@@ -511,6 +531,9 @@ public class ModelSerializer {
      * @throws IOException
      */
     public static ComputationGraph restoreComputationGraph(@NonNull File file, boolean loadUpdater) throws IOException {
+        if (ContainerModelSerializer.isContainer(file))
+            return ContainerModelSerializer.restoreComputationGraph(file, loadUpdater);
+
         ZipFile zipFile = new ZipFile(file);
 
         boolean gotConfig = false;
@@ -590,24 +613,7 @@ public class ModelSerializer {
         zipFile.close();
 
         if (gotConfig && gotCoefficients) {
-            ComputationGraphConfiguration confFromJson;
-            try{
-                confFromJson = ComputationGraphConfiguration.fromJson(json);
-                if(confFromJson.getNetworkInputs() == null && (confFromJson.getVertices() == null || confFromJson.getVertices().size() == 0)){
-                    //May be deserialized correctly, but mostly with null fields
-                    throw new RuntimeException("Invalid JSON - not a ComputationGraphConfiguration");
-                }
-            } catch (Throwable e){
-                try{
-                    MultiLayerConfiguration.fromJson(json);
-                } catch (Exception e2){
-                    //Invalid, and not a compgraph
-                    throw new RuntimeException("Error deserializing JSON ComputationGraphConfiguration. Saved model JSON is" +
-                            " not a valid ComputationGraphConfiguration");
-                }
-                throw new RuntimeException("Error deserializing JSON ComputationGraphConfiguration. Saved model appears to be " +
-                        "a MultiLayerNetwork - use ModelSerializer.restoreMultiLayerNetwork instead");
-            }
+            ComputationGraphConfiguration confFromJson = computationGraphConfigurationFromJson(json);
             ComputationGraph cg = new ComputationGraph(confFromJson);
             cg.init(params, false);
 
@@ -621,6 +627,49 @@ public class ModelSerializer {
                     + "], gotCoefficients: [" + gotCoefficients + "], gotUpdater: [" + gotUpdaterState + "]");
     }
 
+    /**
+     * This method parses MultiLayerConfiguration of the saved model, with meaningful message for ComputationGraph models
+     */
+    protected static MultiLayerConfiguration multiLayerConfigurationFromJson(String json) {
+        try{
+           return MultiLayerConfiguration.fromJson(json);
+        } catch (Exception e){
+            try{
+                ComputationGraphConfiguration.fromJson(json);
+            } catch (Exception e2){
+                //Invalid, and not a compgraph
+                throw new RuntimeException("Error deserializing JSON MultiLayerConfiguration. Saved model JSON is" +
+                        " not a valid MultiLayerConfiguration");
+            }
+            throw new RuntimeException("Error deserializing JSON MultiLayerConfiguration. Saved model appears to be " +
+                    "a ComputationGraph - use ModelSerializer.restoreComputationGraph instead");
+        }
+    }
+
+    /**
+     * This method parses ComputationGraphConfiguration of the saved model, with meaningful message for MultiLayerNetwork models
+     */
+    protected static ComputationGraphConfiguration computationGraphConfigurationFromJson(String json) {
+        try{
+            ComputationGraphConfiguration confFromJson = ComputationGraphConfiguration.fromJson(json);
+            if(confFromJson.getNetworkInputs() == null && (confFromJson.getVertices() == null || confFromJson.getVertices().size() == 0)){
+                //May be deserialized correctly, but mostly with null fields
+                throw new RuntimeException("Invalid JSON - not a ComputationGraphConfiguration");
+            }
+            return confFromJson;
+        } catch (Throwable e){
+            try{
+                MultiLayerConfiguration.fromJson(json);
+            } catch (Exception e2){
+                //Invalid, and not a compgraph
+                throw new RuntimeException("Error deserializing JSON ComputationGraphConfiguration. Saved model JSON is" +
+                        " not a valid ComputationGraphConfiguration");
+            }
+            throw new RuntimeException("Error deserializing JSON ComputationGraphConfiguration. Saved model appears to be " +
+                    "a MultiLayerNetwork - use ModelSerializer.restoreMultiLayerNetwork instead");
+        }
+    }
+
     /**
      *
      * @param model
@@ -688,6 +737,10 @@ public class ModelSerializer {
      * @param normalizer
      */
     public static void addNormalizerToModel(File f, Normalizer<?> normalizer) {
+        if (ContainerModelSerializer.isContainer(f))
+            throw new UnsupportedOperationException("Container model files can't be modified in place: "
+                    + "pass normalizer to ModelSerializer.writeContainer() instead");
+
         File tempFile = null;
         try {
             // copy existing model to temporary file
@@ -741,6 +794,14 @@ public class ModelSerializer {
      * @return
      */
     public static <T extends Normalizer> T restoreNormalizerFromFile(File file) {
+        if (ContainerModelSerializer.isContainer(file)) {
+            try {
+                return ContainerModelSerializer.restoreNormalizer(file);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         try (ZipFile zipFile = new ZipFile(file)) {
             ZipEntry norm = zipFile.getEntry(NORMALIZER_BIN);
 
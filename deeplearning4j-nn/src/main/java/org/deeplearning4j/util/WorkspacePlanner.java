@@ -0,0 +1,271 @@
+package org.deeplearning4j.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.memory.MemoryType;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.memory.abstracts.Nd4jWorkspace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * WorkspacePlanner uses the {@link NetworkMemoryReport} of a network to plan its workspace memory requirements ahead
+ * of time, instead of learning the workspace sizes over the first iterations (which causes reallocations at startup,
+ * and whenever the input size - such as the time series length - increases).<br>
+ * It can be used to:<br>
+ * (a) Pre-allocate the workspaces of the current thread for a declared maximum input shape and minibatch size:
+ *     see {@link #presize(MultiLayerNetwork, InputType, int, MemoryUseMode)}<br>
+ * (b) Choose the largest minibatch size that fits a given memory budget:
+ *     see {@link #maxMinibatchSize(NetworkMemoryReport, long, MemoryUseMode, CacheMode, DataBuffer.Type)}<br>
+ * (c) Compare the predicted workspace sizes with the actual (peak per iteration) memory use after training or
+ *     inference, to validate the memory estimates: see {@link #compareWithActual(Plan)}
+ * <p>
+ * The workspace sizes are estimated as follows: the external workspace holds the activations (plus activation
+ * gradients, for training), and the feed-forward workspace holds the working memory of the largest layer. With
+ * {@link WorkspaceMode#SINGLE}, everything is allocated in the external workspace.
+ * <p>
+ * PLEASE NOTE: workspaces are thread local; hence pre-sizing should be done from the thread that will be used for
+ * training or inference. The pre-sized workspaces can still grow (after reallocation), if the estimates turn out to
+ * be too low.
+ */
+@Slf4j
+public class WorkspacePlanner {
+
+    public static final String WORKSPACE_EXTERNAL = ComputationGraph.WORKSPACE_EXTERNAL;
+    public static final String WORKSPACE_FEED_FORWARD = ComputationGraph.WORKSPACE_FEED_FORWARD;
+
+    /**
+     * Default margin over the predicted sizes, for pre-allocation: 10%
+     */
+    public static final double DEFAULT_MARGIN = 0.1;
+
+    /**
+     * Planned workspace sizes for one network, input shape and minibatch size
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Plan {
+        private int minibatchSize;
+        private MemoryUseMode memoryUseMode;
+        private WorkspaceMode workspaceMode;
+        private long externalWorkspaceBytes;
+        private long feedForwardWorkspaceBytes;
+        private long totalMemoryBytes;
+    }
+
+    private WorkspacePlanner() {}
+
+    /**
+     * Calculate the workspace sizes for the given memory report
+     *
+     * @param report        Memory report for the network, for the maximum input shape
+     * @param minibatchSize Maximum minibatch size
+     * @param memoryUseMode Training or inference
+     * @param workspaceMode Workspace mode of the network, for the given use mode
+     * @return Planned workspace sizes
+     */
+    public static Plan plan(@NonNull NetworkMemoryReport report, int minibatchSize,
+                    @NonNull MemoryUseMode memoryUseMode, @NonNull WorkspaceMode workspaceMode) {
+        DataBuffer.Type dataType = Nd4j.dataType();
+        long activations = report.getMemoryBytes(MemoryType.ACTIVATIONS, minibatchSize, memoryUseMode,
+                        CacheMode.NONE, dataType);
+        if (memoryUseMode == MemoryUseMode.TRAINING) {
+            activations += report.getMemoryBytes(MemoryType.ACTIVATION_GRADIENTS, minibatchSize, memoryUseMode,
+                            CacheMode.NONE, dataType);
+        }
+        long working = report.getMemoryBytes(MemoryType.WORKING_MEMORY_FIXED, minibatchSize, memoryUseMode,
+                        CacheMode.NONE, dataType)
+                        + report.getMemoryBytes(MemoryType.WORKING_MEMORY_VARIABLE, minibatchSize, memoryUseMode,
+                                        CacheMode.NONE, dataType);
+        long total = report.getTotalMemoryBytes(minibatchSize, memoryUseMode, CacheMode.NONE, dataType);
+
+        switch (workspaceMode) {
+            case NONE:
+                return new Plan(minibatchSize, memoryUseMode, workspaceMode, 0, 0, total);
+            case SINGLE:
+                return new Plan(minibatchSize, memoryUseMode, workspaceMode, activations + working, 0, total);
+            case SEPARATE:
+                return new Plan(minibatchSize, memoryUseMode, workspaceMode, activations, working, total);
+            default:
+                throw new IllegalStateException("Unknown workspace mode: " + workspaceMode);
+        }
+    }
+
+    /**
+     * Pre-allocate the workspaces of the current thread, for the given network, maximum input shape and minibatch
+     * size
+     *
+     * @param network       Network to pre-size the workspaces for
+     * @param maxInputType  Maximum input shape (for example, maximum time series length for recurrent networks)
+     * @param minibatchSize Maximum minibatch size
+     * @param memoryUseMode Training or inference
+     * @return Planned workspace sizes
+     */
+    public static Plan presize(@NonNull MultiLayerNetwork network, @NonNull InputType maxInputType, int minibatchSize,
+                    @NonNull MemoryUseMode memoryUseMode) {
+        WorkspaceMode wsm = (memoryUseMode == MemoryUseMode.TRAINING
+                        ? network.getLayerWiseConfigurations().getTrainingWorkspaceMode()
+                        : network.getLayerWiseConfigurations().getInferenceWorkspaceMode());
+        Plan plan = plan(network.getLayerWiseConfigurations().getMemoryReport(maxInputType), minibatchSize,
+                        memoryUseMode, wsm);
+        applyToCurrentThread(plan, DEFAULT_MARGIN, MultiLayerNetwork.workspaceConfigurationExternal,
+                        network.getWorkspaceConfigurationFeedForward());
+        return plan;
+    }
+
+    /**
+     * Pre-allocate the workspaces of the current thread, for the given network, maximum input shapes and minibatch
+     * size
+     *
+     * @param graph         Network to pre-size the workspaces for
+     * @param minibatchSize Maximum minibatch size
+     * @param memoryUseMode Training or inference
+     * @param maxInputTypes Maximum input shapes (for example, maximum time series length for recurrent networks)
+     * @return Planned workspace sizes
+     */
+    public static Plan presize(@NonNull ComputationGraph graph, int minibatchSize,
+                    @NonNull MemoryUseMode memoryUseMode, @NonNull InputType... maxInputTypes) {
+        WorkspaceMode wsm = (memoryUseMode == MemoryUseMode.TRAINING
+                        ? graph.getConfiguration().getTrainingWorkspaceMode()
+                        : graph.getConfiguration().getInferenceWorkspaceMode());
+        Plan plan = plan(graph.getConfiguration().getMemoryReport(maxInputTypes), minibatchSize, memoryUseMode, wsm);
+        applyToCurrentThread(plan, DEFAULT_MARGIN, ComputationGraph.workspaceConfigurationExternal,
+                        ComputationGraph.workspaceConfigurationFeedForward);
+        return plan;
+    }
+
+    /**
+     * Pre-allocate the workspaces of the current thread according to the given plan. Existing workspaces with the
+     * same IDs are destroyed (and re-created with the planned size), unless they are currently open, in which case
+     * they are left unchanged.<br>
+     * The workspaces are created with the given configurations (i.e., the ones used by the network), with the initial
+     * size set to the planned size.
+     *
+     * @param plan              Planned workspace sizes
+     * @param margin            Fraction of additional memory to allocate, over the planned sizes. For example, 0.1 for
+     *                          10%
+     * @param externalConf      Configuration of the network's external workspace
+     * @param feedForwardConf   Configuration of the network's feed-forward workspace
+     */
+    public static void applyToCurrentThread(@NonNull Plan plan, double margin,
+                    @NonNull WorkspaceConfiguration externalConf, @NonNull WorkspaceConfiguration feedForwardConf) {
+        presizeWorkspace(WORKSPACE_EXTERNAL, (long) (plan.getExternalWorkspaceBytes() * (1.0 + margin)),
+                        externalConf);
+        presizeWorkspace(WORKSPACE_FEED_FORWARD, (long) (plan.getFeedForwardWorkspaceBytes() * (1.0 + margin)),
+                        feedForwardConf);
+    }
+
+    /**
+     * Find the largest minibatch size for which the network's total memory requirement, as estimated by the memory
+     * report, fits in the given memory budget.
+     *
+     * @param report        Memory report for the network, for the maximum input shape
+     * @param memoryBudget  Memory budget, in bytes
+     * @param memoryUseMode Training or inference
+     * @param cacheMode     Cache mode
+     * @param dataType      Data type of the network
+     * @return Largest minibatch size that fits the budget, or 0 if a minibatch size of 1 doesn't fit
+     */
+    public static int maxMinibatchSize(@NonNull NetworkMemoryReport report, long memoryBudget,
+                    @NonNull MemoryUseMode memoryUseMode, @NonNull CacheMode cacheMode,
+                    @NonNull DataBuffer.Type dataType) {
+        if (report.getTotalMemoryBytes(1, memoryUseMode, cacheMode, dataType) > memoryBudget) {
+            return 0;
+        }
+        //Total memory is non-decreasing in the minibatch size: exponential search for an upper bound, then bisection
+        int low = 1;
+        int high = 2;
+        while (report.getTotalMemoryBytes(high, memoryUseMode, cacheMode, dataType) <= memoryBudget) {
+            low = high;
+            if (high > Integer.MAX_VALUE / 2) {
+                return high;
+            }
+            high *= 2;
+        }
+        while (high - low > 1) {
+            int mid = low + (high - low) / 2;
+            if (report.getTotalMemoryBytes(mid, memoryUseMode, cacheMode, dataType) <= memoryBudget) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare the planned workspace sizes with the actual memory use of the workspaces of the current thread, and log
+     * the result. The actual memory use of a workspace is the peak amount of memory allocated within the workspace in
+     * any one cycle (i.e., iteration) so far - not the size of the workspace itself, which is at least the planned
+     * size after pre-sizing. Hence this should be called after at least one iteration.
+     *
+     * @param plan Planned workspace sizes
+     * @return Map of workspace ID to {predicted bytes, actual bytes}
+     */
+    public static Map<String, long[]> compareWithActual(@NonNull Plan plan) {
+        Map<String, long[]> out = new LinkedHashMap<>();
+        out.put(WORKSPACE_EXTERNAL, new long[] {plan.getExternalWorkspaceBytes(), actualSize(WORKSPACE_EXTERNAL)});
+        out.put(WORKSPACE_FEED_FORWARD,
+                        new long[] {plan.getFeedForwardWorkspaceBytes(), actualSize(WORKSPACE_FEED_FORWARD)});
+
+        for (Map.Entry<String, long[]> e : out.entrySet()) {
+            long predicted = e.getValue()[0];
+            long actual = e.getValue()[1];
+            log.info("Workspace {} ({}, minibatch size {}): predicted {} bytes, actual {} bytes ({})", e.getKey(),
+                            plan.getMemoryUseMode(), plan.getMinibatchSize(), predicted, actual,
+                            (predicted > 0 ? String.format("%.1f%% of predicted", 100.0 * actual / predicted)
+                                            : "no prediction"));
+        }
+        return out;
+    }
+
+    private static long actualSize(String id) {
+        if (!Nd4j.getWorkspaceManager().checkIfWorkspaceExists(id)) {
+            return 0;
+        }
+        MemoryWorkspace ws = Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(id);
+        if (ws instanceof Nd4jWorkspace) {
+            return ((Nd4jWorkspace) ws).getMaxCycleAllocations();
+        }
+        return 0;
+    }
+
+    private static void presizeWorkspace(String id, long bytes, WorkspaceConfiguration base) {
+        if (bytes <= 0) {
+            return;
+        }
+        if (Nd4j.getWorkspaceManager().checkIfWorkspaceExists(id)) {
+            MemoryWorkspace ws = Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(id);
+            if (ws.isScopeActive()) {
+                log.warn("Cannot pre-size workspace {}: workspace is currently open", id);
+                return;
+            }
+            if (ws.getCurrentSize() >= bytes) {
+                return;
+            }
+            Nd4j.getWorkspaceManager().destroyWorkspace(ws);
+        }
+
+        //Same policies as the network's workspace configuration, but with an initial size
+        WorkspaceConfiguration conf = WorkspaceConfiguration.builder().initialSize(bytes)
+                        .overallocationLimit(base.getOverallocationLimit()).policyReset(base.getPolicyReset())
+                        .policyAllocation(base.getPolicyAllocation()).policySpill(base.getPolicySpill())
+                        .policyLearning(base.getPolicyLearning()).policyMirroring(base.getPolicyMirroring())
+                        .cyclesBeforeInitialization(base.getCyclesBeforeInitialization()).build();
+        Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(conf, id);
+        log.debug("Pre-allocated workspace {} with {} bytes", id, bytes);
+    }
+}
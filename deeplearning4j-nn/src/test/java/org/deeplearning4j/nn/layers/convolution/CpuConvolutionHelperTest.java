@@ -0,0 +1,239 @@
+package org.deeplearning4j.nn.layers.convolution;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer.AlgoMode;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer.FwdAlgo;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.params.ConvolutionParamInitializer;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.optimize.api.IterationListener;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class CpuConvolutionHelperTest {
+
+    @Test
+    public void testMatchesBuiltIn() {
+        //kernel, padding, mode, input depth, output depth, height, width, algorithm
+        Object[][] configs = new Object[][] {
+                        {1, 0, ConvolutionMode.Truncate, 5, 7, 6, 5, FwdAlgo.IMPLICIT_GEMM},
+                        {1, 0, ConvolutionMode.Same, 3, 4, 5, 6, FwdAlgo.DIRECT},
+                        {3, 1, ConvolutionMode.Truncate, 4, 6, 7, 5, FwdAlgo.DIRECT},
+                        {3, 0, ConvolutionMode.Truncate, 3, 2, 6, 7, FwdAlgo.DIRECT},
+                        {3, 0, ConvolutionMode.Same, 3, 5, 7, 8, FwdAlgo.DIRECT},
+                        {3, 1, ConvolutionMode.Truncate, 4, 6, 7, 5, FwdAlgo.WINOGRAD},
+                        {3, 0, ConvolutionMode.Truncate, 3, 2, 6, 7, FwdAlgo.WINOGRAD},
+                        {3, 0, ConvolutionMode.Same, 5, 3, 5, 9, FwdAlgo.WINOGRAD},
+                        {3, 2, ConvolutionMode.Truncate, 2, 3, 4, 4, FwdAlgo.WINOGRAD}};
+
+        for (boolean hasBias : new boolean[] {true, false}) {
+            for (Object[] c : configs) {
+                int k = (Integer) c[0];
+                int p = (Integer) c[1];
+                ConvolutionMode cm = (ConvolutionMode) c[2];
+                int inDepth = (Integer) c[3];
+                int outDepth = (Integer) c[4];
+                int h = (Integer) c[5];
+                int w = (Integer) c[6];
+                FwdAlgo algo = (FwdAlgo) c[7];
+                String msg = "k=" + k + ", p=" + p + ", " + cm + ", " + algo + ", hasBias=" + hasBias;
+
+                Nd4j.getRandom().setSeed(12345);
+                Layer builtIn = createConvLayer(k, p, cm, inDepth, outDepth, hasBias, algo, false, false);
+                Layer cpu = createConvLayer(k, p, cm, inDepth, outDepth, hasBias, algo, true, false);
+                assertNull(((ConvolutionLayer) builtIn).helper);
+                assertTrue(((ConvolutionLayer) cpu).helper instanceof CpuConvolutionHelper);
+                cpu.setParams(builtIn.params().dup());
+                if (hasBias) {
+                    //Non-zero biases
+                    builtIn.getParam(ConvolutionParamInitializer.BIAS_KEY).assign(Nd4j.rand(1, outDepth));
+                    cpu.setParams(builtIn.params().dup());
+                }
+
+                INDArray input = Nd4j.rand(new int[] {3, inDepth, h, w});
+                INDArray outBuiltIn = builtIn.activate(input, false);
+                INDArray outCpu = cpu.activate(input, false);
+                assertArrayEquals(msg, outBuiltIn.shape(), outCpu.shape());
+                assertTrue(msg, outBuiltIn.equalsWithEps(outCpu, 1e-4));
+
+                INDArray epsilon = Nd4j.rand(outBuiltIn.shape());
+                builtIn.setInput(input);
+                cpu.setInput(input);
+                Pair<Gradient, INDArray> pBuiltIn = builtIn.backpropGradient(epsilon);
+                Pair<Gradient, INDArray> pCpu = cpu.backpropGradient(epsilon);
+
+                assertEquals(msg, pBuiltIn.getFirst().gradientForVariable().keySet(),
+                                pCpu.getFirst().gradientForVariable().keySet());
+                for (String key : pBuiltIn.getFirst().gradientForVariable().keySet()) {
+                    INDArray g1 = pBuiltIn.getFirst().getGradientFor(key);
+                    INDArray g2 = pCpu.getFirst().getGradientFor(key);
+                    assertTrue(msg + ", " + key, g1.equalsWithEps(g2, 1e-4));
+                }
+                assertArrayEquals(msg, input.shape(), pCpu.getSecond().shape());
+                assertTrue(msg, pBuiltIn.getSecond().equalsWithEps(pCpu.getSecond(), 1e-4));
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedFallsBack() {
+        //Stride 2 and 5x5 kernels are not supported by the helper: built-in implementation should be used
+        for (int k : new int[] {2, 5}) {
+            Nd4j.getRandom().setSeed(12345);
+            Layer builtIn = createConvLayer(k, 0, ConvolutionMode.Truncate, 2, 3, true, null, false, false);
+            Layer cpu = createConvLayer(k, 0, ConvolutionMode.Truncate, 2, 3, true, null, true, true);
+            cpu.setParams(builtIn.params().dup());
+            INDArray input = Nd4j.rand(new int[] {2, 2, 8, 8});
+            assertEquals(builtIn.activate(input, false), cpu.activate(input, false));
+        }
+    }
+
+    @Test
+    public void testEnabledByDefault() {
+        org.deeplearning4j.nn.conf.layers.ConvolutionLayer layerConf =
+                        new org.deeplearning4j.nn.conf.layers.ConvolutionLayer.Builder(3, 3).nIn(2).nOut(3).build();
+        assertTrue(layerConf.isCpuHelperEnabled());
+        assertTrue(layerConf.isCpuHelperAutotune());
+        assertTrue(layerConf.isCpuHelperAllowFallback());
+
+        Layer layer = createConvLayer(3, 1, ConvolutionMode.Same, 2, 3, true, null, true, true);
+        assertTrue(((ConvolutionLayer) layer).helper instanceof CpuConvolutionHelper);
+    }
+
+    @Test
+    public void testNoAutotuneUsesBuiltIn() {
+        //Without autotuning or a user specified algorithm, the built-in implementation is used
+        Nd4j.getRandom().setSeed(12345);
+        Layer builtIn = createConvLayer(3, 1, ConvolutionMode.Same, 4, 5, true, null, false, false);
+        Layer cpu = createConvLayer(3, 1, ConvolutionMode.Same, 4, 5, true, null, true, false);
+        cpu.setParams(builtIn.params().dup());
+        INDArray input = Nd4j.rand(new int[] {2, 4, 6, 6});
+        assertNull(((ConvolutionLayer) cpu).helper.preOutput(input, cpu.getParam("W"), cpu.getParam("b"),
+                        new int[] {3, 3}, new int[] {1, 1}, new int[] {1, 1}, AlgoMode.PREFER_FASTEST, null,
+                        ConvolutionMode.Same, new int[] {1, 1}));
+        assertEquals(builtIn.activate(input, false), cpu.activate(input, false));
+    }
+
+    @Test
+    public void testAutotune() {
+        try {
+            CpuConvolutionHelper.clearAutotuneCache();
+            Nd4j.getRandom().setSeed(12345);
+            Layer builtIn = createConvLayer(3, 1, ConvolutionMode.Same, 8, 8, true, null, false, false);
+            Layer cpu = createConvLayer(3, 1, ConvolutionMode.Same, 8, 8, true, null, true, true);
+            cpu.setParams(builtIn.params().dup());
+
+            INDArray input = Nd4j.rand(new int[] {2, 8, 10, 10});
+            for (int i = 0; i < 2; i++) {
+                assertTrue(builtIn.activate(input, false).equalsWithEps(cpu.activate(input, false), 1e-4));
+            }
+        } finally {
+            CpuConvolutionHelper.clearAutotuneCache();
+        }
+    }
+
+    @Test
+    @Ignore //Benchmark: run manually
+    public void benchmarkLayerShapes() {
+        //VGG16 and ResNet50 layer shapes: name, kernel, input depth, output depth, height/width
+        Object[][] shapes = new Object[][] {
+                        {"VGG16 conv1_2", 3, 64, 64, 224},
+                        {"VGG16 conv2_2", 3, 128, 128, 112},
+                        {"VGG16 conv3_2", 3, 256, 256, 56},
+                        {"VGG16 conv4_2", 3, 512, 512, 28},
+                        {"VGG16 conv5_2", 3, 512, 512, 14},
+                        {"ResNet50 res2a_branch2a", 1, 64, 64, 56},
+                        {"ResNet50 res2a_branch2b", 3, 64, 64, 56},
+                        {"ResNet50 res2a_branch2c", 1, 64, 256, 56},
+                        {"ResNet50 res3a_branch2b", 3, 128, 128, 28},
+                        {"ResNet50 res4a_branch2b", 3, 256, 256, 14},
+                        {"ResNet50 res4a_branch2c", 1, 256, 1024, 14},
+                        {"ResNet50 res5a_branch2b", 3, 512, 512, 7}};
+        int miniBatch = 8;
+        int warmup = 2;
+        int iterations = 5;
+
+        for (Object[] s : shapes) {
+            int k = (Integer) s[1];
+            int inDepth = (Integer) s[2];
+            int outDepth = (Integer) s[3];
+            int size = (Integer) s[4];
+            INDArray input = Nd4j.rand(new int[] {miniBatch, inDepth, size, size});
+
+            StringBuilder sb = new StringBuilder(String.valueOf(s[0])).append(": ");
+            FwdAlgo[] algos = k == 1 ? new FwdAlgo[] {FwdAlgo.GEMM, FwdAlgo.IMPLICIT_GEMM}
+                            : new FwdAlgo[] {FwdAlgo.GEMM, FwdAlgo.DIRECT, FwdAlgo.WINOGRAD};
+            for (FwdAlgo algo : algos) {
+                Layer layer = createConvLayer(k, k / 2, ConvolutionMode.Truncate, inDepth, outDepth, true, algo,
+                                algo != FwdAlgo.GEMM, false);
+                INDArray epsilon = Nd4j.rand(new int[] {miniBatch, outDepth, size, size});
+                for (int i = 0; i < warmup; i++) {
+                    fwdBwd(layer, input, epsilon);
+                }
+                long fwd = 0;
+                long bwd = 0;
+                for (int i = 0; i < iterations; i++) {
+                    long[] t = fwdBwd(layer, input, epsilon);
+                    fwd += t[0];
+                    bwd += t[1];
+                }
+                sb.append(String.format("%s fwd %.1f ms, fwd+bwd %.1f ms; ", algo, fwd / 1e6 / iterations,
+                                (fwd + bwd) / 1e6 / iterations));
+            }
+            log.info(sb.toString());
+        }
+    }
+
+    private static Layer createConvLayer(int kernel, int padding, ConvolutionMode cm, int nIn, int nOut,
+                    boolean hasBias, FwdAlgo algo, boolean cpuHelper, boolean autotune) {
+        //Helper failures should fail the tests, not silently use the built-in implementation
+        org.deeplearning4j.nn.conf.layers.ConvolutionLayer.Builder b =
+                        new org.deeplearning4j.nn.conf.layers.ConvolutionLayer.Builder(kernel, kernel)
+                                        .stride(kernel == 2 ? 2 : 1, kernel == 2 ? 2 : 1)
+                                        .padding(padding, padding).convolutionMode(cm).nIn(nIn).nOut(nOut)
+                                        .hasBias(hasBias).activation(Activation.TANH)
+                                        .weightInit(WeightInit.XAVIER).cudnnAllowFallback(false)
+                                        .cpuHelper(cpuHelper).cpuHelperAutotune(autotune)
+                                        .cpuHelperAllowFallback(false);
+        if (algo != null) {
+            b.cudnnAlgoMode(AlgoMode.USER_SPECIFIED).cudnnFwdMode(algo);
+        }
+        org.deeplearning4j.nn.conf.layers.ConvolutionLayer layerConf = b.build();
+        NeuralNetConfiguration conf = new NeuralNetConfiguration();
+        conf.setLayer(layerConf);
+
+        int numParams = layerConf.initializer().numParams(conf);
+        INDArray params = Nd4j.create(1, numParams);
+        Layer layer = layerConf.instantiate(conf, Collections.<IterationListener>emptyList(), 0, params, true);
+        layer.setBackpropGradientsViewArray(Nd4j.create(1, numParams));
+        return layer;
+    }
+
+    /**
+     * @return nanoseconds for inference forward pass, and for training forward + backward pass
+     */
+    private static long[] fwdBwd(Layer layer, INDArray input, INDArray epsilon) {
+        long start = System.nanoTime();
+        layer.activate(input, false);
+        long fwd = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        layer.setInput(input);
+        layer.backpropGradient(epsilon);
+        long bwd = System.nanoTime() - start;
+
+        return new long[] {fwd, bwd};
+    }
+}
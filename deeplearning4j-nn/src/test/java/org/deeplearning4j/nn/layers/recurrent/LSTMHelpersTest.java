@@ -0,0 +1,79 @@
+package org.deeplearning4j.nn.layers.recurrent;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.optimize.api.IterationListener;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Collections;
+
+public class LSTMHelpersTest {
+
+    @Test
+    @Ignore //Benchmark: run manually
+    public void benchmarkHoistedInputProjection() {
+        int nIn = 64;
+        int warmup = 3;
+        int iterations = 10;
+
+        for (int timeSeriesLength : new int[] {50, 500}) {
+            for (int layerSize : new int[] {64, 256}) {
+                for (int miniBatchSize : new int[] {1, 32}) {
+                    Layer lstm = createLstm(nIn, layerSize);
+                    INDArray input = Nd4j.rand(new int[] {miniBatchSize, nIn, timeSeriesLength});
+                    INDArray epsilon = Nd4j.rand(new int[] {miniBatchSize, layerSize, timeSeriesLength});
+
+                    for (int i = 0; i < warmup; i++) {
+                        fwdBwd(lstm, input, epsilon);
+                    }
+
+                    long fwd = 0;
+                    long bwd = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        long[] t = fwdBwd(lstm, input, epsilon);
+                        fwd += t[0];
+                        bwd += t[1];
+                    }
+
+                    System.out.println(String.format("T=%d, layerSize=%d, miniBatch=%d: inference %.2f ms, "
+                                    + "fwd+bwd %.2f ms", timeSeriesLength, layerSize, miniBatchSize,
+                                    fwd / iterations / 1e6, (fwd + bwd) / iterations / 1e6));
+                }
+            }
+        }
+    }
+
+    private static Layer createLstm(int nIn, int layerSize) {
+        org.deeplearning4j.nn.conf.layers.LSTM layerConf = new org.deeplearning4j.nn.conf.layers.LSTM.Builder()
+                        .activation(Activation.TANH).weightInit(WeightInit.XAVIER).nIn(nIn).nOut(layerSize).build();
+        NeuralNetConfiguration conf = new NeuralNetConfiguration();
+        conf.setLayer(layerConf);
+
+        int numParams = layerConf.initializer().numParams(conf);
+        INDArray params = Nd4j.create(1, numParams);
+        Layer lstm = layerConf.instantiate(conf, Collections.<IterationListener>emptyList(), 0, params, true);
+        lstm.setBackpropGradientsViewArray(Nd4j.create(1, numParams));
+        return lstm;
+    }
+
+    /**
+     * @return nanoseconds for inference forward pass, and for training forward + backward pass
+     */
+    private static long[] fwdBwd(Layer lstm, INDArray input, INDArray epsilon) {
+        long start = System.nanoTime();
+        lstm.activate(input, false);
+        long fwd = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        lstm.setInput(input);
+        lstm.backpropGradient(epsilon);
+        long bwd = System.nanoTime() - start;
+
+        return new long[] {fwd, bwd};
+    }
+}
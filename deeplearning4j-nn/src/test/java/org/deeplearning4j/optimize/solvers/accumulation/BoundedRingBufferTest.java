@@ -0,0 +1,70 @@
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class BoundedRingBufferTest {
+
+    @Test
+    public void testOfferPoll1() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(3);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertTrue(buffer.offer(3));
+        assertFalse(buffer.offer(4));
+        assertEquals(3, buffer.size());
+
+        assertEquals(1, (int) buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertEquals(2, (int) buffer.poll());
+        assertEquals(3, (int) buffer.poll());
+        assertEquals(4, (int) buffer.poll());
+        assertNull(buffer.poll());
+
+        buffer.offer(5);
+        buffer.offer(6);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testProducerConsumer() throws Exception {
+        final BoundedRingBuffer<Long> buffer = new BoundedRingBuffer<>(4);
+        final long count = 100000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (long i = 0; i < count; i++)
+                        buffer.put(i);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        producer.start();
+
+        // elements should arrive in order, without losses
+        final AtomicLong expected = new AtomicLong(0);
+        while (expected.get() < count) {
+            Long value = buffer.poll();
+            if (value == null) {
+                Thread.yield();
+                continue;
+            }
+
+            assertEquals(expected.getAndIncrement(), (long) value);
+        }
+
+        producer.join();
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -1,10 +1,18 @@
 package org.deeplearning4j.optimize.solvers.accumulation;
 
 import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.optimize.api.StepFunction;
+import org.deeplearning4j.optimize.stepfunctions.DefaultStepFunction;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -71,6 +79,94 @@ public class EncodedGradientsAccumulatorTest {
     }
 
 
+    /**
+     * This test runs few training-like cycles: master registers consumers, workers store & apply updates
+     */
+    @Test
+    public void testSynchronization1() throws Exception {
+        int numParams = 10000;
+        int numWorkers = 4;
+        int iterations = 50;
+
+        EncodedGradientsAccumulator accumulator = new EncodedGradientsAccumulator.Builder(numWorkers)
+                        .memoryParameters(EncodedGradientsAccumulator.getOptimalBufferSize(numParams, numWorkers, 4), 4)
+                        .build();
+
+        AtomicInteger applied = new AtomicInteger(0);
+        long time = runCycles(accumulator, numParams, numWorkers, iterations, applied);
+        log.info("{} cycles for {} workers: {} ms; {}", iterations, numWorkers, time, accumulator.getStats());
+
+        assertEquals(numWorkers * iterations, applied.get());
+        assertEquals(numWorkers * iterations, accumulator.getStats().getEncodeCalls().get());
+        assertTrue(accumulator.getStats().getMessages().get() > 0);
+        //At most one encoded message per encode call, no matter how many consumers it's replicated to
+        assertTrue(accumulator.getStats().getMessages().get() <= accumulator.getStats().getEncodeCalls().get());
+        assertTrue(accumulator.getStats().getDecodedMessages().get() > 0);
+    }
+
+    /**
+     * Timing test: synchronization overhead vs number of parties
+     */
+    @Test
+    @Ignore
+    public void benchmarkParties() throws Exception {
+        int numParams = 100000;
+        int iterations = 500;
+
+        for (int numWorkers : new int[] {1, 2, 4, 8, 16, 32}) {
+            EncodedGradientsAccumulator accumulator = new EncodedGradientsAccumulator.Builder(numWorkers)
+                            .memoryParameters(EncodedGradientsAccumulator.getOptimalBufferSize(numParams, numWorkers,
+                                            4), 4)
+                            .build();
+
+            // warmup
+            runCycles(accumulator, numParams, numWorkers, 20, new AtomicInteger(0));
+            accumulator.getStats().reset();
+
+            long time = runCycles(accumulator, numParams, numWorkers, iterations, new AtomicInteger(0));
+            log.info("Parties: {}; {} us/cycle; {}", numWorkers, time * 1000 / iterations, accumulator.getStats());
+        }
+    }
+
+    protected long runCycles(final EncodedGradientsAccumulator accumulator, final int numParams, final int numWorkers,
+                    final int iterations, final AtomicInteger applied) throws Exception {
+        accumulator.reset();
+
+        final StepFunction function = new DefaultStepFunction();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < numWorkers; w++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    accumulator.touch();
+                    INDArray params = Nd4j.create(numParams);
+                    INDArray updates = Nd4j.create(numParams);
+                    for (int i = 0; i < iterations; i++) {
+                        accumulator.storeUpdate(getGradients(numParams, 100, 2e-3));
+                        accumulator.applyUpdate(function, params, updates);
+                        applied.incrementAndGet();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+
+        long time1 = System.currentTimeMillis();
+        for (Thread thread : threads)
+            thread.start();
+
+        // master thread
+        for (int i = 0; i < iterations; i++)
+            accumulator.registerConsumers(numWorkers);
+
+        for (Thread thread : threads)
+            thread.join();
+        long time2 = System.currentTimeMillis();
+
+        return time2 - time1;
+    }
+
     protected INDArray getGradients(int length, int numPositives, double value) {
         INDArray grad = Nd4j.create(length);
 
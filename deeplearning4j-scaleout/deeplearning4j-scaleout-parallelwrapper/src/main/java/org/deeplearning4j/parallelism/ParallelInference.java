@@ -7,11 +7,19 @@ import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.inference.InferenceCallback;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.LoadSheddingPolicy;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.FutureInferenceObserver;
+import org.deeplearning4j.parallelism.inference.scheduler.AdaptiveBatchScheduler;
+import org.deeplearning4j.parallelism.inference.scheduler.Histogram;
+import org.deeplearning4j.parallelism.inference.scheduler.PendingRequest;
+import org.deeplearning4j.parallelism.inference.scheduler.ScheduledBatch;
+import org.deeplearning4j.parallelism.inference.scheduler.WorkerStats;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.factory.Nd4j;
@@ -21,7 +29,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Observer;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -39,6 +50,10 @@ public class ParallelInference {
     private int batchLimit;
     private InferenceMode inferenceMode;
     private int queueLimit;
+    private long maxWaitNanos;
+    private long targetLatencyNanos;
+    private int timeSeriesBucketSize;
+    private LoadSheddingPolicy loadSheddingPolicy;
 
     // this queue
     private BlockingQueue<InferenceObservable> observables;
@@ -47,6 +62,7 @@ public class ParallelInference {
 
     private InferenceWorker[] zoo;
     private ObservablesProvider provider;
+    private AdaptiveBatchScheduler scheduler;
 
 
 
@@ -54,6 +70,10 @@ public class ParallelInference {
     public final static int DEFAULT_BATCH_LIMIT = 32;
     public final static InferenceMode DEFAULT_INFERENCE_MODE = InferenceMode.BATCHED;
     public final static int DEFAULT_QUEUE_LIMIT = 64;
+    public final static long DEFAULT_MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    public final static long DEFAULT_TARGET_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    public final static int DEFAULT_TIME_SERIES_BUCKET_SIZE = 0;
+    public final static LoadSheddingPolicy DEFAULT_LOAD_SHEDDING_POLICY = LoadSheddingPolicy.REJECT;
 
 
 
@@ -64,6 +84,12 @@ public class ParallelInference {
     protected void init() {
         observables = new LinkedBlockingQueue<>(queueLimit);
 
+        if (inferenceMode == InferenceMode.ADAPTIVE) {
+            log.info("Initializing AdaptiveBatchScheduler...");
+            scheduler = new AdaptiveBatchScheduler(workers, batchLimit, queueLimit, maxWaitNanos, targetLatencyNanos,
+                            timeSeriesBucketSize);
+        }
+
         int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
         int currentDevice = Nd4j.getAffinityManager().getDeviceForCurrentThread();
         AtomicBoolean assignedRoot = new AtomicBoolean(false);
@@ -74,7 +100,7 @@ public class ParallelInference {
             boolean cRoot = !assignedRoot.get() && cDevice == currentDevice;
             assignedRoot.compareAndSet(false, cRoot);
 
-            zoo[i] = new InferenceWorker(i, model, observables, cRoot);
+            zoo[i] = new InferenceWorker(i, model, observables, scheduler, cRoot);
 
             Nd4j.getAffinityManager().attachThreadToDevice(zoo[i], cDevice);
             zoo[i].setDaemon(true);
@@ -92,6 +118,35 @@ public class ParallelInference {
         return zoo[workerIdx].getCounterValue();
     }
 
+    /**
+     * This method returns batch size, queue depth and forward time histograms for specific worker
+     *
+     * PLEASE NOTE: This method is available only in ADAPTIVE inference mode
+     *
+     * @param workerIdx
+     * @return
+     */
+    public WorkerStats getWorkerStats(int workerIdx) {
+        if (scheduler == null)
+            throw new IllegalStateException("Worker stats are available only in ADAPTIVE inference mode");
+
+        return scheduler.getWorkerStats(workerIdx);
+    }
+
+    /**
+     * This method returns histogram of end-to-end request latencies, in microseconds
+     *
+     * PLEASE NOTE: This method is available only in ADAPTIVE inference mode
+     *
+     * @return
+     */
+    public Histogram getLatencyHistogram() {
+        if (scheduler == null)
+            throw new IllegalStateException("Latency histogram is available only in ADAPTIVE inference mode");
+
+        return scheduler.getLatencies();
+    }
+
     /**
      *
      * @param input
@@ -158,7 +213,11 @@ public class ParallelInference {
         BasicInferenceObserver observer = new BasicInferenceObserver();
         InferenceObservable observable;
 
-        if (inferenceMode == InferenceMode.SEQUENTIAL) {
+        if (inferenceMode == InferenceMode.ADAPTIVE) {
+            PendingRequest request = scheduler.submit(observer, input, inputMasks);
+            observer.waitTillDone();
+            return request.getOutput();
+        } else if (inferenceMode == InferenceMode.SEQUENTIAL) {
             observable = new BasicInferenceObservable(input, inputMasks);
             observable.addObserver(observer);
             try {
@@ -184,6 +243,84 @@ public class ParallelInference {
         return observable.getOutput();
     }
 
+    /**
+     * Generate predictions/outputs from the network asynchronously, optionally using input masks for predictions.
+     *
+     * This method never blocks: returned future is completed directly by inference worker once output is available.
+     * If queue limit is reached, request is handled according to LoadSheddingPolicy: either returned future is
+     * completed exceptionally with RejectedExecutionException, or the oldest pending request is dropped instead.
+     *
+     * PLEASE NOTE: Non-async dependent stages of returned future are executed within inference worker thread
+     *
+     * @param input      Input to the network
+     * @param inputMasks Input masks for the network. May be null.
+     * @return Future holding output from the network
+     */
+    public CompletableFuture<INDArray[]> outputAsync(INDArray[] input, INDArray[] inputMasks) {
+        FutureInferenceObserver observer = new FutureInferenceObserver();
+
+        try {
+            boolean accepted;
+            if (inferenceMode == InferenceMode.ADAPTIVE) {
+                accepted = scheduler.trySubmit(observer, input, inputMasks, loadSheddingPolicy) != null;
+            } else if (inferenceMode == InferenceMode.SEQUENTIAL) {
+                InferenceObservable observable = new BasicInferenceObservable(input, inputMasks);
+                observable.addObserver(observer);
+                accepted = offerObservable(observables, observable, loadSheddingPolicy);
+            } else {
+                accepted = provider.trySetInput(observer, input, inputMasks, loadSheddingPolicy) != null;
+            }
+
+            if (!accepted)
+                observer.getFuture().completeExceptionally(new RejectedExecutionException(
+                                "Inference queue is full: queueLimit=" + queueLimit));
+        } catch (Exception e) {
+            observer.getFuture().completeExceptionally(e);
+        }
+
+        return observer.getFuture();
+    }
+
+    /**
+     * Generate predictions/outputs from the network asynchronously, optionally using input masks for predictions.
+     * Callback is invoked from inference worker thread, or from caller thread if request was rejected.
+     *
+     * @param input      Input to the network
+     * @param inputMasks Input masks for the network. May be null.
+     * @param callback   Callback to be invoked once output is available, or request failed
+     */
+    public void outputAsync(INDArray[] input, INDArray[] inputMasks, @NonNull final InferenceCallback callback) {
+        outputAsync(input, inputMasks).whenComplete((output, throwable) -> {
+            if (throwable != null)
+                callback.onError(throwable);
+            else
+                callback.onOutput(output);
+        });
+    }
+
+    /**
+     * This method puts observable into queue without blocking. If queue is full, oldest observable might be
+     * dropped from the queue (and failed) to free up space, depending on policy
+     *
+     * @return true if observable was accepted
+     */
+    protected static boolean offerObservable(@NonNull BlockingQueue<InferenceObservable> queue,
+                    @NonNull InferenceObservable observable, @NonNull LoadSheddingPolicy policy) {
+        if (queue.offer(observable))
+            return true;
+
+        if (policy == LoadSheddingPolicy.DROP_OLDEST) {
+            InferenceObservable dropped = queue.poll();
+            if (dropped != null)
+                dropped.setOutputException(
+                                new RejectedExecutionException("Request was dropped due to inference queue overflow"));
+
+            return queue.offer(observable);
+        }
+
+        return false;
+    }
+
 
     public static class Builder {
         private Model model;
@@ -191,6 +328,10 @@ public class ParallelInference {
         private int batchLimit = DEFAULT_BATCH_LIMIT;
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
+        private long maxWaitNanos = DEFAULT_MAX_WAIT_NANOS;
+        private long targetLatencyNanos = DEFAULT_TARGET_LATENCY_NANOS;
+        private int timeSeriesBucketSize = DEFAULT_TIME_SERIES_BUCKET_SIZE;
+        private LoadSheddingPolicy loadSheddingPolicy = DEFAULT_LOAD_SHEDDING_POLICY;
 
         public Builder(@NonNull Model model) {
             this.model = model;
@@ -203,6 +344,8 @@ public class ParallelInference {
          * SEQUENTIAL: Input will be sent to last-used worker unmodified.
          * BATCHED: Multiple inputs will be packed into single batch, and
          * sent to last-used device.
+         * ADAPTIVE: Multiple inputs with the same shape will be packed into single batch,
+         * with batch size chosen wrt observed forward pass time, maxWait and targetLatency
          *
          * @param inferenceMode
          * @return
@@ -264,6 +407,85 @@ public class ParallelInference {
             return this;
         }
 
+        /**
+         * This method defines, how long the oldest input can wait for the batch to fill up.
+         *
+         * PLEASE NOTE: This value has effect only in ADAPTIVE inference mode
+         *
+         * Default value: 2 milliseconds
+         *
+         * @param time
+         * @param timeUnit
+         * @return
+         */
+        public Builder maxWait(long time, @NonNull TimeUnit timeUnit) {
+            if (time < 0)
+                throw new IllegalStateException("Max wait should be non-negative value");
+
+            this.maxWaitNanos = timeUnit.toNanos(time);
+            return this;
+        }
+
+        /**
+         * This method defines target (p99) latency for single input, including both waiting and forward pass time.
+         * Batch size will be reduced if observed forward pass time doesn't allow to meet this target.
+         *
+         * PLEASE NOTE: This value has effect only in ADAPTIVE inference mode
+         *
+         * Default value: 50 milliseconds
+         *
+         * @param time
+         * @param timeUnit
+         * @return
+         */
+        public Builder targetLatency(long time, @NonNull TimeUnit timeUnit) {
+            if (time <= 0)
+                throw new IllegalStateException("Target latency should be positive value");
+
+            this.targetLatencyNanos = timeUnit.toNanos(time);
+            return this;
+        }
+
+        /**
+         * This method enables padding of time series inputs (and masks) to the multiple of given value,
+         * so variable length sequences can be batched together. Time series outputs are trimmed back to original length.
+         *
+         * PLEASE NOTE: This value has effect only in ADAPTIVE inference mode, and model should respect masks
+         *
+         * Default value: 0, padding disabled
+         *
+         * @param bucketSize
+         * @return
+         */
+        public Builder timeSeriesBucketSize(int bucketSize) {
+            if (bucketSize < 0)
+                throw new IllegalStateException("Time series bucket size should be non-negative value");
+
+            this.timeSeriesBucketSize = bucketSize;
+            return this;
+        }
+
+        /**
+         * This method defines, what asynchronous output methods do once queue limit is reached:
+         *
+         * REJECT: new request fails with RejectedExecutionException
+         * DROP_OLDEST: oldest pending request fails with RejectedExecutionException, and new request is accepted
+         *
+         * PLEASE NOTE: Blocking output methods aren't affected, they just wait for free space in queue
+         * PLEASE NOTE: In BATCHED inference mode queue holds batches, not requests: queue limit is reached only when a
+         * new batch has to be started, and DROP_OLDEST fails all requests of the oldest pending batch (up to batchLimit
+         * requests) at once
+         *
+         * Default value: REJECT
+         *
+         * @param policy
+         * @return
+         */
+        public Builder loadSheddingPolicy(@NonNull LoadSheddingPolicy policy) {
+            this.loadSheddingPolicy = policy;
+            return this;
+        }
+
         /**
          * This method builds new ParallelInference instance
          *
@@ -276,6 +498,10 @@ public class ParallelInference {
             inference.inferenceMode = this.inferenceMode;
             inference.model = this.model;
             inference.workers = this.workers;
+            inference.maxWaitNanos = this.maxWaitNanos;
+            inference.targetLatencyNanos = this.targetLatencyNanos;
+            inference.timeSeriesBucketSize = this.timeSeriesBucketSize;
+            inference.loadSheddingPolicy = this.loadSheddingPolicy;
 
             inference.init();
 
@@ -290,6 +516,8 @@ public class ParallelInference {
      */
     private class InferenceWorker extends Thread implements Runnable {
         private BlockingQueue<InferenceObservable> inputQueue;
+        private AdaptiveBatchScheduler scheduler;
+        private int workerId;
         private AtomicBoolean shouldWork = new AtomicBoolean(true);
         private AtomicBoolean isStopped = new AtomicBoolean(false);
         private Model protoModel;
@@ -297,8 +525,11 @@ public class ParallelInference {
         private AtomicLong counter = new AtomicLong(0);
         private boolean rootDevice;
 
-        private InferenceWorker(int id, @NonNull Model model, @NonNull BlockingQueue inputQueue, boolean rootDevice) {
+        private InferenceWorker(int id, @NonNull Model model, @NonNull BlockingQueue inputQueue,
+                        AdaptiveBatchScheduler scheduler, boolean rootDevice) {
             this.inputQueue = inputQueue;
+            this.scheduler = scheduler;
+            this.workerId = id;
             this.protoModel = model;
             this.rootDevice = rootDevice;
 
@@ -346,10 +577,11 @@ public class ParallelInference {
                 }
 
                 while (shouldWork.get()) {
-                    InferenceObservable request = inputQueue.take();
+                    InferenceObservable request = scheduler != null ? scheduler.next(workerId) : inputQueue.take();
 
                     if (request != null) {
                         counter.incrementAndGet();
+                        long timeStart = System.nanoTime();
 
                         // FIXME: get rid of instanceof here, model won't change during runtime anyway
                         if (replicatedModel instanceof ComputationGraph) {
@@ -380,6 +612,8 @@ public class ParallelInference {
                             }
                         }
 
+                        if (scheduler != null)
+                            scheduler.batchCompleted(workerId, (ScheduledBatch) request, System.nanoTime() - timeStart);
 
                     } else {
                         // just do nothing, i guess and hope for next round?
@@ -448,5 +682,53 @@ public class ParallelInference {
                 return currentObservable;
             }
         }
+
+        /**
+         * This method adds input to the current batch without blocking.
+         * Observer is notified with position of this input within the batch as argument.
+         *
+         * Queue limit applies only when a new batch has to be started. With DROP_OLDEST policy, the whole oldest batch
+         * is dropped from the queue, so all requests within it are failed.
+         *
+         * @return observable, or null if input was rejected due to queue overflow
+         */
+        protected InferenceObservable trySetInput(@NonNull final Observer observer, INDArray[] input,
+                        INDArray[] inputMask, @NonNull LoadSheddingPolicy policy) {
+            synchronized (locker) {
+                if (currentObservable == null || currentObservable.getCounter() >= batchLimit
+                                || currentObservable.isLocked()) {
+                    // new observable becomes visible to workers only after input was added
+                    BatchedInferenceObservable observable = new BatchedInferenceObservable();
+                    observable.addInput(input, inputMask);
+                    observable.addObserver((o, arg) -> observer.update(o, 0));
+
+                    if (!targetQueue.offer(observable)) {
+                        if (policy != LoadSheddingPolicy.DROP_OLDEST)
+                            return null;
+
+                        InferenceObservable dropped = targetQueue.poll();
+                        if (dropped != null) {
+                            if (dropped == currentObservable)
+                                currentObservable = null;
+
+                            dropped.setOutputException(new RejectedExecutionException(
+                                            "Request was dropped due to inference queue overflow"));
+                        }
+
+                        if (!targetQueue.offer(observable))
+                            return null;
+                    }
+
+                    currentObservable = observable;
+                    return observable;
+                }
+
+                currentObservable.addInput(input, inputMask);
+                final int position = currentObservable.getCounter() - 1;
+                currentObservable.addObserver((o, arg) -> observer.update(o, position));
+
+                return currentObservable;
+            }
+        }
     }
 }
@@ -0,0 +1,25 @@
+package org.deeplearning4j.parallelism.inference;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Callback for asynchronous ParallelInference output.
+ *
+ * PLEASE NOTE: Methods are invoked from inference worker thread, so they should return quickly
+ */
+public interface InferenceCallback {
+
+    /**
+     * This method is called once output for the request is available
+     *
+     * @param output network output
+     */
+    void onOutput(INDArray[] output);
+
+    /**
+     * This method is called if request failed, or was rejected due to queue overflow
+     *
+     * @param throwable
+     */
+    void onError(Throwable throwable);
+}
@@ -6,4 +6,5 @@ package org.deeplearning4j.parallelism.inference;
 public enum InferenceMode {
     SEQUENTIAL, // input will be passed into the model as is
     BATCHED, // input will be included into the batch
+    ADAPTIVE, // input will be included into the batch, with batch size chosen wrt target latency
 }
@@ -0,0 +1,11 @@
+package org.deeplearning4j.parallelism.inference;
+
+/**
+ * This enum defines what asynchronous output methods do, once ParallelInference queue limit is reached
+ *
+ * PLEASE NOTE: In BATCHED inference mode, oldest pending batch is dropped as whole, with all requests within it
+ */
+public enum LoadSheddingPolicy {
+    REJECT, // new request will be failed with RejectedExecutionException
+    DROP_OLDEST, // oldest pending request will be failed with RejectedExecutionException, and new one accepted
+}
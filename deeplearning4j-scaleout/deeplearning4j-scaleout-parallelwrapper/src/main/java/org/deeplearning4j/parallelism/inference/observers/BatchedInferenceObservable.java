@@ -225,4 +225,16 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         checkOutputException();
         return outputs.get(position.get());
     }
+
+    /**
+     * This method returns output for specific input, identified by its position within this batch.
+     * Unlike {@link #getOutput()} it doesn't depend on the thread that called addInput()
+     *
+     * @param position
+     * @return
+     */
+    public INDArray[] getOutput(int position) {
+        checkOutputException();
+        return outputs.get(position);
+    }
 }
@@ -0,0 +1,40 @@
+package org.deeplearning4j.parallelism.inference.observers;
+
+import lombok.Getter;
+import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.scheduler.PendingRequest;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Observer implementation for asynchronous inference: instead of waiting, it completes CompletableFuture
+ * right from the thread that notified it, i.e. inference worker.
+ *
+ * Notification argument identifies this request within the batch: either PendingRequest (ADAPTIVE mode),
+ * or Integer position within BatchedInferenceObservable (BATCHED mode). Without argument, observable itself holds the output.
+ */
+public class FutureInferenceObserver implements Observer {
+    @Getter
+    private final CompletableFuture<INDArray[]> future = new CompletableFuture<>();
+
+    @Override
+    public void update(Observable o, Object arg) {
+        try {
+            INDArray[] output;
+            if (arg instanceof PendingRequest) {
+                output = ((PendingRequest) arg).getOutput();
+            } else if (arg instanceof Integer) {
+                output = ((BatchedInferenceObservable) o).getOutput((Integer) arg);
+            } else {
+                output = ((InferenceObservable) o).getOutput();
+            }
+
+            future.complete(output);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+}
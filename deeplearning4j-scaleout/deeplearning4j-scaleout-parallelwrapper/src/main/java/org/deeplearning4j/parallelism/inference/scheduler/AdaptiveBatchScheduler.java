@@ -0,0 +1,432 @@
+package org.deeplearning4j.parallelism.inference.scheduler;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.parallelism.inference.LoadSheddingPolicy;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.Observer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements ADAPTIVE inference mode: latency-aware micro-batching.
+ *
+ * Callers put requests into per-shape buckets, and workers pull batches out of them, there's no blocking queue
+ * or monitor in between: buckets are lock-free queues, and idle workers are parked/unparked directly.
+ *
+ * Batch size is chosen per bucket, using observed forward pass time: worker takes the largest batch that's predicted
+ * to fit into target latency, but never waits for the batch to fill longer than maxWait. Observed p99 latency is
+ * fed back into the latency budget, so scheduler becomes more conservative if target is violated.
+ *
+ * Optionally, time series inputs can be padded (with masks) to the multiple of timeSeriesBucketSize, so variable
+ * length sequences can be batched together. Time series outputs are trimmed back to original length.
+ */
+@Slf4j
+public class AdaptiveBatchScheduler {
+    // number of completed requests between p99 checks
+    protected static final int FEEDBACK_WINDOW = 128;
+    protected static final double MIN_CORRECTION = 0.05;
+
+    private final int batchLimit;
+    private final int pendingLimit;
+    private final long maxWaitNanos;
+    private final long targetLatencyNanos;
+    private final int timeSeriesBucketSize;
+
+    private final ConcurrentHashMap<ShapeBucket.Key, ShapeBucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Thread> idleWorkers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingExamples = new AtomicInteger(0);
+
+    private final WorkerStats[] workerStats;
+    @Getter
+    private final Histogram latencies = new Histogram();
+    private final Histogram windowLatencies = new Histogram();
+    private final AtomicLong windowCounter = new AtomicLong(0);
+    private final Object feedbackLock = new Object();
+    private volatile double correction = 1.0;
+
+    /**
+     * @param workers              number of workers pulling batches
+     * @param batchLimit           max number of examples in single batch
+     * @param queueLimit           max number of batches worth of examples that can be pending
+     * @param maxWaitNanos         max time the oldest request can wait for the batch to fill
+     * @param targetLatencyNanos   target end-to-end latency (p99) for single request
+     * @param timeSeriesBucketSize time series inputs are padded to the multiple of this value. 0 disables padding
+     */
+    public AdaptiveBatchScheduler(int workers, int batchLimit, int queueLimit, long maxWaitNanos,
+                    long targetLatencyNanos, int timeSeriesBucketSize) {
+        if (workers < 1 || batchLimit < 1 || queueLimit < 1)
+            throw new IllegalStateException("Workers, batch limit and queue limit should be positive values");
+
+        if (maxWaitNanos < 0 || targetLatencyNanos <= 0)
+            throw new IllegalStateException("Max wait should be non-negative, and target latency should be positive");
+
+        if (timeSeriesBucketSize < 0)
+            throw new IllegalStateException("Time series bucket size should be non-negative value");
+
+        this.batchLimit = batchLimit;
+        this.pendingLimit = (int) Math.min(Integer.MAX_VALUE, (long) batchLimit * queueLimit);
+        this.maxWaitNanos = maxWaitNanos;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.timeSeriesBucketSize = timeSeriesBucketSize;
+
+        this.workerStats = new WorkerStats[workers];
+        for (int i = 0; i < workers; i++)
+            workerStats[i] = new WorkerStats(i);
+    }
+
+    /**
+     * This method adds request to the scheduler, blocking while there are too many pending examples
+     *
+     * @param observer   observer to be notified once output is available
+     * @param input      input arrays
+     * @param inputMasks input masks, may be null
+     * @return
+     */
+    public PendingRequest submit(@NonNull Observer observer, @NonNull INDArray[] input, INDArray[] inputMasks) {
+        PendingRequest request = createRequest(observer, input, inputMasks);
+
+        long parkNanos = 1000;
+        while (!tryReserve(request.getNumExamples())) {
+            if (Thread.currentThread().isInterrupted())
+                throw new RuntimeException(new InterruptedException());
+
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, 1000000L);
+        }
+
+        enqueue(request);
+        return request;
+    }
+
+    /**
+     * This method adds request to the scheduler without blocking. If there are too many pending examples,
+     * request is either rejected, or the oldest pending requests are dropped, depending on policy
+     *
+     * @param observer   observer to be notified once output is available
+     * @param input      input arrays
+     * @param inputMasks input masks, may be null
+     * @param policy     what to do if pending limit is reached
+     * @return request, or null if it was rejected
+     */
+    public PendingRequest trySubmit(@NonNull Observer observer, @NonNull INDArray[] input, INDArray[] inputMasks,
+                    @NonNull LoadSheddingPolicy policy) {
+        PendingRequest request = createRequest(observer, input, inputMasks);
+
+        while (!tryReserve(request.getNumExamples())) {
+            if (policy != LoadSheddingPolicy.DROP_OLDEST || !dropOldest())
+                return null;
+        }
+
+        enqueue(request);
+        return request;
+    }
+
+    /**
+     * This method fails the oldest pending request with RejectedExecutionException
+     *
+     * @return false if there was nothing to drop
+     */
+    protected boolean dropOldest() {
+        ShapeBucket oldest = oldestBucket();
+        if (oldest == null)
+            return false;
+
+        if (!oldest.claim()) {
+            // bucket is being drained right now, so there'll be some space soon
+            Thread.yield();
+            return true;
+        }
+
+        try {
+            PendingRequest dropped = oldest.poll();
+            if (dropped == null)
+                return true;
+
+            pendingExamples.addAndGet(-dropped.getNumExamples());
+
+            ScheduledBatch batch = new ScheduledBatch(oldest);
+            batch.addRequest(dropped);
+            batch.setOutputException(new RejectedExecutionException("Request was dropped due to inference queue overflow"));
+        } finally {
+            oldest.release();
+        }
+
+        return true;
+    }
+
+    protected ShapeBucket oldestBucket() {
+        ShapeBucket oldest = null;
+        long oldestTime = Long.MAX_VALUE;
+        for (ShapeBucket bucket : buckets.values()) {
+            PendingRequest head = bucket.peek();
+            if (head != null && head.getEnqueueTime() < oldestTime) {
+                oldestTime = head.getEnqueueTime();
+                oldest = bucket;
+            }
+        }
+
+        return oldest;
+    }
+
+    protected PendingRequest createRequest(Observer observer, INDArray[] input, INDArray[] inputMasks) {
+        if (timeSeriesBucketSize > 0) {
+            int originalLength = -1;
+            boolean sameLength = true;
+            for (INDArray in : input) {
+                if (in.rank() != 3)
+                    continue;
+
+                if (originalLength < 0)
+                    originalLength = in.size(2);
+                else if (originalLength != in.size(2))
+                    sameLength = false;
+            }
+
+            if (originalLength > 0) {
+                INDArray[] padded = new INDArray[input.length];
+                INDArray[] paddedMasks = new INDArray[input.length];
+                for (int i = 0; i < input.length; i++) {
+                    INDArray mask = inputMasks == null || inputMasks.length <= i ? null : inputMasks[i];
+                    if (input[i].rank() == 3) {
+                        int length = input[i].size(2);
+                        int bucketLength = paddedLength(length);
+                        padded[i] = padTimeSeries(input[i], bucketLength);
+                        paddedMasks[i] = padMask(mask, input[i].size(0), length, bucketLength);
+                    } else {
+                        padded[i] = input[i];
+                        paddedMasks[i] = mask;
+                    }
+                }
+
+                // outputs can be trimmed only if all time series inputs had the same length
+                int origLength = sameLength ? originalLength : -1;
+                return new PendingRequest(observer, padded, paddedMasks, origLength, paddedLength(originalLength));
+            }
+        }
+
+        return new PendingRequest(observer, input, inputMasks, -1, -1);
+    }
+
+    protected int paddedLength(int length) {
+        return ((length + timeSeriesBucketSize - 1) / timeSeriesBucketSize) * timeSeriesBucketSize;
+    }
+
+    protected static INDArray padTimeSeries(INDArray input, int length) {
+        if (input.size(2) == length)
+            return input;
+
+        INDArray padded = Nd4j.create(new int[] {input.size(0), input.size(1), length}, 'f');
+        padded.put(new INDArrayIndex[] {NDArrayIndex.all(), NDArrayIndex.all(),
+                        NDArrayIndex.interval(0, input.size(2))}, input);
+        return padded;
+    }
+
+    protected static INDArray padMask(INDArray mask, int minibatch, int originalLength, int length) {
+        INDArray padded = Nd4j.create(minibatch, length);
+        if (mask == null) {
+            padded.get(NDArrayIndex.all(), NDArrayIndex.interval(0, originalLength)).assign(1.0);
+        } else {
+            padded.put(new INDArrayIndex[] {NDArrayIndex.all(),
+                            NDArrayIndex.interval(0, originalLength)}, mask);
+        }
+        return padded;
+    }
+
+    protected boolean tryReserve(int numExamples) {
+        while (true) {
+            int current = pendingExamples.get();
+            // single request bigger than the limit is still accepted if nothing else is pending
+            if (current > 0 && current + numExamples > pendingLimit)
+                return false;
+
+            if (pendingExamples.compareAndSet(current, current + numExamples))
+                return true;
+        }
+    }
+
+    protected void enqueue(PendingRequest request) {
+        ShapeBucket.Key key = new ShapeBucket.Key(request.getInput(), request.getInputMasks());
+        ShapeBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            ShapeBucket newBucket = new ShapeBucket(key);
+            bucket = buckets.putIfAbsent(key, newBucket);
+            if (bucket == null)
+                bucket = newBucket;
+        }
+
+        bucket.add(request);
+        wakeUpWorker();
+    }
+
+    protected void wakeUpWorker() {
+        Thread worker = idleWorkers.poll();
+        if (worker != null)
+            LockSupport.unpark(worker);
+    }
+
+    /**
+     * This method is called by workers. It returns next batch if it's ready, or parks calling thread until
+     * either new request arrives or current batch deadline passes, and returns null then.
+     *
+     * @param workerId
+     * @return
+     */
+    public ScheduledBatch next(int workerId) {
+        long now = System.nanoTime();
+
+        ShapeBucket oldest = oldestBucket();
+        PendingRequest head = oldest == null ? null : oldest.peek();
+        if (head == null) {
+            park(maxWaitNanos > 0 ? maxWaitNanos : 1000000L);
+            return null;
+        }
+
+        long age = now - head.getEnqueueTime();
+        int available = oldest.getNumExamples();
+        int target = targetBatchSize(oldest, age);
+        long waitNanos = dispatchDeadline(oldest, available) - age;
+
+        if (available >= target || waitNanos <= 0) {
+            if (oldest.claim()) {
+                try {
+                    ScheduledBatch batch = drain(oldest, target);
+                    if (batch != null) {
+                        workerStats[workerId].recordDispatch(pendingExamples.get());
+                        pendingExamples.addAndGet(-batch.getNumExamples());
+
+                        // leftovers might be ready for dispatch as well
+                        if (oldest.peek() != null)
+                            wakeUpWorker();
+
+                        return batch;
+                    }
+                } finally {
+                    oldest.release();
+                }
+            }
+
+            // somebody else is draining this bucket right now
+            Thread.yield();
+            return null;
+        }
+
+        park(waitNanos);
+        return null;
+    }
+
+    protected ScheduledBatch drain(ShapeBucket bucket, int target) {
+        ScheduledBatch batch = null;
+        int examples = 0;
+        PendingRequest head;
+        while ((head = bucket.peek()) != null) {
+            if (batch != null && examples + head.getNumExamples() > target)
+                break;
+
+            PendingRequest request = bucket.poll();
+            if (batch == null)
+                batch = new ScheduledBatch(bucket);
+
+            batch.addRequest(request);
+            examples += request.getNumExamples();
+        }
+
+        return batch;
+    }
+
+    /**
+     * This method returns the largest batch size predicted to fit into what's left of the latency budget
+     */
+    protected int targetBatchSize(ShapeBucket bucket, long age) {
+        long budget = (long) (targetLatencyNanos * correction) - age;
+        return bucket.getLatencyModel().maxBatchSize(budget, batchLimit);
+    }
+
+    /**
+     * This method returns max age of the oldest request, at which batch must be dispatched regardless of its size
+     */
+    protected long dispatchDeadline(ShapeBucket bucket, int available) {
+        long predicted = bucket.getLatencyModel().predict(Math.max(1, available));
+        if (predicted < 0)
+            return maxWaitNanos;
+
+        return Math.min(maxWaitNanos, (long) (targetLatencyNanos * correction) - predicted);
+    }
+
+    protected void park(long nanos) {
+        Thread current = Thread.currentThread();
+        idleWorkers.add(current);
+        LockSupport.parkNanos(this, nanos);
+        idleWorkers.remove(current);
+    }
+
+    /**
+     * This method is called by worker after forward pass for the batch is done
+     *
+     * @param workerId
+     * @param batch
+     * @param forwardNanos time spent in forward pass
+     */
+    public void batchCompleted(int workerId, @NonNull ScheduledBatch batch, long forwardNanos) {
+        batch.getBucket().getLatencyModel().observe(batch.getNumExamples(), forwardNanos);
+        workerStats[workerId].recordBatch(batch.getNumExamples(), forwardNanos);
+
+        long now = System.nanoTime();
+        for (PendingRequest request : batch.getRequests()) {
+            long latency = now - request.getEnqueueTime();
+            latencies.record(latency / 1000);
+            windowLatencies.record(latency);
+        }
+
+        if (windowCounter.addAndGet(batch.getRequests().size()) >= FEEDBACK_WINDOW)
+            updateCorrection();
+    }
+
+    protected void updateCorrection() {
+        synchronized (feedbackLock) {
+            if (windowCounter.get() < FEEDBACK_WINDOW)
+                return;
+
+            long p99 = windowLatencies.getPercentile(99);
+            if (p99 > targetLatencyNanos) {
+                correction = Math.max(MIN_CORRECTION, correction * 0.8);
+            } else if (p99 < targetLatencyNanos * 0.8) {
+                correction = Math.min(1.0, correction * 1.05);
+            }
+
+            windowLatencies.reset();
+            windowCounter.set(0);
+        }
+    }
+
+    /**
+     * @return number of examples currently waiting for processing
+     */
+    public int getPendingExamples() {
+        return pendingExamples.get();
+    }
+
+    /**
+     * @return current fraction of target latency used as scheduling budget
+     */
+    public double getLatencyCorrection() {
+        return correction;
+    }
+
+    public WorkerStats getWorkerStats(int workerId) {
+        return workerStats[workerId];
+    }
+
+    public int getNumberOfBuckets() {
+        return buckets.size();
+    }
+}
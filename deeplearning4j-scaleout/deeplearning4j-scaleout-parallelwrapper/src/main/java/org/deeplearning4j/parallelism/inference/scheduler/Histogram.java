@@ -0,0 +1,129 @@
+package org.deeplearning4j.parallelism.inference.scheduler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Simple lock-free log-linear histogram for non-negative long values.
+ *
+ * Values below 16 are counted exactly, larger values are counted in 8 linear sub-buckets per power of two,
+ * so relative error of any reported percentile stays within 12.5%.
+ */
+public class Histogram {
+    private static final int EXACT = 16;
+    private static final int SUB_BUCKETS = 8;
+    private static final int NUM_BUCKETS = EXACT + (63 - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong total = new AtomicLong(0);
+    private final AtomicLong sum = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * This method records single value
+     *
+     * @param value non-negative value, negative values are clamped to 0
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        counts.incrementAndGet(bucketIndex(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+
+        long cMax = max.get();
+        while (value > cMax && !max.compareAndSet(cMax, value))
+            cMax = max.get();
+    }
+
+    /**
+     * This method returns total number of recorded values
+     *
+     * @return
+     */
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long cnt = total.get();
+        return cnt == 0 ? 0.0 : sum.get() / (double) cnt;
+    }
+
+    /**
+     * This method returns number of recorded values that fall into the same bucket as given value
+     *
+     * @param value
+     * @return
+     */
+    public long getCountAt(long value) {
+        return counts.get(bucketIndex(Math.max(0, value)));
+    }
+
+    /**
+     * This method returns upper bound of the bucket holding given percentile
+     *
+     * @param percentile value in range [0, 100]
+     * @return
+     */
+    public long getPercentile(double percentile) {
+        long cnt = total.get();
+        if (cnt == 0)
+            return 0;
+
+        long threshold = (long) Math.ceil(cnt * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        if (threshold < 1)
+            threshold = 1;
+
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= threshold)
+                return Math.min(bucketUpperBound(i), max.get());
+        }
+
+        return max.get();
+    }
+
+    /**
+     * This method resets all counters
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            counts.set(i, 0);
+
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    protected static int bucketIndex(long value) {
+        if (value < EXACT)
+            return (int) value;
+
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exp - 3)) & (SUB_BUCKETS - 1));
+        return EXACT + (exp - 4) * SUB_BUCKETS + sub;
+    }
+
+    protected static long bucketUpperBound(int index) {
+        if (index < EXACT)
+            return index;
+
+        int exp = (index - EXACT) / SUB_BUCKETS + 4;
+        int sub = (index - EXACT) % SUB_BUCKETS;
+        long lower = ((long) (SUB_BUCKETS + sub)) << (exp - 3);
+        return lower + (1L << (exp - 3)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram(count=" + getCount() + ", mean=" + getMean() + ", p50=" + getPercentile(50)
+                        + ", p99=" + getPercentile(99) + ", max=" + getMax() + ")";
+    }
+}
@@ -0,0 +1,115 @@
+package org.deeplearning4j.parallelism.inference.scheduler;
+
+/**
+ * This class keeps exponentially-decayed linear fit of forward pass time vs. batch size:
+ * time(batchSize) = fixedCost + perExampleCost * batchSize
+ *
+ * It's used by {@link AdaptiveBatchScheduler} to pick the largest batch that still fits into latency budget.
+ */
+public class LatencyModel {
+    public static final double DEFAULT_DECAY = 0.95;
+
+    private final double decay;
+
+    private double sumW;
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+
+    public LatencyModel() {
+        this(DEFAULT_DECAY);
+    }
+
+    /**
+     * @param decay weight multiplier applied to previous observations on each new observation, in range (0, 1]
+     */
+    public LatencyModel(double decay) {
+        if (decay <= 0.0 || decay > 1.0)
+            throw new IllegalStateException("Decay should be in range (0, 1]");
+
+        this.decay = decay;
+    }
+
+    /**
+     * This method records single forward pass
+     *
+     * @param batchSize number of examples in the batch
+     * @param nanos     time spent in forward pass
+     */
+    public synchronized void observe(int batchSize, long nanos) {
+        sumW = sumW * decay + 1.0;
+        sumX = sumX * decay + batchSize;
+        sumY = sumY * decay + nanos;
+        sumXX = sumXX * decay + (double) batchSize * batchSize;
+        sumXY = sumXY * decay + (double) batchSize * nanos;
+    }
+
+    /**
+     * @return true if at least one forward pass was observed
+     */
+    public synchronized boolean hasObservations() {
+        return sumW > 0.0;
+    }
+
+    /**
+     * This method returns predicted forward pass time for given batch size, or -1 if nothing was observed yet
+     *
+     * @param batchSize
+     * @return
+     */
+    public synchronized long predict(int batchSize) {
+        if (sumW == 0.0)
+            return -1;
+
+        double[] coeffs = coefficients();
+        return (long) Math.max(0.0, coeffs[0] + coeffs[1] * batchSize);
+    }
+
+    /**
+     * This method returns the largest batch size in range [1, batchLimit], that's predicted to fit into given time budget
+     *
+     * @param budgetNanos time budget
+     * @param batchLimit  upper limit for batch size
+     * @return
+     */
+    public synchronized int maxBatchSize(long budgetNanos, int batchLimit) {
+        if (sumW == 0.0)
+            return batchLimit;
+
+        double[] coeffs = coefficients();
+        if (coeffs[1] <= 0.0)
+            return coeffs[0] <= budgetNanos ? batchLimit : 1;
+
+        double size = (budgetNanos - coeffs[0]) / coeffs[1];
+        if (size < 1.0)
+            return 1;
+
+        return (int) Math.min(batchLimit, Math.floor(size));
+    }
+
+    /**
+     * @return array of {fixedCost, perExampleCost}, both in nanoseconds
+     */
+    protected double[] coefficients() {
+        double meanX = sumX / sumW;
+        double meanY = sumY / sumW;
+        double varX = sumXX / sumW - meanX * meanX;
+
+        // all observations had the same batch size: assume time is proportional to batch size, that's pessimistic estimate for bigger batches
+        if (varX < 1e-6)
+            return new double[] {0.0, meanX > 0.0 ? meanY / meanX : 0.0};
+
+        double slope = (sumXY / sumW - meanX * meanY) / varX;
+        if (slope < 0.0)
+            slope = 0.0;
+
+        double intercept = meanY - slope * meanX;
+        if (intercept < 0.0) {
+            intercept = 0.0;
+            slope = meanY / meanX;
+        }
+
+        return new double[] {intercept, slope};
+    }
+}
@@ -0,0 +1,84 @@
+package org.deeplearning4j.parallelism.inference.scheduler;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.Observer;
+
+/**
+ * This class holds single inference request, waiting in {@link AdaptiveBatchScheduler} until some worker picks it up.
+ * Once request is included into batch, its output is available via {@link #getOutput()}
+ */
+public class PendingRequest {
+    @Getter
+    private final Observer observer;
+    @Getter
+    private final INDArray[] input;
+    @Getter
+    private final INDArray[] inputMasks;
+    @Getter
+    private final int numExamples;
+    @Getter
+    private final long enqueueTime;
+
+    // original & padded time series length, if this request was padded for bucketing
+    private final int originalLength;
+    private final int paddedLength;
+
+    private volatile BatchedInferenceObservable observable;
+    private volatile int position;
+
+    protected PendingRequest(@NonNull Observer observer, @NonNull INDArray[] input, INDArray[] inputMasks,
+                    int originalLength, int paddedLength) {
+        this.observer = observer;
+        this.input = input;
+        this.inputMasks = inputMasks;
+        this.numExamples = input[0].size(0);
+        this.originalLength = originalLength;
+        this.paddedLength = paddedLength;
+        this.enqueueTime = System.nanoTime();
+    }
+
+    protected void assign(@NonNull BatchedInferenceObservable observable, int position) {
+        this.position = position;
+        this.observable = observable;
+    }
+
+    /**
+     * @return true if this request was already included into some batch
+     */
+    public boolean isAssigned() {
+        return observable != null;
+    }
+
+    /**
+     * This method returns output for this request. Time series outputs are trimmed back to original length,
+     * if input was padded for bucketing.
+     *
+     * PLEASE NOTE: This method should be called only after observer was notified
+     *
+     * @return
+     */
+    public INDArray[] getOutput() {
+        if (observable == null)
+            throw new IllegalStateException("Request wasn't processed yet");
+
+        INDArray[] output = observable.getOutput(position);
+        if (originalLength < 0 || originalLength == paddedLength)
+            return output;
+
+        INDArray[] trimmed = new INDArray[output.length];
+        for (int i = 0; i < output.length; i++) {
+            if (output[i].rank() == 3 && output[i].size(2) == paddedLength) {
+                trimmed[i] = output[i].get(NDArrayIndex.all(), NDArrayIndex.all(),
+                                NDArrayIndex.interval(0, originalLength));
+            } else
+                trimmed[i] = output[i];
+        }
+
+        return trimmed;
+    }
+}
@@ -0,0 +1,40 @@
+package org.deeplearning4j.parallelism.inference.scheduler;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observer;
+
+/**
+ * BatchedInferenceObservable formed by {@link AdaptiveBatchScheduler} on worker side.
+ * Besides inputs it keeps track of requests it was built from, so latencies can be accounted after forward pass.
+ */
+public class ScheduledBatch extends BatchedInferenceObservable {
+    @Getter
+    private final ShapeBucket bucket;
+    @Getter
+    private final List<PendingRequest> requests = new ArrayList<>();
+    @Getter
+    private int numExamples;
+
+    protected ScheduledBatch(@NonNull ShapeBucket bucket) {
+        super();
+        this.bucket = bucket;
+    }
+
+    protected void addRequest(@NonNull PendingRequest request) {
+        int position = requests.size();
+        requests.add(request);
+        numExamples += request.getNumExamples();
+
+        addInput(request.getInput(), request.getInputMasks());
+        request.assign(this, position);
+
+        // observer gets the request itself as argument, so it can fetch its own part of the output from any thread
+        final Observer observer = request.getObserver();
+        addObserver((o, arg) -> observer.update(o, request));
+    }
+}
@@ -0,0 +1,110 @@
+package org.deeplearning4j.parallelism.inference.scheduler;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class holds pending requests that share the same input shapes (ignoring minibatch dimension),
+ * so they can be merged into single batch. Each bucket keeps its own {@link LatencyModel},
+ * since forward pass time depends on input shape.
+ */
+public class ShapeBucket {
+    @Getter
+    private final Key key;
+    @Getter
+    private final LatencyModel latencyModel = new LatencyModel();
+
+    private final ConcurrentLinkedQueue<PendingRequest> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger examples = new AtomicInteger(0);
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+    protected ShapeBucket(@NonNull Key key) {
+        this.key = key;
+    }
+
+    protected void add(@NonNull PendingRequest request) {
+        // counter goes first, so drain never sees more requests than examples counted
+        examples.addAndGet(request.getNumExamples());
+        queue.add(request);
+    }
+
+    protected PendingRequest peek() {
+        return queue.peek();
+    }
+
+    protected PendingRequest poll() {
+        PendingRequest request = queue.poll();
+        if (request != null)
+            examples.addAndGet(-request.getNumExamples());
+
+        return request;
+    }
+
+    /**
+     * @return number of examples currently waiting in this bucket
+     */
+    public int getNumExamples() {
+        return examples.get();
+    }
+
+    /**
+     * Only one worker at a time can drain bucket, that keeps requests order and batch sizes predictable
+     *
+     * @return true if bucket was claimed by caller
+     */
+    protected boolean claim() {
+        return claimed.compareAndSet(false, true);
+    }
+
+    protected void release() {
+        claimed.set(false);
+    }
+
+
+    /**
+     * Shape signature of the request: input shapes without minibatch dimension, plus presence of masks
+     */
+    public static class Key {
+        private final int[][] shapes;
+        private final boolean[] masks;
+        private final int hash;
+
+        public Key(@NonNull INDArray[] input, INDArray[] inputMasks) {
+            shapes = new int[input.length][];
+            masks = new boolean[input.length];
+            for (int i = 0; i < input.length; i++) {
+                int[] shape = input[i].shape();
+                shapes[i] = Arrays.copyOfRange(shape, 1, shape.length);
+                masks[i] = inputMasks != null && inputMasks.length > i && inputMasks[i] != null;
+            }
+            hash = 31 * Arrays.deepHashCode(shapes) + Arrays.hashCode(masks);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key other = (Key) o;
+            return hash == other.hash && Arrays.deepEquals(shapes, other.shapes) && Arrays.equals(masks, other.masks);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.deepToString(shapes) + Arrays.toString(masks);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.deeplearning4j.parallelism.inference.scheduler;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-worker scheduler statistics
+ */
+@Getter
+public class WorkerStats {
+    private final int workerId;
+
+    // number of examples in each batch processed by this worker
+    private final Histogram batchSizes = new Histogram();
+
+    // number of examples pending in the scheduler at the moment this worker formed a batch
+    private final Histogram queueDepths = new Histogram();
+
+    // forward pass time, in microseconds
+    private final Histogram forwardTimes = new Histogram();
+
+    private final AtomicLong batches = new AtomicLong(0);
+    private final AtomicLong examples = new AtomicLong(0);
+
+    public WorkerStats(int workerId) {
+        this.workerId = workerId;
+    }
+
+    protected void recordDispatch(int queueDepth) {
+        queueDepths.record(queueDepth);
+    }
+
+    protected void recordBatch(int batchSize, long forwardNanos) {
+        batchSizes.record(batchSize);
+        forwardTimes.record(forwardNanos / 1000);
+        batches.incrementAndGet();
+        examples.addAndGet(batchSize);
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerStats(worker=" + workerId + ", batches=" + batches.get() + ", examples=" + examples.get()
+                        + ", batchSizes=" + batchSizes + ", queueDepths=" + queueDepths + ", forwardTimesUs="
+                        + forwardTimes + ")";
+    }
+}
@@ -14,10 +14,13 @@ import org.nd4j.linalg.io.ClassPathResource;
 import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
 import org.deeplearning4j.eval.Evaluation;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.inference.InferenceCallback;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.LoadSheddingPolicy;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.FutureInferenceObserver;
 import org.deeplearning4j.util.ModelSerializer;
 import org.junit.After;
 import org.junit.Before;
@@ -31,8 +34,13 @@ import org.nd4j.linalg.primitives.Pair;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -424,6 +432,185 @@ public class ParallelInferenceTest {
 
 
 
+    @Test(timeout = 60000L)
+    public void testAdaptiveInferenceTSBucketing() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+
+        int nIn = 10;
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activation(Activation.TANH)
+                .seed(12345)
+                .list()
+                .layer(new LSTM.Builder().nIn(nIn).nOut(5).build())
+                .layer(new RnnOutputLayer.Builder().nIn(5).nOut(5).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        for( int w : new int[]{1,2}) {
+            final ParallelInference inf =
+                    new ParallelInference.Builder(net)
+                            .inferenceMode(InferenceMode.ADAPTIVE)
+                            .batchLimit(20)
+                            .queueLimit(64)
+                            .maxWait(5, TimeUnit.MILLISECONDS)
+                            .targetLatency(500, TimeUnit.MILLISECONDS)
+                            .timeSeriesBucketSize(8)
+                            .workers(w).build();
+
+            List<INDArray> arrs = new ArrayList<>();
+            List<INDArray> exp = new ArrayList<>();
+
+            Random r = new Random(12345);
+            for( int i=0; i<200; i++ ){
+                INDArray in = Nd4j.rand(new int[]{r.nextInt(3)+1, nIn, r.nextInt(20)+1});
+                arrs.add(in);
+                exp.add(net.output(in));
+            }
+            testParallelInference(inf, arrs, exp);
+
+            long batches = 0;
+            for( int i=0; i<w; i++ ){
+                batches += inf.getWorkerStats(i).getBatches().get();
+                log.info("Worker {}: {}", i, inf.getWorkerStats(i));
+            }
+            assertTrue(batches > 0);
+            assertTrue(inf.getLatencyHistogram().getCount() > 0);
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testOutputAsync() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+
+        int nIn = 10;
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activation(Activation.TANH)
+                .seed(12345)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(nIn).nOut(5).build())
+                .layer(new OutputLayer.Builder().nIn(5).nOut(5).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        for( InferenceMode m : InferenceMode.values()) {
+            for (int w : new int[]{1, 2}) {
+                final ParallelInference inf =
+                        new ParallelInference.Builder(net)
+                                .inferenceMode(m)
+                                .batchLimit(20)
+                                .queueLimit(1024)
+                                .workers(w).build();
+
+                List<INDArray> exp = new ArrayList<>();
+                List<CompletableFuture<INDArray[]>> futures = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    INDArray in = Nd4j.rand(1 + i % 3, nIn);
+                    exp.add(net.output(in));
+                    futures.add(inf.outputAsync(new INDArray[]{in}, null));
+                }
+
+                for (int i = 0; i < futures.size(); i++) {
+                    assertEquals(exp.get(i), futures.get(i).get(10, TimeUnit.SECONDS)[0]);
+                }
+
+                // callback variant
+                final CountDownLatch latch = new CountDownLatch(1);
+                final AtomicReference<INDArray[]> result = new AtomicReference<>();
+                inf.outputAsync(new INDArray[]{Nd4j.ones(1, nIn)}, null, new InferenceCallback() {
+                    @Override
+                    public void onOutput(INDArray[] output) {
+                        result.set(output);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        latch.countDown();
+                    }
+                });
+
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+                assertEquals(net.output(Nd4j.ones(1, nIn)), result.get()[0]);
+
+                // error propagation
+                try {
+                    inf.outputAsync(new INDArray[]{Nd4j.ones(1, 5)}, null).get(10, TimeUnit.SECONDS);
+                    fail("Expected exception");
+                } catch (ExecutionException e){
+                    assertTrue(e.getCause() instanceof DL4JInvalidInputException);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testProviderRejection() throws Exception {
+        LinkedBlockingQueue<InferenceObservable> queue = new LinkedBlockingQueue<>(1);
+        ParallelInference.ObservablesProvider provider = new ParallelInference.ObservablesProvider(10000000L, 1, queue);
+
+        FutureInferenceObserver observer1 = new FutureInferenceObserver();
+        FutureInferenceObserver observer2 = new FutureInferenceObserver();
+        FutureInferenceObserver observer3 = new FutureInferenceObserver();
+
+        assertNotNull(provider.trySetInput(observer1, new INDArray[]{Nd4j.create(100)}, null, LoadSheddingPolicy.REJECT));
+        assertNull(provider.trySetInput(observer2, new INDArray[]{Nd4j.create(100)}, null, LoadSheddingPolicy.REJECT));
+        assertFalse(observer1.getFuture().isDone());
+
+        // oldest request gets dropped
+        InferenceObservable observable3 = provider.trySetInput(observer3, new INDArray[]{Nd4j.create(100).assign(3.0)},
+                null, LoadSheddingPolicy.DROP_OLDEST);
+        assertNotNull(observable3);
+        assertTrue(observer1.getFuture().isCompletedExceptionally());
+        assertEquals(1, queue.size());
+        assertTrue(queue.peek() == observable3);
+
+        observable3.setOutputBatches(Collections.singletonList(observable3.getInputBatches().get(0).getFirst()));
+        assertEquals(Nd4j.create(100).assign(3.0), observer3.getFuture().get()[0]);
+    }
+
+    @Test
+    public void testProviderDropOldestBatch() throws Exception {
+        LinkedBlockingQueue<InferenceObservable> queue = new LinkedBlockingQueue<>(1);
+        ParallelInference.ObservablesProvider provider = new ParallelInference.ObservablesProvider(10000000L, 2, queue);
+
+        FutureInferenceObserver[] observers = new FutureInferenceObserver[4];
+        for (int i = 0; i < observers.length; i++)
+            observers[i] = new FutureInferenceObserver();
+
+        // first two requests share the same batch, queue limit isn't involved for the second one
+        InferenceObservable batch1 = provider.trySetInput(observers[0], new INDArray[]{Nd4j.create(100)}, null,
+                LoadSheddingPolicy.REJECT);
+        assertTrue(batch1 == provider.trySetInput(observers[1], new INDArray[]{Nd4j.create(100)}, null,
+                LoadSheddingPolicy.REJECT));
+
+        // new batch is required: the whole oldest batch gets dropped
+        InferenceObservable batch2 = provider.trySetInput(observers[2],
+                new INDArray[]{Nd4j.create(100).assign(2.0)}, null, LoadSheddingPolicy.DROP_OLDEST);
+        assertNotNull(batch2);
+        assertTrue(batch1 != batch2);
+        assertTrue(observers[0].getFuture().isCompletedExceptionally());
+        assertTrue(observers[1].getFuture().isCompletedExceptionally());
+        assertEquals(1, queue.size());
+        assertTrue(queue.peek() == batch2);
+
+        assertTrue(batch2 == provider.trySetInput(observers[3], new INDArray[]{Nd4j.create(100).assign(3.0)}, null,
+                LoadSheddingPolicy.DROP_OLDEST));
+        assertFalse(observers[2].getFuture().isDone());
+        assertFalse(observers[3].getFuture().isDone());
+
+        List<Pair<INDArray[], INDArray[]>> inputs = batch2.getInputBatches();
+        assertEquals(1, inputs.size());
+        batch2.setOutputBatches(Collections.singletonList(inputs.get(0).getFirst()));
+        assertEquals(Nd4j.create(100).assign(2.0), observers[2].getFuture().get()[0]);
+        assertEquals(Nd4j.create(100).assign(3.0), observers[3].getFuture().get()[0]);
+    }
+
     @Test(timeout = 30000L)
     public void testParallelInferenceVariableSizeCNN() throws Exception {
         //Variable size input for CNN model - for example, YOLO models
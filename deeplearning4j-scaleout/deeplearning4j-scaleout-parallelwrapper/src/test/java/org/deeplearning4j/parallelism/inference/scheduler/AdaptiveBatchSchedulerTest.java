@@ -0,0 +1,205 @@
+package org.deeplearning4j.parallelism.inference.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.parallelism.inference.LoadSheddingPolicy;
+import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
+import org.deeplearning4j.parallelism.inference.observers.FutureInferenceObserver;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class AdaptiveBatchSchedulerTest {
+
+    @Test
+    public void testHistogram1() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 1e-5);
+
+        // values below 16 are exact
+        assertEquals(10, histogram.getPercentile(10));
+
+        // larger values are within 12.5%
+        assertEquals(50, histogram.getPercentile(50), 50 * 0.125);
+        assertEquals(99, histogram.getPercentile(99), 99 * 0.125);
+        assertEquals(100, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long v : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123456789L, Long.MAX_VALUE}) {
+            int idx = Histogram.bucketIndex(v);
+            assertTrue(Histogram.bucketUpperBound(idx) >= v);
+            if (idx > 0)
+                assertTrue(Histogram.bucketUpperBound(idx - 1) < v);
+        }
+    }
+
+    @Test
+    public void testLatencyModel1() {
+        LatencyModel model = new LatencyModel(1.0);
+        assertFalse(model.hasObservations());
+        assertEquals(-1, model.predict(10));
+        assertEquals(32, model.maxBatchSize(1000, 32));
+
+        // 1000ns fixed + 100ns per example
+        for (int b : new int[] {1, 2, 4, 8, 16, 32}) {
+            model.observe(b, 1000 + 100 * b);
+        }
+
+        assertEquals(2000, model.predict(10), 1.0);
+        assertEquals(10, model.maxBatchSize(2050, 32));
+        assertEquals(32, model.maxBatchSize(100000, 32));
+        assertEquals(1, model.maxBatchSize(500, 32));
+    }
+
+    @Test
+    public void testLatencyModelSingleBatchSize() {
+        LatencyModel model = new LatencyModel();
+        for (int i = 0; i < 10; i++)
+            model.observe(4, 400);
+
+        // single batch size observed: time is assumed proportional to batch size
+        assertEquals(800, model.predict(8), 1.0);
+        assertEquals(5, model.maxBatchSize(550, 32));
+    }
+
+    @Test
+    public void testBatching1() {
+        AdaptiveBatchScheduler scheduler = new AdaptiveBatchScheduler(1, 8, 4, 0, 1000000000L, 0);
+
+        List<PendingRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            requests.add(scheduler.submit(new BasicInferenceObserver(),
+                            new INDArray[] {Nd4j.create(1, 10).assign(i)}, null));
+        }
+
+        // different shape goes to its own bucket
+        PendingRequest other = scheduler.submit(new BasicInferenceObserver(), new INDArray[] {Nd4j.create(1, 5)}, null);
+
+        assertEquals(4, scheduler.getPendingExamples());
+        assertEquals(2, scheduler.getNumberOfBuckets());
+
+        ScheduledBatch batch = scheduler.next(0);
+        assertNotNull(batch);
+        assertEquals(3, batch.getNumExamples());
+        assertEquals(1, scheduler.getPendingExamples());
+
+        List<Pair<INDArray[], INDArray[]>> inputs = batch.getInputBatches();
+        assertEquals(1, inputs.size());
+        assertArrayEquals(new int[] {3, 10}, inputs.get(0).getFirst()[0].shape());
+
+        // identity "model"
+        batch.setOutputBatches(Collections.singletonList(inputs.get(0).getFirst()));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(requests.get(i).isAssigned());
+            assertEquals(Nd4j.create(1, 10).assign(i), requests.get(i).getOutput()[0]);
+        }
+
+        scheduler.batchCompleted(0, batch, 1000);
+        assertEquals(1, scheduler.getWorkerStats(0).getBatches().get());
+        assertEquals(3, scheduler.getWorkerStats(0).getBatchSizes().getMax());
+        assertEquals(3, scheduler.getLatencies().getCount());
+
+        ScheduledBatch batch2 = scheduler.next(0);
+        assertNotNull(batch2);
+        assertEquals(1, batch2.getNumExamples());
+        assertTrue(other.isAssigned());
+    }
+
+    @Test
+    public void testBatchLimit() {
+        AdaptiveBatchScheduler scheduler = new AdaptiveBatchScheduler(1, 4, 4, 0, 1000000000L, 0);
+
+        for (int i = 0; i < 10; i++)
+            scheduler.submit(new BasicInferenceObserver(), new INDArray[] {Nd4j.create(1, 10)}, null);
+
+        assertEquals(4, scheduler.next(0).getNumExamples());
+        assertEquals(4, scheduler.next(0).getNumExamples());
+        assertEquals(2, scheduler.next(0).getNumExamples());
+    }
+
+    @Test
+    public void testTimeSeriesPadding() {
+        AdaptiveBatchScheduler scheduler = new AdaptiveBatchScheduler(1, 8, 4, 0, 1000000000L, 8);
+
+        INDArray in1 = Nd4j.rand(new int[] {1, 4, 5});
+        INDArray in2 = Nd4j.rand(new int[] {2, 4, 7});
+
+        PendingRequest r1 = scheduler.submit(new BasicInferenceObserver(), new INDArray[] {in1}, null);
+        PendingRequest r2 = scheduler.submit(new BasicInferenceObserver(), new INDArray[] {in2}, null);
+
+        assertArrayEquals(new int[] {1, 4, 8}, r1.getInput()[0].shape());
+        assertArrayEquals(new int[] {1, 8}, r1.getInputMasks()[0].shape());
+        assertEquals(5.0, r1.getInputMasks()[0].sumNumber().doubleValue(), 1e-5);
+        assertEquals(14.0, r2.getInputMasks()[0].sumNumber().doubleValue(), 1e-5);
+
+        // both requests are in the same bucket now
+        assertEquals(1, scheduler.getNumberOfBuckets());
+
+        ScheduledBatch batch = scheduler.next(0);
+        assertEquals(3, batch.getNumExamples());
+
+        List<Pair<INDArray[], INDArray[]>> inputs = batch.getInputBatches();
+        assertEquals(1, inputs.size());
+        batch.setOutputBatches(Collections.singletonList(inputs.get(0).getFirst()));
+
+        assertEquals(in1, r1.getOutput()[0]);
+        assertEquals(in2, r2.getOutput()[0]);
+    }
+
+    @Test
+    public void testLoadShedding() throws Exception {
+        // pending limit is 2 examples
+        AdaptiveBatchScheduler scheduler = new AdaptiveBatchScheduler(1, 2, 1, 0, 1000000000L, 0);
+
+        FutureInferenceObserver observer1 = new FutureInferenceObserver();
+        FutureInferenceObserver observer2 = new FutureInferenceObserver();
+        FutureInferenceObserver observer3 = new FutureInferenceObserver();
+        FutureInferenceObserver observer4 = new FutureInferenceObserver();
+
+        assertNotNull(scheduler.trySubmit(observer1, new INDArray[] {Nd4j.create(1, 10)}, null, LoadSheddingPolicy.REJECT));
+        assertNotNull(scheduler.trySubmit(observer2, new INDArray[] {Nd4j.create(1, 10)}, null, LoadSheddingPolicy.REJECT));
+        assertNull(scheduler.trySubmit(observer3, new INDArray[] {Nd4j.create(1, 10)}, null, LoadSheddingPolicy.REJECT));
+        assertEquals(2, scheduler.getPendingExamples());
+
+        PendingRequest r4 = scheduler.trySubmit(observer4, new INDArray[] {Nd4j.create(1, 10).assign(4.0)}, null,
+                        LoadSheddingPolicy.DROP_OLDEST);
+        assertNotNull(r4);
+        assertEquals(2, scheduler.getPendingExamples());
+
+        assertTrue(observer1.getFuture().isCompletedExceptionally());
+        try {
+            observer1.getFuture().get();
+            fail("Expected exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertFalse(observer2.getFuture().isDone());
+
+        ScheduledBatch batch = scheduler.next(0);
+        assertEquals(2, batch.getNumExamples());
+        batch.setOutputBatches(Collections.singletonList(batch.getInputBatches().get(0).getFirst()));
+
+        assertTrue(observer2.getFuture().isDone());
+        assertEquals(Nd4j.create(1, 10).assign(4.0), observer4.getFuture().get()[0]);
+    }
+}
@@ -0,0 +1,106 @@
+package org.deeplearning4j.ui.profiler;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.apache.commons.compress.utils.IOUtils;
+import org.deeplearning4j.api.storage.Persistable;
+import org.deeplearning4j.optimize.listeners.profiler.LatencyHistogram;
+import org.deeplearning4j.optimize.listeners.profiler.LayerProfile;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Persistable for the per-layer profiling statistics collected by {@link StatsStorageLayerProfilerListener}
+ */
+@AllArgsConstructor
+@Data
+public class ProfilerPersistable implements Persistable {
+
+    public static final String TYPE_ID = "LayerProfiler";
+
+    private String sessionID;
+    private String workerID;
+    private long timestamp;
+    private int iteration;
+    private Map<String, LayerProfile> profiles;
+    private LatencyHistogram updater;
+
+    public ProfilerPersistable() {}
+
+    @Override
+    public String getSessionID() {
+        return sessionID;
+    }
+
+    @Override
+    public String getTypeID() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public String getWorkerID() {
+        return workerID;
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return timestamp;
+    }
+
+    @Override
+    public int encodingLengthBytes() {
+        return 0;
+    }
+
+    @Override
+    public byte[] encode() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(this);
+        } catch (IOException e) {
+            throw new RuntimeException(e); //Shouldn't normally happen
+        }
+
+        return baos.toByteArray();
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer) {
+        buffer.put(encode());
+    }
+
+    @Override
+    public void encode(OutputStream outputStream) throws IOException {
+        outputStream.write(encode());
+    }
+
+    @Override
+    public void decode(byte[] decode) {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(decode))) {
+            ProfilerPersistable p = (ProfilerPersistable) ois.readObject();
+            this.sessionID = p.sessionID;
+            this.workerID = p.workerID;
+            this.timestamp = p.timestamp;
+            this.iteration = p.iteration;
+            this.profiles = p.profiles;
+            this.updater = p.updater;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e); //Shouldn't normally happen
+        }
+    }
+
+    @Override
+    public void decode(ByteBuffer buffer) {
+        byte[] arr = new byte[buffer.remaining()];
+        buffer.get(arr);
+        decode(arr);
+    }
+
+    @Override
+    public void decode(InputStream inputStream) throws IOException {
+        byte[] b = IOUtils.toByteArray(inputStream);
+        decode(b);
+    }
+}
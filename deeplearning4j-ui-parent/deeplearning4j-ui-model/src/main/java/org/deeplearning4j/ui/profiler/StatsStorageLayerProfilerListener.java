@@ -0,0 +1,74 @@
+package org.deeplearning4j.ui.profiler;
+
+import lombok.NonNull;
+import org.deeplearning4j.api.storage.StatsStorageRouter;
+import org.deeplearning4j.api.storage.StorageMetaData;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.optimize.listeners.profiler.LayerProfilerListener;
+import org.deeplearning4j.ui.storage.impl.JavaStorageMetaData;
+import org.deeplearning4j.util.UIDProvider;
+
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+/**
+ * A {@link LayerProfilerListener} that, in addition to logging, posts the per-layer profiling statistics to a
+ * {@link StatsStorageRouter} (such as a StatsStorage instance) as {@link ProfilerPersistable} updates, every
+ * reportFrequency iterations.
+ */
+public class StatsStorageLayerProfilerListener extends LayerProfilerListener {
+
+    private final StatsStorageRouter router;
+    private final String sessionID;
+    private final String workerID;
+    private boolean metaDataPosted;
+
+    /**
+     * @param router          Router (StatsStorage) to post the results to
+     * @param reportFrequency Frequency (in iterations) for posting the results
+     */
+    public StatsStorageLayerProfilerListener(@NonNull StatsStorageRouter router, int reportFrequency) {
+        this(router, new LayerProfilerListener.Builder().reportFrequency(reportFrequency), null, null);
+    }
+
+    /**
+     * @param router    Router (StatsStorage) to post the results to
+     * @param builder   Profiler configuration
+     * @param sessionID Session ID. If null: a random session ID is used
+     * @param workerID  Worker ID. If null: a worker ID based on the JVM UID and thread ID is used
+     */
+    public StatsStorageLayerProfilerListener(@NonNull StatsStorageRouter router,
+                    @NonNull LayerProfilerListener.Builder builder, String sessionID, String workerID) {
+        super(builder);
+        this.router = router;
+        this.sessionID = (sessionID == null ? UUID.randomUUID().toString() : sessionID);
+        this.workerID = (workerID == null ? UIDProvider.getJVMUID() + "_" + Thread.currentThread().getId()
+                        : workerID);
+    }
+
+    @Override
+    protected void onReport(Model model, int iteration) {
+        super.onReport(model, iteration);
+        long time = System.currentTimeMillis();
+        if (!metaDataPosted) {
+            StorageMetaData meta = new JavaStorageMetaData(time, sessionID, ProfilerPersistable.TYPE_ID, workerID,
+                            null, ProfilerPersistable.class);
+            router.putStorageMetaData(meta);
+            metaDataPosted = true;
+        }
+
+        ProfilerPersistable p = new ProfilerPersistable(sessionID, workerID, time, iteration,
+                        new LinkedHashMap<>(getProfiles()), getUpdaterHistogram());
+        //Profiles are updated in-place by subsequent iterations: store a deep copy
+        p.decode(p.encode());
+        router.putUpdate(p);
+    }
+
+    public String getSessionID() {
+        return sessionID;
+    }
+
+    public String getWorkerID() {
+        return workerID;
+    }
+}
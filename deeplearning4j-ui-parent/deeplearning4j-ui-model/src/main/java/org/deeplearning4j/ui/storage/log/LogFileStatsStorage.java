@@ -0,0 +1,1070 @@
+package org.deeplearning4j.ui.storage.log;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.deeplearning4j.api.storage.*;
+import org.deeplearning4j.ui.storage.AgronaPersistable;
+import org.deeplearning4j.ui.storage.BaseCollectionStatsStorage;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A file-based {@link StatsStorage} implementation, based on segmented append-only log files.<br>
+ * Records are written as they are encoded by {@link Persistable#encode()} (i.e., SBE for the default stats classes),
+ * with a small header: session, type and worker IDs, timestamp, class name and CRC32.
+ * <p>
+ * Design:<br>
+ * - Writes are group-committed: putUpdate() only encodes the record and reserves its position in the log; records
+ *   are written in batches by a background thread, every flushInterval milliseconds or once maxBatchBytes are pending.<br>
+ * - An in-memory (session, type, worker) -&gt; timestamp index points to records in the log, so queries such as
+ *   getAllUpdatesAfter() cost O(log n + results) regardless of file size. Static info and metadata are small, and are
+ *   kept in memory.<br>
+ * - Full segments are sealed and memory-mapped for reads. Records replaced later (same IDs and timestamp) are garbage;
+ *   segments that are mostly garbage are compacted in the background, by re-appending their live records.<br>
+ * - On open, segments are scanned to rebuild the index. An incomplete record at the end of the log (i.e., after a
+ *   crash) is truncated.
+ * <p>
+ * PLEASE NOTE: records that haven't been flushed yet are lost on crash, unless {@link #flush()} was called. Storage
+ * directory should be used by one instance at a time.
+ */
+@Slf4j
+public class LogFileStatsStorage extends BaseCollectionStatsStorage {
+    protected static final int MAGIC = 0x444C3453;
+    protected static final int VERSION = 1;
+    protected static final int SEGMENT_HEADER_SIZE = 8;
+    protected static final String SEGMENT_PREFIX = "segment-";
+    protected static final String SEGMENT_SUFFIX = ".log";
+
+    protected static final byte KIND_METADATA = 1;
+    protected static final byte KIND_STATIC_INFO = 2;
+    protected static final byte KIND_UPDATE = 3;
+
+    // record length (4), crc32 (4), kind (1), timestamp (8); followed by IDs, class name and encoded persistable
+    private static final int RECORD_HEADER_SIZE = 17;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long flushInterval;
+    private final int maxBatchBytes;
+    private final boolean syncOnFlush;
+    private final double compactionThreshold;
+
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<SessionTypeWorkerId, Location> staticInfoLocations = new ConcurrentHashMap<>();
+    private final Map<SessionTypeId, Location> metaDataLocations = new ConcurrentHashMap<>();
+    private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+
+    // group commit state & index updates, guarded by writeLock
+    private final Object writeLock = new Object();
+    private List<PendingRecord> pending = new ArrayList<>();
+    private int pendingBytes;
+    private volatile Segment writeSegment;
+    private int writePosition;
+
+    // batches are written one at a time, in order
+    private final Object flushLock = new Object();
+
+    private final Thread flusher;
+    private final ScheduledExecutorService compactor;
+    private volatile boolean isClosed = false;
+    private volatile IOException writeError;
+
+    /**
+     * @param directory Storage location for the stats. Created if it doesn't exist
+     */
+    public LogFileStatsStorage(File directory) {
+        this(new Builder(directory));
+    }
+
+    private LogFileStatsStorage(Builder builder) {
+        this.directory = builder.getDirectory();
+        this.segmentSize = builder.getSegmentSize();
+        this.flushInterval = builder.getFlushIntervalMs();
+        this.maxBatchBytes = builder.getMaxBatchBytes();
+        this.syncOnFlush = builder.isSyncOnFlush();
+        this.compactionThreshold = builder.getCompactionThreshold();
+
+        sessionIDs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        storageMetaData = new ConcurrentHashMap<>();
+        staticInfo = new ConcurrentHashMap<>();
+
+        try {
+            open();
+        } catch (IOException e) {
+            closeSegments();
+            throw new RuntimeException("Error initializing LogFileStatsStorage in " + directory, e);
+        }
+
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "LogFileStatsStorage flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        compactor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "LogFileStatsStorage compactor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        if (builder.getCompactionIntervalMs() > 0) {
+            compactor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } catch (Exception e) {
+                        log.warn("LogFileStatsStorage compaction failed", e);
+                    }
+                }
+            }, builder.getCompactionIntervalMs(), builder.getCompactionIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // ----- Log files -----
+
+    private static File segmentFile(File directory, int id) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Unable to create directory " + directory);
+        if (!directory.isDirectory())
+            throw new IOException(directory + " is not a directory");
+
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.isFile() && f.getName().startsWith(SEGMENT_PREFIX) && f.getName().endsWith(SEGMENT_SUFFIX);
+            }
+        });
+
+        TreeMap<Integer, File> sorted = new TreeMap<>();
+        for (File f : files) {
+            String name = f.getName();
+            try {
+                sorted.put(Integer.parseInt(
+                                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), f);
+            } catch (NumberFormatException e) {
+                log.warn("Skipping unknown file {}", f);
+            }
+        }
+
+        for (Map.Entry<Integer, File> e : sorted.entrySet()) {
+            Segment s = new Segment(e.getKey(), e.getValue());
+            segments.put(s.id, s);
+            scan(s);
+        }
+
+        synchronized (writeLock) {
+            if (segments.isEmpty()) {
+                roll();
+            } else {
+                // keep appending to the last segment
+                writeSegment = segments.lastEntry().getValue();
+                writePosition = writeSegment.size;
+                writeSegment.mapped = null;
+            }
+        }
+    }
+
+    /**
+     * Reads all records of the segment into the index, and truncates incomplete record at the end of segment, if any
+     */
+    private void scan(Segment s) throws IOException {
+        long fileSize = s.channel.size();
+        if (fileSize < SEGMENT_HEADER_SIZE)
+            throw new IOException("Invalid log segment " + s.file + ": file is too short");
+        if (fileSize > Integer.MAX_VALUE)
+            throw new IOException("Invalid log segment " + s.file + ": file is too large");
+
+        MappedByteBuffer buffer = s.channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        if (buffer.getInt(0) != MAGIC)
+            throw new IOException("Invalid log segment " + s.file + ": not a LogFileStatsStorage file");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported log segment version " + buffer.getInt(4) + " in " + s.file);
+
+        int position = SEGMENT_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= fileSize) {
+            int length = buffer.getInt(position);
+            if (length < RECORD_HEADER_SIZE || position + (long) length > fileSize
+                            || buffer.getInt(position + 4) != checksum(buffer, position, length))
+                break;
+
+            RecordHeader header = RecordHeader.read(buffer, position);
+            Location location = new Location(s.id, position, length);
+            s.liveBytes.addAndGet(length);
+            switch (header.kind) {
+                case KIND_UPDATE:
+                    release(updateIndex(header.getSessionTypeWorkerId(), true).put(header.timestamp, location));
+                    break;
+                case KIND_STATIC_INFO:
+                    Persistable p = decode(buffer, position, length);
+                    putStaticInfoIndex(p, location);
+                    break;
+                case KIND_METADATA:
+                    StorageMetaData m = (StorageMetaData) decode(buffer, position, length);
+                    putMetaDataIndex(m, location);
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + header.kind + " in " + s.file);
+            }
+            position += length;
+        }
+
+        if (position < fileSize) {
+            log.warn("Truncating log segment {} at position {} of {}: incomplete or corrupted record", s.file,
+                            position, fileSize);
+            s.channel.truncate(position);
+            buffer = s.channel.map(FileChannel.MapMode.READ_ONLY, 0, position);
+        }
+
+        s.size = position;
+        s.flushedSize = position;
+        s.mapped = buffer;
+    }
+
+    /**
+     * Starts new segment. Must be called with writeLock held
+     */
+    private void roll() throws IOException {
+        Segment old = writeSegment;
+        int id = old == null ? 0 : old.id + 1;
+
+        Segment s = new Segment(id, segmentFile(directory, id));
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining())
+            s.channel.write(header, header.position());
+        s.channel.truncate(SEGMENT_HEADER_SIZE);
+        s.size = SEGMENT_HEADER_SIZE;
+        s.flushedSize = SEGMENT_HEADER_SIZE;
+        segments.put(id, s);
+
+        if (old != null) {
+            // old segment is sealed once all its pending records are written
+            pending.add(new PendingRecord(old, -1, null));
+        }
+        writeSegment = s;
+        writePosition = SEGMENT_HEADER_SIZE;
+    }
+
+    private void seal(Segment s) throws IOException {
+        s.channel.force(false);
+        s.mapped = s.channel.map(FileChannel.MapMode.READ_ONLY, 0, s.size);
+    }
+
+    private void closeSegments() {
+        for (Segment s : segments.values()) {
+            try {
+                s.channel.close();
+            } catch (IOException e) {
+                log.warn("Error closing log segment {}", s.file, e);
+            }
+        }
+    }
+
+    // ----- Writing -----
+
+    /**
+     * Appends the record to the log, and updates the in-memory index. Record is written by the next flush
+     */
+    private void append(byte kind, Persistable p) {
+        byte[] record = encode(kind, p);
+        RecordHeader header = RecordHeader.read(ByteBuffer.wrap(record), 0);
+
+        synchronized (writeLock) {
+            Location location = reserve(record);
+            switch (kind) {
+                case KIND_UPDATE:
+                    release(updateIndex(header.getSessionTypeWorkerId(), true).put(header.timestamp, location));
+                    break;
+                case KIND_STATIC_INFO:
+                    putStaticInfoIndex(p, location);
+                    break;
+                case KIND_METADATA:
+                    putMetaDataIndex((StorageMetaData) p, location);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reserves position for the record in the log. Must be called with writeLock held
+     */
+    private Location reserve(byte[] record) {
+        if (isClosed)
+            throw new IllegalStateException("Cannot write to closed LogFileStatsStorage");
+        if (writeError != null)
+            throw new RuntimeException("LogFileStatsStorage failed to write to " + directory, writeError);
+
+        if (writePosition + record.length > segmentSize && writePosition > SEGMENT_HEADER_SIZE) {
+            try {
+                roll();
+            } catch (IOException e) {
+                throw new RuntimeException("Error creating log segment in " + directory, e);
+            }
+        }
+
+        Segment s = writeSegment;
+        Location location = new Location(s.id, writePosition, record.length);
+        pending.add(new PendingRecord(s, writePosition, record));
+        writePosition += record.length;
+        s.size = writePosition;
+        s.liveBytes.addAndGet(record.length);
+
+        pendingBytes += record.length;
+        if (pendingBytes >= maxBatchBytes)
+            writeLock.notifyAll();
+        return location;
+    }
+
+    private void release(Location replaced) {
+        if (replaced == null)
+            return;
+        Segment s = segments.get(replaced.segment);
+        if (s != null)
+            s.liveBytes.addAndGet(-replaced.length);
+    }
+
+    /**
+     * Writes all pending records to the log files. If syncOnFlush is set, records are also forced to the disk.
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            List<PendingRecord> batch;
+            synchronized (writeLock) {
+                if (pending.isEmpty())
+                    return;
+                batch = pending;
+                pending = new ArrayList<>();
+                pendingBytes = 0;
+            }
+
+            int i = 0;
+            while (i < batch.size()) {
+                PendingRecord first = batch.get(i);
+                if (first.record == null) {
+                    seal(first.segment);
+                    i++;
+                    continue;
+                }
+
+                // records reserved in the same segment are contiguous: write them with one gathering write
+                int j = i + 1;
+                while (j < batch.size() && batch.get(j).segment == first.segment && batch.get(j).record != null)
+                    j++;
+
+                ByteBuffer[] buffers = new ByteBuffer[j - i];
+                long remaining = 0;
+                for (int k = i; k < j; k++) {
+                    buffers[k - i] = ByteBuffer.wrap(batch.get(k).record);
+                    remaining += buffers[k - i].remaining();
+                }
+
+                FileChannel channel = first.segment.channel;
+                channel.position(first.offset);
+                long written = remaining;
+                while (remaining > 0)
+                    remaining -= channel.write(buffers);
+                if (syncOnFlush)
+                    channel.force(false);
+
+                first.segment.flushedSize = (int) (first.offset + written);
+                i = j;
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (!isClosed) {
+            try {
+                synchronized (writeLock) {
+                    if (pendingBytes < maxBatchBytes && !isClosed)
+                        writeLock.wait(flushInterval);
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("LogFileStatsStorage failed to write to {}", directory, e);
+                writeError = e;
+                return;
+            }
+        }
+    }
+
+    // ----- Compaction -----
+
+    /**
+     * Compacts sealed segments, where less than compactionThreshold of the data is still live: live records are
+     * appended to the end of the log, and the segment file is deleted.
+     * Called periodically in background, if compactionIntervalMs is positive.
+     */
+    public void compact() throws IOException {
+        for (Segment s : segments.values()) {
+            if (isClosed)
+                return;
+
+            long total = s.size - SEGMENT_HEADER_SIZE;
+            if (s.mapped == null || s == writeSegment || total <= 0 || s.liveBytes.get() > compactionThreshold * total)
+                continue;
+
+            compact(s);
+        }
+    }
+
+    private void compact(Segment s) throws IOException {
+        MappedByteBuffer buffer = s.mapped;
+        int moved = 0;
+        int position = SEGMENT_HEADER_SIZE;
+        while (position < s.size) {
+            int length = buffer.getInt(position);
+            RecordHeader header = RecordHeader.read(buffer, position);
+
+            synchronized (writeLock) {
+                Location location = null;
+                switch (header.kind) {
+                    case KIND_UPDATE:
+                        UpdateIndex index = updateIndex(header.getSessionTypeWorkerId(), false);
+                        if (index != null && index.isAt(header.timestamp, s.id, position)) {
+                            location = reserve(copy(buffer, position, length));
+                            index.put(header.timestamp, location);
+                        }
+                        break;
+                    case KIND_STATIC_INFO:
+                        SessionTypeWorkerId stw = header.getSessionTypeWorkerId();
+                        if (staticInfoLocations.get(stw).isAt(s.id, position)) {
+                            location = reserve(copy(buffer, position, length));
+                            staticInfoLocations.put(stw, location);
+                        }
+                        break;
+                    case KIND_METADATA:
+                        SessionTypeId st = new SessionTypeId(header.sessionID, header.typeID);
+                        if (metaDataLocations.get(st).isAt(s.id, position)) {
+                            location = reserve(copy(buffer, position, length));
+                            metaDataLocations.put(st, location);
+                        }
+                        break;
+                }
+                if (location != null)
+                    moved++;
+            }
+            position += length;
+        }
+
+        // moved records must be durable before the segment goes away
+        flush();
+        writeSegment.channel.force(false);
+
+        segments.remove(s.id);
+        s.channel.close();
+        if (!s.file.delete()) {
+            log.warn("Unable to delete compacted log segment {}", s.file);
+            s.file.deleteOnExit();
+        }
+        log.debug("Compacted log segment {}: {} live records moved", s.file, moved);
+    }
+
+    private static byte[] copy(ByteBuffer buffer, int position, int length) {
+        byte[] record = new byte[length];
+        ByteBuffer b = buffer.duplicate();
+        b.position(position);
+        b.get(record);
+        return record;
+    }
+
+    // ----- Reading -----
+
+    /**
+     * Reads and decodes the record. Returns null if segment was deleted by compaction: caller should look up
+     * the record location again
+     */
+    private Persistable read(Location location) {
+        Segment s = segments.get(location.segment);
+        if (s == null)
+            return null;
+
+        try {
+            ByteBuffer buffer = s.mapped;
+            if (buffer != null)
+                return decode(buffer, location.offset, location.length);
+
+            if (location.offset + location.length > s.flushedSize)
+                flush();
+
+            buffer = s.mapped;
+            if (buffer != null)
+                return decode(buffer, location.offset, location.length);
+
+            // active segment: positional read, doesn't interfere with writes
+            ByteBuffer record = ByteBuffer.allocate(location.length);
+            while (record.hasRemaining()) {
+                if (s.channel.read(record, location.offset + record.position()) < 0)
+                    throw new IOException("Unexpected end of log segment " + s.file);
+            }
+            return decode(record, 0, location.length);
+        } catch (ClosedChannelException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading from " + s.file, e);
+        }
+    }
+
+    private Persistable readUpdate(UpdateIndex index, long timestamp) {
+        while (true) {
+            Location location = index.getLocation(timestamp);
+            if (location == null)
+                return null;
+            Persistable p = read(location);
+            if (p != null)
+                return p;
+        }
+    }
+
+    private List<Persistable> readUpdates(UpdateIndex index, long[] timestamps, Location[] locations,
+                    List<Persistable> out) {
+        for (int i = 0; i < timestamps.length; i++) {
+            Persistable p = read(locations[i]);
+            if (p == null)
+                p = readUpdate(index, timestamps[i]);
+            if (p != null)
+                out.add(p);
+        }
+        return out;
+    }
+
+    private Persistable decode(ByteBuffer buffer, int position, int length) {
+        RecordHeader header = RecordHeader.read(buffer, position);
+        int payloadOffset = position + header.headerLength;
+        int payloadLength = length - header.headerLength;
+
+        Class<?> c = classes.get(header.className);
+        Persistable p;
+        try {
+            if (c == null) {
+                c = Class.forName(header.className);
+                classes.put(header.className, c);
+            }
+            p = (Persistable) c.newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException("Unable to create instance of " + header.className, e);
+        }
+
+        if (p instanceof AgronaPersistable) {
+            //No copy: SBE decoder reads directly from mapped file
+            ((AgronaPersistable) p).decode(new UnsafeBuffer(buffer, payloadOffset, payloadLength));
+        } else {
+            ByteBuffer b = buffer.duplicate();
+            b.limit(payloadOffset + payloadLength);
+            b.position(payloadOffset);
+            p.decode(b.slice());
+        }
+        return p;
+    }
+
+    // ----- Record format -----
+
+    private static byte[] utf8(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        if (b.length > 0xFFFF)
+            throw new IllegalArgumentException("String is too long to be stored: " + b.length + " bytes");
+        return b;
+    }
+
+    protected static byte[] encode(byte kind, Persistable p) {
+        byte[] sid = utf8(p.getSessionID());
+        byte[] tid = utf8(p.getTypeID());
+        byte[] wid = utf8(p.getWorkerID() == null ? "" : p.getWorkerID());
+        byte[] className = utf8(p.getClass().getName());
+        int headerLength = RECORD_HEADER_SIZE + 8 + sid.length + tid.length + wid.length + className.length;
+
+        byte[] payload = null;
+        int payloadLength;
+        if (p instanceof AgronaPersistable) {
+            payloadLength = p.encodingLengthBytes();
+        } else {
+            payload = p.encode();
+            payloadLength = payload.length;
+        }
+
+        byte[] record = new byte[headerLength + payloadLength];
+        ByteBuffer b = ByteBuffer.wrap(record);
+        b.putInt(record.length).putInt(0).put(kind).putLong(p.getTimeStamp());
+        for (byte[] s : new byte[][] {sid, tid, wid, className}) {
+            b.putShort((short) s.length);
+            b.put(s);
+        }
+
+        if (payload != null) {
+            b.put(payload);
+        } else {
+            ((AgronaPersistable) p).encode(new UnsafeBuffer(record, headerLength, payloadLength));
+        }
+
+        b.putInt(4, checksum(b, 0, record.length));
+        return record;
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        if (buffer.hasArray()) {
+            crc.update(buffer.array(), buffer.arrayOffset() + position + 8, length - 8);
+        } else {
+            byte[] bytes = new byte[length - 8];
+            ByteBuffer b = buffer.duplicate();
+            b.position(position + 8);
+            b.get(bytes);
+            crc.update(bytes, 0, bytes.length);
+        }
+        return (int) crc.getValue();
+    }
+
+    @AllArgsConstructor
+    private static class RecordHeader {
+        private final byte kind;
+        private final long timestamp;
+        private final String sessionID;
+        private final String typeID;
+        private final String workerID;
+        private final String className;
+        private final int headerLength;
+
+        private static RecordHeader read(ByteBuffer buffer, int position) {
+            byte kind = buffer.get(position + 8);
+            long timestamp = buffer.getLong(position + 9);
+
+            String[] strings = new String[4];
+            int pos = position + RECORD_HEADER_SIZE;
+            ByteBuffer b = buffer.duplicate();
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getShort(pos) & 0xFFFF;
+                byte[] bytes = new byte[length];
+                b.position(pos + 2);
+                b.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                pos += 2 + length;
+            }
+            return new RecordHeader(kind, timestamp, strings[0], strings[1], strings[2], strings[3], pos - position);
+        }
+
+        private SessionTypeWorkerId getSessionTypeWorkerId() {
+            return new SessionTypeWorkerId(sessionID, typeID, workerID);
+        }
+    }
+
+    // ----- Index -----
+
+    private UpdateIndex updateIndex(SessionTypeWorkerId id, boolean createIfRequired) {
+        UpdateIndex index = (UpdateIndex) updates.get(id);
+        if (index == null && createIfRequired) {
+            synchronized (updates) {
+                index = (UpdateIndex) updates.get(id);
+                if (index == null) {
+                    index = new UpdateIndex();
+                    updates.put(id, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    @Override
+    protected Map<Long, Persistable> getUpdateMap(String sessionID, String typeID, String workerID,
+                    boolean createIfRequired) {
+        return updateIndex(new SessionTypeWorkerId(sessionID, typeID, workerID), createIfRequired);
+    }
+
+    private void putStaticInfoIndex(Persistable p, Location location) {
+        SessionTypeWorkerId id = new SessionTypeWorkerId(p.getSessionID(), p.getTypeID(), p.getWorkerID());
+        sessionIDs.add(p.getSessionID());
+        staticInfo.put(id, p);
+        release(staticInfoLocations.put(id, location));
+    }
+
+    private void putMetaDataIndex(StorageMetaData m, Location location) {
+        SessionTypeId id = new SessionTypeId(m.getSessionID(), m.getTypeID());
+        storageMetaData.put(id, m);
+        release(metaDataLocations.put(id, location));
+    }
+
+    @AllArgsConstructor
+    @Data
+    private static class Location {
+        private final int segment;
+        private final int offset;
+        private final int length;
+
+        private boolean isAt(int segment, int offset) {
+            return this.segment == segment && this.offset == offset;
+        }
+    }
+
+    /**
+     * Locations of update records for one (session, type, worker), sorted by timestamp. Timestamps are usually
+     * increasing, so adding a record is O(1).
+     * Exposed as a read-only Map view for {@link BaseCollectionStatsStorage}: records are decoded on access.
+     */
+    private class UpdateIndex extends AbstractMap<Long, Persistable> {
+        private long[] timestamps = new long[16];
+        private Location[] locations = new Location[16];
+        private int size;
+
+        private int find(long timestamp) {
+            if (size == 0 || timestamps[size - 1] < timestamp)
+                return -(size + 1);
+            return Arrays.binarySearch(timestamps, 0, size, timestamp);
+        }
+
+        /**
+         * @return replaced location, if any
+         */
+        private synchronized Location put(long timestamp, Location location) {
+            int i = find(timestamp);
+            if (i >= 0) {
+                Location replaced = locations[i];
+                locations[i] = location;
+                return replaced;
+            }
+
+            i = -(i + 1);
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                locations = Arrays.copyOf(locations, size * 2);
+            }
+            System.arraycopy(timestamps, i, timestamps, i + 1, size - i);
+            System.arraycopy(locations, i, locations, i + 1, size - i);
+            timestamps[i] = timestamp;
+            locations[i] = location;
+            size++;
+            return null;
+        }
+
+        private synchronized boolean isAt(long timestamp, int segment, int offset) {
+            int i = find(timestamp);
+            return i >= 0 && locations[i].isAt(segment, offset);
+        }
+
+        private synchronized Location getLocation(long timestamp) {
+            int i = find(timestamp);
+            return i >= 0 ? locations[i] : null;
+        }
+
+        private synchronized long latestTimestamp() {
+            return size == 0 ? Long.MIN_VALUE : timestamps[size - 1];
+        }
+
+        private List<Persistable> readAfter(long timestamp, List<Persistable> out) {
+            long[] ts;
+            Location[] locs;
+            synchronized (this) {
+                int i = find(timestamp);
+                i = i >= 0 ? i + 1 : -(i + 1);
+                ts = Arrays.copyOfRange(timestamps, i, size);
+                locs = Arrays.copyOfRange(locations, i, size);
+            }
+            return readUpdates(this, ts, locs, out);
+        }
+
+        private synchronized long[] timestamps() {
+            return Arrays.copyOf(timestamps, size);
+        }
+
+        @Override
+        public synchronized int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Long && getLocation((Long) key) != null;
+        }
+
+        @Override
+        public Persistable get(Object key) {
+            if (!(key instanceof Long))
+                return null;
+            return readUpdate(this, (Long) key);
+        }
+
+        @Override
+        public Set<Long> keySet() {
+            Set<Long> out = new LinkedHashSet<>();
+            for (long l : timestamps())
+                out.add(l);
+            return out;
+        }
+
+        @Override
+        public Set<Entry<Long, Persistable>> entrySet() {
+            Set<Entry<Long, Persistable>> out = new LinkedHashSet<>();
+            for (Persistable p : readAfter(Long.MIN_VALUE, new ArrayList<Persistable>()))
+                out.add(new SimpleImmutableEntry<>(p.getTimeStamp(), p));
+            return out;
+        }
+    }
+
+    // ----- Queries: use the index, instead of iterating over all records -----
+
+    @Override
+    public Persistable getLatestUpdate(String sessionID, String typeID, String workerID) {
+        UpdateIndex index = updateIndex(new SessionTypeWorkerId(sessionID, typeID, workerID), false);
+        if (index == null || index.size() == 0)
+            return null;
+        return readUpdate(index, index.latestTimestamp());
+    }
+
+    @Override
+    public List<Persistable> getAllUpdatesAfter(String sessionID, String typeID, String workerID, long timestamp) {
+        UpdateIndex index = updateIndex(new SessionTypeWorkerId(sessionID, typeID, workerID), false);
+        if (index == null)
+            return new ArrayList<>();
+        return index.readAfter(timestamp, new ArrayList<Persistable>());
+    }
+
+    @Override
+    public List<Persistable> getAllUpdatesAfter(String sessionID, String typeID, long timestamp) {
+        List<Persistable> list = new ArrayList<>();
+        for (SessionTypeWorkerId stw : staticInfo.keySet()) {
+            if (stw.getSessionID().equals(sessionID) && stw.getTypeID().equals(typeID)) {
+                UpdateIndex index = updateIndex(stw, false);
+                if (index != null)
+                    index.readAfter(timestamp, list);
+            }
+        }
+
+        //Sort by time stamp
+        Collections.sort(list, new Comparator<Persistable>() {
+            @Override
+            public int compare(Persistable o1, Persistable o2) {
+                return Long.compare(o1.getTimeStamp(), o2.getTimeStamp());
+            }
+        });
+        return list;
+    }
+
+    @Override
+    public long[] getAllUpdateTimes(String sessionID, String typeID, String workerID) {
+        UpdateIndex index = updateIndex(new SessionTypeWorkerId(sessionID, typeID, workerID), false);
+        return index == null ? new long[0] : index.timestamps();
+    }
+
+    // ----- Store new info -----
+
+    @Override
+    public void putStaticInfo(Persistable staticInfo) {
+        List<StatsStorageEvent> sses = checkStorageEvents(staticInfo);
+        append(KIND_STATIC_INFO, staticInfo);
+
+        StatsStorageEvent sse = null;
+        if (!listeners.isEmpty())
+            sse = new StatsStorageEvent(this, StatsStorageListener.EventType.PostStaticInfo, staticInfo.getSessionID(),
+                            staticInfo.getTypeID(), staticInfo.getWorkerID(), staticInfo.getTimeStamp());
+        for (StatsStorageListener l : listeners) {
+            l.notify(sse);
+        }
+
+        notifyListeners(sses);
+    }
+
+    @Override
+    public void putUpdate(Persistable update) {
+        List<StatsStorageEvent> sses = checkStorageEvents(update);
+        append(KIND_UPDATE, update);
+
+        StatsStorageEvent sse = null;
+        if (!listeners.isEmpty())
+            sse = new StatsStorageEvent(this, StatsStorageListener.EventType.PostUpdate, update.getSessionID(),
+                            update.getTypeID(), update.getWorkerID(), update.getTimeStamp());
+        for (StatsStorageListener l : listeners) {
+            l.notify(sse);
+        }
+
+        notifyListeners(sses);
+    }
+
+    @Override
+    public void putStorageMetaData(StorageMetaData storageMetaData) {
+        List<StatsStorageEvent> sses = checkStorageEvents(storageMetaData);
+        append(KIND_METADATA, storageMetaData);
+
+        StatsStorageEvent sse = null;
+        if (!listeners.isEmpty())
+            sse = new StatsStorageEvent(this, StatsStorageListener.EventType.PostMetaData,
+                            storageMetaData.getSessionID(), storageMetaData.getTypeID(), storageMetaData.getWorkerID(),
+                            storageMetaData.getTimeStamp());
+        for (StatsStorageListener l : listeners) {
+            l.notify(sse);
+        }
+
+        notifyListeners(sses);
+    }
+
+    /**
+     * @return number of log segment files
+     */
+    public int getNumSegments() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isClosed)
+            return;
+
+        compactor.shutdownNow();
+        synchronized (writeLock) {
+            isClosed = true;
+            writeLock.notifyAll();
+        }
+        try {
+            flusher.join();
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            flush();
+            writeSegment.channel.force(false);
+        } finally {
+            closeSegments();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    @Override
+    public String toString() {
+        return "LogFileStatsStorage(" + directory.getPath() + ")";
+    }
+
+    @AllArgsConstructor
+    private static class PendingRecord {
+        private final Segment segment;
+        private final int offset;
+        // null: seal the segment
+        private final byte[] record;
+    }
+
+    private static class Segment {
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        private final AtomicLong liveBytes = new AtomicLong(0);
+
+        // bytes reserved, and bytes actually written
+        private volatile int size;
+        private volatile int flushedSize;
+        // read-only mapping, once segment is sealed
+        private volatile MappedByteBuffer mapped;
+
+        private Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+    }
+
+    @Data
+    public static class Builder {
+
+        private File directory;
+        private int segmentSize = 64 * 1024 * 1024;
+        private long flushIntervalMs = 100;
+        private int maxBatchBytes = 1024 * 1024;
+        private boolean syncOnFlush = false;
+        private double compactionThreshold = 0.5;
+        private long compactionIntervalMs = 60000;
+
+        public Builder(@NonNull File directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Maximum size of log segment file, in bytes. Default: 64MB
+         */
+        public Builder segmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Maximum time records are buffered in memory before being written to the log. Default: 100 ms
+         */
+        public Builder flushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+            return this;
+        }
+
+        /**
+         * Pending records are written immediately once their size exceeds this value. Default: 1MB
+         */
+        public Builder maxBatchBytes(int maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+            return this;
+        }
+
+        /**
+         * If true: force log to the disk after each write (slower, but records survive OS crash). Default: false
+         */
+        public Builder syncOnFlush(boolean syncOnFlush) {
+            this.syncOnFlush = syncOnFlush;
+            return this;
+        }
+
+        /**
+         * Sealed segments where fraction of live (not replaced) data is below this value are compacted. Default: 0.5
+         */
+        public Builder compactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        /**
+         * Interval between background compactions. Set to 0 to disable background compaction. Default: 60 seconds
+         */
+        public Builder compactionIntervalMs(long compactionIntervalMs) {
+            this.compactionIntervalMs = compactionIntervalMs;
+            return this;
+        }
+
+        public LogFileStatsStorage build() {
+            if (segmentSize < 1024)
+                throw new IllegalArgumentException("Segment size should be at least 1024 bytes, got " + segmentSize);
+            if (flushIntervalMs <= 0)
+                throw new IllegalArgumentException("Flush interval should be positive, got " + flushIntervalMs);
+            return new LogFileStatsStorage(this);
+        }
+    }
+}
@@ -12,12 +12,15 @@ import org.deeplearning4j.ui.stats.impl.SbeStatsInitializationReport;
 import org.deeplearning4j.ui.stats.impl.SbeStatsReport;
 import org.deeplearning4j.ui.stats.impl.java.JavaStatsInitializationReport;
 import org.deeplearning4j.ui.stats.impl.java.JavaStatsReport;
+import org.deeplearning4j.ui.storage.log.LogFileStatsStorage;
 import org.deeplearning4j.ui.storage.mapdb.MapDBStatsStorage;
 import org.deeplearning4j.ui.storage.sqlite.J7FileStatsStorage;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.util.*;
 
@@ -33,7 +36,7 @@ public class TestStatsStorage {
     public void testStatsStorage() throws IOException {
 
         for (boolean useJ7Storage : new boolean[] {false, true}) {
-            for (int i = 0; i < 3; i++) {
+            for (int i = 0; i < 4; i++) {
 
                 StatsStorage ss;
                 switch (i) {
@@ -50,6 +53,10 @@ public class TestStatsStorage {
                     case 2:
                         ss = new InMemoryStatsStorage();
                         break;
+                    case 3:
+                        File dir = Files.createTempDirectory("TestLogFileStatsStore").toFile();
+                        ss = new LogFileStatsStorage(dir);
+                        break;
                     default:
                         throw new RuntimeException();
                 }
@@ -187,21 +194,18 @@ public class TestStatsStorage {
     public void testFileStatsStore() throws IOException {
 
         for (boolean useJ7Storage : new boolean[] {false, true}) {
-            for (int i = 0; i < 2; i++) {
+            for (int i = 0; i < 3; i++) {
                 File f;
                 if (i == 0) {
                     f = Files.createTempFile("TestMapDbStatsStore", ".db").toFile();
-                } else {
+                } else if (i == 1) {
                     f = Files.createTempFile("TestSqliteStatsStore", ".db").toFile();
+                } else {
+                    f = Files.createTempFile("TestLogFileStatsStore", "").toFile();
                 }
 
                 f.delete(); //Don't want file to exist...
-                StatsStorage ss;
-                if (i == 0) {
-                    ss = new MapDBStatsStorage.Builder().file(f).build();
-                } else {
-                    ss = new J7FileStatsStorage(f);
-                }
+                StatsStorage ss = openFileStatsStorage(i, f);
 
 
                 CountingListener l = new CountingListener();
@@ -304,11 +308,7 @@ public class TestStatsStorage {
                 ss.close();
                 assertTrue(ss.isClosed());
 
-                if (i == 0) {
-                    ss = new MapDBStatsStorage.Builder().file(f).build();
-                } else {
-                    ss = new J7FileStatsStorage(f);
-                }
+                ss = openFileStatsStorage(i, f);
 
 
                 assertEquals(getReport(0, 0, 0, 12345, useJ7Storage), ss.getUpdate("sid0", "tid0", "wid0", 12345));
@@ -332,6 +332,120 @@ public class TestStatsStorage {
         }
     }
 
+    @Test
+    public void testLogFileStatsStoreCompactionAndRecovery() throws IOException {
+        File dir = Files.createTempDirectory("TestLogFileStatsStore").toFile();
+
+        LogFileStatsStorage ss = new LogFileStatsStorage.Builder(dir).segmentSize(4096).compactionIntervalMs(0).build();
+        ss.putStaticInfo(getInitReport(0, 0, 0, false));
+        for (int i = 0; i < 100; i++) {
+            ss.putUpdate(getReport(0, 0, 0, i, false));
+        }
+        int numSegments = ss.getNumSegments();
+        assertTrue(numSegments > 1);
+
+        //Overwrite all updates: most of the log is garbage now
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < 100; i++) {
+                ss.putUpdate(getReport(0, 0, 0, i, false));
+            }
+        }
+        int beforeCompaction = ss.getNumSegments();
+        assertTrue(beforeCompaction > numSegments);
+
+        ss.compact();
+        assertTrue(ss.getNumSegments() < beforeCompaction);
+        assertEquals(100, ss.getNumUpdateRecordsFor("sid0", "tid0", "wid0"));
+        assertEquals(getInitReport(0, 0, 0, false), ss.getStaticInfo("sid0", "tid0", "wid0"));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(getReport(0, 0, 0, i, false), ss.getUpdate("sid0", "tid0", "wid0", i));
+        }
+
+        ss.putUpdate(getReport(0, 0, 0, 100, false));
+        ss.close();
+
+        //Simulate crash during write: last record is incomplete, and should be dropped on open
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        File last = files[files.length - 1];
+        try (RandomAccessFile raf = new RandomAccessFile(last, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        ss = new LogFileStatsStorage(dir);
+        assertEquals(100, ss.getNumUpdateRecordsFor("sid0", "tid0", "wid0"));
+        assertEquals(getReport(0, 0, 0, 99, false), ss.getLatestUpdate("sid0", "tid0", "wid0"));
+        assertEquals(getInitReport(0, 0, 0, false), ss.getStaticInfo("sid0", "tid0", "wid0"));
+
+        //Log is still appendable after recovery
+        ss.putUpdate(getReport(0, 0, 0, 100, false));
+        ss.close();
+        ss = new LogFileStatsStorage(dir);
+        assertEquals(getReport(0, 0, 0, 100, false), ss.getLatestUpdate("sid0", "tid0", "wid0"));
+        ss.close();
+    }
+
+    @Test
+    @Ignore //Benchmark: run manually
+    public void benchmarkFileStatsStores() throws Exception {
+        int numThreads = 16;
+        final int updatesPerThread = 2000;
+
+        for (int i = 0; i < 3; i++) {
+            File f = Files.createTempFile("BenchmarkStatsStore", "").toFile();
+            f.delete();
+            final StatsStorage ss = openFileStatsStorage(i, f);
+            for (int t = 0; t < numThreads; t++) {
+                ss.putStaticInfo(getInitReport(0, 0, t, false));
+            }
+
+            Thread[] threads = new Thread[numThreads];
+            for (int t = 0; t < numThreads; t++) {
+                final int worker = t;
+                threads[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int u = 0; u < updatesPerThread; u++) {
+                            ss.putUpdate(getReport(0, 0, worker, u, false));
+                        }
+                    }
+                });
+            }
+
+            long start = System.currentTimeMillis();
+            for (Thread t : threads)
+                t.start();
+            for (Thread t : threads)
+                t.join();
+            long writeTime = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            int count = 0;
+            for (int t = 0; t < numThreads; t++) {
+                count += ss.getAllUpdatesAfter("sid0", "tid0", "wid" + t, updatesPerThread / 2).size();
+            }
+            long queryTime = System.currentTimeMillis() - start;
+            ss.close();
+
+            System.out.println(ss.getClass().getSimpleName() + ": " + numThreads * updatesPerThread
+                            + " updates written in " + writeTime + " ms, " + count + " updates queried in " + queryTime
+                            + " ms");
+        }
+    }
+
+    private static StatsStorage openFileStatsStorage(int type, File f) {
+        switch (type) {
+            case 0:
+                return new MapDBStatsStorage.Builder().file(f).build();
+            case 1:
+                return new J7FileStatsStorage(f);
+            case 2:
+                return new LogFileStatsStorage(f);
+            default:
+                throw new RuntimeException();
+        }
+    }
+
     private static StatsInitializationReport getInitReport(int idNumber, int tid, int wid, boolean useJ7Storage) {
         StatsInitializationReport rep;
         if (useJ7Storage) {
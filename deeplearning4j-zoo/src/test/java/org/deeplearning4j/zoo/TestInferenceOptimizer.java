@@ -0,0 +1,94 @@
+package org.deeplearning4j.zoo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.inference.InferenceOptimizer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.zoo.model.Darknet19;
+import org.deeplearning4j.zoo.model.ResNet50;
+import org.deeplearning4j.zoo.model.TinyYOLO;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Outputs of zoo models optimized for inference should be the same as of the original models.
+ */
+@Slf4j
+public class TestInferenceOptimizer {
+
+    @Test
+    public void testZooModelsEquivalence() throws Exception {
+        ZooModel[] models = new ZooModel[] {new ResNet50(10, 12345), new Darknet19(10, 12345),
+                        new TinyYOLO(10, 12345)};
+
+        for (ZooModel model : models) {
+            log.info("Testing inference optimization of zoo model " + model.getClass().getSimpleName());
+            Nd4j.getRandom().setSeed(12345);
+            Model net = model.init();
+            int[] inputShape = model.metaData().getInputShape()[0];
+            INDArray in = Nd4j.rand(new int[] {2, inputShape[0], inputShape[1], inputShape[2]});
+
+            INDArray expected;
+            INDArray actual;
+            int numBefore;
+            int numAfter;
+            if (net instanceof ComputationGraph) {
+                ComputationGraph cg = (ComputationGraph) net;
+                randomizeBatchNormStats(cg.getLayers());
+                expected = cg.outputSingle(in);
+                ComputationGraph optimized = InferenceOptimizer.optimize(cg);
+                actual = optimized.outputSingle(in);
+                numBefore = cg.getLayers().length;
+                numAfter = optimized.getLayers().length;
+            } else {
+                MultiLayerNetwork mln = (MultiLayerNetwork) net;
+                randomizeBatchNormStats(mln.getLayers());
+                expected = mln.output(in);
+                MultiLayerNetwork optimized = InferenceOptimizer.optimize(mln);
+                actual = optimized.output(in);
+                numBefore = mln.getnLayers();
+                numAfter = optimized.getnLayers();
+            }
+
+            log.info("{}: {} layers -> {} layers", model.getClass().getSimpleName(), numBefore, numAfter);
+            assertTrue(numAfter < numBefore);
+            assertArrayEquals(expected.shape(), actual.shape());
+
+            double relError = expected.sub(actual).norm2Number().doubleValue()
+                            / Math.max(expected.norm2Number().doubleValue(), 1e-8);
+            assertTrue(model.getClass().getSimpleName() + ": relative error " + relError, relError < 1e-4);
+
+            // clean up for current model
+            Nd4j.getWorkspaceManager().destroyAllWorkspacesForCurrentThread();
+            System.gc();
+        }
+    }
+
+    /**
+     * Freshly initialized BatchNormalization layers are identity ops at inference time (mean 0, variance 1): use
+     * random statistics and parameters instead, so that folding is actually tested
+     */
+    private static void randomizeBatchNormStats(Layer[] layers) {
+        for (Layer l : layers) {
+            if (l instanceof org.deeplearning4j.nn.layers.normalization.BatchNormalization) {
+                l.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN).assign(
+                                Nd4j.rand(l.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN).shape())
+                                                .subi(0.5));
+                l.getParam(BatchNormalizationParamInitializer.GLOBAL_VAR).assign(
+                                Nd4j.rand(l.getParam(BatchNormalizationParamInitializer.GLOBAL_VAR).shape())
+                                                .addi(0.5));
+                l.getParam(BatchNormalizationParamInitializer.GAMMA).assign(
+                                Nd4j.rand(l.getParam(BatchNormalizationParamInitializer.GAMMA).shape()).addi(0.5));
+                l.getParam(BatchNormalizationParamInitializer.BETA).assign(
+                                Nd4j.rand(l.getParam(BatchNormalizationParamInitializer.BETA).shape()).subi(0.5));
+            }
+        }
+    }
+}
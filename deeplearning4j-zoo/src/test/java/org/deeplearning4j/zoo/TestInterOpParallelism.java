@@ -0,0 +1,58 @@
+package org.deeplearning4j.zoo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.zoo.model.FaceNetNN4Small2;
+import org.deeplearning4j.zoo.model.GoogLeNet;
+import org.deeplearning4j.zoo.model.InceptionResNetV1;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+
+/**
+ * Latency of zoo models with parallel branches, with and without inter-op parallelism.
+ */
+@Slf4j
+public class TestInterOpParallelism {
+
+    @Test
+    @Ignore //Benchmark: run manually
+    public void benchmarkBatchSizeOneLatency() throws Exception {
+        ZooModel[] models = new ZooModel[] {new GoogLeNet(10, 12345), new InceptionResNetV1(10, 12345),
+                        new FaceNetNN4Small2(10, 12345)};
+        int[] parallelism = new int[] {1, 2, 4, Runtime.getRuntime().availableProcessors()};
+        int warmup = 5;
+        int iterations = 20;
+
+        for (ZooModel model : models) {
+            ComputationGraph net = (ComputationGraph) model.init();
+            int[] inputShape = model.metaData().getInputShape()[0];
+            INDArray in = Nd4j.rand(new int[] {1, inputShape[0], inputShape[1], inputShape[2]});
+
+            for (int p : parallelism) {
+                net.getConfiguration().setInterOpParallelism(p);
+                for (int i = 0; i < warmup; i++) {
+                    net.output(in);
+                }
+
+                long[] times = new long[iterations];
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    net.output(in);
+                    times[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(times);
+
+                log.info("{}, interOpParallelism={}: median {} ms, min {} ms", model.getClass().getSimpleName(), p,
+                                times[iterations / 2] / 1e6, times[0] / 1e6);
+            }
+
+            // clean up for current model
+            Nd4j.getWorkspaceManager().destroyAllWorkspacesForCurrentThread();
+            System.gc();
+        }
+    }
+}